@@ -0,0 +1,237 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.net;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.nutch.util.URLUtil;
+
+/**
+ * Reproducible URL corpora for the URL filter and normalizer benchmarks.
+ * 
+ * <p>
+ * The corpus <code>synthetic</code> is generated from a fixed seed and mixes
+ * the URL shapes found in crawls: hosts below various public suffixes,
+ * internationalized and numeric hosts, ports, upper-case schemes and hosts,
+ * relative path segments, duplicate slashes, session ids and other query
+ * parameters, fragments, images and other binary documents, and a few
+ * non-HTTP URLs. Any other corpus name is read as a local file (optionally
+ * gzipped) with one URL per line, empty lines and lines starting with
+ * <code>#</code> are skipped.
+ * </p>
+ */
+public class URLCorpus {
+
+  /** Name of the generated corpus. */
+  public static final String SYNTHETIC = "synthetic";
+
+  private static final String[] SUFFIXES = { "com", "com", "com", "org",
+      "net", "de", "co.uk", "fr", "com.au", "jp", "ru", "info", "edu",
+      "gov.uk", "blogspot.com", "xn--p1ai" };
+
+  private static final String[] SUBDOMAINS = { "", "", "www.", "www.",
+      "WWW.", "blog.", "shop.", "en.", "m.", "static.", "a.b." };
+
+  private static final String[] WORDS = { "news", "index", "products",
+      "article", "2017", "en", "category", "search", "images", "about",
+      "user", "tags", "archive", "page", "item", "Foo%20Bar", "caf%C3%A9",
+      "..", "." };
+
+  private static final String[] EXTENSIONS = { "", "", "", "/", ".html",
+      ".htm", ".php", ".jsp", ".jpg", ".png", ".css", ".js", ".pdf", ".gz" };
+
+  private static final String[] PARAMETERS = { "id", "page", "q", "lang",
+      "sort", "utm_source", "PHPSESSID", "jsessionid", "ref" };
+
+  private URLCorpus() {
+  }
+
+  /**
+   * Returns a URL corpus.
+   * 
+   * @param corpus
+   *          {@link #SYNTHETIC} or the path of a local file
+   * @param size
+   *          number of URLs to generate, or maximum number of URLs to read
+   *          from a file if positive
+   */
+  public static String[] get(String corpus, int size) throws IOException {
+    if (SYNTHETIC.equals(corpus)) {
+      return synthetic(size, 42L);
+    }
+    return read(corpus, size);
+  }
+
+  /** Generates <code>size</code> URLs from the given seed. */
+  public static String[] synthetic(int size, long seed) {
+    Random random = new Random(seed);
+    // a Zipf-like host distribution, few hosts have many URLs
+    String[] hosts = new String[Math.max(1, size / 20)];
+    for (int i = 0; i < hosts.length; i++) {
+      hosts[i] = host(random);
+    }
+    String[] urls = new String[size];
+    for (int i = 0; i < size; i++) {
+      int h = (int) (hosts.length * Math.pow(random.nextDouble(), 3));
+      urls[i] = url(random, hosts[h]);
+    }
+    return urls;
+  }
+
+  private static String host(Random random) {
+    switch (random.nextInt(40)) {
+    case 0:
+      return (1 + random.nextInt(254)) + "." + random.nextInt(256) + "."
+          + random.nextInt(256) + "." + (1 + random.nextInt(254));
+    case 1:
+      return "b\u00fccher-" + random.nextInt(1000) + ".de";
+    default:
+      StringBuilder sb = new StringBuilder();
+      sb.append(pick(random, SUBDOMAINS));
+      int length = 3 + random.nextInt(12);
+      for (int i = 0; i < length; i++) {
+        sb.append((char) ('a' + random.nextInt(26)));
+        if (i > 0 && i < length - 1 && random.nextInt(12) == 0) {
+          sb.append('-');
+        }
+      }
+      return sb.append('.').append(pick(random, SUFFIXES)).toString();
+    }
+  }
+
+  private static String url(Random random, String host) {
+    StringBuilder sb = new StringBuilder();
+    switch (random.nextInt(100)) {
+    case 0:
+      return "mailto:info@" + host;
+    case 1:
+      return "javascript:void(0)";
+    case 2:
+      sb.append("ftp://");
+      break;
+    case 3:
+      sb.append("HTTP://");
+      break;
+    default:
+      sb.append(random.nextInt(3) == 0 ? "https://" : "http://");
+    }
+    sb.append(random.nextInt(20) == 0 ? host.toUpperCase() : host);
+    if (random.nextInt(30) == 0) {
+      sb.append(':').append(random.nextBoolean() ? 80 : 8080);
+    }
+    int depth = random.nextInt(6);
+    for (int i = 0; i < depth; i++) {
+      sb.append(random.nextInt(25) == 0 ? "//" : "/");
+      sb.append(pick(random, WORDS));
+    }
+    if (depth > 0) {
+      sb.append(pick(random, EXTENSIONS));
+    } else if (random.nextBoolean()) {
+      sb.append('/');
+    }
+    if (random.nextInt(4) == 0) {
+      int parameters = 1 + random.nextInt(3);
+      for (int i = 0; i < parameters; i++) {
+        String name = pick(random, PARAMETERS);
+        sb.append(i == 0 ? '?' : '&').append(name).append('=');
+        if (name.toLowerCase().contains("sess")) {
+          sb.append(Long.toHexString(random.nextLong()));
+        } else {
+          sb.append(random.nextInt(1000));
+        }
+      }
+    }
+    if (random.nextInt(15) == 0) {
+      sb.append("#section-").append(random.nextInt(10));
+    }
+    return sb.toString();
+  }
+
+  private static String pick(Random random, String[] values) {
+    return values[random.nextInt(values.length)];
+  }
+
+  /**
+   * Reads URLs from a local file, one URL per line.
+   * 
+   * @param file
+   *          path of the file, read as gzipped if the name ends in
+   *          <code>.gz</code>
+   * @param max
+   *          maximum number of URLs to read, all URLs if not positive
+   */
+  public static String[] read(String file, int max) throws IOException {
+    List<String> urls = new ArrayList<>();
+    InputStream in = new FileInputStream(file);
+    if (file.endsWith(".gz")) {
+      in = new GZIPInputStream(in);
+    }
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+        in, StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null
+          && (max <= 0 || urls.size() < max)) {
+        line = line.trim();
+        if (!line.isEmpty() && !line.startsWith("#")) {
+          urls.add(line);
+        }
+      }
+    }
+    if (urls.isEmpty()) {
+      throw new IOException("No URLs found in " + file);
+    }
+    return urls.toArray(new String[urls.size()]);
+  }
+
+  /**
+   * Returns every second of the distinct domain names of the URLs, used to
+   * configure the domain filters so that about half of the URLs pass.
+   */
+  public static String getDomainRules(String[] urls) {
+    Set<String> domains = new LinkedHashSet<>();
+    for (String url : urls) {
+      try {
+        String domain = URLUtil.getDomainName(url);
+        if (domain != null) {
+          domains.add(domain);
+        }
+      } catch (IOException e) {
+        // skip malformed URLs
+      }
+    }
+    StringBuilder rules = new StringBuilder();
+    int i = 0;
+    for (String domain : domains) {
+      if (i++ % 2 == 0) {
+        rules.append(domain).append('\n');
+      }
+    }
+    return rules.toString();
+  }
+
+}
@@ -0,0 +1,121 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.net;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.nutch.util.NutchConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the URL filter plugins, one URL per operation. The plugins
+ * are configured by their rule files in <code>conf/</code>, the domain filters
+ * by every second domain of the corpus.
+ * 
+ * <ul>
+ * <li><code>chain</code>: {@link URLFilters#filter(String)}</li>
+ * <li><code>chainParsed</code>: {@link URLFilters#filter(ParsedURL)}</li>
+ * <li><code>singlePlugin</code>: the first plugin instance alone, as
+ * checked by <code>URLFilterChecker -filterName</code></li>
+ * </ul>
+ * 
+ * Run with <code>ant bench -Dbench.args="-prof gc URLFilterBenchmark -p
+ * corpus=/path/to/urls.txt"</code> to use a local corpus.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class URLFilterBenchmark {
+
+  @Param({ "urlfilter-regex", "urlfilter-automaton", "urlfilter-domain",
+      "urlfilter-domainblacklist", "urlfilter-prefix", "urlfilter-suffix",
+      "urlfilter-validator", "urlfilter-(regex|domain|suffix|validator)" })
+  public String plugin;
+
+  @Param({ URLCorpus.SYNTHETIC })
+  public String corpus;
+
+  @Param({ "10000" })
+  public int size;
+
+  private URLFilters filters;
+
+  private URLFilter filter;
+
+  private String[] urls;
+
+  private int index;
+
+  @Setup
+  public void setUp() throws IOException {
+    urls = URLCorpus.get(corpus, size);
+    Configuration conf = NutchConfiguration.create();
+    conf.set("plugin.includes", plugin);
+    conf.set(URLFilters.URLFILTER_ORDER, "");
+    String domains = URLCorpus.getDomainRules(urls);
+    if (conf.get("urlfilter.domain.rules") == null) {
+      conf.set("urlfilter.domain.rules", domains);
+    }
+    if (conf.get("urlfilter.domainblacklist.rules") == null) {
+      conf.set("urlfilter.domainblacklist.rules", domains);
+    }
+    filters = new URLFilters(conf);
+    if (filters.getFilters().length == 0) {
+      throw new IllegalStateException("No URL filter activated by " + plugin);
+    }
+    filter = filters.getFilters()[0];
+  }
+
+  private String next() {
+    String url = urls[index];
+    if (++index == urls.length) {
+      index = 0;
+    }
+    return url;
+  }
+
+  @Benchmark
+  public String chain() throws URLFilterException {
+    return filters.filter(next());
+  }
+
+  @Benchmark
+  public boolean chainParsed() throws URLFilterException {
+    return filters.filter(new ParsedURL(next()));
+  }
+
+  @Benchmark
+  public String singlePlugin() {
+    return filter.filter(next());
+  }
+
+}
@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.net;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.nutch.util.NutchConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the URL normalizer plugins, one URL per operation. The
+ * plugins are configured by their rule files in <code>conf/</code>.
+ * 
+ * <ul>
+ * <li><code>chain</code>:
+ * {@link URLNormalizers#normalize(String, String)}</li>
+ * <li><code>chainParsed</code>:
+ * {@link URLNormalizers#normalize(ParsedURL, String)}</li>
+ * <li><code>singlePlugin</code>: the first plugin instance alone, as
+ * checked by <code>URLNormalizerChecker -normalizer</code></li>
+ * </ul>
+ * 
+ * Run with <code>ant bench -Dbench.args="-prof gc URLNormalizerBenchmark -p
+ * corpus=/path/to/urls.txt"</code> to use a local corpus.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class URLNormalizerBenchmark {
+
+  @Param({ "urlnormalizer-basic", "urlnormalizer-regex",
+      "urlnormalizer-(pass|regex|basic)",
+      "urlnormalizer-(ajax|basic|host|pass|protocol|querystring|regex|slash)" })
+  public String plugin;
+
+  @Param({ URLNormalizers.SCOPE_DEFAULT, URLNormalizers.SCOPE_OUTLINK })
+  public String scope;
+
+  @Param({ URLCorpus.SYNTHETIC })
+  public String corpus;
+
+  @Param({ "10000" })
+  public int size;
+
+  private URLNormalizers normalizers;
+
+  private URLNormalizer normalizer;
+
+  private String[] urls;
+
+  private int index;
+
+  @Setup
+  public void setUp() throws IOException {
+    urls = URLCorpus.get(corpus, size);
+    Configuration conf = NutchConfiguration.create();
+    conf.set("plugin.includes", plugin);
+    normalizers = new URLNormalizers(conf, scope);
+    if (normalizers.getNormalizers().length == 0) {
+      throw new IllegalStateException("No URL normalizer activated by "
+          + plugin);
+    }
+    normalizer = normalizers.getNormalizers()[0];
+  }
+
+  private String next() {
+    String url = urls[index];
+    if (++index == urls.length) {
+      index = 0;
+    }
+    return url;
+  }
+
+  @Benchmark
+  public String chain() {
+    try {
+      return normalizers.normalize(next(), scope);
+    } catch (MalformedURLException e) {
+      return null;
+    }
+  }
+
+  @Benchmark
+  public boolean chainParsed() {
+    try {
+      return normalizers.normalize(new ParsedURL(next()), scope);
+    } catch (MalformedURLException e) {
+      return false;
+    }
+  }
+
+  @Benchmark
+  public String singlePlugin() {
+    try {
+      return normalizer.normalize(next(), scope);
+    } catch (MalformedURLException e) {
+      return null;
+    }
+  }
+
+}
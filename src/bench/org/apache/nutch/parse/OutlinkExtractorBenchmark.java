@@ -0,0 +1,149 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.parse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.nutch.net.URLCorpus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the URL scanner in {@link OutlinkExtractor} compared to the
+ * regular expression {@link OutlinkExtractor#URL_PATTERN}, one document per
+ * operation. The corpus is either a file or directory of plain text
+ * documents, or {@link URLCorpus#SYNTHETIC} for generated text with
+ * <code>size</code> embedded URLs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class OutlinkExtractorBenchmark {
+
+  @Param({ URLCorpus.SYNTHETIC })
+  public String corpus;
+
+  @Param({ "1000" })
+  public int size;
+
+  private String[] texts;
+
+  private Pattern pattern;
+
+  private int index;
+
+  @Setup
+  public void setUp() throws IOException {
+    List<String> documents = new ArrayList<>();
+    if (URLCorpus.SYNTHETIC.equals(corpus)) {
+      documents.add(synthetic(size, 42L));
+    } else {
+      List<File> files = new ArrayList<>();
+      listFiles(new File(corpus), files);
+      for (File file : files) {
+        documents.add(new String(Files.readAllBytes(file.toPath()),
+            StandardCharsets.UTF_8));
+      }
+    }
+    if (documents.isEmpty()) {
+      throw new IOException("No documents in " + corpus);
+    }
+    texts = documents.toArray(new String[documents.size()]);
+    pattern = Pattern.compile(OutlinkExtractor.URL_PATTERN);
+  }
+
+  /** Plain text with <code>urls</code> URLs between runs of words. */
+  private static String synthetic(int urls, long seed) {
+    String[] words = { "the", "page", "see", "also:", "at", "(link)", "and",
+        "20:15", "e-mail", "a/b", "100%", "http", "#1" };
+    Random random = new Random(seed);
+    StringBuilder sb = new StringBuilder();
+    for (String url : URLCorpus.synthetic(urls, seed)) {
+      int n = random.nextInt(40);
+      for (int i = 0; i < n; i++) {
+        sb.append(words[random.nextInt(words.length)]).append(' ');
+      }
+      sb.append(url).append(random.nextInt(4) == 0 ? ".\n" : " ");
+    }
+    return sb.toString();
+  }
+
+  private static void listFiles(File file, List<File> files) {
+    if (file.isFile()) {
+      files.add(file);
+    } else if (file.isDirectory()) {
+      for (File child : file.listFiles()) {
+        listFiles(child, files);
+      }
+    }
+  }
+
+  private String next() {
+    String text = texts[index];
+    if (++index == texts.length) {
+      index = 0;
+    }
+    return text;
+  }
+
+  /** @return the total length of the URLs found */
+  @Benchmark
+  public int regex() {
+    int length = 0;
+    Matcher matcher = pattern.matcher(next());
+    while (matcher.find()) {
+      length += matcher.group().length();
+    }
+    return length;
+  }
+
+  /** @return the total length of the URLs found */
+  @Benchmark
+  public int scanner() {
+    String text = next();
+    int length = 0;
+    int pos = 0;
+    long match;
+    while ((match = OutlinkExtractor.findUrl(text, pos)) != -1) {
+      pos = (int) match;
+      length += text.substring((int) (match >>> 32), pos).length();
+    }
+    return length;
+  }
+
+}
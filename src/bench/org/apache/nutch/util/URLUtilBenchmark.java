@@ -0,0 +1,117 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.util;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.nutch.net.ParsedURL;
+import org.apache.nutch.net.URLCorpus;
+import org.apache.nutch.util.domain.DomainSuffix;
+import org.apache.nutch.util.domain.DomainSuffixes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the host and domain lookups in {@link URLUtil}, one URL per
+ * operation. URLs of the corpus which cannot be parsed are skipped.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class URLUtilBenchmark {
+
+  @Param({ URLCorpus.SYNTHETIC })
+  public String corpus;
+
+  @Param({ "10000" })
+  public int size;
+
+  private String[] urls;
+
+  private URL[] parsed;
+
+  private int index;
+
+  @Setup
+  public void setUp() throws IOException {
+    List<String> strings = new ArrayList<>();
+    List<URL> objects = new ArrayList<>();
+    for (String url : URLCorpus.get(corpus, size)) {
+      try {
+        objects.add(new URL(url));
+        strings.add(url);
+      } catch (MalformedURLException e) {
+        // skip
+      }
+    }
+    urls = strings.toArray(new String[strings.size()]);
+    parsed = objects.toArray(new URL[objects.size()]);
+    // initialize the domain suffixes outside of the measurement
+    DomainSuffixes.getInstance();
+  }
+
+  private int next() {
+    int i = index;
+    if (++index == urls.length) {
+      index = 0;
+    }
+    return i;
+  }
+
+  @Benchmark
+  public String getDomainName() throws MalformedURLException {
+    return URLUtil.getDomainName(urls[next()]);
+  }
+
+  @Benchmark
+  public String getDomainNameURL() {
+    return URLUtil.getDomainName(parsed[next()]);
+  }
+
+  @Benchmark
+  public DomainSuffix getDomainSuffixURL() {
+    return URLUtil.getDomainSuffix(parsed[next()]);
+  }
+
+  @Benchmark
+  public String getHost() {
+    return URLUtil.getHost(urls[next()]);
+  }
+
+  @Benchmark
+  public String getDomainNameParsed() {
+    return new ParsedURL(urls[next()]).getDomainName();
+  }
+
+}
@@ -53,6 +53,8 @@ public class CrawlDb extends NutchTool implements Tool {
   public static final String CRAWLDB_PURGE_404 = "db.update.purge.404";
   public static final String CRAWLDB_PURGE_ORPHANS = "db.update.purge.orphans";
 
+  public static final String CRAWLDB_COMBINE_INLINKS = "db.update.combine.inlinks";
+
   public static final String CURRENT_NAME = "current";
 
   public static final String LOCK_NAME = ".locked";
@@ -94,6 +96,8 @@ public class CrawlDb extends NutchTool implements Tool {
       LOG.info("CrawlDb update: URL normalizing: " + normalize);
       LOG.info("CrawlDb update: URL filtering: " + filter);
       LOG.info("CrawlDb update: 404 purging: " + url404Purging);
+      LOG.info("CrawlDb update: combine inlinks: "
+          + job.getBoolean(CRAWLDB_COMBINE_INLINKS, true));
     }
 
     for (int i = 0; i < segments.length; i++) {
@@ -150,6 +154,10 @@ public class CrawlDb extends NutchTool implements Tool {
     job.setInputFormat(SequenceFileInputFormat.class);
 
     job.setMapperClass(CrawlDbFilter.class);
+    if (job.getBoolean(CRAWLDB_COMBINE_INLINKS, true)) {
+      // trim inlinks already on the map side to reduce shuffle volume
+      job.setCombinerClass(CrawlDbLinkCombiner.class);
+    }
     job.setReducerClass(CrawlDbReducer.class);
 
     FileOutputFormat.setOutputPath(job, newCrawlDb);
@@ -169,16 +177,29 @@ public class CrawlDb extends NutchTool implements Tool {
     return lock;
   }
 
-  private static void install(Configuration conf, Path crawlDb, Path tempCrawlDb)
+  /**
+   * Install tempCrawlDb as current CrawlDb, the previous one is moved to
+   * crawlDb/old. If the new CrawlDb cannot be installed an IOException is
+   * thrown and the previous CrawlDb is restored.
+   */
+  static void install(Configuration conf, Path crawlDb, Path tempCrawlDb)
       throws IOException {
     boolean preserveBackup = conf.getBoolean("db.preserve.backup", true);
     FileSystem fs = crawlDb.getFileSystem(conf);
     Path old = new Path(crawlDb, "old");
     Path current = new Path(crawlDb, CURRENT_NAME);
-    if (fs.exists(current)) {
-      FSUtils.replace(fs, old, current, true);
+    boolean hasCurrent = fs.exists(current);
+    if (hasCurrent) {
+      FSUtils.replaceOrFail(fs, old, current, true);
+    }
+    try {
+      FSUtils.replaceOrFail(fs, current, tempCrawlDb, true);
+    } catch (IOException e) {
+      if (hasCurrent && !fs.exists(current) && !fs.rename(old, current)) {
+        LOG.error("Failed to restore CrawlDb {} from {}", current, old);
+      }
+      throw e;
     }
-    FSUtils.replace(fs, current, tempCrawlDb, true);
     Path lock = new Path(crawlDb, LOCK_NAME);
     LockUtil.removeLockFile(fs, lock);
     if (!preserveBackup && fs.exists(old)) {
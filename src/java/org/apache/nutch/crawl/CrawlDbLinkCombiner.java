@@ -0,0 +1,87 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.nutch.crawl;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reducer;
+import org.apache.hadoop.mapred.Reporter;
+
+/**
+ * Combiner for the CrawlDb update job which trims the {@link
+ * CrawlDatum#STATUS_LINKED} datums of a URL on the map side.
+ *
+ * {@link CrawlDbReducer} keeps at most <code>db.update.max.inlinks</code>
+ * inlinks per URL, selected by score. Because the selection of the best
+ * elements of a union equals the selection applied to the best elements of
+ * every part, the combiner applies the same selection to every map output
+ * spill and passes only the kept links to the reducer. All other datums (db,
+ * fetch, signature and parse metadata) are passed through unchanged.
+ *
+ * The link datums themselves are not merged: scoring filters receive the same
+ * list of inlinks in {@link org.apache.nutch.scoring.ScoringFilter#updateDbScore}
+ * as they would without the combiner.
+ */
+public class CrawlDbLinkCombiner implements
+    Reducer<Text, CrawlDatum, Text, CrawlDatum> {
+
+  private InlinkPriorityQueue linked = null;
+
+  public void configure(JobConf job) {
+    int maxLinks = job.getInt("db.update.max.inlinks", 10000);
+    linked = new InlinkPriorityQueue(maxLinks);
+  }
+
+  public void close() {
+  }
+
+  public void reduce(Text key, Iterator<CrawlDatum> values,
+      OutputCollector<Text, CrawlDatum> output, Reporter reporter)
+      throws IOException {
+
+    linked.clear();
+    int numLinks = 0;
+
+    while (values.hasNext()) {
+      CrawlDatum datum = values.next();
+      if (datum.getStatus() != CrawlDatum.STATUS_LINKED) {
+        output.collect(key, datum);
+        continue;
+      }
+      numLinks++;
+      // values are reused by the framework, need a deep copy
+      CrawlDatum link = new CrawlDatum();
+      link.set(datum);
+      linked.insert(link);
+    }
+
+    int kept = linked.size();
+    while (linked.size() > 0) {
+      output.collect(key, linked.pop());
+    }
+    if (numLinks > kept) {
+      reporter.getCounter("CrawlDB combiner", "inlinks dropped").increment(
+          numLinks - kept);
+    }
+  }
+
+}
@@ -22,19 +22,31 @@ import java.lang.invoke.MethodHandles;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 // Commons Logging imports
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.MapFile;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.SequenceFile.CompressionType;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapred.*;
+import org.apache.hadoop.mapred.lib.HashPartitioner;
 import org.apache.hadoop.util.*;
 import org.apache.hadoop.conf.*;
+import org.apache.nutch.util.HadoopFSUtil;
 import org.apache.nutch.util.LockUtil;
 import org.apache.nutch.util.NutchConfiguration;
 import org.apache.nutch.util.NutchJob;
@@ -54,6 +66,14 @@ import org.apache.nutch.util.TimingUtil;
  * {@link org.apache.nutch.crawl.CrawlDatum#getFetchTime()}. However, all
  * metadata information from all versions is accumulated, with newer values
  * taking precedence over older values.
+ * </p>
+ * <p>
+ * If all input CrawlDb-s are partitioned into the same number of MapFiles
+ * by the hash of the URL and URLs are not normalized, the merge can be done
+ * without a MapReduce job: {@link #mergeStreaming(Path, Path[], boolean, int)} reads the already
+ * sorted partitions of all inputs side by side (k-way merge) and applies the
+ * same {@link Merger} logic to every URL.
+ * </p>
  * 
  * @author Andrzej Bialecki
  */
@@ -152,6 +172,317 @@ public class CrawlDbMerger extends Configured implements Tool {
         + TimingUtil.elapsedTime(start, end));
   }
 
+  /**
+   * Merge CrawlDb-s without a MapReduce job by a streaming k-way merge of the
+   * sorted MapFile partitions. Requires that all input CrawlDb-s have the
+   * same number of partitions and that every URL is stored in the partition
+   * assigned by {@link HashPartitioner}, as done by all CrawlDb jobs. A
+   * matching number of partitions alone does not prove matching key ranges,
+   * so the partition of every merged URL is verified. If the partitions do
+   * not match, falls back to {@link #merge(Path, Path[], boolean, boolean)}.
+   * URL normalization would change the key order and is therefore not
+   * supported in streaming mode.
+   * 
+   * @param numThreads
+   *          number of partitions merged in parallel
+   */
+  public void mergeStreaming(Path output, Path[] dbs, boolean filter,
+      int numThreads) throws Exception {
+    Path[][] parts = getCompatiblePartitions(dbs);
+    if (parts == null) {
+      LOG.info("CrawlDb merge: input partitions differ, running merge job");
+      merge(output, dbs, false, filter);
+      return;
+    }
+
+    JobConf job = createMergeJob(getConf(), output, false, filter);
+    Path outPath = FileOutputFormat.getOutputPath(job);
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    Path lock = CrawlDb.lock(getConf(), output, false);
+
+    SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    long start = System.currentTimeMillis();
+    LOG.info("CrawlDb merge (streaming): starting at " + sdf.format(start));
+    for (int i = 0; i < dbs.length; i++) {
+      LOG.info("Adding " + dbs[i]);
+    }
+
+    boolean installed = false;
+    boolean mismatch = false;
+    try {
+      List<Future<Counters>> results = new ArrayList<>();
+      for (int p = 0; p < parts[0].length; p++) {
+        final Path[] inputs = new Path[dbs.length];
+        for (int i = 0; i < dbs.length; i++) {
+          inputs[i] = parts[i][p];
+        }
+        final Path partOut = new Path(outPath, parts[0][p].getName());
+        final int partition = p;
+        results.add(executor.submit(() -> mergePartition(job, inputs,
+            partOut, partition, parts[0].length)));
+      }
+      Counters counters = new Counters();
+      for (Future<Counters> result : results) {
+        counters.incrAllCounters(result.get());
+      }
+      for (Counters.Group group : counters) {
+        for (Counters.Counter counter : group) {
+          LOG.info("CrawlDb merge: {} / {}: {}", group.getDisplayName(),
+              counter.getDisplayName(), counter.getValue());
+        }
+      }
+      CrawlDb.install(job, output);
+      installed = true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw e;
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof PartitionMismatchException) {
+        LOG.info("CrawlDb merge: {}", e.getCause().getMessage());
+        mismatch = true;
+      } else if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      } else if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      } else {
+        throw e;
+      }
+    } finally {
+      executor.shutdownNow();
+      if (!installed) {
+        // also on runtime exceptions thrown by URL filters
+        LockUtil.removeLockFile(getConf(), lock);
+        FileSystem fs = outPath.getFileSystem(getConf());
+        if (fs.exists(outPath))
+          fs.delete(outPath, true);
+      }
+    }
+    if (mismatch) {
+      LOG.info("CrawlDb merge: input partitions differ, running merge job");
+      merge(output, dbs, false, filter);
+      return;
+    }
+    long end = System.currentTimeMillis();
+    LOG.info("CrawlDb merge (streaming): finished at " + sdf.format(end)
+        + ", elapsed: " + TimingUtil.elapsedTime(start, end));
+  }
+
+  /**
+   * Get the MapFile partitions of all CrawlDb-s, sorted by name.
+   * 
+   * @return partitions indexed by CrawlDb and partition number, or null if
+   *         the CrawlDb-s differ in the number of partitions or a key of a
+   *         MapFile index is not in the partition assigned by
+   *         {@link HashPartitioner}
+   */
+  private Path[][] getCompatiblePartitions(Path[] dbs) throws IOException {
+    PathFilter partFilter = path -> path.getName().startsWith("part-");
+    Path[][] parts = new Path[dbs.length][];
+    for (int i = 0; i < dbs.length; i++) {
+      Path current = new Path(dbs[i], CrawlDb.CURRENT_NAME);
+      FileSystem fs = current.getFileSystem(getConf());
+      if (!fs.exists(current)) {
+        return null;
+      }
+      FileStatus[] stats = fs.listStatus(current, partFilter);
+      parts[i] = HadoopFSUtil.getPaths(stats);
+      Arrays.sort(parts[i]);
+      if (parts[i].length == 0 || parts[i].length != parts[0].length) {
+        return null;
+      }
+      for (int p = 0; p < parts[i].length; p++) {
+        if (!isHashPartitioned(fs, parts[i][p], p, parts[i].length)) {
+          return null;
+        }
+      }
+    }
+    return parts;
+  }
+
+  /**
+   * Check the keys of the MapFile index, a sample of every
+   * <code>io.map.index.interval</code>-th key, against the partition assigned
+   * by {@link HashPartitioner}. All keys are verified again while merging.
+   */
+  private boolean isHashPartitioned(FileSystem fs, Path part, int partition,
+      int numPartitions) throws IOException {
+    if (numPartitions == 1) {
+      return true;
+    }
+    HashPartitioner<Text, Writable> partitioner = new HashPartitioner<>();
+    Path index = new Path(part, MapFile.INDEX_FILE_NAME);
+    try (SequenceFile.Reader reader = new SequenceFile.Reader(getConf(),
+        SequenceFile.Reader.file(fs.makeQualified(index)))) {
+      Text key = new Text();
+      LongWritable position = new LongWritable();
+      while (reader.next(key, position)) {
+        if (partitioner.getPartition(key, null, numPartitions) != partition) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /** Thrown if a URL is not stored in the partition assigned by its hash. */
+  private static class PartitionMismatchException extends IOException {
+    PartitionMismatchException(String message) {
+      super(message);
+    }
+  }
+
+  /** A sorted MapFile partition read by the k-way merge. */
+  private static class PartitionSource {
+    MapFile.Reader reader;
+    Path path;
+    int index;
+    Text key = new Text();
+    CrawlDatum value = new CrawlDatum();
+  }
+
+  /**
+   * Merge one partition of all input CrawlDb-s into a single MapFile, using
+   * {@link CrawlDbFilter} and {@link Merger} as the merge job would.
+   * 
+   * @throws PartitionMismatchException
+   *           if an input URL does not belong to this partition
+   */
+  private static Counters mergePartition(JobConf job, Path[] inputs,
+      Path output, int partition, int numPartitions) throws IOException {
+    HashPartitioner<Text, Writable> partitioner = new HashPartitioner<>();
+    CrawlDbFilter filter = new CrawlDbFilter();
+    filter.configure(job);
+    Merger merger = new Merger();
+    merger.configure(job);
+    Counters counters = new Counters();
+    Reporter reporter = new CounterReporter(counters);
+
+    java.util.PriorityQueue<PartitionSource> queue = new java.util.PriorityQueue<>(
+        inputs.length,
+        (a, b) -> {
+          int c = a.key.compareTo(b.key);
+          return c != 0 ? c : Integer.compare(a.index, b.index);
+        });
+    List<PartitionSource> sources = new ArrayList<>(inputs.length);
+
+    CompressionType compressionType = SequenceFileOutputFormat
+        .getOutputCompressionType(job);
+    MapFile.Writer writer = new MapFile.Writer(job, output,
+        MapFile.Writer.keyClass(Text.class),
+        SequenceFile.Writer.valueClass(CrawlDatum.class),
+        SequenceFile.Writer.compression(compressionType),
+        SequenceFile.Writer.progressable(reporter));
+    OutputCollector<Text, CrawlDatum> collector = (k, v) -> writer.append(k,
+        v);
+
+    try {
+      for (int i = 0; i < inputs.length; i++) {
+        PartitionSource source = new PartitionSource();
+        source.reader = new MapFile.Reader(inputs[i], job);
+        source.path = inputs[i];
+        source.index = i;
+        sources.add(source);
+        if (advance(source, filter, reporter)) {
+          queue.add(source);
+        }
+      }
+
+      Text key = new Text();
+      List<PartitionSource> group = new ArrayList<>(inputs.length);
+      List<CrawlDatum> values = new ArrayList<>(inputs.length);
+      while (!queue.isEmpty()) {
+        group.clear();
+        values.clear();
+        PartitionSource first = queue.poll();
+        if (numPartitions > 1 && partitioner.getPartition(first.key, null,
+            numPartitions) != partition) {
+          throw new PartitionMismatchException(first.key + " in "
+              + first.path + " does not belong to partition " + partition
+              + " of " + numPartitions);
+        }
+        key.set(first.key);
+        group.add(first);
+        values.add(first.value);
+        while (!queue.isEmpty() && queue.peek().key.equals(key)) {
+          PartitionSource next = queue.poll();
+          group.add(next);
+          values.add(next.value);
+        }
+        merger.reduce(key, values.iterator(), collector, reporter);
+        for (PartitionSource source : group) {
+          if (advance(source, filter, reporter)) {
+            queue.add(source);
+          }
+        }
+      }
+    } finally {
+      writer.close();
+      for (PartitionSource source : sources) {
+        source.reader.close();
+      }
+    }
+    return counters;
+  }
+
+  /**
+   * Read the next record of a source which passes the {@link CrawlDbFilter}.
+   * 
+   * @return false if the source is exhausted
+   */
+  private static boolean advance(PartitionSource source, CrawlDbFilter filter,
+      Reporter reporter) throws IOException {
+    final boolean[] accepted = new boolean[1];
+    OutputCollector<Text, CrawlDatum> check = (k, v) -> accepted[0] = true;
+    while (source.reader.next(source.key, source.value)) {
+      accepted[0] = false;
+      filter.map(source.key, source.value, check, reporter);
+      if (accepted[0]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** {@link Reporter} which only keeps counters. */
+  private static class CounterReporter implements Reporter {
+
+    private Counters counters;
+
+    CounterReporter(Counters counters) {
+      this.counters = counters;
+    }
+
+    public void progress() {
+    }
+
+    public void setStatus(String status) {
+    }
+
+    public Counters.Counter getCounter(Enum<?> name) {
+      return counters.findCounter(name);
+    }
+
+    public Counters.Counter getCounter(String group, String name) {
+      return counters.findCounter(group, name);
+    }
+
+    public void incrCounter(Enum<?> key, long amount) {
+      counters.incrCounter(key, amount);
+    }
+
+    public void incrCounter(String group, String counter, long amount) {
+      counters.incrCounter(group, counter, amount);
+    }
+
+    public InputSplit getInputSplit() throws UnsupportedOperationException {
+      throw new UnsupportedOperationException("No input split in local merge");
+    }
+
+    public float getProgress() {
+      return 0;
+    }
+  }
+
   public static JobConf createMergeJob(Configuration conf, Path output,
       boolean normalize, boolean filter) {
     Path newCrawlDb = new Path(output,
@@ -187,19 +518,25 @@ public class CrawlDbMerger extends Configured implements Tool {
   public int run(String[] args) throws Exception {
     if (args.length < 2) {
       System.err
-          .println("Usage: CrawlDbMerger <output_crawldb> <crawldb1> [<crawldb2> <crawldb3> ...] [-normalize] [-filter]");
+          .println("Usage: CrawlDbMerger <output_crawldb> <crawldb1> [<crawldb2> <crawldb3> ...] [-normalize] [-filter] [-streaming [-threads <n>]]");
       System.err.println("\toutput_crawldb\toutput CrawlDb");
       System.err
           .println("\tcrawldb1 ...\tinput CrawlDb-s (single input CrawlDb is ok)");
       System.err
           .println("\t-normalize\tuse URLNormalizer on urls in the crawldb(s) (usually not needed)");
       System.err.println("\t-filter\tuse URLFilters on urls in the crawldb(s)");
+      System.err
+          .println("\t-streaming\tmerge the sorted partitions without a MapReduce job (not with -normalize)");
+      System.err
+          .println("\t-threads <n>\tnumber of partitions merged in parallel in streaming mode");
       return -1;
     }
     Path output = new Path(args[0]);
     ArrayList<Path> dbs = new ArrayList<>();
     boolean filter = false;
     boolean normalize = false;
+    boolean streaming = false;
+    int threads = Runtime.getRuntime().availableProcessors();
     for (int i = 1; i < args.length; i++) {
       if (args[i].equals("-filter")) {
         filter = true;
@@ -207,6 +544,12 @@ public class CrawlDbMerger extends Configured implements Tool {
       } else if (args[i].equals("-normalize")) {
         normalize = true;
         continue;
+      } else if (args[i].equals("-streaming")) {
+        streaming = true;
+        continue;
+      } else if (args[i].equals("-threads")) {
+        threads = Integer.parseInt(args[++i]);
+        continue;
       }
       final Path dbPath = new Path(args[i]);
       FileSystem fs = dbPath.getFileSystem(getConf());
@@ -214,7 +557,16 @@ public class CrawlDbMerger extends Configured implements Tool {
         dbs.add(dbPath);
     }
     try {
-      merge(output, dbs.toArray(new Path[dbs.size()]), normalize, filter);
+      if (streaming && normalize) {
+        LOG.warn("CrawlDb merge: -streaming not possible with -normalize, running merge job");
+        streaming = false;
+      }
+      if (streaming) {
+        mergeStreaming(output, dbs.toArray(new Path[dbs.size()]), filter,
+            threads);
+      } else {
+        merge(output, dbs.toArray(new Path[dbs.size()]), normalize, filter);
+      }
       return 0;
     } catch (Exception e) {
       LOG.error("CrawlDb merge: " + StringUtils.stringifyException(e));
@@ -23,12 +23,18 @@ import java.io.IOException;
 import java.io.Closeable;
 import java.lang.invoke.MethodHandles;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.TreeMap;
@@ -66,6 +72,7 @@ import org.apache.hadoop.mapred.lib.IdentityReducer;
 import org.apache.hadoop.util.Progressable;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
+import org.apache.nutch.util.HyperLogLog;
 import org.apache.nutch.util.JexlUtil;
 import org.apache.nutch.util.NutchConfiguration;
 import org.apache.nutch.util.NutchJob;
@@ -180,43 +187,54 @@ public class CrawlDbReader extends Configured implements Closeable, Tool {
   }
 
   public static class CrawlDbStatMapper implements
-      Mapper<Text, CrawlDatum, Text, LongWritable> {
-    LongWritable COUNT_1 = new LongWritable(1);
+      Mapper<Text, CrawlDatum, Text, NutchWritable> {
+    NutchWritable COUNT_1 = new NutchWritable(new LongWritable(1));
     private boolean sort = false;
+    private CrawlDbStatSketches sketches = null;
+    private OutputCollector<Text, NutchWritable> output = null;
 
     public void configure(JobConf job) {
       sort = job.getBoolean("db.reader.stats.sort", false);
+      sketches = createSketches(job);
     }
 
-    public void close() {
+    public void close() throws IOException {
+      // sketches are collected only once per task
+      if (output != null && sketches != null) {
+        output.collect(new Text(SKETCHES_KEY), new NutchWritable(sketches));
+      }
     }
 
     public void map(Text key, CrawlDatum value,
-        OutputCollector<Text, LongWritable> output, Reporter reporter)
+        OutputCollector<Text, NutchWritable> output, Reporter reporter)
         throws IOException {
+      this.output = output;
       output.collect(new Text("T"), COUNT_1);
       output.collect(new Text("status " + value.getStatus()), COUNT_1);
       output
           .collect(new Text("retry " + value.getRetriesSinceFetch()), COUNT_1);
-      output.collect(new Text("sc"), new LongWritable(
-          (long) (value.getScore() * 1000.0)));
+      output.collect(new Text("sc"), new NutchWritable(new LongWritable(
+          (long) (value.getScore() * 1000.0))));
       // fetch time (in minutes to prevent from overflows when summing up)
-      output.collect(new Text("ft"),
-          new LongWritable(value.getFetchTime() / (1000 * 60)));
+      output.collect(new Text("ft"), new NutchWritable(
+          new LongWritable(value.getFetchTime() / (1000 * 60))));
       // fetch interval (in seconds)
       output.collect(new Text("fi"),
-          new LongWritable(value.getFetchInterval()));
+          new NutchWritable(new LongWritable(value.getFetchInterval())));
       if (sort) {
         URL u = new URL(key.toString());
         String host = u.getHost();
         output.collect(new Text("status " + value.getStatus() + " " + host),
             COUNT_1);
       }
+      if (sketches != null) {
+        sketches.add(key.toString(), value);
+      }
     }
   }
 
   public static class CrawlDbStatCombiner implements
-      Reducer<Text, LongWritable, Text, LongWritable> {
+      Reducer<Text, NutchWritable, Text, NutchWritable> {
     LongWritable val = new LongWritable();
 
     public CrawlDbStatCombiner() {
@@ -228,94 +246,135 @@ public class CrawlDbReader extends Configured implements Closeable, Tool {
     public void close() {
     }
 
-    private void reduceMinMaxTotal(String keyPrefix, Iterator<LongWritable> values,
-        OutputCollector<Text, LongWritable> output, Reporter reporter)
+    private void reduceMinMaxTotal(String keyPrefix, Iterator<NutchWritable> values,
+        OutputCollector<Text, NutchWritable> output, Reporter reporter)
         throws IOException {
       long total = 0;
       long min = Long.MAX_VALUE;
       long max = Long.MIN_VALUE;
       while (values.hasNext()) {
-        LongWritable cnt = values.next();
-        if (cnt.get() < min)
-          min = cnt.get();
-        if (cnt.get() > max)
-          max = cnt.get();
-        total += cnt.get();
+        long cnt = ((LongWritable) values.next().get()).get();
+        if (cnt < min)
+          min = cnt;
+        if (cnt > max)
+          max = cnt;
+        total += cnt;
       }
-      output.collect(new Text(keyPrefix+"n"), new LongWritable(min));
-      output.collect(new Text(keyPrefix+"x"), new LongWritable(max));
-      output.collect(new Text(keyPrefix+"t"), new LongWritable(total));
+      output.collect(new Text(keyPrefix+"n"), new NutchWritable(new LongWritable(min)));
+      output.collect(new Text(keyPrefix+"x"), new NutchWritable(new LongWritable(max)));
+      output.collect(new Text(keyPrefix+"t"), new NutchWritable(new LongWritable(total)));
     }
     
-    public void reduce(Text key, Iterator<LongWritable> values,
-        OutputCollector<Text, LongWritable> output, Reporter reporter)
+    public void reduce(Text key, Iterator<NutchWritable> values,
+        OutputCollector<Text, NutchWritable> output, Reporter reporter)
         throws IOException {
       val.set(0L);
       String k = key.toString();
-      if (k.equals("sc") || k.equals("ft") || k.equals("fi")) {
+      if (k.equals(SKETCHES_KEY)) {
+        output.collect(key, new NutchWritable(mergeSketches(values)));
+      } else if (k.equals("sc") || k.equals("ft") || k.equals("fi")) {
         reduceMinMaxTotal(k, values, output, reporter);
       } else {
         while (values.hasNext()) {
-          LongWritable cnt = values.next();
+          LongWritable cnt = (LongWritable) values.next().get();
           val.set(val.get() + cnt.get());
         }
-        output.collect(key, val);
+        output.collect(key, new NutchWritable(val));
       }
     }
   }
 
   public static class CrawlDbStatReducer implements
-      Reducer<Text, LongWritable, Text, LongWritable> {
+      Reducer<Text, NutchWritable, Text, NutchWritable> {
     public void configure(JobConf job) {
     }
 
     public void close() {
     }
 
-    public void reduce(Text key, Iterator<LongWritable> values,
-        OutputCollector<Text, LongWritable> output, Reporter reporter)
+    public void reduce(Text key, Iterator<NutchWritable> values,
+        OutputCollector<Text, NutchWritable> output, Reporter reporter)
         throws IOException {
 
       String k = key.toString();
-      if (k.equals("T")) {
-        // sum all values for this key
-        long sum = 0;
-        while (values.hasNext()) {
-          sum += values.next().get();
-        }
-        // output sum
-        output.collect(key, new LongWritable(sum));
-      } else if (k.startsWith("status") || k.startsWith("retry")) {
-        LongWritable cnt = new LongWritable();
-        while (values.hasNext()) {
-          LongWritable val = values.next();
-          cnt.set(cnt.get() + val.get());
-        }
-        output.collect(key, cnt);
-      } else if (k.equals("scx") || k.equals("ftx") || k.equals("fix")) {
-        LongWritable cnt = new LongWritable(Long.MIN_VALUE);
-        while (values.hasNext()) {
-          LongWritable val = values.next();
-          if (cnt.get() < val.get())
-            cnt.set(val.get());
-        }
-        output.collect(key, cnt);
+      if (k.equals(SKETCHES_KEY)) {
+        output.collect(key, new NutchWritable(mergeSketches(values)));
+        return;
+      }
+      LongWritable cnt;
+      if (k.equals("scx") || k.equals("ftx") || k.equals("fix")) {
+        cnt = new LongWritable(Long.MIN_VALUE);
       } else if (k.equals("scn") || k.equals("ftn") || k.equals("fin")) {
-        LongWritable cnt = new LongWritable(Long.MAX_VALUE);
-        while (values.hasNext()) {
-          LongWritable val = values.next();
-          if (cnt.get() > val.get())
-            cnt.set(val.get());
-        }
-        output.collect(key, cnt);
-      } else if (k.equals("sct") || k.equals("ftt") || k.equals("fit")) {
-        LongWritable cnt = new LongWritable();
-        while (values.hasNext()) {
-          LongWritable val = values.next();
-          cnt.set(cnt.get() + val.get());
-        }
-        output.collect(key, cnt);
+        cnt = new LongWritable(Long.MAX_VALUE);
+      } else if (k.equals("T") || k.startsWith("status")
+          || k.startsWith("retry") || k.equals("sct") || k.equals("ftt")
+          || k.equals("fit")) {
+        cnt = new LongWritable();
+      } else {
+        return;
       }
+      while (values.hasNext()) {
+        mergeStat(k, cnt, ((LongWritable) values.next().get()).get());
+      }
+      output.collect(key, new NutchWritable(cnt));
+    }
+  }
+
+  /** Key under which the {@link CrawlDbStatSketches} are collected. */
+  private static final String SKETCHES_KEY = "sketches";
+
+  private static CrawlDbStatSketches createSketches(Configuration conf) {
+    if (!conf.getBoolean("db.stats.sketches", true)) {
+      return null;
+    }
+    return new CrawlDbStatSketches(conf.getInt(
+        CrawlDbStatSketches.HLL_PRECISION, HyperLogLog.DEFAULT_PRECISION),
+        conf.getDouble(CrawlDbStatSketches.DIGEST_COMPRESSION, 100.0));
+  }
+
+  private static CrawlDbStatSketches mergeSketches(
+      Iterator<NutchWritable> values) {
+    CrawlDbStatSketches merged = null;
+    while (values.hasNext()) {
+      CrawlDbStatSketches sketches = (CrawlDbStatSketches) values.next().get();
+      if (merged == null) {
+        // values are reused by the framework, merge into a new instance
+        merged = new CrawlDbStatSketches(sketches.getPrecision(),
+            sketches.getCompression());
+        merged.merge(sketches);
+      } else {
+        merged.merge(sketches);
+      }
+    }
+    return merged;
+  }
+
+  /**
+   * Merge a value into the statistics counter <code>k</code>: keep the
+   * maximum resp. minimum for keys ending on <code>x</code> resp.
+   * <code>n</code> (scx, ftx, fix, scn, ftn, fin), sum up otherwise.
+   */
+  private static void mergeStat(String k, LongWritable val, long value) {
+    if (k.equals("scx") || k.equals("ftx") || k.equals("fix")) {
+      if (val.get() < value)
+        val.set(value);
+    } else if (k.equals("scn") || k.equals("ftn") || k.equals("fin")) {
+      if (val.get() > value)
+        val.set(value);
+    } else {
+      val.set(val.get() + value);
+    }
+  }
+
+  /** Merge a value into the statistics, adding the counter if missing. */
+  private static void mergeStat(TreeMap<String, LongWritable> stats, String k,
+      long value) {
+    LongWritable val = stats.get(k);
+    if (val == null) {
+      val = new LongWritable(value);
+      stats.put(k, val);
+    } else {
+      mergeStat(k, val, value);
     }
   }
 
@@ -368,12 +427,13 @@ public class CrawlDbReader extends Configured implements Closeable, Tool {
     closeReaders();
   }
 
-  private TreeMap<String, LongWritable> processStatJobHelper(String crawlDb, Configuration config, boolean sort) throws IOException{
+  private TreeMap<String, LongWritable> processStatJobHelper(String crawlDb, Configuration config, boolean sort, CrawlDbStatSketches sketches) throws IOException{
 	  Path tmpFolder = new Path(crawlDb, "stat_tmp" + System.currentTimeMillis());
 
 	  JobConf job = new NutchJob(config);
 	  job.setJobName("stats " + crawlDb);
 	  job.setBoolean("db.reader.stats.sort", sort);
+	  job.setBoolean("db.stats.sketches", sketches != null);
 
 	  FileInputFormat.addInputPath(job, new Path(crawlDb, CrawlDb.CURRENT_NAME));
 	  job.setInputFormat(SequenceFileInputFormat.class);
@@ -385,7 +445,7 @@ public class CrawlDbReader extends Configured implements Closeable, Tool {
 	  FileOutputFormat.setOutputPath(job, tmpFolder);
 	  job.setOutputFormat(SequenceFileOutputFormat.class);
 	  job.setOutputKeyClass(Text.class);
-	  job.setOutputValueClass(LongWritable.class);
+	  job.setOutputValueClass(NutchWritable.class);
 
 	  // https://issues.apache.org/jira/browse/NUTCH-1029
 	  job.setBoolean("mapreduce.fileoutputcommitter.marksuccessfuljobs", false);
@@ -398,31 +458,19 @@ public class CrawlDbReader extends Configured implements Closeable, Tool {
 			  tmpFolder);
 
 	  Text key = new Text();
-	  LongWritable value = new LongWritable();
+	  NutchWritable value = new NutchWritable();
 
 	  TreeMap<String, LongWritable> stats = new TreeMap<>();
 	  for (int i = 0; i < readers.length; i++) {
 		  SequenceFile.Reader reader = readers[i];
 		  while (reader.next(key, value)) {
 			  String k = key.toString();
-			  LongWritable val = stats.get(k);
-			  if (val == null) {
-				  val = new LongWritable();
-				  if (k.equals("scx") || k.equals("ftx") || k.equals("fix"))
-					  val.set(Long.MIN_VALUE);
-				  if (k.equals("scn") || k.equals("ftn") || k.equals("fin"))
-					  val.set(Long.MAX_VALUE);
-				  stats.put(k, val);
-			  }
-			  if (k.equals("scx") || k.equals("ftx") || k.equals("fix")) {
-				  if (val.get() < value.get())
-					  val.set(value.get());
-			  } else if (k.equals("scn") || k.equals("ftn") || k.equals("fin")) {
-				  if (val.get() > value.get())
-					  val.set(value.get());
-			  } else {
-				  val.set(val.get() + value.get());
+			  if (k.equals(SKETCHES_KEY)) {
+				  if (sketches != null)
+					  sketches.merge((CrawlDbStatSketches) value.get());
+				  continue;
 			  }
+			  mergeStat(stats, k, ((LongWritable) value.get()).get());
 		  }
 		  reader.close();
 	  }
@@ -430,14 +478,128 @@ public class CrawlDbReader extends Configured implements Closeable, Tool {
 	  fileSystem.delete(tmpFolder, true);
 	  return stats;
   }
-  
+
+  /**
+   * Compute the same statistics as
+   * {@link #processStatJobHelper(String, Configuration, boolean, CrawlDbStatSketches)}
+   * without running a job: the MapFile partitions of the CrawlDb are read
+   * directly, in parallel by the given number of threads.
+   */
+  private TreeMap<String, LongWritable> processStatLocalHelper(String crawlDb,
+      Configuration config, boolean sort, CrawlDbStatSketches sketches,
+      int numThreads) throws IOException {
+    Path crawlDbPath = new Path(crawlDb, CrawlDb.CURRENT_NAME);
+    FileSystem fs = crawlDbPath.getFileSystem(config);
+    final MapFile.Reader[] partReaders = MapFileOutputFormat.getReaders(fs,
+        crawlDbPath, config);
+
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    List<Future<TreeMap<String, LongWritable>>> results = new ArrayList<>();
+    List<CrawlDbStatSketches> partSketches = new ArrayList<>();
+    try {
+      for (final MapFile.Reader reader : partReaders) {
+        final CrawlDbStatSketches part = (sketches == null ? null
+            : new CrawlDbStatSketches(sketches.getPrecision(),
+                sketches.getCompression()));
+        partSketches.add(part);
+        results.add(executor.submit(() -> {
+          TreeMap<String, LongWritable> partStats = new TreeMap<>();
+          Text key = new Text();
+          CrawlDatum value = new CrawlDatum();
+          while (reader.next(key, value)) {
+            addStats(partStats, key, value, sort);
+            if (part != null) {
+              part.add(key.toString(), value);
+            }
+          }
+          return partStats;
+        }));
+      }
+
+      TreeMap<String, LongWritable> stats = new TreeMap<>();
+      for (int i = 0; i < results.size(); i++) {
+        for (Map.Entry<String, LongWritable> e : results.get(i).get()
+            .entrySet()) {
+          mergeStat(stats, e.getKey(), e.getValue().get());
+        }
+        if (sketches != null) {
+          sketches.merge(partSketches.get(i));
+        }
+      }
+      return stats;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    } finally {
+      executor.shutdownNow();
+      for (MapFile.Reader reader : partReaders) {
+        reader.close();
+      }
+    }
+  }
+
+  /** Add a single record to the statistics, see {@link CrawlDbStatMapper} */
+  private static void addStats(TreeMap<String, LongWritable> stats, Text key,
+      CrawlDatum value, boolean sort) throws IOException {
+    mergeStat(stats, "T", 1);
+    mergeStat(stats, "status " + value.getStatus(), 1);
+    mergeStat(stats, "retry " + value.getRetriesSinceFetch(), 1);
+    long score = (long) (value.getScore() * 1000.0);
+    mergeStat(stats, "scn", score);
+    mergeStat(stats, "scx", score);
+    mergeStat(stats, "sct", score);
+    long fetchTime = value.getFetchTime() / (1000 * 60);
+    mergeStat(stats, "ftn", fetchTime);
+    mergeStat(stats, "ftx", fetchTime);
+    mergeStat(stats, "ftt", fetchTime);
+    long fetchInterval = value.getFetchInterval();
+    mergeStat(stats, "fin", fetchInterval);
+    mergeStat(stats, "fix", fetchInterval);
+    mergeStat(stats, "fit", fetchInterval);
+    if (sort) {
+      URL u = new URL(key.toString());
+      mergeStat(stats, "status " + value.getStatus() + " " + u.getHost(), 1);
+    }
+  }
+
+  private static double[] getQuantiles(Configuration config, String name) {
+    String[] q = config.getStrings(name, ".01", ".05", ".1", ".2", ".25",
+        ".3", ".4", ".5", ".6", ".7", ".75", ".8", ".9", ".95", ".99");
+    double[] quantiles = new double[q.length];
+    for (int i = 0; i < q.length; i++) {
+      quantiles[i] = Double.parseDouble(q[i].trim());
+    }
+    return quantiles;
+  }
+
   public void processStatJob(String crawlDb, Configuration config, boolean sort)
       throws IOException {
+    processStatJob(crawlDb, config, sort, false, 1);
+  }
+
+  /**
+   * Print statistics of a CrawlDb.
+   * 
+   * @param local
+   *          if true read the CrawlDb directly with <code>numThreads</code>
+   *          threads instead of running a MapReduce job
+   */
+  public void processStatJob(String crawlDb, Configuration config, boolean sort,
+      boolean local, int numThreads) throws IOException {
 
     if (LOG.isInfoEnabled()) {
       LOG.info("CrawlDb statistics start: " + crawlDb);
     }
-    TreeMap<String, LongWritable> stats = processStatJobHelper(crawlDb, config, sort);
+    CrawlDbStatSketches sketches = createSketches(config);
+    TreeMap<String, LongWritable> stats;
+    if (local) {
+      stats = processStatLocalHelper(crawlDb, config, sort, sketches,
+          numThreads);
+    } else {
+      stats = processStatJobHelper(crawlDb, config, sort, sketches);
+    }
 
     if (LOG.isInfoEnabled()) {
       LOG.info("Statistics for CrawlDb: " + crawlDb);
@@ -481,6 +643,20 @@ public class CrawlDbReader extends Configured implements Closeable, Tool {
         } else
           LOG.info(k + ":\t" + val);
       }
+      if (sketches != null) {
+        LOG.info("distinct hosts (approx.):\t" + sketches.getDistinctHosts());
+        LOG.info("distinct domains (approx.):\t"
+            + sketches.getDistinctDomains());
+        for (double q : getQuantiles(config, "db.stats.score.quantiles")) {
+          LOG.info("score quantile " + q + ":\t"
+              + sketches.getScoreQuantile(q));
+        }
+        for (double q : getQuantiles(config,
+            "db.stats.fetch.interval.quantiles")) {
+          LOG.info("fetch interval quantile {}:\t{}", q, TimingUtil
+              .secondsToDaysHMS((long) sketches.getFetchIntervalQuantile(q)));
+        }
+      }
     }
     if (LOG.isInfoEnabled()) {
       LOG.info("CrawlDb statistics: done");
@@ -680,8 +856,12 @@ public class CrawlDbReader extends Configured implements Closeable, Tool {
       System.err
           .println("\t<crawldb>\tdirectory name where crawldb is located");
       System.err
-          .println("\t-stats [-sort] \tprint overall statistics to System.out");
+          .println("\t-stats [-sort] [-local [-threads <n>]] \tprint overall statistics to System.out");
       System.err.println("\t\t[-sort]\tlist status sorted by host");
+      System.err
+          .println("\t\t[-local]\tread the CrawlDb directly instead of running a job");
+      System.err
+          .println("\t\t[-threads <n>]\tnumber of threads reading the CrawlDb in local mode");
       System.err
           .println("\t-dump <out_dir> [-format normal|csv|crawldb]\tdump the whole db to a text file in <out_dir>");
       System.err.println("\t\t[-format csv]\tdump in Csv format");
@@ -708,11 +888,23 @@ public class CrawlDbReader extends Configured implements Closeable, Tool {
     for (int i = 1; i < args.length; i++) {
       if (args[i].equals("-stats")) {
         boolean toSort = false;
-        if (i < args.length - 1 && "-sort".equals(args[i + 1])) {
-          toSort = true;
-          i++;
+        boolean local = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        while (i < args.length - 1) {
+          if ("-sort".equals(args[i + 1])) {
+            toSort = true;
+            i++;
+          } else if ("-local".equals(args[i + 1])) {
+            local = true;
+            i++;
+          } else if ("-threads".equals(args[i + 1]) && i < args.length - 2) {
+            threads = Integer.parseInt(args[i + 2]);
+            i += 2;
+          } else {
+            break;
+          }
         }
-        dbr.processStatJob(crawlDb, job, toSort);
+        dbr.processStatJob(crawlDb, job, toSort, local, threads);
       } else if (args[i].equals("-dump")) {
         param = args[++i];
         String format = "normal";
@@ -781,7 +973,7 @@ public class CrawlDbReader extends Configured implements Closeable, Tool {
         if(args.get("sort").equalsIgnoreCase("true"))
           sort = true;
       }
-      TreeMap<String , LongWritable> stats = processStatJobHelper(crawlDb, NutchConfiguration.create(), sort);
+      TreeMap<String , LongWritable> stats = processStatJobHelper(crawlDb, NutchConfiguration.create(), sort, null);
       LongWritable totalCnt = stats.get("T");
       stats.remove("T");
       results.put("totalUrls", String.valueOf(totalCnt.get()));
@@ -0,0 +1,145 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.crawl;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.nutch.util.HyperLogLog;
+import org.apache.nutch.util.URLUtil;
+
+import com.tdunning.math.stats.MergingDigest;
+import com.tdunning.math.stats.TDigest;
+
+/**
+ * Mergeable approximate statistics of a CrawlDb: number of distinct hosts and
+ * domains (HyperLogLog) and quantiles of score and fetch interval (t-digest).
+ * Sketches are filled per map task or per reader thread and merged to get the
+ * statistics of the whole CrawlDb.
+ */
+public class CrawlDbStatSketches implements Writable {
+
+  public static final String HLL_PRECISION = "db.stats.hll.precision";
+  public static final String DIGEST_COMPRESSION = "db.stats.digest.compression";
+
+  private HyperLogLog hosts;
+  private HyperLogLog domains;
+  private TDigest scores;
+  private TDigest fetchIntervals;
+  private double compression;
+
+  public CrawlDbStatSketches() {
+    this(HyperLogLog.DEFAULT_PRECISION, 100.0);
+  }
+
+  public CrawlDbStatSketches(int precision, double compression) {
+    this.compression = compression;
+    hosts = new HyperLogLog(precision);
+    domains = new HyperLogLog(precision);
+    scores = new MergingDigest(compression);
+    fetchIntervals = new MergingDigest(compression);
+  }
+
+  public void add(String url, CrawlDatum datum) {
+    scores.add(datum.getScore());
+    fetchIntervals.add(datum.getFetchInterval());
+    URL u;
+    try {
+      u = new URL(url);
+    } catch (MalformedURLException e) {
+      return;
+    }
+    hosts.add(u.getHost());
+    String domain = URLUtil.getDomainName(u);
+    if (domain != null) {
+      domains.add(domain);
+    }
+  }
+
+  public void merge(CrawlDbStatSketches other) {
+    hosts.merge(other.hosts);
+    domains.merge(other.domains);
+    scores.add(other.scores);
+    fetchIntervals.add(other.fetchIntervals);
+  }
+
+  public int getPrecision() {
+    return hosts.getPrecision();
+  }
+
+  public double getCompression() {
+    return compression;
+  }
+
+  public long getDistinctHosts() {
+    return hosts.cardinality();
+  }
+
+  public long getDistinctDomains() {
+    return domains.cardinality();
+  }
+
+  /** @return approximate score quantile, NaN if no score has been added */
+  public double getScoreQuantile(double q) {
+    return scores.size() > 0 ? scores.quantile(q) : Double.NaN;
+  }
+
+  /**
+   * @return approximate fetch interval quantile (in seconds), NaN if no
+   *         interval has been added
+   */
+  public double getFetchIntervalQuantile(double q) {
+    return fetchIntervals.size() > 0 ? fetchIntervals.quantile(q)
+        : Double.NaN;
+  }
+
+  public void write(DataOutput out) throws IOException {
+    hosts.write(out);
+    domains.write(out);
+    out.writeDouble(compression);
+    writeDigest(out, scores);
+    writeDigest(out, fetchIntervals);
+  }
+
+  public void readFields(DataInput in) throws IOException {
+    hosts.readFields(in);
+    domains.readFields(in);
+    compression = in.readDouble();
+    scores = readDigest(in);
+    fetchIntervals = readDigest(in);
+  }
+
+  private static void writeDigest(DataOutput out, TDigest digest)
+      throws IOException {
+    ByteBuffer buf = ByteBuffer.allocate(digest.smallByteSize());
+    digest.asSmallBytes(buf);
+    out.writeInt(buf.position());
+    out.write(buf.array(), 0, buf.position());
+  }
+
+  private static TDigest readDigest(DataInput in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return MergingDigest.fromBytes(ByteBuffer.wrap(bytes));
+  }
+
+}
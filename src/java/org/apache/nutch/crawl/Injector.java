@@ -18,19 +18,27 @@
 package org.apache.nutch.crawl;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.FloatWritable;
+import org.apache.hadoop.io.MapFile;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.SequenceFile.CompressionType;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.Reducer;
 import org.apache.hadoop.mapreduce.lib.input.KeyValueTextInputFormat;
 import org.apache.hadoop.mapreduce.lib.input.MultipleInputs;
 import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.map.MultithreadedMapper;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.apache.hadoop.mapreduce.lib.output.MapFileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.partition.HashPartitioner;
 import org.apache.hadoop.util.StringUtils;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
@@ -40,6 +48,7 @@ import org.apache.nutch.net.URLFilters;
 import org.apache.nutch.net.URLNormalizers;
 import org.apache.nutch.scoring.ScoringFilterException;
 import org.apache.nutch.scoring.ScoringFilters;
+import org.apache.nutch.util.HadoopFSUtil;
 import org.apache.nutch.util.LockUtil;
 import org.apache.nutch.service.NutchServer;
 import org.apache.nutch.util.NutchConfiguration;
@@ -49,12 +58,31 @@ import org.apache.nutch.util.TimingUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Injector takes a flat text file of URLs (or a folder containing text files)
@@ -84,6 +112,9 @@ public class Injector extends NutchTool implements Tool {
   private static final Logger LOG = LoggerFactory
       .getLogger(MethodHandles.lookup().lookupClass());
 
+  /** number of threads used to normalize and filter seeds */
+  public static final String INJECTOR_THREADS = "db.injector.threads";
+
   /** property to pass value of command-line option -filterNormalizeAll to mapper */
   public static final String URL_FILTER_NORMALIZE_ALL = "crawldb.inject.filter.normalize.all";
 
@@ -128,7 +159,11 @@ public class Injector extends NutchTool implements Tool {
     private boolean filterNormalizeAll = false;
 
     public void setup(Context context) {
-      Configuration conf = context.getConfiguration();
+      configure(context.getConfiguration());
+    }
+
+    /** Configure the mapper, also used when injecting without a job */
+    void configure(Configuration conf) {
       boolean normalize = conf.getBoolean(CrawlDbFilter.URL_NORMALIZING, true);
       boolean filter = conf.getBoolean(CrawlDbFilter.URL_FILTERING, true);
       filterNormalizeAll = conf.getBoolean(URL_FILTER_NORMALIZE_ALL, false);
@@ -204,39 +239,60 @@ public class Injector extends NutchTool implements Tool {
       }
     }
 
+    /**
+     * Turn a line of a seed file into an injected CrawlDatum.
+     * 
+     * @param key
+     *          the URL, set to the normalized URL if the URL is accepted
+     * @param metadata
+     *          the remainder of the seed line
+     * @return the injected datum or null if the URL is rejected by normalizers
+     *         or filters
+     */
+    CrawlDatum inject(Text key, String metadata) {
+      String url = filterNormalize(key.toString().trim());
+      if (url == null) {
+        return null;
+      }
+      CrawlDatum datum = new CrawlDatum();
+      datum.setStatus(CrawlDatum.STATUS_INJECTED);
+      datum.setFetchTime(curTime);
+      datum.setScore(scoreInjected);
+      datum.setFetchInterval(interval);
+
+      metadata = metadata.trim();
+      if (metadata.length() > 0)
+        processMetaData(metadata, datum, url);
+
+      try {
+        key.set(url);
+        scfilters.injectedScore(key, datum);
+      } catch (ScoringFilterException e) {
+        if (LOG.isWarnEnabled()) {
+          LOG.warn("Cannot filter injected score for url " + url
+              + ", using default (" + e.getMessage() + ")");
+        }
+      }
+      return datum;
+    }
+
+    /** @return true if the line of a seed file does not hold a URL */
+    static boolean isSkippedLine(String url) {
+      // remove empty string or string starting with '#'
+      return url.length() == 0 || url.startsWith("#");
+    }
+
     public void map(Text key, Writable value, Context context)
         throws IOException, InterruptedException {
       if (value instanceof Text) {
         // if its a url from the seed list
-        String url = key.toString().trim();
-
-        // remove empty string or string starting with '#'
-        if (url.length() == 0 || url.startsWith("#"))
+        if (isSkippedLine(key.toString().trim()))
           return;
 
-        url = filterNormalize(url);
-        if (url == null) {
+        CrawlDatum datum = inject(key, value.toString());
+        if (datum == null) {
           context.getCounter("injector", "urls_filtered").increment(1);
         } else {
-          CrawlDatum datum = new CrawlDatum();
-          datum.setStatus(CrawlDatum.STATUS_INJECTED);
-          datum.setFetchTime(curTime);
-          datum.setScore(scoreInjected);
-          datum.setFetchInterval(interval);
-
-          String metadata = value.toString().trim();
-          if (metadata.length() > 0)
-            processMetaData(metadata, datum, url);
-
-          try {
-            key.set(url);
-            scfilters.injectedScore(key, datum);
-          } catch (ScoringFilterException e) {
-            if (LOG.isWarnEnabled()) {
-              LOG.warn("Cannot filter injected score for url " + url
-                  + ", using default (" + e.getMessage() + ")");
-            }
-          }
           context.getCounter("injector", "urls_injected").increment(1);
           context.write(key, datum);
         }
@@ -277,7 +333,11 @@ public class Injector extends NutchTool implements Tool {
     private CrawlDatum injected = new CrawlDatum();
 
     public void setup(Context context) {
-      Configuration conf = context.getConfiguration();
+      configure(context.getConfiguration());
+    }
+
+    /** Configure the reducer, also used when injecting without a job */
+    void configure(Configuration conf) {
       interval = conf.getInt("db.fetch.interval.default", 2592000);
       scoreInjected = conf.getFloat("db.score.injected", 1.0f);
       overwrite = conf.getBoolean("db.injector.overwrite", false);
@@ -320,15 +380,35 @@ public class Injector extends NutchTool implements Tool {
         }
       }
 
+      CrawlDatum result = merge(oldSet ? old : null,
+          injectedSet ? injected : null);
+      if (injectedSet && oldSet) {
+        context.getCounter("injector", "urls_merged").increment(1);
+      }
+      context.write(key, result);
+    }
+
+    /**
+     * Merge an old and an injected record of one URL, see
+     * {@link #reduce(Text, Iterable, Context)}. The injected record must have
+     * the status {@link CrawlDatum#STATUS_DB_UNFETCHED}.
+     * 
+     * @param old
+     *          existing record or null, updated if required
+     * @param injected
+     *          injected record or null
+     * @return the record to be written into the CrawlDb
+     */
+    CrawlDatum merge(CrawlDatum old, CrawlDatum injected) {
       CrawlDatum result;
-      if (injectedSet && (!oldSet || overwrite)) {
+      if (injected != null && (old == null || overwrite)) {
         // corresponds to rules (1) and (3.a) in the method description
         result = injected;
       } else {
         // corresponds to rules (2) and (3.b) in the method description
         result = old;
 
-        if (injectedSet && update) {
+        if (injected != null && update) {
           // corresponds to rule (3.b.ii) in the method description
           old.putAllMetaData(injected);
           old.setScore(injected.getScore() != scoreInjected
@@ -337,10 +417,7 @@ public class Injector extends NutchTool implements Tool {
               ? injected.getFetchInterval() : old.getFetchInterval());
         }
       }
-      if (injectedSet && oldSet) {
-        context.getCounter("injector", "urls_merged").increment(1);
-      }
-      context.write(key, result);
+      return result;
     }
   }
 
@@ -408,8 +485,20 @@ public class Injector extends NutchTool implements Tool {
     job.setSpeculativeExecution(false);
 
     // set input and output paths of the job
-    MultipleInputs.addInputPath(job, current, SequenceFileInputFormat.class);
-    MultipleInputs.addInputPath(job, urlDir, KeyValueTextInputFormat.class);
+    int threads = conf.getInt(INJECTOR_THREADS, 1);
+    if (threads > 1) {
+      // normalize and filter seeds in multiple threads per map task
+      LOG.info("Injector: mapper threads: " + threads);
+      MultipleInputs.addInputPath(job, current, SequenceFileInputFormat.class,
+          InjectMapper.class);
+      MultipleInputs.addInputPath(job, urlDir, KeyValueTextInputFormat.class,
+          MultithreadedMapper.class);
+      MultithreadedMapper.setMapperClass(job, InjectMapper.class);
+      MultithreadedMapper.setNumberOfThreads(job, threads);
+    } else {
+      MultipleInputs.addInputPath(job, current, SequenceFileInputFormat.class);
+      MultipleInputs.addInputPath(job, urlDir, KeyValueTextInputFormat.class);
+    }
     FileOutputFormat.setOutputPath(job, tempCrawlDb);
 
     try {
@@ -468,6 +557,310 @@ public class Injector extends NutchTool implements Tool {
     }
   }
 
+  /**
+   * Inject URLs without a MapReduce job. Seeds are read, normalized and
+   * filtered locally (using {@value #INJECTOR_THREADS} threads) and merged only
+   * into those CrawlDb partitions which hold injected URLs. All other
+   * partitions are left untouched, so that adding a few thousand URLs does not
+   * rewrite the whole CrawlDb. The merged and the untouched partitions are
+   * installed together as new current CrawlDb, the replaced partitions are
+   * kept in <code>crawldb/old</code> if <code>db.preserve.backup</code> is
+   * true. Note that this backup does not contain the untouched partitions.
+   * 
+   * All accepted seeds are held in memory, this mode is meant for small
+   * injections. Purging 404s or filtering existing records
+   * (-filterNormalizeAll) affects the whole CrawlDb and requires
+   * {@link #inject(Path, Path, boolean, boolean, boolean, boolean, boolean)}.
+   */
+  public void injectIncremental(Path crawlDb, Path urlDir, boolean overwrite,
+      boolean update, boolean normalize, boolean filter) throws IOException {
+    SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    long start = System.currentTimeMillis();
+
+    if (LOG.isInfoEnabled()) {
+      LOG.info("Injector (incremental): starting at " + sdf.format(start));
+      LOG.info("Injector: crawlDb: " + crawlDb);
+      LOG.info("Injector: urlDir: " + urlDir);
+    }
+
+    Configuration conf = getConf();
+    conf.setLong("injector.current.time", System.currentTimeMillis());
+    conf.setBoolean("db.injector.overwrite", overwrite);
+    conf.setBoolean("db.injector.update", update);
+    conf.setBoolean(CrawlDbFilter.URL_NORMALIZING, normalize);
+    conf.setBoolean(CrawlDbFilter.URL_FILTERING, filter);
+
+    FileSystem fs = crawlDb.getFileSystem(conf);
+    Path current = new Path(crawlDb, CrawlDb.CURRENT_NAME);
+    if (!fs.exists(current))
+      fs.mkdirs(current);
+
+    Path tempDir = new Path(crawlDb,
+        "inject-" + Integer.toString(new Random().nextInt(Integer.MAX_VALUE)));
+
+    Path lock = CrawlDb.lock(conf, crawlDb, false);
+
+    boolean keepTempDir = false;
+    try {
+      AtomicLong urlsFiltered = new AtomicLong();
+      TreeMap<Text, CrawlDatum> seeds = readSeeds(conf, urlDir, urlsFiltered);
+
+      Path[] parts = HadoopFSUtil.getPaths(fs.listStatus(current,
+          path -> path.getName().startsWith("part-")));
+      Arrays.sort(parts);
+      int numParts = Math.max(1, parts.length);
+      List<TreeMap<Text, CrawlDatum>> seedsByPart = new ArrayList<>(numParts);
+      for (int i = 0; i < numParts; i++) {
+        seedsByPart.add(new TreeMap<>());
+      }
+      // same partitioning as used by all jobs writing the CrawlDb
+      HashPartitioner<Text, CrawlDatum> partitioner = new HashPartitioner<>();
+      for (Map.Entry<Text, CrawlDatum> e : seeds.entrySet()) {
+        seedsByPart.get(partitioner.getPartition(e.getKey(), e.getValue(),
+            numParts)).put(e.getKey(), e.getValue());
+      }
+
+      InjectReducer reducer = new InjectReducer();
+      reducer.configure(conf);
+      long urlsMerged = 0;
+      Set<String> replaced = new HashSet<>();
+      for (int p = 0; p < numParts; p++) {
+        if (seedsByPart.get(p).isEmpty())
+          continue;
+        Path oldPart = parts.length > 0 ? parts[p] : null;
+        String name = oldPart != null ? oldPart.getName() : "part-r-00000";
+        urlsMerged += mergePartition(conf, oldPart, seedsByPart.get(p),
+            new Path(tempDir, name), reducer);
+        replaced.add(name);
+      }
+
+      // move the untouched partitions next to the merged ones and install
+      // the directory as new current CrawlDb
+      List<Path> moved = new ArrayList<>();
+      try {
+        for (Path part : parts) {
+          if (!replaced.contains(part.getName())) {
+            rename(fs, part, new Path(tempDir, part.getName()));
+            moved.add(part);
+          }
+        }
+        CrawlDb.install(conf, crawlDb, tempDir);
+      } catch (IOException | RuntimeException e) {
+        keepTempDir = !restorePartitions(fs, tempDir, moved, lock);
+        throw e;
+      }
+
+      if (LOG.isInfoEnabled()) {
+        LOG.info("Injector: Total urls rejected by filters: "
+            + urlsFiltered.get());
+        LOG.info(
+            "Injector: Total urls injected after normalization and filtering: "
+                + seeds.size());
+        LOG.info("Injector: Total urls injected but already in CrawlDb: "
+            + urlsMerged);
+        LOG.info("Injector: Total new urls injected: "
+            + (seeds.size() - urlsMerged));
+        LOG.info("Injector: Partitions updated: " + replaced.size() + " of "
+            + numParts);
+        long end = System.currentTimeMillis();
+        LOG.info("Injector: finished at " + sdf.format(end) + ", elapsed: "
+            + TimingUtil.elapsedTime(start, end));
+      }
+    } catch (IOException | RuntimeException e) {
+      LOG.error("Injector failed", e);
+      if (!keepTempDir) {
+        cleanupAfterFailure(tempDir, lock, fs);
+      }
+      throw e;
+    }
+  }
+
+  private static void rename(FileSystem fs, Path src, Path dst)
+      throws IOException {
+    if (!fs.rename(src, dst)) {
+      throw new IOException("Failed to rename " + src + " to " + dst);
+    }
+  }
+
+  /**
+   * Move partitions back from the temporary directory into the current
+   * CrawlDb after a failed installation.
+   * 
+   * @return false if a partition could not be moved back. The temporary
+   *         directory and the lock file must then be kept and handled
+   *         manually.
+   */
+  private static boolean restorePartitions(FileSystem fs, Path tempDir,
+      List<Path> parts, Path lock) throws IOException {
+    boolean restored = true;
+    for (Path part : parts) {
+      Path moved = new Path(tempDir, part.getName());
+      if (!fs.exists(part) && !fs.rename(moved, part)) {
+        LOG.error("Failed to restore CrawlDb partition {} from {}, move it"
+            + " back and remove the lock file {} manually", part, moved, lock);
+        restored = false;
+      }
+    }
+    return restored;
+  }
+
+  /**
+   * Read, normalize and filter all seeds below <code>urlDir</code>.
+   * Compressed seed files are decompressed according to their file name
+   * extension.
+   * 
+   * @return injected records by normalized URL, if a URL is listed multiple
+   *         times the last occurrence is kept
+   */
+  private TreeMap<Text, CrawlDatum> readSeeds(Configuration conf, Path urlDir,
+      AtomicLong urlsFiltered) throws IOException {
+    FileSystem fs = urlDir.getFileSystem(conf);
+    FileStatus[] files = fs.isDirectory(urlDir)
+        ? fs.listStatus(urlDir, HadoopFSUtil.getPassAllFilter())
+        : new FileStatus[] { fs.getFileStatus(urlDir) };
+    CompressionCodecFactory codecs = new CompressionCodecFactory(conf);
+
+    int threads = conf.getInt(INJECTOR_THREADS, 1);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    ThreadLocal<InjectMapper> mappers = ThreadLocal.withInitial(() -> {
+      InjectMapper mapper = new InjectMapper();
+      mapper.configure(conf);
+      return mapper;
+    });
+    TreeMap<Text, CrawlDatum> seeds = new TreeMap<>();
+    Deque<Future<List<Map.Entry<Text, CrawlDatum>>>> pending = new ArrayDeque<>();
+    try {
+      for (FileStatus file : files) {
+        String name = file.getPath().getName();
+        if (file.isDirectory() || name.startsWith("_") || name.startsWith("."))
+          continue;
+        InputStream in = fs.open(file.getPath());
+        CompressionCodec codec = codecs.getCodec(file.getPath());
+        if (codec != null)
+          in = codec.createInputStream(in);
+        try (BufferedReader reader = new BufferedReader(
+            new InputStreamReader(in, StandardCharsets.UTF_8))) {
+          List<String> batch = new ArrayList<>(SEED_BATCH_SIZE);
+          String line;
+          while ((line = reader.readLine()) != null) {
+            batch.add(line);
+            if (batch.size() == SEED_BATCH_SIZE) {
+              pending.add(submitSeeds(executor, mappers, batch, urlsFiltered));
+              batch = new ArrayList<>(SEED_BATCH_SIZE);
+              // bound the number of batches held in memory
+              while (pending.size() > 4 * threads) {
+                addSeeds(seeds, pending.poll());
+              }
+            }
+          }
+          if (!batch.isEmpty()) {
+            pending.add(submitSeeds(executor, mappers, batch, urlsFiltered));
+          }
+        }
+      }
+      while (!pending.isEmpty()) {
+        addSeeds(seeds, pending.poll());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    return seeds;
+  }
+
+  private static final int SEED_BATCH_SIZE = 1000;
+
+  private static Future<List<Map.Entry<Text, CrawlDatum>>> submitSeeds(
+      ExecutorService executor, ThreadLocal<InjectMapper> mappers,
+      List<String> lines, AtomicLong urlsFiltered) {
+    return executor.submit(() -> {
+      InjectMapper mapper = mappers.get();
+      List<Map.Entry<Text, CrawlDatum>> result = new ArrayList<>(lines.size());
+      for (String line : lines) {
+        // split lines as KeyValueTextInputFormat does
+        int tab = line.indexOf('\t');
+        Text key = new Text(tab == -1 ? line : line.substring(0, tab));
+        String metadata = tab == -1 ? "" : line.substring(tab + 1);
+        if (InjectMapper.isSkippedLine(key.toString().trim()))
+          continue;
+        CrawlDatum datum = mapper.inject(key, metadata);
+        if (datum == null) {
+          urlsFiltered.incrementAndGet();
+        } else {
+          datum.setStatus(CrawlDatum.STATUS_DB_UNFETCHED);
+          result.add(new AbstractMap.SimpleEntry<>(key, datum));
+        }
+      }
+      return result;
+    });
+  }
+
+  private static void addSeeds(TreeMap<Text, CrawlDatum> seeds,
+      Future<List<Map.Entry<Text, CrawlDatum>>> batch) throws IOException {
+    try {
+      for (Map.Entry<Text, CrawlDatum> e : batch.get()) {
+        seeds.put(e.getKey(), e.getValue());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /**
+   * Merge sorted injected records into one CrawlDb partition.
+   * 
+   * @param oldPart
+   *          existing partition (MapFile) or null
+   * @return number of injected URLs already contained in the partition
+   */
+  private long mergePartition(Configuration conf, Path oldPart,
+      TreeMap<Text, CrawlDatum> seeds, Path output, InjectReducer reducer)
+      throws IOException {
+    long merged = 0;
+    CompressionType compressionType = conf.getBoolean(
+        FileOutputFormat.COMPRESS, false)
+            ? SequenceFile.getDefaultCompressionType(conf)
+            : CompressionType.NONE;
+    MapFile.Reader reader = null;
+    MapFile.Writer writer = new MapFile.Writer(conf, output,
+        MapFile.Writer.keyClass(Text.class),
+        SequenceFile.Writer.valueClass(CrawlDatum.class),
+        SequenceFile.Writer.compression(compressionType));
+    try {
+      Text key = new Text();
+      CrawlDatum value = new CrawlDatum();
+      boolean hasOld = false;
+      if (oldPart != null) {
+        reader = new MapFile.Reader(oldPart, conf);
+        hasOld = reader.next(key, value);
+      }
+      Iterator<Map.Entry<Text, CrawlDatum>> it = seeds.entrySet().iterator();
+      Map.Entry<Text, CrawlDatum> seed = it.hasNext() ? it.next() : null;
+      while (hasOld || seed != null) {
+        int c = !hasOld ? 1 : (seed == null ? -1 : key.compareTo(seed.getKey()));
+        if (c < 0) {
+          writer.append(key, value);
+          hasOld = reader.next(key, value);
+        } else if (c > 0) {
+          writer.append(seed.getKey(), reducer.merge(null, seed.getValue()));
+          seed = it.hasNext() ? it.next() : null;
+        } else {
+          writer.append(key, reducer.merge(value, seed.getValue()));
+          merged++;
+          hasOld = reader.next(key, value);
+          seed = it.hasNext() ? it.next() : null;
+        }
+      }
+    } finally {
+      writer.close();
+      if (reader != null)
+        reader.close();
+    }
+    return merged;
+  }
+
   public void cleanupAfterFailure(Path tempCrawlDb, Path lock, FileSystem fs)
       throws IOException {
     try {
@@ -482,7 +875,7 @@ public class Injector extends NutchTool implements Tool {
 
   public void usage() {
     System.err.println(
-        "Usage: Injector [-D...] <crawldb> <url_dir> [-overwrite|-update] [-noFilter] [-noNormalize] [-filterNormalizeAll]\n");
+        "Usage: Injector [-D...] <crawldb> <url_dir> [-overwrite|-update] [-noFilter] [-noNormalize] [-filterNormalizeAll] [-incremental] [-threads <n>]\n");
     System.err.println(
         "  <crawldb>\tPath to a crawldb directory. If not present, a new one would be created.");
     System.err.println(
@@ -516,6 +909,13 @@ public class Injector extends NutchTool implements Tool {
     System.err.println(
         " -filterNormalizeAll\n"
         + "           \tNormalize and filter all URLs including the URLs of existing CrawlDb records");
+    System.err.println(
+        " -incremental\n"
+        + "           \tInject without a MapReduce job, only CrawlDb partitions holding injected URLs\n"
+        + "           \tare rewritten. Seeds are held in memory, use for small seed lists only.");
+    System.err.println(
+        " -threads <n>\n"
+        + "           \tNumber of threads to normalize and filter seeds (db.injector.threads)");
     System.err.println();
     System.err.println(
         " -D...     \tset or overwrite configuration property (property=value)");
@@ -540,6 +940,7 @@ public class Injector extends NutchTool implements Tool {
     boolean normalize = true;
     boolean filter = true;
     boolean filterNormalizeAll = false;
+    boolean incremental = false;
 
     for (int i = 2; i < args.length; i++) {
       if (args[i].equals("-overwrite")) {
@@ -552,6 +953,10 @@ public class Injector extends NutchTool implements Tool {
         filter = false;
       } else if (args[i].equals("-filterNormalizeAll")) {
         filterNormalizeAll = true;
+      } else if (args[i].equals("-incremental")) {
+        incremental = true;
+      } else if (args[i].equals("-threads") && i < args.length - 1) {
+        getConf().setInt(INJECTOR_THREADS, Integer.parseInt(args[++i]));
       } else {
         LOG.info("Injector: Found invalid argument \"" + args[i] + "\"\n");
         usage();
@@ -559,9 +964,21 @@ public class Injector extends NutchTool implements Tool {
       }
     }
 
+    if (incremental && (filterNormalizeAll
+        || getConf().getBoolean(CrawlDb.CRAWLDB_PURGE_404, false))) {
+      LOG.warn("Injector: -incremental not possible if existing records are "
+          + "filtered or purged, running inject job");
+      incremental = false;
+    }
+
     try {
-      inject(new Path(args[0]), new Path(args[1]), overwrite, update, normalize,
-          filter, filterNormalizeAll);
+      if (incremental) {
+        injectIncremental(new Path(args[0]), new Path(args[1]), overwrite,
+            update, normalize, filter);
+      } else {
+        inject(new Path(args[0]), new Path(args[1]), overwrite, update,
+            normalize, filter, filterNormalizeAll);
+      }
       return 0;
     } catch (Exception e) {
       LOG.error("Injector: " + StringUtils.stringifyException(e));
@@ -19,7 +19,9 @@ package org.apache.nutch.crawl;
 
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -97,29 +99,25 @@ public class LinkDbFilter implements Mapper<Text, Inlinks, Text, Inlinks> {
     }
     if (url == null)
       return; // didn't pass the filters
+    // normalize and filter the URLs of all inlinks at once
+    List<Inlink> inlinks = new ArrayList<>(value.size());
     Iterator<Inlink> it = value.iterator();
-    String fromUrl = null;
     while (it.hasNext()) {
-      Inlink inlink = it.next();
-      fromUrl = inlink.getFromUrl();
-      if (normalize) {
-        try {
-          fromUrl = normalizers.normalize(fromUrl, scope); // normalize the url
-        } catch (Exception e) {
-          LOG.warn("Skipping " + fromUrl + ":" + e);
-          fromUrl = null;
-        }
-      }
-      if (fromUrl != null && filter) {
-        try {
-          fromUrl = filters.filter(fromUrl); // filter the url
-        } catch (Exception e) {
-          LOG.warn("Skipping " + fromUrl + ":" + e);
-          fromUrl = null;
-        }
-      }
-      if (fromUrl != null) {
-        result.add(new Inlink(fromUrl, inlink.getAnchor()));
+      inlinks.add(it.next());
+    }
+    String[] fromUrls = new String[inlinks.size()];
+    for (int i = 0; i < fromUrls.length; i++) {
+      fromUrls[i] = inlinks.get(i).getFromUrl();
+    }
+    if (normalize) {
+      normalizers.normalize(fromUrls, scope); // normalize the urls
+    }
+    if (filter) {
+      filters.filter(fromUrls); // filter the urls
+    }
+    for (int i = 0; i < fromUrls.length; i++) {
+      if (fromUrls[i] != null) {
+        result.add(new Inlink(fromUrls[i], inlinks.get(i).getAnchor()));
       }
     }
     if (result.size() > 0) { // don't collect empty inlinks
@@ -0,0 +1,279 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.crawl;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.util.StringUtils;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.nutch.fetcher.Fetcher;
+import org.apache.nutch.indexer.IndexingJob;
+import org.apache.nutch.parse.ParseSegment;
+import org.apache.nutch.util.NutchConfiguration;
+import org.apache.nutch.util.TimingUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Crawl driver which overlaps the steps of consecutive crawl cycles instead
+ * of running them strictly one after the other: while segment N is fetched,
+ * segment N+1 is generated, and while segment N+1 is fetched, segment N is
+ * parsed, used to update the CrawlDb and LinkDb and indexed.
+ *
+ * <p>
+ * Overlapping is safe because
+ * <ul>
+ * <li>all steps writing the CrawlDb (generate and updatedb) and indexing,
+ * which reads the CrawlDb, are serialized by the driver; the CrawlDb lock file
+ * is still taken by every step writing the CrawlDb to keep out other
+ * processes,</li>
+ * <li>the generator marks the selected URLs in the CrawlDb
+ * (<code>generate.update.crawldb</code> is enforced), so that URLs still
+ * being fetched or not yet updated are not selected again as long as
+ * <code>crawl.gen.delay</code> is longer than one cycle of the pipeline.</li>
+ * </ul>
+ * </p>
+ */
+public class PipelinedCrawl extends Configured implements Tool {
+
+  private static final Logger LOG = LoggerFactory
+      .getLogger(MethodHandles.lookup().lookupClass());
+
+  /** serializes all steps writing the CrawlDb */
+  private final ReentrantLock crawlDbLock = new ReentrantLock();
+
+  private Path crawlDb;
+  private Path linkDb;
+  private Path segmentsDir;
+  private int numFetchers = -1;
+  private long topN = Long.MAX_VALUE;
+  private int threads;
+  private boolean index = false;
+  private boolean normalize = false;
+  private boolean filter = false;
+
+  public PipelinedCrawl() {
+  }
+
+  public PipelinedCrawl(Configuration conf) {
+    setConf(conf);
+  }
+
+  /**
+   * Run the pipelined crawl.
+   *
+   * @param rounds
+   *          maximum number of segments to generate and fetch
+   * @return number of segments fetched
+   */
+  public int crawl(int rounds) throws IOException, InterruptedException {
+    SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    long start = System.currentTimeMillis();
+    LOG.info("PipelinedCrawl: starting at " + sdf.format(start));
+
+    // generated URLs must be marked in the CrawlDb, otherwise they could be
+    // selected again before the segment they belong to has been updated
+    getConf().setBoolean(Generator.GENERATE_UPDATE_CRAWLDB, true);
+
+    ExecutorService generator = Executors.newSingleThreadExecutor();
+    ExecutorService postProcessor = Executors.newSingleThreadExecutor();
+    int fetched = 0;
+    try {
+      Path segment = generate();
+      Future<Void> post = null;
+      while (segment != null && fetched < rounds) {
+        Future<Path> next = null;
+        if (fetched + 1 < rounds) {
+          next = generator.submit(this::generate);
+        }
+        fetch(segment);
+        fetched++;
+        // at most one segment waits for post-processing
+        waitFor(post);
+        final Path fetchedSegment = segment;
+        post = postProcessor.submit(() -> {
+          postProcess(fetchedSegment);
+          return null;
+        });
+        segment = (next != null ? waitFor(next) : null);
+      }
+      waitFor(post);
+    } finally {
+      generator.shutdownNow();
+      postProcessor.shutdownNow();
+    }
+
+    long end = System.currentTimeMillis();
+    LOG.info("PipelinedCrawl: fetched " + fetched + " segments, finished at "
+        + sdf.format(end) + ", elapsed: " + TimingUtil.elapsedTime(start, end));
+    return fetched;
+  }
+
+  private static <T> T waitFor(Future<T> future)
+      throws IOException, InterruptedException {
+    if (future == null) {
+      return null;
+    }
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+
+  private <T> T withCrawlDbLock(Callable<T> step) throws IOException {
+    crawlDbLock.lock();
+    try {
+      return step.call();
+    } catch (IOException | RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException(e);
+    } finally {
+      crawlDbLock.unlock();
+    }
+  }
+
+  /** @return the generated segment or null if no URLs are due for fetching */
+  private Path generate() throws IOException {
+    return withCrawlDbLock(() -> {
+      Generator generator = new Generator(new Configuration(getConf()));
+      Path[] segments = generator.generate(crawlDb, segmentsDir, numFetchers,
+          topN, System.currentTimeMillis());
+      if (segments == null || segments.length == 0) {
+        LOG.info("PipelinedCrawl: no more URLs to fetch");
+        return null;
+      }
+      LOG.info("PipelinedCrawl: generated segment " + segments[0]);
+      return segments[0];
+    });
+  }
+
+  private void fetch(Path segment) throws IOException {
+    LOG.info("PipelinedCrawl: fetching " + segment);
+    new Fetcher(new Configuration(getConf())).fetch(segment, threads);
+  }
+
+  /** Parse (if not done by the fetcher), updatedb, invertlinks and index */
+  private void postProcess(Path segment) throws IOException {
+    Configuration conf = new Configuration(getConf());
+    if (!Fetcher.isParsing(conf)) {
+      LOG.info("PipelinedCrawl: parsing " + segment);
+      new ParseSegment(conf).parse(segment);
+    }
+    LOG.info("PipelinedCrawl: updating CrawlDb from " + segment);
+    withCrawlDbLock(() -> {
+      new CrawlDb(new Configuration(getConf())).update(crawlDb,
+          new Path[] { segment }, normalize, filter);
+      return null;
+    });
+    if (linkDb != null) {
+      LOG.info("PipelinedCrawl: inverting links of " + segment);
+      new LinkDb(new Configuration(getConf())).invert(linkDb,
+          new Path[] { segment }, true, true, false);
+    }
+    if (index) {
+      // the generator must not replace the CrawlDb while it is read
+      withCrawlDbLock(() -> {
+        LOG.info("PipelinedCrawl: indexing " + segment);
+        new IndexingJob(new Configuration(getConf())).index(crawlDb, linkDb,
+            Collections.singletonList(segment), false);
+        return null;
+      });
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    int res = ToolRunner.run(NutchConfiguration.create(), new PipelinedCrawl(),
+        args);
+    System.exit(res);
+  }
+
+  public int run(String[] args) throws Exception {
+    if (args.length < 3) {
+      System.err.println(
+          "Usage: PipelinedCrawl <crawldb> <segments_dir> <num_rounds> [-linkdb <linkdb>] [-index] [-topN <N>] [-numFetchers <n>] [-threads <n>] [-normalize] [-filter]");
+      System.err.println("\tcrawldb\tCrawlDb to generate from and update");
+      System.err.println("\tsegments_dir\tdirectory to create segments in");
+      System.err.println("\tnum_rounds\tmaximum number of segments to fetch");
+      System.err.println("\t-linkdb <linkdb>\tinvert links into this LinkDb");
+      System.err.println("\t-index\tindex every segment (requires -linkdb)");
+      System.err.println("\t-topN <N>\tnumber of URLs per segment");
+      System.err.println("\t-numFetchers <n>\tnumber of fetch tasks");
+      System.err.println("\t-threads <n>\tnumber of fetcher threads per task");
+      System.err.println(
+          "\t-normalize\tuse URLNormalizer on urls in CrawlDb and segment when updating the CrawlDb");
+      System.err.println(
+          "\t-filter\tuse URLFilters on urls in CrawlDb and segment when updating the CrawlDb");
+      return -1;
+    }
+    crawlDb = new Path(args[0]);
+    segmentsDir = new Path(args[1]);
+    int rounds = Integer.parseInt(args[2]);
+    threads = getConf().getInt("fetcher.threads.fetch", 10);
+    normalize = getConf().getBoolean(CrawlDbFilter.URL_NORMALIZING, false);
+    filter = getConf().getBoolean(CrawlDbFilter.URL_FILTERING, false);
+    for (int i = 3; i < args.length; i++) {
+      if (args[i].equals("-linkdb")) {
+        linkDb = new Path(args[++i]);
+      } else if (args[i].equals("-index")) {
+        index = true;
+      } else if (args[i].equals("-topN")) {
+        topN = Long.parseLong(args[++i]);
+      } else if (args[i].equals("-numFetchers")) {
+        numFetchers = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-threads")) {
+        threads = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-normalize")) {
+        normalize = true;
+      } else if (args[i].equals("-filter")) {
+        filter = true;
+      } else {
+        System.err.println("PipelinedCrawl: unknown argument " + args[i]);
+        return -1;
+      }
+    }
+    if (index && linkDb == null) {
+      System.err.println("PipelinedCrawl: -index requires -linkdb");
+      return -1;
+    }
+    try {
+      crawl(rounds);
+      return 0;
+    } catch (Exception e) {
+      LOG.error("PipelinedCrawl: " + StringUtils.stringifyException(e));
+      return -1;
+    }
+  }
+
+}
@@ -40,9 +40,11 @@ import org.apache.nutch.crawl.SignatureFactory;
 import org.apache.nutch.fetcher.FetcherThreadEvent.PublishEventType;
 import org.apache.nutch.metadata.Metadata;
 import org.apache.nutch.metadata.Nutch;
+import org.apache.nutch.net.ParsedURL;
 import org.apache.nutch.net.URLExemptionFilters;
 import org.apache.nutch.net.URLFilterException;
 import org.apache.nutch.net.URLFilters;
+import org.apache.nutch.net.URLNormalizeFilterCache;
 import org.apache.nutch.net.URLNormalizers;
 import org.apache.nutch.parse.Outlink;
 import org.apache.nutch.parse.Parse;
@@ -104,6 +106,7 @@ public class FetcherThread extends Thread {
 
   URLFilters urlFiltersForOutlinks;
   URLNormalizers normalizersForOutlinks;
+  URLNormalizeFilterCache outlinkCache;
 
   private int outlinksDepthDivisor;
   private boolean skipTruncated;
@@ -183,6 +186,10 @@ public class FetcherThread extends Thread {
       if (conf.getBoolean("parse.normalize.urls", true))
         this.normalizersForOutlinks = new URLNormalizers(conf,
             URLNormalizers.SCOPE_OUTLINK);
+      if (urlFiltersForOutlinks != null || normalizersForOutlinks != null)
+        this.outlinkCache = URLNormalizeFilterCache.get(conf,
+            URLNormalizers.SCOPE_OUTLINK, normalizersForOutlinks,
+            urlFiltersForOutlinks);
     }
 
     if((activatePublisher=conf.getBoolean("fetcher.publisher", false)))
@@ -472,6 +479,8 @@ public class FetcherThread extends Thread {
     } finally {
       if (fit != null)
         ((FetchItemQueues) fetchQueues).finishFetchItem(fit);
+      if (outlinkCache != null)
+        outlinkCache.reportCounters(reporter);
       activeThreads.decrementAndGet(); // count threads
       LOG.info(getName() + " " + Thread.currentThread().getId() + " -finishing thread " + getName() + ", activeThreads="
           + activeThreads);
@@ -687,8 +696,9 @@ public class FetcherThread extends Thread {
           // collect outlinks for subsequent db update
           Outlink[] links = parseData.getOutlinks();
           int outlinksToStore = Math.min(maxOutlinks, links.length);
+          ParsedURL source = new ParsedURL(url.toString());
           if (ignoreExternalLinks || ignoreInternalLinks) {
-            URL originURL = new URL(url.toString());
+            URL originURL = source.getURL();
             // based on domain?
             if ("bydomain".equalsIgnoreCase(ignoreExternalLinksMode)) {
               origin = URLUtil.getDomainName(originURL).toLowerCase();
@@ -713,10 +723,11 @@ public class FetcherThread extends Thread {
           for (int i = 0; i < links.length && validCount < outlinksToStore; i++) {
             String toUrl = links[i].getToUrl();
 
-            toUrl = ParseOutputFormat.filterNormalize(url.toString(), toUrl,
+            toUrl = ParseOutputFormat.filterNormalize(source, toUrl,
                 origin, ignoreInternalLinks, ignoreExternalLinks,
                 ignoreExternalLinksMode, urlFiltersForOutlinks,
-                urlExemptionFilters, normalizersForOutlinks);
+                urlExemptionFilters, normalizersForOutlinks,
+                URLNormalizers.SCOPE_OUTLINK, outlinkCache);
             if (toUrl == null) {
               continue;
             }
@@ -0,0 +1,37 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.net;
+
+/**
+ * A {@link URLFilter} which filters many URLs in one call, e.g. to share
+ * lookups among URLs of the same host. Called by
+ * {@link URLFilters#filter(String[])} instead of {@link #filter(String)} for
+ * every URL.
+ */
+public interface BatchURLFilter extends URLFilter {
+
+  /**
+   * Filter URLs in place. Every URL must be treated the same as by
+   * {@link #filter(String)}.
+   *
+   * @param urls
+   *          the URLs to check, rejected URLs are replaced by
+   *          <code>null</code>, <code>null</code> elements are skipped
+   */
+  public void filter(String[] urls);
+
+}
@@ -0,0 +1,39 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.net;
+
+/**
+ * A {@link URLNormalizer} which normalizes many URLs in one call. Called by
+ * {@link URLNormalizers#normalize(String[], String)} instead of
+ * {@link #normalize(String, String)} for every URL.
+ */
+public interface BatchURLNormalizer extends URLNormalizer {
+
+  /**
+   * Normalize URLs in place. Every URL must be treated the same as by
+   * {@link #normalize(String, String)}.
+   *
+   * @param urls
+   *          the URLs, replaced by the normalized URLs. URLs which are
+   *          removed or malformed are replaced by <code>null</code>,
+   *          <code>null</code> elements are skipped
+   * @param scope
+   *          the normalizer scope
+   */
+  public void normalize(String[] urls, String scope);
+
+}
@@ -0,0 +1,163 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.net;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+
+import org.apache.nutch.util.URLUtil;
+import org.apache.nutch.util.domain.DomainSuffix;
+
+/**
+ * A URL passed through the chains of {@link URLNormalizers} and
+ * {@link URLFilters}: the URL string together with the {@link URL} parsed from
+ * it and the host and domain name derived from it. Everything is computed on
+ * demand and at most once, until a normalizer changes the URL. Normalizers
+ * and filters implementing {@link ParsedURLNormalizer} or
+ * {@link ParsedURLFilter} share the parsed URL instead of parsing the string
+ * again.
+ *
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ */
+public class ParsedURL {
+
+  private String string;
+  private URL url;
+  private MalformedURLException malformed;
+  private String host;
+  private String domainName;
+
+  public ParsedURL(String url) {
+    this.string = url;
+  }
+
+  public ParsedURL(URL url) {
+    this.url = url;
+  }
+
+  /** Copy constructor, the copy shares the parsed (immutable) state. */
+  public ParsedURL(ParsedURL other) {
+    string = other.string;
+    url = other.url;
+    malformed = other.malformed;
+    host = other.host;
+    domainName = other.domainName;
+  }
+
+  /** @return the URL string */
+  @Override
+  public String toString() {
+    if (string == null) {
+      string = url.toString();
+    }
+    return string;
+  }
+
+  /**
+   * Replace the URL. The parsed state is kept if the URL does not change.
+   */
+  public void set(String url) {
+    if (url.equals(toString())) {
+      return;
+    }
+    reset();
+    this.string = url;
+  }
+
+  /**
+   * Replace the URL by an already parsed URL, the URL string is derived from
+   * it when needed.
+   */
+  public void set(URL url) {
+    reset();
+    this.url = url;
+  }
+
+  private void reset() {
+    string = null;
+    url = null;
+    malformed = null;
+    host = null;
+    domainName = null;
+  }
+
+  /**
+   * @return the parsed URL
+   * @throws MalformedURLException
+   *           if the URL cannot be parsed
+   */
+  public URL getURL() throws MalformedURLException {
+    if (url == null) {
+      if (malformed != null) {
+        throw new MalformedURLException(malformed.getMessage());
+      }
+      try {
+        url = new URL(string);
+      } catch (MalformedURLException e) {
+        malformed = e;
+        throw e;
+      }
+    }
+    return url;
+  }
+
+  /** @return true if the URL can be parsed */
+  public boolean isValid() {
+    try {
+      getURL();
+      return true;
+    } catch (MalformedURLException e) {
+      return false;
+    }
+  }
+
+  /**
+   * @return the lowercased host name, see {@link URLUtil#getHost(String)}, or
+   *         null if the URL cannot be parsed
+   */
+  public String getHost() {
+    if (host == null && isValid()) {
+      host = url.getHost().toLowerCase();
+    }
+    return host;
+  }
+
+  /**
+   * @return the domain name, see {@link URLUtil#getDomainName(URL)}, or null
+   *         if the URL cannot be parsed
+   */
+  public String getDomainName() {
+    if (domainName == null && isValid()) {
+      domainName = URLUtil.getDomainName(url);
+    }
+    return domainName;
+  }
+
+  /**
+   * @return the domain suffix, see {@link URLUtil#getDomainSuffix(URL)}, or
+   *         null if the URL cannot be parsed or has no known suffix
+   */
+  public DomainSuffix getDomainSuffix() {
+    if (!isValid()) {
+      return null;
+    }
+    return URLUtil.getDomainSuffix(url);
+  }
+
+}
@@ -0,0 +1,36 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.net;
+
+/**
+ * A {@link URLExemptionFilter} operating on {@link ParsedURL}s, called by
+ * {@link URLExemptionFilters#isExempted(ParsedURL, ParsedURL)} instead of
+ * {@link #filter(String, String)}.
+ */
+public interface ParsedURLExemptionFilter extends URLExemptionFilter {
+
+  /**
+   * @param fromUrl
+   *          the source URL which generated the outlink, shared by all
+   *          outlinks of a page
+   * @param toUrl
+   *          the destination URL which needs to be checked for exemption
+   * @return true when toUrl is exempted from dbIgnore
+   */
+  public boolean filter(ParsedURL fromUrl, ParsedURL toUrl);
+
+}
@@ -0,0 +1,40 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.net;
+
+import java.net.MalformedURLException;
+
+/**
+ * A {@link URLNormalizer} operating on a {@link ParsedURL}, called by
+ * {@link URLNormalizers} instead of {@link #normalize(String, String)}.
+ */
+public interface ParsedURLNormalizer extends URLNormalizer {
+
+  /**
+   * Normalize a URL in place.
+   *
+   * @param url
+   *          the URL, replaced by the normalized URL
+   * @param scope
+   *          the normalizer scope
+   * @return false if the URL is removed, i.e., normalized to
+   *         <code>null</code>
+   */
+  public boolean normalize(ParsedURL url, String scope)
+      throws MalformedURLException;
+
+}
@@ -49,6 +49,11 @@ public class URLExemptionFilters {
         URLExemptionFilter.X_POINT_ID);
   }
 
+  /** Use the given filters */
+  URLExemptionFilters(URLExemptionFilter[] filters) {
+    this.filters = filters;
+  }
+
 
   /** Run all defined filters. Assume logical AND. */
   public boolean isExempted(String fromUrl, String toUrl) {
@@ -64,4 +69,28 @@ public class URLExemptionFilters {
     }
     return exempted;
   }
-}
\ No newline at end of file
+
+  /**
+   * Run all defined filters on parsed URLs. Filters implementing
+   * {@link ParsedURLExemptionFilter} share the parsed URLs, e.g., the source
+   * URL parsed once for all outlinks of a page.
+   */
+  public boolean isExempted(ParsedURL fromUrl, ParsedURL toUrl) {
+    if (filters.length < 1 || fromUrl == null || toUrl == null) {
+      return false;
+    }
+    for (int i = 0; i < this.filters.length; i++) {
+      URLExemptionFilter filter = this.filters[i];
+      boolean exempted;
+      if (filter instanceof ParsedURLExemptionFilter) {
+        exempted = ((ParsedURLExemptionFilter) filter).filter(fromUrl, toUrl);
+      } else {
+        exempted = filter.filter(fromUrl.toString(), toUrl.toString());
+      }
+      if (!exempted) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
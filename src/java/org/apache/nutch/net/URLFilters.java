@@ -17,22 +17,50 @@
 
 package org.apache.nutch.net;
 
+import java.lang.invoke.MethodHandles;
+
 import org.apache.hadoop.conf.Configuration;
 import org.apache.nutch.plugin.PluginRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /** Creates and caches {@link URLFilter} implementing plugins. */
 public class URLFilters {
 
+  private static final Logger LOG = LoggerFactory
+      .getLogger(MethodHandles.lookup().lookupClass());
+
   public static final String URLFILTER_ORDER = "urlfilter.order";
   private URLFilter[] filters;
+  /** Whether one of the filters implements {@link ParsedURLFilter}. */
+  private boolean parsedFilters;
 
   public URLFilters(Configuration conf) {
-    this.filters = (URLFilter[]) PluginRepository.get(conf).getOrderedPlugins(
-        URLFilter.class, URLFilter.X_POINT_ID, URLFILTER_ORDER);
+    this((URLFilter[]) PluginRepository.get(conf).getOrderedPlugins(
+        URLFilter.class, URLFilter.X_POINT_ID, URLFILTER_ORDER));
+  }
+
+  /** Use the given filters, applied in the given order */
+  URLFilters(URLFilter[] filters) {
+    this.filters = filters;
+    for (URLFilter filter : filters) {
+      if (filter instanceof ParsedURLFilter) {
+        parsedFilters = true;
+      }
+    }
+  }
+
+  /** @return the filter plugins in the order they are applied */
+  URLFilter[] getFilters() {
+    return filters;
   }
 
   /** Run all defined filters. Assume logical AND. */
   public String filter(String urlString) throws URLFilterException {
+    if (parsedFilters && urlString != null) {
+      ParsedURL url = new ParsedURL(urlString);
+      return filter(url) ? url.toString() : null;
+    }
     for (int i = 0; i < this.filters.length; i++) {
       if (urlString == null)
         return null;
@@ -41,4 +69,66 @@ public class URLFilters {
     }
     return urlString;
   }
+
+  /**
+   * Run all defined filters on a parsed URL. Filters implementing
+   * {@link ParsedURLFilter} share the parsed URL.
+   * 
+   * @return true if the URL is accepted by all filters
+   */
+  public boolean filter(ParsedURL url) throws URLFilterException {
+    for (int i = 0; i < this.filters.length; i++) {
+      URLFilter filter = this.filters[i];
+      if (filter instanceof ParsedURLFilter) {
+        if (!((ParsedURLFilter) filter).filter(url)) {
+          return false;
+        }
+      } else {
+        String urlString = filter.filter(url.toString());
+        if (urlString == null) {
+          return false;
+        }
+        url.set(urlString);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Run all defined filters on many URLs. Filters implementing
+   * {@link BatchURLFilter} are passed all URLs at once. A URL which causes an
+   * exception is logged and removed, all other URLs are still filtered.
+   * 
+   * @param urls
+   *          the URLs to filter in place, URLs which do not pass all filters
+   *          are replaced by <code>null</code>, <code>null</code> elements are
+   *          skipped
+   */
+  public void filter(String[] urls) {
+    for (int i = 0; i < this.filters.length; i++) {
+      URLFilter filter = this.filters[i];
+      if (filter instanceof BatchURLFilter) {
+        String[] batch = urls.clone();
+        try {
+          ((BatchURLFilter) filter).filter(urls);
+          continue;
+        } catch (RuntimeException e) {
+          // find the failing URL(s) by filtering one by one
+          LOG.warn("Batch filtering failed in {}: {}",
+              filter.getClass().getName(), e.toString());
+          System.arraycopy(batch, 0, urls, 0, urls.length);
+        }
+      }
+      for (int j = 0; j < urls.length; j++) {
+        if (urls[j] == null)
+          continue;
+        try {
+          urls[j] = filter.filter(urls[j]);
+        } catch (RuntimeException e) {
+          LOG.warn("Skipping {}: {}", urls[j], e.toString());
+          urls[j] = null;
+        }
+      }
+    }
+  }
 }
@@ -0,0 +1,195 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.net;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.nutch.util.ObjectCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * Bounded cache holding the result of normalizing and filtering URLs, so that
+ * URLs seen repeatedly (e.g., navigation links contained in every page of a
+ * site) are normalized and filtered only once.
+ * 
+ * <p>
+ * Caches are shared by all users of a configuration and scope. Each cache
+ * belongs to the chain of normalizer and filter plugin instances it has been
+ * created for: if the chain changes, e.g., because the plugins are
+ * reconfigured, a new cache is created.
+ * </p>
+ */
+public class URLNormalizeFilterCache {
+
+  private static final Logger LOG = LoggerFactory
+      .getLogger(MethodHandles.lookup().lookupClass());
+
+  /**
+   * Max. number of URLs held in the cache of one scope, 0 disables the cache.
+   */
+  public static final String CACHE_SIZE = "urlnormalizer.filter.cache.size";
+
+  /** Counter group for cache hits and misses. */
+  public static final String COUNTER_GROUP = "URLNormalizeFilterCache";
+
+  /* cached value of URLs which are rejected */
+  private static final String REJECTED = new String("");
+
+  private final List<Object> chain;
+
+  private final URLNormalizers normalizers;
+
+  private final URLFilters filters;
+
+  private final String scope;
+
+  private final Cache<String, String> cache;
+
+  private long reportedHits = 0;
+
+  private long reportedMisses = 0;
+
+  private URLNormalizeFilterCache(List<Object> chain,
+      URLNormalizers normalizers, URLFilters filters, String scope,
+      long size) {
+    this.chain = chain;
+    this.normalizers = normalizers;
+    this.filters = filters;
+    this.scope = scope;
+    cache = CacheBuilder.newBuilder().maximumSize(size).recordStats()
+        .build();
+  }
+
+  /**
+   * Get the cache for normalizing and filtering URLs.
+   * 
+   * @param conf
+   *          configuration
+   * @param scope
+   *          scope of the normalizers
+   * @param normalizers
+   *          normalizers, may be null if URLs are not normalized
+   * @param filters
+   *          filters, may be null if URLs are not filtered
+   * @return the cache or null if caching is disabled
+   */
+  public static URLNormalizeFilterCache get(Configuration conf, String scope,
+      URLNormalizers normalizers, URLFilters filters) {
+    long size = conf.getLong(CACHE_SIZE, 0);
+    if (size <= 0) {
+      return null;
+    }
+    List<Object> chain = new ArrayList<>();
+    if (normalizers != null) {
+      chain.addAll(Arrays.asList(normalizers.getNormalizers()));
+    }
+    chain.add(null); // separates normalizers and filters
+    if (filters != null) {
+      chain.addAll(Arrays.asList(filters.getFilters()));
+    }
+    String key = URLNormalizeFilterCache.class.getName() + "_" + scope;
+    ObjectCache objectCache = ObjectCache.get(conf);
+    synchronized (objectCache) {
+      URLNormalizeFilterCache cache = (URLNormalizeFilterCache) objectCache
+          .getObject(key);
+      if (cache == null || !cache.chain.equals(chain)) {
+        if (cache != null) {
+          LOG.info("URL normalizers or filters for scope {} changed,"
+              + " creating new cache", scope);
+        }
+        cache = new URLNormalizeFilterCache(chain, normalizers, filters,
+            scope, size);
+        objectCache.setObject(key, cache);
+      }
+      return cache;
+    }
+  }
+
+  /**
+   * Normalize and filter a URL, or look up the result if the URL has been
+   * seen before.
+   * 
+   * @param url
+   *          URL, replaced by the normalized URL
+   * @return false if the URL is rejected by one of the normalizers or filters
+   */
+  public boolean normalizeFilter(ParsedURL url) {
+    String rawUrl = url.toString();
+    String result = cache.getIfPresent(rawUrl);
+    if (result != null) {
+      if (result == REJECTED) {
+        return false;
+      }
+      url.set(result);
+      return true;
+    }
+    try {
+      if (normalizers != null && !normalizers.normalize(url, scope)) {
+        result = REJECTED;
+      } else if (filters != null && !filters.filter(url)) {
+        result = REJECTED;
+      } else {
+        result = url.toString();
+      }
+    } catch (Exception e) {
+      // do not cache errors
+      return false;
+    }
+    cache.put(rawUrl, result);
+    return result != REJECTED;
+  }
+
+  public long getHitCount() {
+    return cache.stats().hitCount();
+  }
+
+  public long getMissCount() {
+    return cache.stats().missCount();
+  }
+
+  /**
+   * Increment the counters of cache hits and misses by the number of hits and
+   * misses since the last call.
+   */
+  public synchronized void reportCounters(Reporter reporter) {
+    CacheStats stats = cache.stats();
+    reporter.incrCounter(COUNTER_GROUP, "hits", stats.hitCount()
+        - reportedHits);
+    reporter.incrCounter(COUNTER_GROUP, "misses", stats.missCount()
+        - reportedMisses);
+    reportedHits = stats.hitCount();
+    reportedMisses = stats.missCount();
+  }
+
+  @Override
+  public String toString() {
+    return "URLNormalizeFilterCache [scope=" + scope + ", size="
+        + cache.size() + ", hits=" + getHitCount() + ", misses="
+        + getMissCount() + "]";
+  }
+
+}
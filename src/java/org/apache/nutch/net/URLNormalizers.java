@@ -136,6 +136,9 @@ public final class URLNormalizers {
 
   private int loopCount;
 
+  /** Whether one of the normalizers implements {@link ParsedURLNormalizer}. */
+  private boolean parsedNormalizers;
+
   public URLNormalizers(Configuration conf, String scope) {
     this.conf = conf;
     this.extensionPoint = PluginRepository.get(conf).getExtensionPoint(
@@ -161,6 +164,28 @@ public final class URLNormalizers {
     }
 
     loopCount = conf.getInt("urlnormalizer.loop.count", 1);
+
+    for (URLNormalizer normalizer : normalizers) {
+      if (normalizer instanceof ParsedURLNormalizer) {
+        parsedNormalizers = true;
+      }
+    }
+  }
+
+  /** Use the given normalizers, applied in the given order */
+  URLNormalizers(URLNormalizer[] normalizers, int loopCount) {
+    this.normalizers = normalizers;
+    this.loopCount = loopCount;
+    for (URLNormalizer normalizer : normalizers) {
+      if (normalizer instanceof ParsedURLNormalizer) {
+        parsedNormalizers = true;
+      }
+    }
+  }
+
+  /** @return the normalizer plugins in the order they are applied */
+  URLNormalizer[] getNormalizers() {
+    return normalizers;
   }
 
   /**
@@ -310,6 +335,10 @@ public final class URLNormalizers {
    */
   public String normalize(String urlString, String scope)
       throws MalformedURLException {
+    if (parsedNormalizers && urlString != null) {
+      ParsedURL url = new ParsedURL(urlString);
+      return normalize(url, scope) ? url.toString() : null;
+    }
     // optionally loop several times, and break if no further changes
     String initialString = urlString;
     for (int k = 0; k < loopCount; k++) {
@@ -324,4 +353,113 @@ public final class URLNormalizers {
     }
     return urlString;
   }
+
+  /**
+   * Normalize a parsed URL in place. Normalizers implementing
+   * {@link ParsedURLNormalizer} share the parsed URL, so that the URL string
+   * is parsed only once if none of the normalizers changes it.
+   * 
+   * @param url
+   *          The URL to normalize, replaced by the normalized URL.
+   * @param scope
+   *          The given scope.
+   * @return false if the URL was removed by one of the normalizers
+   * @throws MalformedURLException
+   *           If the given URL string is malformed.
+   */
+  public boolean normalize(ParsedURL url, String scope)
+      throws MalformedURLException {
+    // optionally loop several times, and break if no further changes
+    String initialString = url.toString();
+    for (int k = 0; k < loopCount; k++) {
+      for (int i = 0; i < this.normalizers.length; i++) {
+        URLNormalizer normalizer = this.normalizers[i];
+        if (normalizer instanceof ParsedURLNormalizer) {
+          if (!((ParsedURLNormalizer) normalizer).normalize(url, scope)) {
+            return false;
+          }
+        } else {
+          String urlString = normalizer.normalize(url.toString(), scope);
+          if (urlString == null) {
+            return false;
+          }
+          url.set(urlString);
+        }
+      }
+      String urlString = url.toString();
+      if (initialString.equals(urlString))
+        break;
+      initialString = urlString;
+    }
+    return true;
+  }
+
+  /**
+   * Normalize many URLs. Normalizers implementing {@link BatchURLNormalizer}
+   * are passed all URLs at once.
+   * 
+   * @param urls
+   *          the URLs to normalize in place. URLs which are removed by a
+   *          normalizer, malformed or cause an exception are replaced by
+   *          <code>null</code>, <code>null</code> elements are skipped.
+   * @param scope
+   *          The given scope.
+   */
+  public void normalize(String[] urls, String scope) {
+    // optionally loop several times over the URLs changed in the last loop
+    String[] batch = urls;
+    int[] positions = null;
+    for (int k = 0; k < loopCount; k++) {
+      String[] initialStrings = batch.clone();
+      for (int i = 0; i < this.normalizers.length; i++) {
+        URLNormalizer normalizer = this.normalizers[i];
+        if (normalizer instanceof BatchURLNormalizer) {
+          String[] unchanged = batch.clone();
+          try {
+            ((BatchURLNormalizer) normalizer).normalize(batch, scope);
+            continue;
+          } catch (RuntimeException e) {
+            // find the failing URL(s) by normalizing one by one
+            LOG.warn("Batch normalization failed in {}: {}",
+                normalizer.getClass().getName(), e.toString());
+            System.arraycopy(unchanged, 0, batch, 0, batch.length);
+          }
+        }
+        for (int j = 0; j < batch.length; j++) {
+          if (batch[j] == null)
+            continue;
+          try {
+            batch[j] = normalizer.normalize(batch[j], scope);
+          } catch (MalformedURLException e) {
+            batch[j] = null;
+          } catch (RuntimeException e) {
+            LOG.warn("Skipping {}: {}", batch[j], e.toString());
+            batch[j] = null;
+          }
+        }
+      }
+      int changed = 0;
+      for (int j = 0; j < batch.length; j++) {
+        if (positions != null) {
+          urls[positions[j]] = batch[j];
+        }
+        if (batch[j] != null && !batch[j].equals(initialStrings[j])) {
+          changed++;
+        }
+      }
+      if (changed == 0)
+        break;
+      String[] nextBatch = new String[changed];
+      int[] nextPositions = new int[changed];
+      changed = 0;
+      for (int j = 0; j < batch.length; j++) {
+        if (batch[j] != null && !batch[j].equals(initialStrings[j])) {
+          nextBatch[changed] = batch[j];
+          nextPositions[changed++] = positions == null ? j : positions[j];
+        }
+      }
+      batch = nextBatch;
+      positions = nextPositions;
+    }
+  }
 }
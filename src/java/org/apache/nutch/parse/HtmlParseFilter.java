@@ -42,4 +42,17 @@ public interface HtmlParseFilter extends Pluggable, Configurable {
    */
   ParseResult filter(Content content, ParseResult parseResult,
       HTMLMetaTags metaTags, DocumentFragment doc);
+
+  /**
+   * Whether the filter requires the DOM tree of the page. If no configured
+   * filter needs the DOM, HTML parsers may extract text and links in a
+   * streaming mode without building the tree. The document fragment passed to
+   * {@link #filter(Content, ParseResult, HTMLMetaTags, DocumentFragment)} is
+   * then empty.
+   * 
+   * @return true (default) if the filter needs the DOM tree
+   */
+  public default boolean needsDOM() {
+    return true;
+  }
 }
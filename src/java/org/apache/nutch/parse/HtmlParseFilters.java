@@ -36,6 +36,16 @@ public class HtmlParseFilters {
             HTMLPARSEFILTER_ORDER);
   }
 
+  /** @return true if any of the filters requires the DOM tree */
+  public boolean needsDOM() {
+    for (int i = 0; i < this.htmlParseFilters.length; i++) {
+      if (htmlParseFilters[i].needsDOM()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   /** Run all defined filters. */
   public ParseResult filter(Content content, ParseResult parseResult,
       HTMLMetaTags metaTags, DocumentFragment doc) {
@@ -26,17 +26,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.hadoop.conf.Configuration;
-import org.apache.oro.text.regex.MatchResult;
-import org.apache.oro.text.regex.Pattern;
-import org.apache.oro.text.regex.PatternCompiler;
-import org.apache.oro.text.regex.PatternMatcher;
-import org.apache.oro.text.regex.PatternMatcherInput;
-import org.apache.oro.text.regex.Perl5Compiler;
-import org.apache.oro.text.regex.Perl5Matcher;
 
 /**
  * Extractor to extract {@link org.apache.nutch.parse.Outlink}s / URLs from
- * plain text using Regular Expressions.
+ * plain text.
+ * 
+ * URLs are found by a hand-written scanner which gives the same matches as the
+ * regular expression {@link #URL_PATTERN} but runs in linear time and does not
+ * allocate anything except the extracted URLs.
  * 
  * @see <a
  *      href="http://wiki.java.net/bin/view/Javapedia/RegularExpressions">Comparison
@@ -60,12 +57,10 @@ public class OutlinkExtractor {
 
    *      </a>
    */
-  private static final String URL_PATTERN = "([A-Za-z][A-Za-z0-9+.-]{1,120}:[A-Za-z0-9/](([A-Za-z0-9$_.+!*,;/?:@&~=-])|%[A-Fa-f0-9]{2}){1,333}(#([a-zA-Z0-9][a-zA-Z0-9$_.+!*,;/?:@&~=%-]{0,1000}))?)";
+  static final String URL_PATTERN = "([A-Za-z][A-Za-z0-9+.-]{1,120}:[A-Za-z0-9/](([A-Za-z0-9$_.+!*,;/?:@&~=-])|%[A-Fa-f0-9]{2}){1,333}(#([a-zA-Z0-9][a-zA-Z0-9$_.+!*,;/?:@&~=%-]{0,1000}))?)";
 
   /**
-   * Extracts <code>Outlink</code> from given plain text. Applying this method
-   * to non-plain-text can result in extremely lengthy runtimes for parasitic
-   * cases (postscript is a known example).
+   * Extracts <code>Outlink</code> from given plain text.
    * 
    * @param plainText
    *          the plain text from wich URLs should be extracted.
@@ -89,45 +84,21 @@ public class OutlinkExtractor {
    */
   public static Outlink[] getOutlinks(final String plainText, String anchor,
       Configuration conf) {
-    long start = System.currentTimeMillis();
     final List<Outlink> outlinks = new ArrayList<>();
 
-    try {
-      final PatternCompiler cp = new Perl5Compiler();
-      final Pattern pattern = cp.compile(URL_PATTERN,
-          Perl5Compiler.CASE_INSENSITIVE_MASK | Perl5Compiler.READ_ONLY_MASK
-              | Perl5Compiler.MULTILINE_MASK);
-      final PatternMatcher matcher = new Perl5Matcher();
-
-      final PatternMatcherInput input = new PatternMatcherInput(plainText);
-
-      MatchResult result;
-      String url;
-
-      // loop the matches
-      while (matcher.contains(input, pattern)) {
-        // if this is taking too long, stop matching
-        // (SHOULD really check cpu time used so that heavily loaded systems
-        // do not unnecessarily hit this limit.)
-        if (System.currentTimeMillis() - start >= 60000L) {
-          if (LOG.isWarnEnabled()) {
-            LOG.warn("Time limit exceeded for getOutLinks");
-          }
-          break;
-        }
-        result = matcher.getMatch();
-        url = result.group(0);
+    if (plainText != null) {
+      int pos = 0;
+      long match;
+      while ((match = findUrl(plainText, pos)) != -1) {
+        int begin = (int) (match >>> 32);
+        int end = (int) match;
+        String url = plainText.substring(begin, end);
         try {
           outlinks.add(new Outlink(url, anchor));
         } catch (MalformedURLException mue) {
           LOG.warn("Invalid url: '" + url + "', skipping.");
         }
-      }
-    } catch (Exception ex) {
-      // if the matcher fails (perhaps a malformed URL) we just log it and move
-      // on
-      if (LOG.isErrorEnabled()) {
-        LOG.error("getOutlinks", ex);
+        pos = end;
       }
     }
 
@@ -143,4 +114,133 @@ public class OutlinkExtractor {
     return retval;
   }
 
+  /**
+   * Find the next URL in <code>text</code> starting at or after
+   * <code>from</code>. Same as the leftmost-greedy match of
+   * {@link #URL_PATTERN}:
+   * <ul>
+   * <li>a scheme (a letter followed by 1 - 120 scheme characters) and
+   * <code>:</code>, the scheme is the longest possible as no scheme character
+   * matches <code>:</code></li>
+   * <li>a letter, digit or <code>/</code></li>
+   * <li>1 - 333 path characters or escape sequences <code>%XX</code></li>
+   * <li>optionally <code>#</code>, a letter or digit and up to 1000 fragment
+   * characters</li>
+   * </ul>
+   * Every colon is a candidate for the end of a scheme, the URL starts at the
+   * leftmost letter in the run of scheme characters preceding the colon which
+   * leaves a scheme of valid length.
+   * 
+   * @return begin and end of the URL as <code>(begin &lt;&lt; 32) | end</code>,
+   *         or -1 if no URL is found
+   */
+  static long findUrl(CharSequence text, int from) {
+    int length = text.length();
+    // start of the current run of scheme characters
+    int runStart = from;
+    for (int colon = from; colon < length; colon++) {
+      char c = text.charAt(colon);
+      if (c != ':') {
+        if (!isSchemeChar(c)) {
+          runStart = colon + 1;
+        }
+        continue;
+      }
+      // scheme: letter at begin, 1 - 120 scheme characters up to the colon
+      int begin = Math.max(runStart, colon - 121);
+      while (begin < colon - 1 && !isAlpha(text.charAt(begin))) {
+        begin++;
+      }
+      if (begin < colon - 1) {
+        int end = matchRest(text, colon + 1, length);
+        if (end != -1) {
+          return ((long) begin << 32) | end;
+        }
+      }
+      // the colon is not a scheme character
+      runStart = colon + 1;
+    }
+    return -1;
+  }
+
+  /**
+   * Match the part of the URL after the scheme.
+   * 
+   * @return end of the URL or -1 if there is no match
+   */
+  private static int matchRest(CharSequence text, int pos, int length) {
+    if (pos >= length) {
+      return -1;
+    }
+    char c = text.charAt(pos);
+    if (!isAlnum(c) && c != '/') {
+      return -1;
+    }
+    pos++;
+    int units = 0;
+    while (units < 333 && pos < length) {
+      c = text.charAt(pos);
+      if (isPathChar(c)) {
+        pos++;
+      } else if (c == '%' && pos + 2 < length
+          && isHex(text.charAt(pos + 1)) && isHex(text.charAt(pos + 2))) {
+        pos += 3;
+      } else {
+        break;
+      }
+      units++;
+    }
+    if (units == 0) {
+      return -1;
+    }
+    // optional fragment
+    if (pos + 1 < length && text.charAt(pos) == '#'
+        && isAlnum(text.charAt(pos + 1))) {
+      int max = pos + 2 + 1000;
+      pos += 2;
+      while (pos < length && pos < max && isFragmentChar(text.charAt(pos))) {
+        pos++;
+      }
+    }
+    return pos;
+  }
+
+  private static boolean isAlpha(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+  }
+
+  private static boolean isAlnum(char c) {
+    return isAlpha(c) || (c >= '0' && c <= '9');
+  }
+
+  private static boolean isHex(char c) {
+    return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f')
+        || (c >= 'A' && c <= 'F');
+  }
+
+  /** <code>[A-Za-z0-9+.-]</code> */
+  private static boolean isSchemeChar(char c) {
+    return isAlnum(c) || c == '+' || c == '.' || c == '-';
+  }
+
+  /** <code>[A-Za-z0-9$_.+!*,;/?:@&amp;~=-]</code> */
+  private static boolean isPathChar(char c) {
+    if (isAlnum(c)) {
+      return true;
+    }
+    switch (c) {
+    case '$': case '_': case '.': case '+': case '!': case '*': case ',':
+    case ';': case '/': case '?': case ':': case '@': case '&': case '~':
+    case '=': case '-':
+      return true;
+    default:
+      return false;
+    }
+  }
+
+  /** <code>[a-zA-Z0-9$_.+!*,;/?:@&amp;~=%-]</code> */
+  private static boolean isFragmentChar(char c) {
+    return c == '%' || isPathChar(c);
+  }
+
 }
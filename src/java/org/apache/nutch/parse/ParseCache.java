@@ -0,0 +1,346 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.parse;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Iterator;
+import java.util.Random;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.MD5Hash;
+import org.apache.hadoop.io.MapFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mapred.FileInputFormat;
+import org.apache.hadoop.mapred.FileOutputFormat;
+import org.apache.hadoop.mapred.JobClient;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.MapFileOutputFormat;
+import org.apache.hadoop.mapred.Mapper;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Partitioner;
+import org.apache.hadoop.mapred.Reducer;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapred.SequenceFileInputFormat;
+import org.apache.hadoop.mapred.lib.HashPartitioner;
+import org.apache.hadoop.util.StringUtils;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.nutch.crawl.CrawlDb;
+import org.apache.nutch.crawl.NutchWritable;
+import org.apache.nutch.protocol.Content;
+import org.apache.nutch.util.FSUtils;
+import org.apache.nutch.util.LockUtil;
+import org.apache.nutch.util.NutchConfiguration;
+import org.apache.nutch.util.NutchJob;
+import org.apache.nutch.util.TimingUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of parse results from previous segments, used by {@link ParseSegment}
+ * to skip parsing of pages which did not change since they were parsed last.
+ *
+ * <p>
+ * If <code>parser.cache</code> is enabled, successful parses are marked with
+ * a cache key composed of the MD5 digest of the raw content, the content type
+ * and a version of the parser configuration. The cache is a MapFile
+ * (<code>&lt;parser.cache.dir&gt;/current</code>) which maps URLs to the last
+ * marked parse, it is updated from parsed segments by running this tool. A
+ * cached parse is reused if the cache key of the content to parse is equal to
+ * the key of the cached parse. Because outlinks are resolved relative to the
+ * URL of the page, entries are looked up by URL and not by the digest alone.
+ * </p>
+ */
+public class ParseCache extends Configured implements Tool, Closeable {
+
+  private static final Logger LOG = LoggerFactory
+      .getLogger(MethodHandles.lookup().lookupClass());
+
+  public static final String PARSE_CACHE = "parser.cache";
+  public static final String PARSE_CACHE_DIR = "parser.cache.dir";
+  public static final String PARSE_CACHE_VERSION = "parser.cache.version";
+
+  /** Parse metadata key holding the cache key of a parse */
+  public static final String CACHE_KEY = "_pck_";
+
+  private static final Partitioner<WritableComparable, Writable> PARTITIONER = new HashPartitioner<>();
+
+  private String version;
+  private MapFile.Reader[] readers;
+
+  public ParseCache() {
+  }
+
+  public ParseCache(Configuration conf) {
+    setConf(conf);
+  }
+
+  /**
+   * Open the cache for lookups.
+   *
+   * @return false if the cache does not exist yet
+   */
+  public boolean open() throws IOException {
+    Path current = new Path(getConf().get(PARSE_CACHE_DIR),
+        CrawlDb.CURRENT_NAME);
+    FileSystem fs = current.getFileSystem(getConf());
+    if (!fs.exists(current)) {
+      LOG.warn("ParseCache: " + current + " does not exist");
+      return false;
+    }
+    readers = MapFileOutputFormat.getReaders(fs, current, getConf());
+    return true;
+  }
+
+  public void close() throws IOException {
+    if (readers != null) {
+      for (int i = 0; i < readers.length; i++) {
+        readers[i].close();
+      }
+      readers = null;
+    }
+  }
+
+  /**
+   * Version of the parser configuration, parses are only reused if made with
+   * the same plugins and the same <code>parser.cache.version</code>.
+   */
+  private String getVersion() {
+    if (version == null) {
+      String conf = getConf().get(PARSE_CACHE_VERSION, "") + "\n"
+          + getConf().get("plugin.includes", "") + "\n"
+          + getConf().get("plugin.excludes", "");
+      version = MD5Hash.digest(conf.getBytes(StandardCharsets.UTF_8))
+          .toString().substring(0, 8);
+    }
+    return version;
+  }
+
+  /** @return the cache key of the content */
+  public String getCacheKey(Content content) {
+    byte[] data = content.getContent();
+    String digest = MD5Hash.digest(data != null ? data : new byte[0])
+        .toString();
+    return digest + ":" + getVersion() + ":" + content.getContentType();
+  }
+
+  /** Mark a parse result of the content as cacheable. */
+  public void mark(Content content, ParseResult parseResult) {
+    // results holding multiple documents (e.g., feeds) are not cached
+    if (parseResult.size() != 1) {
+      return;
+    }
+    Parse parse = parseResult.get(content.getUrl());
+    if (parse == null || !parse.getData().getStatus().isSuccess()) {
+      return;
+    }
+    parse.getData().getParseMeta().set(CACHE_KEY, getCacheKey(content));
+  }
+
+  /**
+   * Look up a cached parse of the content.
+   *
+   * @return the cached parse result or null if there is no cached parse for
+   *         this URL or the content has changed
+   */
+  public ParseResult get(Text url, Content content) throws IOException {
+    if (readers == null) {
+      return null;
+    }
+    ParseImpl cached;
+    synchronized (this) {
+      // MapFile readers are not thread-safe
+      cached = (ParseImpl) MapFileOutputFormat.getEntry(readers, PARTITIONER,
+          url, new ParseImpl());
+    }
+    if (cached == null) {
+      return null;
+    }
+    ParseData data = cached.getData();
+    if (!getCacheKey(content).equals(data.getParseMeta().get(CACHE_KEY))) {
+      return null;
+    }
+    // content metadata is taken from the current fetch
+    ParseData parseData = new ParseData(data.getStatus(), data.getTitle(),
+        data.getOutlinks(), content.getMetadata(), data.getParseMeta());
+    return ParseResult.createParseResult(url.toString(), new ParseImpl(
+        new ParseText(cached.getText()), parseData, cached.isCanonical()));
+  }
+
+  /**
+   * Tags parse data, parse text and cached parses with their type so that
+   * they can be joined by URL.
+   */
+  public static class CacheMapper implements
+      Mapper<Text, Writable, Text, NutchWritable> {
+
+    public void configure(JobConf job) {
+    }
+
+    public void close() {
+    }
+
+    public void map(Text key, Writable value,
+        OutputCollector<Text, NutchWritable> output, Reporter reporter)
+        throws IOException {
+      output.collect(key, new NutchWritable(value));
+    }
+  }
+
+  /**
+   * Replaces cached parses by the marked parses of the segment, entries of
+   * URLs parsed but not cacheable in the segment are removed.
+   */
+  public static class CacheReducer implements
+      Reducer<Text, NutchWritable, Text, ParseImpl> {
+
+    public void configure(JobConf job) {
+    }
+
+    public void close() {
+    }
+
+    public void reduce(Text key, Iterator<NutchWritable> values,
+        OutputCollector<Text, ParseImpl> output, Reporter reporter)
+        throws IOException {
+      ParseImpl cached = null;
+      ParseData data = null;
+      ParseText text = null;
+      while (values.hasNext()) {
+        Writable value = values.next().get();
+        if (value instanceof ParseImpl) {
+          cached = (ParseImpl) value;
+        } else if (value instanceof ParseData) {
+          data = (ParseData) value;
+        } else if (value instanceof ParseText) {
+          text = (ParseText) value;
+        }
+      }
+      if (data != null) {
+        if (text != null && data.getParseMeta().get(CACHE_KEY) != null) {
+          reporter.incrCounter("ParseCache", "updated", 1);
+          output.collect(key, new ParseImpl(text, data));
+        } else if (cached != null) {
+          reporter.incrCounter("ParseCache", "removed", 1);
+        }
+      } else if (cached != null) {
+        output.collect(key, cached);
+      }
+    }
+  }
+
+  /** Update the cache with the parses of the given segments, in order. */
+  public void update(Path[] segments) throws IOException {
+    SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    long start = System.currentTimeMillis();
+    LOG.info("ParseCache: starting at " + sdf.format(start));
+    Path cacheDir = new Path(getConf().get(PARSE_CACHE_DIR));
+    FileSystem fs = cacheDir.getFileSystem(getConf());
+    Path current = new Path(cacheDir, CrawlDb.CURRENT_NAME);
+    Path old = new Path(cacheDir, "old");
+    Path lock = CrawlDb.lock(getConf(), cacheDir, false);
+
+    try {
+      for (Path segment : segments) {
+        LOG.info("ParseCache: adding segment " + segment);
+        JobConf job = new NutchJob(getConf());
+        job.setJobName("parse cache update " + segment);
+
+        if (fs.exists(current)) {
+          FileInputFormat.addInputPath(job, current);
+        }
+        FileInputFormat.addInputPath(job, new Path(segment, ParseData.DIR_NAME));
+        FileInputFormat.addInputPath(job, new Path(segment, ParseText.DIR_NAME));
+        job.setInputFormat(SequenceFileInputFormat.class);
+
+        job.setMapperClass(CacheMapper.class);
+        job.setReducerClass(CacheReducer.class);
+        job.setMapOutputKeyClass(Text.class);
+        job.setMapOutputValueClass(NutchWritable.class);
+
+        Path tmp = new Path(cacheDir, Integer.toString(new Random()
+            .nextInt(Integer.MAX_VALUE)));
+        FileOutputFormat.setOutputPath(job, tmp);
+        job.setOutputFormat(MapFileOutputFormat.class);
+        job.setOutputKeyClass(Text.class);
+        job.setOutputValueClass(ParseImpl.class);
+        job.setBoolean("mapreduce.fileoutputcommitter.marksuccessfuljobs",
+            false);
+
+        try {
+          JobClient.runJob(job);
+        } catch (IOException e) {
+          fs.delete(tmp, true);
+          throw e;
+        }
+        // install, the lock is kept until all segments are added
+        if (fs.exists(current)) {
+          FSUtils.replace(fs, old, current, true);
+        }
+        FSUtils.replace(fs, current, tmp, true);
+      }
+      if (!getConf().getBoolean("db.preserve.backup", true)
+          && fs.exists(old)) {
+        fs.delete(old, true);
+      }
+    } finally {
+      LockUtil.removeLockFile(fs, lock);
+    }
+
+    long end = System.currentTimeMillis();
+    LOG.info("ParseCache: finished at " + sdf.format(end) + ", elapsed: "
+        + TimingUtil.elapsedTime(start, end));
+  }
+
+  public static void main(String[] args) throws Exception {
+    int res = ToolRunner.run(NutchConfiguration.create(), new ParseCache(),
+        args);
+    System.exit(res);
+  }
+
+  public int run(String[] args) throws Exception {
+    if (args.length < 2) {
+      System.err.println("Usage: ParseCache <cache_dir> <seg1> [<seg2> ...]");
+      System.err.println("\tcache_dir\tparse cache to update");
+      System.err.println(
+          "\tseg1 seg2 ...\tparsed segments to add to the cache, oldest first");
+      return -1;
+    }
+    getConf().set(PARSE_CACHE_DIR, args[0]);
+    Path[] segments = new Path[args.length - 1];
+    for (int i = 1; i < args.length; i++) {
+      segments[i - 1] = new Path(args[i]);
+    }
+    try {
+      update(segments);
+      return 0;
+    } catch (Exception e) {
+      LOG.error("ParseCache: " + StringUtils.stringifyException(e));
+      return -1;
+    }
+  }
+
+}
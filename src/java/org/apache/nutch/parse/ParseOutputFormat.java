@@ -54,6 +54,7 @@ public class ParseOutputFormat implements OutputFormat<Text, Parse> {
   private URLFilters filters;
   private URLExemptionFilters exemptionFilters;
   private URLNormalizers normalizers;
+  private URLNormalizeFilterCache outlinkCache;
   private ScoringFilters scfilters;
 
   private static class SimpleEntry implements Entry<Text, CrawlDatum> {
@@ -103,6 +104,11 @@ public class ParseOutputFormat implements OutputFormat<Text, Parse> {
       normalizers = new URLNormalizers(job, URLNormalizers.SCOPE_OUTLINK);
     }
 
+    if (filters != null || normalizers != null) {
+      outlinkCache = URLNormalizeFilterCache.get(job,
+          URLNormalizers.SCOPE_OUTLINK, normalizers, filters);
+    }
+
     this.scfilters = new ScoringFilters(job);
     final int interval = job.getInt("db.fetch.interval.default", 2592000);
     final boolean ignoreInternalLinks = job.getBoolean(
@@ -207,8 +213,9 @@ public class ParseOutputFormat implements OutputFormat<Text, Parse> {
           crawlOut.append(key, parseMDCrawlDatum);
 
         // need to determine origin (once for all outlinks)
+        ParsedURL source = new ParsedURL(fromUrl);
         if (ignoreExternalLinks || ignoreInternalLinks) {
-          URL originURL = new URL(fromUrl.toString());
+          URL originURL = source.getURL();
           // based on domain?
           if ("bydomain".equalsIgnoreCase(ignoreExternalLinksMode)) {
             origin = URLUtil.getDomainName(originURL).toLowerCase();
@@ -224,9 +231,9 @@ public class ParseOutputFormat implements OutputFormat<Text, Parse> {
             && pstatus.getMinorCode() == ParseStatus.SUCCESS_REDIRECT) {
           String newUrl = pstatus.getMessage();
           int refreshTime = Integer.valueOf(pstatus.getArgs()[1]);
-          newUrl = filterNormalize(fromUrl, newUrl, origin,
+          newUrl = filterNormalize(source, newUrl, origin,
               ignoreInternalLinks, ignoreExternalLinks, ignoreExternalLinksMode, filters, exemptionFilters, normalizers,
-              URLNormalizers.SCOPE_FETCHER);
+              URLNormalizers.SCOPE_FETCHER, null);
 
           if (newUrl != null) {
             String reprUrl = URLUtil.chooseRepr(fromUrl, newUrl,
@@ -255,8 +262,9 @@ public class ParseOutputFormat implements OutputFormat<Text, Parse> {
 
           // only normalize and filter if fetcher.parse = false
           if (!isParsing) {
-            toUrl = ParseOutputFormat.filterNormalize(fromUrl, toUrl, origin,
-                ignoreInternalLinks, ignoreExternalLinks, ignoreExternalLinksMode, filters, exemptionFilters, normalizers);
+            toUrl = ParseOutputFormat.filterNormalize(source, toUrl, origin,
+                ignoreInternalLinks, ignoreExternalLinks, ignoreExternalLinksMode, filters, exemptionFilters, normalizers,
+                URLNormalizers.SCOPE_OUTLINK, outlinkCache);
             if (toUrl == null) {
               continue;
             }
@@ -328,6 +336,10 @@ public class ParseOutputFormat implements OutputFormat<Text, Parse> {
           textOut.close();
         dataOut.close();
         crawlOut.close();
+        if (outlinkCache != null) {
+          LOG.info(outlinkCache.toString());
+          outlinkCache.reportCounters(reporter);
+        }
       }
 
     };
@@ -348,29 +360,58 @@ public class ParseOutputFormat implements OutputFormat<Text, Parse> {
        String ignoreExternalLinksMode, URLFilters filters,
        URLExemptionFilters exemptionFilters, URLNormalizers normalizers,
         String urlNormalizerScope) {
+    return filterNormalize(fromUrl, toUrl, origin, ignoreInternalLinks,
+        ignoreExternalLinks, ignoreExternalLinksMode, filters,
+        exemptionFilters, normalizers, urlNormalizerScope, null);
+  }
+
+  /**
+   * Normalize and filter a link target URL. The result of normalizing and
+   * filtering is looked up in the cache, if one is given. The cache must
+   * belong to the normalizers, filters and scope.
+   */
+  public static String filterNormalize(String fromUrl, String toUrl,
+      String origin, boolean ignoreInternalLinks, boolean ignoreExternalLinks,
+      String ignoreExternalLinksMode, URLFilters filters,
+      URLExemptionFilters exemptionFilters, URLNormalizers normalizers,
+      String urlNormalizerScope, URLNormalizeFilterCache cache) {
+    return filterNormalize(new ParsedURL(fromUrl), toUrl, origin,
+        ignoreInternalLinks, ignoreExternalLinks, ignoreExternalLinksMode,
+        filters, exemptionFilters, normalizers, urlNormalizerScope, cache);
+  }
+
+  /**
+   * Normalize and filter a link target URL, same as the method taking the
+   * source URL as string. The source URL is parsed once for all outlinks of a
+   * page and shared with the exemption filters.
+   */
+  public static String filterNormalize(ParsedURL fromUrl, String toUrl,
+      String origin, boolean ignoreInternalLinks, boolean ignoreExternalLinks,
+      String ignoreExternalLinksMode, URLFilters filters,
+      URLExemptionFilters exemptionFilters, URLNormalizers normalizers,
+      String urlNormalizerScope, URLNormalizeFilterCache cache) {
     // ignore links to self (or anchors within the page)
-    if (fromUrl.equals(toUrl)) {
+    if (fromUrl.toString().equals(toUrl)) {
       return null;
     }
+    // parse the URL only once for all checks, normalizers and filters
+    ParsedURL target = new ParsedURL(toUrl);
     if (ignoreExternalLinks || ignoreInternalLinks) {
-      URL targetURL = null;
-      try {
-        targetURL = new URL(toUrl);
-      } catch (MalformedURLException e1) {
+      if (!target.isValid()) {
         return null; // skip it
       }
       if (ignoreExternalLinks) {
         if ("bydomain".equalsIgnoreCase(ignoreExternalLinksMode)) {
-          String toDomain = URLUtil.getDomainName(targetURL).toLowerCase();
+          String toDomain = target.getDomainName().toLowerCase();
           //FIXME: toDomain will never be null, correct?
           if (toDomain == null || !toDomain.equals(origin)) {
             return null; // skip it
           }
         } else {
-          String toHost = targetURL.getHost().toLowerCase();
+          String toHost = target.getHost();
           if (!toHost.equals(origin)) { // external host link
             if (exemptionFilters == null // check if it is exempted?
-                || !exemptionFilters.isExempted(fromUrl, toUrl)) {
+                || !exemptionFilters.isExempted(fromUrl, target)) {
               return null; ///skip it, This external url is not exempted.
             }
           }
@@ -378,13 +419,13 @@ public class ParseOutputFormat implements OutputFormat<Text, Parse> {
       }
       if (ignoreInternalLinks) {
         if ("bydomain".equalsIgnoreCase(ignoreExternalLinksMode)) {
-          String toDomain = URLUtil.getDomainName(targetURL).toLowerCase();
+          String toDomain = target.getDomainName().toLowerCase();
           //FIXME: toDomain will never be null, correct?
           if (toDomain == null || toDomain.equals(origin)) {
             return null; // skip it
           }
         } else {
-          String toHost = targetURL.getHost().toLowerCase();
+          String toHost = target.getHost();
           //FIXME: toDomain will never be null, correct?
           if (toHost == null || toHost.equals(origin)) {
             return null; // skip it
@@ -393,22 +434,23 @@ public class ParseOutputFormat implements OutputFormat<Text, Parse> {
       }
     }
 
+    if (cache != null) {
+      return cache.normalizeFilter(target) ? target.toString() : null;
+    }
+
     try {
-      if (normalizers != null) {
-        toUrl = normalizers.normalize(toUrl, urlNormalizerScope); // normalize
-                                                                  // the url
-      }
-      if (filters != null) {
-        toUrl = filters.filter(toUrl); // filter the url
+      if (normalizers != null
+          && !normalizers.normalize(target, urlNormalizerScope)) {
+        return null;
       }
-      if (toUrl == null) {
+      if (filters != null && !filters.filter(target)) {
         return null;
       }
     } catch (Exception e) {
       return null;
     }
 
-    return toUrl;
+    return target.toString();
   }
 
 }
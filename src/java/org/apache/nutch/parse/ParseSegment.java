@@ -20,13 +20,17 @@ package org.apache.nutch.parse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.nutch.crawl.CrawlDatum;
+import org.apache.nutch.crawl.NutchWritable;
 import org.apache.nutch.crawl.SignatureFactory;
 import org.apache.nutch.segment.SegmentChecker;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.io.*;
 import org.apache.hadoop.mapred.*;
+import org.apache.hadoop.mapred.lib.MultithreadedMapRunner;
+import org.apache.hadoop.mapreduce.lib.map.MultithreadedMapper;
 import org.apache.hadoop.util.*;
 import org.apache.hadoop.conf.*;
+import org.apache.nutch.metadata.MetaWrapper;
 import org.apache.nutch.metadata.Metadata;
 import org.apache.nutch.metadata.Nutch;
 import org.apache.nutch.net.protocols.Response;
@@ -52,12 +56,18 @@ public class ParseSegment extends NutchTool implements Tool,
 
   public static final String SKIP_TRUNCATED = "parser.skip.truncated";
 
+  public static final String PARSE_THREADS = "parser.threads";
+  public static final String INCREMENTAL = "parser.incremental";
+  private static final String INCREMENTAL_OUTPUT = "parser.incremental.output";
+
   private ScoringFilters scfilters;
 
   private ParseUtil parseUtil;
 
   private boolean skipTruncated;
 
+  private ParseCache parseCache;
+
   public ParseSegment() {
     this(null);
   }
@@ -70,20 +80,37 @@ public class ParseSegment extends NutchTool implements Tool,
     setConf(job);
     this.scfilters = new ScoringFilters(job);
     skipTruncated = job.getBoolean(SKIP_TRUNCATED, true);
+    // with multiple threads every thread runs its parses itself
+    this.parseUtil = new ParseUtil(job, job.getInt(PARSE_THREADS, 1) > 1);
+    if (job.getBoolean(ParseCache.PARSE_CACHE, false)) {
+      parseCache = new ParseCache(job);
+      if (job.get(ParseCache.PARSE_CACHE_DIR) != null) {
+        try {
+          parseCache.open();
+        } catch (IOException e) {
+          LOG.warn("Failed to open parse cache: "
+              + StringUtils.stringifyException(e));
+        }
+      }
+    }
   }
 
-  public void close() {
+  public void close() throws IOException {
+    if (parseCache != null) {
+      parseCache.close();
+    }
   }
 
-  private Text newKey = new Text();
-
+  /*
+   * Must be thread-safe: with parser.threads > 1 the method is called
+   * concurrently by the threads of a MultithreadedMapRunner.
+   */
   public void map(WritableComparable<?> key, Content content,
       OutputCollector<Text, ParseImpl> output, Reporter reporter)
       throws IOException {
     // convert on the fly from old UTF8 keys
     if (key instanceof Text) {
-      newKey.set(key.toString());
-      key = newKey;
+      key = new Text(key.toString());
     }
 
     String fetchStatus = content.getMetadata().get(Nutch.FETCH_STATUS_KEY);
@@ -103,14 +130,22 @@ public class ParseSegment extends NutchTool implements Tool,
 
     long start = System.currentTimeMillis();
     ParseResult parseResult = null;
-    try {
-      if (parseUtil == null)
-        parseUtil = new ParseUtil(getConf());
-      parseResult = parseUtil.parse(content);
-    } catch (Exception e) {
-      LOG.warn("Error parsing: " + key + ": "
-          + StringUtils.stringifyException(e));
-      return;
+    if (parseCache != null) {
+      parseResult = parseCache.get(new Text(key.toString()), content);
+      reporter.incrCounter("ParseCache", parseResult != null ? "hits"
+          : "misses", 1);
+    }
+    if (parseResult == null) {
+      try {
+        parseResult = parseUtil.parse(content);
+      } catch (Exception e) {
+        LOG.warn("Error parsing: " + key + ": "
+            + StringUtils.stringifyException(e));
+        return;
+      }
+      if (parseCache != null) {
+        parseCache.mark(content, parseResult);
+      }
     }
 
     for (Entry<Text, Parse> entry : parseResult) {
@@ -202,11 +237,173 @@ public class ParseSegment extends NutchTool implements Tool,
     output.collect(key, values.next()); // collect first value
   }
 
+  /**
+   * Selects the content records of a parsed segment which need to be parsed
+   * again: records fetched successfully which have no parse data or whose
+   * parse failed.
+   */
+  public static class SelectMapper implements
+      Mapper<Text, Writable, Text, NutchWritable> {
+
+    private boolean skipTruncated;
+
+    public void configure(JobConf job) {
+      skipTruncated = job.getBoolean(SKIP_TRUNCATED, true);
+    }
+
+    public void close() {
+    }
+
+    public void map(Text key, Writable value,
+        OutputCollector<Text, NutchWritable> output, Reporter reporter)
+        throws IOException {
+      if (value instanceof ParseData) {
+        output.collect(key, new NutchWritable(((ParseData) value).getStatus()));
+      } else if (value instanceof Content) {
+        Content content = (Content) value;
+        String fetchStatus = content.getMetadata().get(Nutch.FETCH_STATUS_KEY);
+        if (fetchStatus == null
+            || Integer.parseInt(fetchStatus) != CrawlDatum.STATUS_FETCH_SUCCESS
+            || (skipTruncated && isTruncated(content))) {
+          // skipped by the parse job anyway
+          return;
+        }
+        output.collect(key, new NutchWritable(content));
+      }
+    }
+  }
+
+  public static class SelectReducer implements
+      Reducer<Text, NutchWritable, Text, Content> {
+
+    public void configure(JobConf job) {
+    }
+
+    public void close() {
+    }
+
+    public void reduce(Text key, Iterator<NutchWritable> values,
+        OutputCollector<Text, Content> output, Reporter reporter)
+        throws IOException {
+      Content content = null;
+      ParseStatus status = null;
+      while (values.hasNext()) {
+        Writable value = values.next().get();
+        if (value instanceof Content) {
+          content = (Content) value;
+        } else if (status == null || !status.isSuccess()) {
+          status = (ParseStatus) value;
+        }
+      }
+      if (content == null) {
+        return;
+      }
+      if (status == null) {
+        reporter.incrCounter("ParseSegment", "reparse_missing", 1);
+      } else if (!status.isSuccess()) {
+        reporter.incrCounter("ParseSegment", "reparse_failed", 1);
+      } else {
+        reporter.incrCounter("ParseSegment", "already_parsed", 1);
+        return;
+      }
+      output.collect(key, content);
+    }
+  }
+
+  /**
+   * Merges the output of an incremental parse into one of the parse
+   * directories of the segment. Values read from the new output are tagged.
+   */
+  public static class MergeMapper implements
+      Mapper<Text, Writable, Text, MetaWrapper> {
+
+    private JobConf conf;
+    private String newOutput;
+
+    public void configure(JobConf job) {
+      conf = job;
+      newOutput = job.get(INCREMENTAL_OUTPUT);
+    }
+
+    public void close() {
+    }
+
+    public void map(Text key, Writable value,
+        OutputCollector<Text, MetaWrapper> output, Reporter reporter)
+        throws IOException {
+      MetaWrapper wrapper = new MetaWrapper(value, conf);
+      String path = ((FileSplit) reporter.getInputSplit()).getPath()
+          .toString();
+      if (path.startsWith(newOutput)) {
+        wrapper.setMeta(INCREMENTAL_OUTPUT, "true");
+      }
+      output.collect(key, wrapper);
+    }
+  }
+
+  public static class MergeReducer implements
+      Reducer<Text, MetaWrapper, Text, Writable> {
+
+    public void configure(JobConf job) {
+    }
+
+    public void close() {
+    }
+
+    public void reduce(Text key, Iterator<MetaWrapper> values,
+        OutputCollector<Text, Writable> output, Reporter reporter)
+        throws IOException {
+      List<Writable> oldValues = new ArrayList<>();
+      List<Writable> newValues = new ArrayList<>();
+      while (values.hasNext()) {
+        MetaWrapper wrapper = values.next();
+        if (wrapper.getMeta(INCREMENTAL_OUTPUT) != null) {
+          newValues.add(wrapper.get());
+        } else {
+          oldValues.add(wrapper.get());
+        }
+      }
+
+      Writable first = !newValues.isEmpty() ? newValues.get(0)
+          : oldValues.get(0);
+      if (!(first instanceof CrawlDatum)) {
+        // parse data or text: the new parse replaces the old one
+        output.collect(key, first);
+        return;
+      }
+
+      // crawl_parse: keep all links, but drop the signature and parse
+      // metadata of the old parse if the document has been parsed again
+      boolean reparsed = false;
+      for (Writable value : newValues) {
+        output.collect(key, value);
+        if (((CrawlDatum) value).getStatus() == CrawlDatum.STATUS_SIGNATURE) {
+          reparsed = true;
+        }
+      }
+      for (Writable value : oldValues) {
+        byte status = ((CrawlDatum) value).getStatus();
+        if (reparsed && (status == CrawlDatum.STATUS_SIGNATURE
+            || status == CrawlDatum.STATUS_PARSE_META)) {
+          continue;
+        }
+        output.collect(key, value);
+      }
+    }
+  }
+
   public void parse(Path segment) throws IOException {
-    if (SegmentChecker.isParsed(segment, segment.getFileSystem(getConf()))) {
-      LOG.warn("Segment: " + segment
-          + " already parsed!! Skipped parsing this segment!!"); // NUTCH-1854
-      return;
+    FileSystem fs = segment.getFileSystem(getConf());
+    boolean incremental = getConf().getBoolean(INCREMENTAL, false);
+    if (SegmentChecker.isParsed(segment, fs)) {
+      if (!incremental) {
+        LOG.warn("Segment: " + segment
+            + " already parsed!! Skipped parsing this segment!!"); // NUTCH-1854
+        return;
+      }
+    } else {
+      // nothing to merge with
+      incremental = false;
     }
 
     SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
@@ -216,24 +413,201 @@ public class ParseSegment extends NutchTool implements Tool,
       LOG.info("ParseSegment: segment: " + segment);
     }
 
+    if (incremental) {
+      parseIncremental(segment, fs);
+    } else {
+      runParseJob(new Path(segment, Content.DIR_NAME), segment,
+          segment.getName());
+    }
+
+    long end = System.currentTimeMillis();
+    LOG.info("ParseSegment: finished at " + sdf.format(end) + ", elapsed: "
+        + TimingUtil.elapsedTime(start, end));
+  }
+
+  private void runParseJob(Path input, Path output, String segmentName)
+      throws IOException {
     JobConf job = new NutchJob(getConf());
-    job.setJobName("parse " + segment);
+    job.setJobName("parse " + output);
 
-    FileInputFormat.addInputPath(job, new Path(segment, Content.DIR_NAME));
-    job.set(Nutch.SEGMENT_NAME_KEY, segment.getName());
+    FileInputFormat.addInputPath(job, input);
+    job.set(Nutch.SEGMENT_NAME_KEY, segmentName);
     job.setInputFormat(SequenceFileInputFormat.class);
     job.setMapperClass(ParseSegment.class);
     job.setReducerClass(ParseSegment.class);
 
-    FileOutputFormat.setOutputPath(job, segment);
+    int threads = getConf().getInt(PARSE_THREADS, 1);
+    if (threads > 1) {
+      // parse multiple documents concurrently within one map task, the
+      // reducer takes care of the order
+      LOG.info("ParseSegment: using " + threads + " parser threads per task");
+      job.setMapRunnerClass(MultithreadedMapRunner.class);
+      job.setInt(MultithreadedMapper.NUM_THREADS, threads);
+    }
+
+    FileOutputFormat.setOutputPath(job, output);
     job.setOutputFormat(ParseOutputFormat.class);
     job.setOutputKeyClass(Text.class);
     job.setOutputValueClass(ParseImpl.class);
 
     JobClient.runJob(job);
-    long end = System.currentTimeMillis();
-    LOG.info("ParseSegment: finished at " + sdf.format(end) + ", elapsed: "
-        + TimingUtil.elapsedTime(start, end));
+  }
+
+  /**
+   * Parse only the documents of an already parsed segment which have not
+   * been parsed or failed to parse, e.g., after a parse job was interrupted
+   * or the parsers have been fixed. The documents are parsed into a temporary
+   * directory, the parse output of the segment is replaced only after all
+   * parse directories have been merged successfully. If the incremental parse
+   * fails, the segment is left untouched or restored, and it can be run
+   * again.
+   */
+  private void parseIncremental(Path segment, FileSystem fs)
+      throws IOException {
+    LOG.info("ParseSegment: incremental parse of " + segment);
+    String suffix = Integer.toString(new Random().nextInt(Integer.MAX_VALUE));
+    Path selected = new Path(segment, "parse-incremental-content-" + suffix);
+    Path parsed = new Path(segment, "parse-incremental-" + suffix);
+    String[] dirs = { ParseData.DIR_NAME, ParseText.DIR_NAME,
+        CrawlDatum.PARSE_DIR_NAME };
+    Path[] merged = new Path[dirs.length];
+
+    try {
+      // select content not (successfully) parsed
+      JobConf job = new NutchJob(getConf());
+      job.setJobName("parse select " + segment);
+      FileInputFormat.addInputPath(job, new Path(segment, Content.DIR_NAME));
+      FileInputFormat.addInputPath(job, new Path(segment, ParseData.DIR_NAME));
+      job.setInputFormat(SequenceFileInputFormat.class);
+      job.setMapperClass(SelectMapper.class);
+      job.setReducerClass(SelectReducer.class);
+      job.setMapOutputKeyClass(Text.class);
+      job.setMapOutputValueClass(NutchWritable.class);
+      FileOutputFormat.setOutputPath(job, selected);
+      job.setOutputFormat(SequenceFileOutputFormat.class);
+      job.setOutputKeyClass(Text.class);
+      job.setOutputValueClass(Content.class);
+      RunningJob running = JobClient.runJob(job);
+
+      long selectedDocs = running.getCounters()
+          .findCounter("ParseSegment", "reparse_missing").getValue()
+          + running.getCounters().findCounter("ParseSegment", "reparse_failed")
+              .getValue();
+      LOG.info("ParseSegment: " + selectedDocs + " documents to parse");
+      if (selectedDocs == 0) {
+        return;
+      }
+
+      runParseJob(selected, parsed, segment.getName());
+
+      // merge the new parses into the parse directories of the segment
+      for (int i = 0; i < dirs.length; i++) {
+        if (!fs.exists(new Path(parsed, dirs[i]))) {
+          // parse text not stored
+          continue;
+        }
+        merged[i] = new Path(segment, dirs[i] + "-" + suffix);
+        job = new NutchJob(getConf());
+        job.setJobName("parse merge " + dirs[i] + " " + segment);
+        if (fs.exists(new Path(segment, dirs[i]))) {
+          FileInputFormat.addInputPath(job, new Path(segment, dirs[i]));
+        }
+        FileInputFormat.addInputPath(job, new Path(parsed, dirs[i]));
+        job.set(INCREMENTAL_OUTPUT, fs.makeQualified(parsed).toString() + "/");
+        job.setInputFormat(SequenceFileInputFormat.class);
+        job.setMapperClass(MergeMapper.class);
+        job.setReducerClass(MergeReducer.class);
+        job.setMapOutputKeyClass(Text.class);
+        job.setMapOutputValueClass(MetaWrapper.class);
+        FileOutputFormat.setOutputPath(job, merged[i]);
+        job.setOutputKeyClass(Text.class);
+        if (CrawlDatum.PARSE_DIR_NAME.equals(dirs[i])) {
+          job.setOutputFormat(SequenceFileOutputFormat.class);
+          job.setOutputValueClass(CrawlDatum.class);
+        } else {
+          job.setOutputFormat(MapFileOutputFormat.class);
+          job.setOutputValueClass(ParseData.DIR_NAME.equals(dirs[i])
+              ? ParseData.class : ParseText.class);
+        }
+        JobClient.runJob(job);
+      }
+
+      install(segment, fs, dirs, merged, suffix);
+    } finally {
+      fs.delete(selected, true);
+      fs.delete(parsed, true);
+      for (Path path : merged) {
+        if (path != null && fs.exists(path)) {
+          fs.delete(path, true);
+        }
+      }
+    }
+  }
+
+  /**
+   * Replace the parse directories of a segment by the merged ones. All
+   * directories to be replaced are moved aside first, and moved back if
+   * installing any of the merged directories fails. If the segment cannot be
+   * restored, the elements of <code>merged</code> are set to null, so that
+   * the merged directories are kept to repair the segment manually.
+   * 
+   * @throws IOException
+   *           if installing failed
+   */
+  private static void install(Path segment, FileSystem fs, String[] dirs,
+      Path[] merged, String suffix) throws IOException {
+    Path[] current = new Path[dirs.length];
+    Path[] old = new Path[dirs.length];
+    boolean[] installed = new boolean[dirs.length];
+    try {
+      for (int i = 0; i < dirs.length; i++) {
+        if (merged[i] == null) {
+          continue;
+        }
+        current[i] = new Path(segment, dirs[i]);
+        if (fs.exists(current[i])) {
+          old[i] = new Path(segment, dirs[i] + "-old-" + suffix);
+          rename(fs, current[i], old[i]);
+        }
+      }
+      for (int i = 0; i < dirs.length; i++) {
+        if (merged[i] != null) {
+          rename(fs, merged[i], current[i]);
+          installed[i] = true;
+        }
+      }
+    } catch (IOException e) {
+      boolean restored = true;
+      for (int i = 0; i < dirs.length; i++) {
+        if (installed[i] && !fs.rename(current[i], merged[i])) {
+          restored = false;
+        }
+        if (old[i] != null && !fs.exists(current[i])
+            && !fs.rename(old[i], current[i])) {
+          restored = false;
+        }
+      }
+      if (!restored) {
+        LOG.error("ParseSegment: failed to install the incremental parse of "
+            + segment + ", the segment is inconsistent. Restore the parse "
+            + "directories from " + Arrays.asList(old) + " or install "
+            + Arrays.asList(merged) + " manually");
+        Arrays.fill(merged, null);
+      }
+      throw e;
+    }
+    for (Path path : old) {
+      if (path != null) {
+        fs.delete(path, true);
+      }
+    }
+  }
+
+  private static void rename(FileSystem fs, Path src, Path dst)
+      throws IOException {
+    if (!fs.rename(src, dst)) {
+      throw new IOException("Failed to rename " + src + " to " + dst);
+    }
   }
 
   public static void main(String[] args) throws Exception {
@@ -245,7 +619,7 @@ public class ParseSegment extends NutchTool implements Tool,
   public int run(String[] args) throws Exception {
     Path segment;
 
-    String usage = "Usage: ParseSegment segment [-noFilter] [-noNormalize]";
+    String usage = "Usage: ParseSegment segment [-noFilter] [-noNormalize] [-threads <n>] [-incremental]";
 
     if (args.length == 0) {
       System.err.println(usage);
@@ -260,6 +634,10 @@ public class ParseSegment extends NutchTool implements Tool,
           getConf().setBoolean("parse.filter.urls", false);
         } else if ("-nonormalize".equalsIgnoreCase(param)) {
           getConf().setBoolean("parse.normalize.urls", false);
+        } else if ("-threads".equalsIgnoreCase(param)) {
+          getConf().setInt(PARSE_THREADS, Integer.parseInt(args[++i]));
+        } else if ("-incremental".equalsIgnoreCase(param)) {
+          getConf().setBoolean(INCREMENTAL, true);
         }
       }
     }
@@ -304,6 +682,9 @@ public class ParseSegment extends NutchTool implements Tool,
     if (args.containsKey("nonormalize")) {
       getConf().setBoolean("parse.normalize.urls", false);
     }
+    if (args.containsKey("incremental")) {
+      getConf().setBoolean(INCREMENTAL, true);
+    }
     parse(segment);
     results.put(Nutch.VAL_RESULT, Integer.toString(0));
     return results;
@@ -18,11 +18,15 @@ package org.apache.nutch.parse;
 
 // Commons Logging imports
 
+import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -49,23 +53,59 @@ public class ParseUtil {
   /** Parser timeout set to 30 sec by default. Set -1 to deactivate **/
   private int maxParseTime = 30;
   private ExecutorService executorService;
+  /** Interrupts parsers running in the calling thread after the timeout */
+  private static ScheduledExecutorService watchdog;
+  /** Parser processes, if parsing is done out of process */
+  private ParseWorkerPool workerPool;
 
   /**
    * 
    * @param conf
    */
   public ParseUtil(Configuration conf) {
+    this(conf, false);
+  }
+
+  /**
+   * @param conf
+   * @param inCallingThread
+   *          if true parsers are run in the calling thread and the timeout is
+   *          enforced by interrupting this thread. Parsers are expected to
+   *          react on the interrupt; a parser which does not will block the
+   *          calling thread. If false every parse is passed to a separate
+   *          thread and abandoned after the timeout.
+   */
+  public ParseUtil(Configuration conf, boolean inCallingThread) {
     this.parserFactory = new ParserFactory(conf);
     maxParseTime = conf.getInt("parser.timeout", 30);
-    executorService = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
-        .setNameFormat("parse-%d").setDaemon(true).build());
+    if (conf.getInt(ParseWorkerPool.PARSE_WORKERS, 0) > 0) {
+      try {
+        workerPool = ParseWorkerPool.get(conf);
+      } catch (IOException e) {
+        LOG.error("Failed to start parse workers, parsing in process", e);
+      }
+    }
+    if (!inCallingThread) {
+      executorService = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+          .setNameFormat("parse-%d").setDaemon(true).build());
+    } else if (maxParseTime != -1) {
+      synchronized (ParseUtil.class) {
+        if (watchdog == null) {
+          watchdog = Executors.newSingleThreadScheduledExecutor(
+              new ThreadFactoryBuilder().setNameFormat("parse-watchdog")
+                  .setDaemon(true).build());
+        }
+      }
+    }
   }
 
   /**
    * Performs a parse by iterating through a List of preferred {@link Parser}s
    * until a successful parse is performed and a {@link Parse} object is
    * returned. If the parse is unsuccessful, a message is logged to the
-   * <code>WARNING</code> level, and an empty parse is returned.
+   * <code>WARNING</code> level, and an empty parse is returned. If
+   * <code>parser.workers</code> is set, parsing is done in a separate process
+   * (see {@link ParseWorkerPool}).
    * 
    * @param content
    *          The content to try and parse.
@@ -74,6 +114,10 @@ public class ParseUtil {
    *           If no suitable parser is found to perform the parse.
    */
   public ParseResult parse(Content content) throws ParseException {
+    if (workerPool != null) {
+      return workerPool.parse(content);
+    }
+
     Parser[] parsers = null;
 
     try {
@@ -166,6 +210,9 @@ public class ParseUtil {
   }
 
   private ParseResult runParser(Parser p, Content content) {
+    if (executorService == null) {
+      return runParserInThread(p, content);
+    }
     ParseCallable pc = new ParseCallable(p, content);
     Future<ParseResult> task = executorService.submit(pc);
     ParseResult res = null;
@@ -180,4 +227,34 @@ public class ParseUtil {
     return res;
   }
 
+  private ParseResult runParserInThread(Parser p, Content content) {
+    final Thread thread = Thread.currentThread();
+    // set either by the watchdog (timeout) or after parsing (no timeout)
+    final AtomicBoolean done = new AtomicBoolean(false);
+    ScheduledFuture<?> timeout = watchdog.schedule(() -> {
+      synchronized (done) {
+        if (done.compareAndSet(false, true)) {
+          thread.interrupt();
+        }
+      }
+    }, maxParseTime, TimeUnit.SECONDS);
+    ParseResult res = null;
+    try {
+      res = p.getParse(content);
+    } catch (Exception e) {
+      LOG.warn("Error parsing " + content.getUrl() + " with " + p, e);
+    } finally {
+      timeout.cancel(false);
+    }
+    if (!done.compareAndSet(false, true)) {
+      // timed out: wait until the interrupt is delivered and clear it
+      synchronized (done) {
+        Thread.interrupted();
+      }
+      LOG.warn("Parsing " + content.getUrl() + " with " + p + " timed out");
+      res = null;
+    }
+    return res;
+  }
+
 }
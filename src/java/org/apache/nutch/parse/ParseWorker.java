@@ -0,0 +1,161 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.parse;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandles;
+import java.util.Map.Entry;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.nutch.protocol.Content;
+import org.apache.nutch.util.NutchConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Parser process started by {@link ParseWorkerPool}. Reads {@link Content}
+ * records from standard input, parses them and writes the results to standard
+ * output, until the input is closed. Everything printed by parsers or logging
+ * to standard output is redirected to standard error. Logging must not be
+ * initialized before the redirection, so this class has no static logger.
+ *
+ * <p>
+ * Protocol, per document: the parent writes the content, the worker answers
+ * with {@link #RESULT} followed by the number of parses and pairs of URL and
+ * {@link ParseImpl}, or with {@link #ERROR} followed by a message. After
+ * {@link #FATAL} and a message the worker exits.
+ * </p>
+ */
+public class ParseWorker {
+
+  static final byte RESULT = 0;
+  static final byte ERROR = 1;
+  static final byte FATAL = 2;
+
+  /**
+   * @param args
+   *          path of the configuration file written by the parent
+   */
+  public static void main(String[] args) throws Exception {
+    // keep standard output for the results only
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+        new FileOutputStream(FileDescriptor.out)));
+    System.setOut(new PrintStream(new FileOutputStream(FileDescriptor.err),
+        true));
+    DataInputStream in = new DataInputStream(new BufferedInputStream(
+        new FileInputStream(FileDescriptor.in)));
+    // a console appender created from now on writes to standard error
+    Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    Configuration conf = NutchConfiguration.create();
+    if (args.length > 0) {
+      conf.addResource(new Path(args[0]));
+    }
+    // the timeout is enforced by the parent
+    conf.setInt("parser.timeout", -1);
+    conf.setInt(ParseWorkerPool.PARSE_WORKERS, 0);
+    ParseUtil parseUtil = new ParseUtil(conf, true);
+
+    while (true) {
+      Content content = new Content();
+      try {
+        content.readFields(in);
+      } catch (EOFException e) {
+        // parent closed the pipe
+        break;
+      }
+      ParseResult result;
+      try {
+        result = parseUtil.parse(content);
+      } catch (Throwable t) {
+        writeError(out, t);
+        if (t instanceof Error) {
+          // VM state is undefined, e.g., after an OutOfMemoryError
+          log.error("Parse worker exiting after error parsing "
+              + content.getUrl(), t);
+          System.exit(1);
+        }
+        continue;
+      }
+      writeResult(out, result);
+    }
+  }
+
+  /** Send the parses of a document to the parent. */
+  static void writeResult(DataOutputStream out, ParseResult result)
+      throws IOException {
+    out.writeByte(RESULT);
+    out.writeInt(result.size());
+    for (Entry<Text, Parse> entry : result) {
+      entry.getKey().write(out);
+      new ParseImpl(new ParseText(entry.getValue().getText()), entry
+          .getValue().getData(), entry.getValue().isCanonical()).write(out);
+    }
+    out.flush();
+  }
+
+  /**
+   * Send a failure to the parent, an {@link Error} is reported as fatal and
+   * the worker must exit.
+   */
+  static void writeError(DataOutputStream out, Throwable t)
+      throws IOException {
+    out.writeByte(t instanceof Error ? FATAL : ERROR);
+    out.writeUTF(String.valueOf(t));
+    out.flush();
+  }
+
+  /**
+   * Read the answer of a worker.
+   * 
+   * @throws ParseException
+   *           if parsing failed
+   * @throws IOException
+   *           if the worker failed and needs to be replaced
+   */
+  static ParseResult readResult(DataInputStream in, String url)
+      throws IOException, ParseException {
+    byte type = in.readByte();
+    if (type == ERROR) {
+      throw new ParseException(in.readUTF());
+    } else if (type == FATAL) {
+      throw new IOException(in.readUTF());
+    }
+    int n = in.readInt();
+    ParseResult result = new ParseResult(url);
+    for (int i = 0; i < n; i++) {
+      Text key = new Text();
+      key.readFields(in);
+      ParseImpl parse = new ParseImpl();
+      parse.readFields(in);
+      result.put(key, new ParseText(parse.getText()), parse.getData());
+    }
+    return result;
+  }
+
+}
@@ -0,0 +1,298 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.parse;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.nutch.protocol.Content;
+import org.apache.nutch.util.ObjectCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Pool of parser processes ({@link ParseWorker}) used by {@link ParseUtil} if
+ * <code>parser.workers</code> is set. Every document is parsed in a separate
+ * JVM with a limited heap, so that a document exhausting memory or CPU only
+ * costs a worker restart and not the whole task. A worker is killed and
+ * replaced if it exceeds <code>parser.timeout</code>, fails with an error or
+ * has parsed <code>parser.worker.max.documents</code> documents.
+ */
+public class ParseWorkerPool {
+
+  private static final Logger LOG = LoggerFactory
+      .getLogger(MethodHandles.lookup().lookupClass());
+
+  public static final String PARSE_WORKERS = "parser.workers";
+  public static final String WORKER_MAX_DOCUMENTS = "parser.worker.max.documents";
+  public static final String WORKER_HEAP = "parser.worker.heap";
+  public static final String WORKER_JAVA_OPTS = "parser.worker.java.opts";
+
+  /** A forked parser process */
+  private class Worker {
+    Process process;
+    DataOutputStream out;
+    DataInputStream in;
+    int documents = 0;
+
+    Worker() throws IOException {
+      process = new ProcessBuilder(command)
+          .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+      out = new DataOutputStream(new BufferedOutputStream(
+          process.getOutputStream()));
+      in = new DataInputStream(new BufferedInputStream(
+          process.getInputStream()));
+    }
+
+    void destroy() {
+      process.destroyForcibly();
+    }
+
+    void close() {
+      try {
+        // closing the input makes the worker exit
+        out.close();
+        if (!process.waitFor(1, TimeUnit.SECONDS)) {
+          destroy();
+        }
+      } catch (IOException | InterruptedException e) {
+        destroy();
+      }
+    }
+  }
+
+  private final List<String> command = new ArrayList<>();
+  /** number of workers to keep running */
+  private final int size;
+  private final BlockingQueue<Worker> idle;
+  private final List<Worker> workers = new ArrayList<>();
+  private final ExecutorService readers;
+  private final int maxParseTime;
+  private final int maxDocuments;
+  private final File confFile;
+  private volatile boolean closed = false;
+
+  private ParseWorkerPool(Configuration conf) throws IOException {
+    this(conf, ParseWorker.class.getName());
+  }
+
+  /**
+   * @param workerClass
+   *          main class of the worker processes, speaking the protocol of
+   *          {@link ParseWorker}
+   */
+  ParseWorkerPool(Configuration conf, String workerClass) throws IOException {
+    size = conf.getInt(PARSE_WORKERS, 0);
+    maxParseTime = conf.getInt("parser.timeout", 30);
+    maxDocuments = conf.getInt(WORKER_MAX_DOCUMENTS, 1000);
+    idle = new ArrayBlockingQueue<>(size);
+    readers = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+        .setNameFormat("parse-worker-%d").setDaemon(true).build());
+
+    // pass the configuration to the workers
+    confFile = File.createTempFile("nutch-parse-worker-", ".xml");
+    confFile.deleteOnExit();
+    try (OutputStream os = new FileOutputStream(confFile)) {
+      conf.writeXml(os);
+    }
+
+    command.add(new File(new File(System.getProperty("java.home"), "bin"),
+        "java").getPath());
+    command.add("-Xmx" + conf.get(WORKER_HEAP, "512m"));
+    for (String opt : conf.getTrimmedStrings(WORKER_JAVA_OPTS)) {
+      command.add(opt);
+    }
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add(workerClass);
+    command.add(confFile.getAbsolutePath());
+
+    for (int i = 0; i < size; i++) {
+      Worker worker = new Worker();
+      workers.add(worker);
+      idle.add(worker);
+    }
+    LOG.info("Started {} parse workers: {}", size, command);
+    Runtime.getRuntime().addShutdownHook(new Thread(this::close));
+  }
+
+  /** @return the pool shared by all users of the configuration */
+  public static synchronized ParseWorkerPool get(Configuration conf)
+      throws IOException {
+    ObjectCache objectCache = ObjectCache.get(conf);
+    String key = ParseWorkerPool.class.getName();
+    ParseWorkerPool pool = (ParseWorkerPool) objectCache.getObject(key);
+    if (pool == null) {
+      pool = new ParseWorkerPool(conf);
+      objectCache.setObject(key, pool);
+    }
+    return pool;
+  }
+
+  /**
+   * Parse content in a worker process.
+   *
+   * @return the parse result, an empty result with failed status if the
+   *         worker timed out or died
+   * @throws ParseException
+   *           if no parser was found or parsing failed in the worker, or if
+   *           no worker is running and none can be started
+   */
+  public ParseResult parse(final Content content) throws ParseException {
+    Worker worker = acquire();
+    boolean healthy = false;
+    try {
+      final Worker w = worker;
+      Future<ParseResult> task = readers.submit(() -> {
+        content.write(w.out);
+        w.out.flush();
+        return ParseWorker.readResult(w.in, content.getUrl());
+      });
+      ParseResult result;
+      try {
+        if (maxParseTime != -1) {
+          result = task.get(maxParseTime, TimeUnit.SECONDS);
+        } else {
+          result = task.get();
+        }
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof ParseException) {
+          // parse failed, the worker is still usable
+          healthy = true;
+          throw (ParseException) e.getCause();
+        }
+        LOG.warn("Parse worker failed on " + content.getUrl() + ": "
+            + e.getCause());
+        return new ParseStatus(e.getCause()).getEmptyParseResult(
+            content.getUrl(), null);
+      } catch (TimeoutException e) {
+        LOG.warn("Parse worker timed out on " + content.getUrl()
+            + ", restarting worker");
+        return new ParseStatus(new ParseException("Parser timed out"))
+            .getEmptyParseResult(content.getUrl(), null);
+      } catch (InterruptedException e) {
+        throw new ParseException(e);
+      }
+      healthy = true;
+      return result;
+    } finally {
+      release(worker, healthy);
+    }
+  }
+
+  /**
+   * Take an idle worker, waiting for a busy one if all workers are running.
+   * Workers which could not be replaced before are started again.
+   */
+  private Worker acquire() throws ParseException {
+    while (true) {
+      synchronized (workers) {
+        if (closed) {
+          throw new ParseException("Parse worker pool is closed");
+        }
+        Worker worker = idle.poll();
+        if (worker != null) {
+          return worker;
+        }
+        if (workers.size() < size) {
+          try {
+            worker = new Worker();
+            workers.add(worker);
+            return worker;
+          } catch (IOException e) {
+            if (workers.isEmpty()) {
+              // nobody would ever release a worker
+              throw new ParseException("No parse worker available: " + e);
+            }
+            LOG.warn("Failed to start parse worker: {}", e.toString());
+          }
+        }
+      }
+      try {
+        // do not wait forever, the last busy worker may not be replaceable
+        Worker worker = idle.poll(1, TimeUnit.SECONDS);
+        if (worker != null) {
+          return worker;
+        }
+      } catch (InterruptedException e) {
+        throw new ParseException(e);
+      }
+    }
+  }
+
+  private void release(Worker worker, boolean healthy) {
+    worker.documents++;
+    if (healthy && worker.documents < maxDocuments && !closed) {
+      idle.add(worker);
+      return;
+    }
+    // kill and replace the worker, this also unblocks a pending read
+    if (healthy) {
+      worker.close();
+    } else {
+      worker.destroy();
+    }
+    synchronized (workers) {
+      workers.remove(worker);
+      if (closed) {
+        return;
+      }
+      try {
+        Worker replacement = new Worker();
+        workers.add(replacement);
+        idle.add(replacement);
+      } catch (IOException e) {
+        // retried by the next call of acquire()
+        LOG.error("Failed to start parse worker", e);
+      }
+    }
+  }
+
+  /** Stop all workers. */
+  public void close() {
+    closed = true;
+    synchronized (workers) {
+      for (Worker worker : workers) {
+        worker.close();
+      }
+      workers.clear();
+    }
+    readers.shutdownNow();
+    confFile.delete();
+  }
+
+}
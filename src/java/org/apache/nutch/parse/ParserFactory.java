@@ -22,7 +22,9 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 // Commons Logging imports
 import org.slf4j.Logger;
@@ -49,12 +51,35 @@ public final class ParserFactory {
   public static final String DEFAULT_PLUGIN = "*";
 
   /** Empty extension list for caching purposes. */
-  private final List<Extension> EMPTY_EXTENSION_LIST = Collections
+  private static final List<Extension> EMPTY_EXTENSION_LIST = Collections
       .<Extension> emptyList();
 
+  /** Marks content types without any parser in the resolution table. */
+  private static final Parser[] NO_PARSERS = new Parser[0];
+
+  /**
+   * Max. number of content types memoized, content types not normalized by
+   * {@link MimeUtil} may contain arbitrary parameters.
+   */
+  private static final int MAX_RESOLVED_TYPES = 1024;
+
+  /**
+   * Resolution of content types to parse plugins, shared by all factories of
+   * a configuration and read without locking. The content types mapped in the
+   * parse-plugins.xml file are resolved when the table is built, other content
+   * types (including unnormalized ones, with parameters) when first seen.
+   */
+  private static class ResolutionTable {
+    /** content type, as passed or cleaned, to extensions */
+    final Map<String, List<Extension>> extensions = new ConcurrentHashMap<>();
+    /** content type, as passed, to parser instances */
+    final Map<String, Parser[]> parsers = new ConcurrentHashMap<>();
+  }
+
   private Configuration conf;
   private ExtensionPoint extensionPoint;
   private ParsePluginList parsePluginList;
+  private ResolutionTable resolutionTable;
 
   public ParserFactory(Configuration conf) {
     this.conf = conf;
@@ -77,6 +102,17 @@ public final class ParserFactory {
       throw new RuntimeException(
           "Parse Plugins preferences could not be loaded.");
     }
+
+    this.resolutionTable = (ResolutionTable) objectCache
+        .getObject(ResolutionTable.class.getName());
+    if (this.resolutionTable == null) {
+      this.resolutionTable = new ResolutionTable();
+      for (String type : this.parsePluginList.getSupportedMimeTypes()) {
+        getExtensions(type);
+      }
+      objectCache.setObject(ResolutionTable.class.getName(),
+          this.resolutionTable);
+    }
   }
 
   /**
@@ -108,6 +144,24 @@ public final class ParserFactory {
   public Parser[] getParsers(String contentType, String url)
       throws ParserNotFound {
 
+    if (contentType == null) {
+      throw new ParserNotFound(url, contentType);
+    }
+    Parser[] resolved = resolutionTable.parsers.get(contentType);
+    if (resolved == null) {
+      resolved = resolveParsers(contentType);
+    }
+    if (resolved == NO_PARSERS) {
+      throw new ParserNotFound(url, contentType);
+    }
+    return resolved.clone();
+  }
+
+  /**
+   * Instantiate the parsers for a content type and add them to the resolution
+   * table, unless a parser failed to initialize.
+   */
+  private Parser[] resolveParsers(String contentType) {
     List<Parser> parsers = null;
     List<Extension> parserExts = null;
 
@@ -123,9 +177,11 @@ public final class ParserFactory {
 
     parserExts = getExtensions(contentType);
     if (parserExts == null) {
-      throw new ParserNotFound(url, contentType);
+      memoize(resolutionTable.parsers, contentType, NO_PARSERS);
+      return NO_PARSERS;
     }
 
+    boolean complete = true;
     parsers = new Vector<>(parserExts.size());
     for (Iterator<Extension> i = parserExts.iterator(); i.hasNext();) {
       Extension ext = i.next();
@@ -140,6 +196,7 @@ public final class ParserFactory {
         }
         parsers.add(p);
       } catch (PluginRuntimeException e) {
+        complete = false;
         if (LOG.isWarnEnabled()) {
           LOG.warn("ParserFactory:PluginRuntimeException when "
               + "initializing parser plugin "
@@ -148,7 +205,17 @@ public final class ParserFactory {
         }
       }
     }
-    return parsers.toArray(new Parser[] {});
+    Parser[] resolved = parsers.toArray(new Parser[] {});
+    if (complete) {
+      memoize(resolutionTable.parsers, contentType, resolved);
+    }
+    return resolved;
+  }
+
+  private static <T> void memoize(Map<String, T> map, String key, T value) {
+    if (map.size() < MAX_RESOLVED_TYPES) {
+      map.put(key, value);
+    }
   }
 
   /**
@@ -220,32 +287,36 @@ public final class ParserFactory {
    * @return a list of extensions to be used for this contentType. If none,
    *         returns <code>null</code>.
    */
-  @SuppressWarnings("unchecked")
   protected List<Extension> getExtensions(String contentType) {
 
-    ObjectCache objectCache = ObjectCache.get(conf);
-    // First of all, tries to clean the content-type
-    String type = null;
-    type = MimeUtil.cleanMimeType(contentType);
-
-    List<Extension> extensions = (List<Extension>) objectCache.getObject(type);
+    if (contentType == null) {
+      return null;
+    }
+    List<Extension> extensions = resolutionTable.extensions.get(contentType);
+    if (extensions == null) {
+      // First of all, tries to clean the content-type
+      String type = MimeUtil.cleanMimeType(contentType);
+      extensions = resolutionTable.extensions.get(type);
+      if (extensions == null) {
+        extensions = findExtensions(type);
+        if (extensions == null) {
+          // Put the empty extension list into the table
+          // to remember we don't know any related extension.
+          extensions = EMPTY_EXTENSION_LIST;
+        }
+        memoize(resolutionTable.extensions, type, extensions);
+      }
+      if (!type.equals(contentType)) {
+        // also remember the unnormalized content type
+        memoize(resolutionTable.extensions, contentType, extensions);
+      }
+    }
 
     // Just compare the reference:
     // if this is the empty list, we know we will find no extension.
     if (extensions == EMPTY_EXTENSION_LIST) {
       return null;
     }
-
-    if (extensions == null) {
-      extensions = findExtensions(type);
-      if (extensions != null) {
-        objectCache.setObject(type, extensions);
-      } else {
-        // Put the empty extension list into cache
-        // to remember we don't know any related extension.
-        objectCache.setObject(type, EMPTY_EXTENSION_LIST);
-      }
-    }
     return extensions;
   }
 
@@ -83,7 +83,7 @@ public final class Content implements Writable {
     this.content = content;
     this.metadata = metadata;
 
-    this.mimeTypes = new MimeUtil(conf);
+    this.mimeTypes = MimeUtil.get(conf);
     this.contentType = getContentType(contentType, url, content);
   }
 
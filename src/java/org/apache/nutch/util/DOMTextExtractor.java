@@ -0,0 +1,275 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.util;
+
+import org.apache.hadoop.conf.Configuration;
+import org.w3c.dom.Node;
+
+/**
+ * Extracts the text content of DOM trees, shared by the HTML parser plugins.
+ *
+ * <p>
+ * Text of script and style elements is skipped, white space in text nodes is
+ * collapsed to a single space and empty text nodes are converted into
+ * paragraph breaks. The tree is traversed via sibling and parent links without
+ * allocating a stack, and the text is collected in a string builder reused per
+ * thread. If <code>parser.text.max.length</code> is set, the traversal stops
+ * once the limit is reached and the text is truncated.
+ * </p>
+ *
+ * <p>
+ * Instances are thread-safe.
+ * </p>
+ */
+public class DOMTextExtractor {
+
+  public static final String TEXT_MAX_LENGTH = "parser.text.max.length";
+
+  /** builders larger than this are not kept for reuse */
+  private static final int MAX_POOLED_CAPACITY = 1024 * 1024;
+
+  private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal
+      .withInitial(() -> new StringBuilder(8192));
+
+  private final int maxLength;
+
+  public DOMTextExtractor(Configuration conf) {
+    this(conf.getInt(TEXT_MAX_LENGTH, -1));
+  }
+
+  /**
+   * @param maxLength
+   *          max. number of characters to extract, -1 for no limit
+   */
+  public DOMTextExtractor(int maxLength) {
+    this.maxLength = maxLength;
+  }
+
+  /** @return max. number of characters to extract, -1 if unlimited */
+  public int getMaxLength() {
+    return maxLength;
+  }
+
+  /** @return the text below <code>node</code> */
+  public String getText(Node node) {
+    StringBuilder sb = borrow();
+    try {
+      appendText(sb, node, false);
+      return sb.toString();
+    } finally {
+      release(sb);
+    }
+  }
+
+  /**
+   * Append the text below <code>node</code> to a {@link StringBuffer}.
+   * Separators are inserted depending on the content already in the buffer.
+   *
+   * @return true if <code>abortOnNestedAnchors</code> is true and a nested
+   *         anchor was found, the text then ends at the nested anchor
+   */
+  public boolean getText(StringBuffer buffer, Node node,
+      boolean abortOnNestedAnchors) {
+    StringBuilder sb = borrow();
+    try {
+      // separators depend on and may strip the end of the buffer
+      sb.append(buffer);
+      boolean abort = appendText(sb, node, abortOnNestedAnchors);
+      buffer.setLength(0);
+      buffer.append(sb);
+      return abort;
+    } finally {
+      release(sb);
+    }
+  }
+
+  /**
+   * Append the text of the first <code>title</code> element found before the
+   * <code>body</code> element.
+   *
+   * @return true if a title element was found
+   */
+  public boolean getTitle(StringBuffer buffer, Node root) {
+    Node node = root;
+    while (node != null) {
+      if (node.getNodeType() == Node.ELEMENT_NODE) {
+        String nodeName = node.getNodeName();
+        if ("body".equalsIgnoreCase(nodeName)) { // stop after HEAD
+          return false;
+        }
+        if ("title".equalsIgnoreCase(nodeName)) {
+          getText(buffer, node, false);
+          return true;
+        }
+      }
+      node = next(node, root, false);
+    }
+    return false;
+  }
+
+  private static StringBuilder borrow() {
+    StringBuilder sb = BUILDER.get();
+    if (sb.length() > 0) {
+      // nested use, should not happen
+      return new StringBuilder();
+    }
+    return sb;
+  }
+
+  private static void release(StringBuilder sb) {
+    if (sb.capacity() > MAX_POOLED_CAPACITY) {
+      BUILDER.set(new StringBuilder(8192));
+    } else {
+      sb.setLength(0);
+    }
+  }
+
+  private boolean isFull(StringBuilder sb) {
+    return maxLength >= 0 && sb.length() >= maxLength;
+  }
+
+  /**
+   * Append the text below <code>root</code>.
+   *
+   * @return true if <code>abortOnNestedAnchors</code> is true and a nested
+   *         anchor was found
+   */
+  public boolean appendText(StringBuilder sb, Node root,
+      boolean abortOnNestedAnchors) {
+    int anchorDepth = 0;
+    Node node = root;
+    while (node != null) {
+      boolean skipChildren = false;
+      short nodeType = node.getNodeType();
+      if (nodeType == Node.ELEMENT_NODE) {
+        String nodeName = node.getNodeName();
+        if ("script".equalsIgnoreCase(nodeName)
+            || "style".equalsIgnoreCase(nodeName)) {
+          skipChildren = true;
+        } else if (abortOnNestedAnchors && "a".equalsIgnoreCase(nodeName)) {
+          anchorDepth++;
+          if (anchorDepth > 1) {
+            return true;
+          }
+        }
+      } else if (nodeType == Node.TEXT_NODE) {
+        appendTextNode(sb, node.getNodeValue());
+        if (isFull(sb)) {
+          sb.setLength(maxLength);
+          return false;
+        }
+      } else if (nodeType == Node.COMMENT_NODE) {
+        skipChildren = true;
+      }
+
+      node = next(node, root, skipChildren);
+    }
+    return false;
+  }
+
+  /** @return the next node in document order below root, or null */
+  private static Node next(Node node, Node root, boolean skipChildren) {
+    Node next = skipChildren ? null : node.getFirstChild();
+    while (next == null && node != root) {
+      next = node.getNextSibling();
+      if (next == null) {
+        node = node.getParentNode();
+        if (node == null) {
+          break;
+        }
+      }
+    }
+    return next;
+  }
+
+  /**
+   * Append the value of a text node: runs of white space are collapsed to a
+   * single space and the value is trimmed, an empty value is taken as
+   * paragraph break. Same as
+   * <code>value.replaceAll("\\s+", " ").trim()</code> but in one pass.
+   */
+  public static void appendTextNode(StringBuilder sb, CharSequence value) {
+    int end = value.length();
+    while (end > 0 && value.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    int start = 0;
+    while (start < end && value.charAt(start) <= ' ') {
+      start++;
+    }
+    if (start == end) {
+      appendParagraphSeparator(sb);
+      return;
+    }
+    appendSpace(sb);
+    boolean inSpace = false;
+    for (int i = start; i < end; i++) {
+      char c = value.charAt(i);
+      if (isWhitespace(c)) {
+        if (!inSpace) {
+          sb.append(' ');
+          inSpace = true;
+        }
+      } else {
+        sb.append(c);
+        inSpace = false;
+      }
+    }
+  }
+
+  /** white space as matched by the regular expression <code>\s</code> */
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f'
+        || c == '\r';
+  }
+
+  /**
+   * Conditionally append a paragraph/line break unless the last character
+   * already indicates a paragraph break. Also remove trailing space before the
+   * paragraph break.
+   */
+  private static void appendParagraphSeparator(StringBuilder sb) {
+    int length = sb.length();
+    if (length == 0 || sb.charAt(length - 1) == '\n') {
+      return;
+    }
+    // remove white space before paragraph break
+    while (length > 0 && sb.charAt(length - 1) == ' ') {
+      length--;
+    }
+    sb.setLength(length);
+    if (length > 0 && sb.charAt(length - 1) != '\n') {
+      sb.append('\n');
+    }
+  }
+
+  /**
+   * Conditionally append a space unless the last character is a space or
+   * line/paragraph break.
+   */
+  private static void appendSpace(StringBuilder sb) {
+    int length = sb.length();
+    if (length == 0) {
+      return;
+    }
+    char lastChar = sb.charAt(length - 1);
+    if (' ' != lastChar && '\n' != lastChar) {
+      sb.append(' ');
+    }
+  }
+
+}
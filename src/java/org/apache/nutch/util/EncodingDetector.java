@@ -23,9 +23,12 @@ import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -60,6 +63,16 @@ import com.ibm.icu.text.CharsetMatch;
  * <li>Combine these clues with the caller-dependent "extra clues" available;</li>
  * <li>Run step (2) to guess what the most probable answer is.</li>
  * </ul>
+ * 
+ * <p>
+ * Auto-detection with ICU4J is costly and is therefore avoided where possible:
+ * only the first <code>encodingdetector.sample.size</code> bytes are
+ * examined, a Unicode byte order mark is taken as conclusive, and if
+ * <code>encodingdetector.detect.on.conflict</code> is true, detection is
+ * deferred to {@link #guessEncoding(Content, String)} and only run if the
+ * other clues and the encoding recently chosen for the same host disagree or
+ * if there are no clues at all.
+ * </p>
  */
 public class EncodingDetector {
 
@@ -108,6 +121,12 @@ public class EncodingDetector {
 
   public static final String MIN_CONFIDENCE_KEY = "encodingdetector.charset.min.confidence";
 
+  public static final String SAMPLE_SIZE_KEY = "encodingdetector.sample.size";
+
+  public static final String DETECT_ON_CONFLICT_KEY = "encodingdetector.detect.on.conflict";
+
+  public static final String HOST_PRIORS_KEY = "encodingdetector.host.priors";
+
   private static final HashMap<String, String> ALIASES = new HashMap<>();
 
   private static final HashSet<String> DETECTABLES = new HashSet<>();
@@ -145,15 +164,66 @@ public class EncodingDetector {
 
   }
 
+  /**
+   * Encodings recently chosen for documents of a host, shared by all detectors
+   * of a configuration.
+   */
+  private static class HostPriors {
+    private final Map<String, String> priors;
+
+    HostPriors(final int size) {
+      priors = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+          return size() > size;
+        }
+      };
+    }
+
+    synchronized String get(String host) {
+      return priors.get(host);
+    }
+
+    synchronized void put(String host, String encoding) {
+      priors.put(host, encoding);
+    }
+  }
+
   private int minConfidence;
 
+  private int sampleSize;
+
+  private boolean detectOnConflict;
+
+  private HostPriors hostPriors;
+
   private CharsetDetector detector;
 
   private List<EncodingClue> clues;
 
+  /* content to run auto-detection on if the clues disagree */
+  private byte[] pendingData;
+
+  private boolean pendingFilter;
+
   public EncodingDetector(Configuration conf) {
     minConfidence = conf.getInt(MIN_CONFIDENCE_KEY, -1);
-    detector = new CharsetDetector();
+    sampleSize = conf.getInt(SAMPLE_SIZE_KEY, 65536);
+    detectOnConflict = conf.getBoolean(DETECT_ON_CONFLICT_KEY, true);
+    int priors = conf.getInt(HOST_PRIORS_KEY, 1000);
+    if (minConfidence >= 0 && detectOnConflict && priors > 0) {
+      ObjectCache objectCache = ObjectCache.get(conf);
+      synchronized (objectCache) {
+        hostPriors = (HostPriors) objectCache.getObject(HostPriors.class
+            .getName());
+        if (hostPriors == null) {
+          hostPriors = new HostPriors(priors);
+          objectCache.setObject(HostPriors.class.getName(), hostPriors);
+        }
+      }
+    }
     clues = new ArrayList<>();
   }
 
@@ -162,24 +232,15 @@ public class EncodingDetector {
 
     if (minConfidence >= 0 && DETECTABLES.contains(content.getContentType())
         && data.length > MIN_LENGTH) {
-      CharsetMatch[] matches = null;
-
-      // do all these in a try/catch; setText and detect/detectAll
-      // will sometimes throw exceptions
-      try {
-        detector.enableInputFilter(filter);
-        if (data.length > MIN_LENGTH) {
-          detector.setText(data);
-          matches = detector.detectAll();
-        }
-      } catch (Exception e) {
-        LOG.debug("Exception from ICU4J (ignoring): ", e);
-      }
-
-      if (matches != null) {
-        for (CharsetMatch match : matches) {
-          addClue(match.getName(), "detect", match.getConfidence());
-        }
+      String bom = detectByteOrderMark(data);
+      if (bom != null) {
+        // conclusive, no need to run ICU4J
+        addClue(bom, "detect", 100);
+      } else if (detectOnConflict) {
+        pendingData = data;
+        pendingFilter = filter;
+      } else {
+        detect(data, filter);
       }
     }
 
@@ -203,6 +264,74 @@ public class EncodingDetector {
     addClue(value, source, NO_THRESHOLD);
   }
 
+  /** @return the encoding indicated by a Unicode byte order mark, or null */
+  private static String detectByteOrderMark(byte[] data) {
+    if (data.length >= 3 && data[0] == (byte) 0xEF && data[1] == (byte) 0xBB
+        && data[2] == (byte) 0xBF) {
+      return "UTF-8";
+    } else if (data.length >= 2) {
+      if (data[0] == (byte) 0xFF && data[1] == (byte) 0xFE) {
+        return "UTF-16LE";
+      } else if (data[0] == (byte) 0xFE && data[1] == (byte) 0xFF) {
+        return "UTF-16BE";
+      }
+    }
+    return null;
+  }
+
+  /** Run ICU4J on a sample of the data and add the detected clues. */
+  private void detect(byte[] data, boolean filter) {
+    if (sampleSize > MIN_LENGTH && data.length > sampleSize) {
+      // do not cut a UTF-8 sequence
+      int length = sampleSize;
+      while (length > MIN_LENGTH && (data[length] & 0xC0) == 0x80) {
+        length--;
+      }
+      data = Arrays.copyOf(data, length);
+    }
+
+    CharsetMatch[] matches = null;
+
+    // do all these in a try/catch; setText and detect/detectAll
+    // will sometimes throw exceptions
+    try {
+      if (detector == null) {
+        detector = new CharsetDetector();
+      }
+      detector.enableInputFilter(filter);
+      detector.setText(data);
+      matches = detector.detectAll();
+    } catch (Exception e) {
+      LOG.debug("Exception from ICU4J (ignoring): ", e);
+    }
+
+    if (matches != null) {
+      for (CharsetMatch match : matches) {
+        addClue(match.getName(), "detect", match.getConfidence());
+      }
+    }
+  }
+
+  /**
+   * @return true if the clues without confidence value and the prior disagree,
+   *         or if there is no such clue and no prior
+   */
+  private boolean cluesConflict(String prior) {
+    String agreed = prior;
+    for (EncodingClue clue : clues) {
+      if (clue.confidence != NO_THRESHOLD || clue.isEmpty()) {
+        continue;
+      }
+      String encoding = normalizeEncoding(clue.value);
+      if (agreed == null) {
+        agreed = encoding;
+      } else if (!agreed.equals(encoding)) {
+        return true;
+      }
+    }
+    return agreed == null;
+  }
+
   /**
    * Guess the encoding with the previously specified list of clues.
    * 
@@ -226,6 +355,35 @@ public class EncodingDetector {
 
     String base = content.getBaseUrl();
 
+    String host = null;
+    String prior = null;
+    if (hostPriors != null) {
+      host = URLUtil.getHost(content.getUrl());
+      if (host != null) {
+        prior = hostPriors.get(host);
+      }
+    }
+    boolean agreed = false;
+    if (pendingData != null) {
+      if (cluesConflict(prior)) {
+        // detected clues go first
+        List<EncodingClue> otherClues = clues;
+        clues = new ArrayList<>();
+        detect(pendingData, pendingFilter);
+        clues.addAll(otherClues);
+      } else {
+        agreed = true;
+        if (LOG.isTraceEnabled()) {
+          LOG.trace(base + ": clues agree, skipping detection");
+        }
+      }
+      pendingData = null;
+    }
+    if (prior != null) {
+      // least significant clue
+      clues.add(new EncodingClue(prior, "prior"));
+    }
+
     if (LOG.isTraceEnabled()) {
       findDisagreements(base, clues);
     }
@@ -248,7 +406,11 @@ public class EncodingDetector {
           LOG.trace(base + ": Choosing encoding: " + charset
               + " with confidence " + clue.confidence);
         }
-        return resolveEncodingAlias(charset).toLowerCase();
+        String encoding = normalizeEncoding(charset);
+        if (host != null) {
+          hostPriors.put(host, encoding);
+        }
+        return encoding;
       } else if (clue.confidence == NO_THRESHOLD && bestClue == defaultClue) {
         bestClue = clue;
       }
@@ -257,12 +419,20 @@ public class EncodingDetector {
     if (LOG.isTraceEnabled()) {
       LOG.trace(base + ": Choosing encoding: " + bestClue);
     }
+    if (host != null && agreed && bestClue != defaultClue) {
+      // learn only from clues which agree
+      String encoding = normalizeEncoding(bestClue.value);
+      if (encoding != null) {
+        hostPriors.put(host, encoding);
+      }
+    }
     return bestClue.value.toLowerCase();
   }
 
   /** Clears all clues. */
   public void clearClues() {
     clues.clear();
+    pendingData = null;
   }
 
   /*
@@ -302,6 +472,15 @@ public class EncodingDetector {
     }
   }
 
+  /**
+   * @return the encoding resolved by {@link #resolveEncodingAlias(String)} in
+   *         lowercase, the form of encoding names kept as host priors
+   */
+  private static String normalizeEncoding(String encoding) {
+    String resolved = resolveEncodingAlias(encoding);
+    return resolved == null ? null : resolved.toLowerCase();
+  }
+
   public static String resolveEncodingAlias(String encoding) {
     try {
       if (encoding == null || !Charset.isSupported(encoding))
@@ -31,7 +31,8 @@ public class FSUtils {
   /**
    * Replaces the current path with the new path and if set removes the old
    * path. If removeOld is set to false then the old path will be set to the
-   * name current.old.
+   * name current.old. Nothing is done if the replacement does not exist, e.g.
+   * when moving a current path aside which has not been created yet.
    * 
    * @param fs
    *          The FileSystem.
@@ -48,6 +49,10 @@ public class FSUtils {
   public static void replace(FileSystem fs, Path current, Path replacement,
       boolean removeOld) throws IOException {
 
+    if (!fs.exists(replacement)) {
+      return;
+    }
+
     // rename any current path to old
     Path old = new Path(current + ".old");
     if (fs.exists(current)) {
@@ -61,6 +66,59 @@ public class FSUtils {
     }
   }
 
+  /**
+   * Like {@link #replace(FileSystem, Path, Path, boolean)} but fails if a
+   * path cannot be renamed, including the case that the replacement does not
+   * exist. The current path is restored if the replacement fails.
+   * 
+   * @param fs
+   *          The FileSystem.
+   * @param current
+   *          The end path, the one being replaced.
+   * @param replacement
+   *          The path to replace with.
+   * @param removeOld
+   *          True if we are removing the current path.
+   * 
+   * @throws IOException
+   *           If an error occurs during replacement or a path cannot be
+   *           renamed.
+   */
+  public static void replaceOrFail(FileSystem fs, Path current,
+      Path replacement, boolean removeOld) throws IOException {
+
+    // rename any current path to old
+    Path old = new Path(current + ".old");
+    boolean renamed = false;
+    if (fs.exists(current)) {
+      if (!fs.rename(current, old)) {
+        throw new IOException("Failed to rename " + current + " to " + old);
+      }
+      renamed = true;
+    }
+
+    // rename the new path to current and remove the old path if needed
+    IOException error = null;
+    try {
+      if (!fs.rename(replacement, current)) {
+        error = new IOException("Failed to rename " + replacement + " to "
+            + current);
+      }
+    } catch (IOException e) {
+      // some file systems throw instead of returning false
+      error = e;
+    }
+    if (error != null) {
+      if (renamed && !fs.exists(current)) {
+        fs.rename(old, current);
+      }
+      throw error;
+    }
+    if (fs.exists(old) && removeOld) {
+      fs.delete(old, true);
+    }
+  }
+
   /**
    * Closes a group of SequenceFile readers.
    * 
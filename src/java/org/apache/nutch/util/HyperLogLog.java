@@ -0,0 +1,177 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.io.Writable;
+
+/**
+ * Mergeable cardinality estimator (HyperLogLog, see Flajolet et al. 2007)
+ * used to count distinct values (hosts, domains) without keeping the values
+ * in memory. With precision <code>p</code> the estimator uses
+ * <code>2^p</code> bytes and has a relative standard error of about
+ * <code>1.04 / sqrt(2^p)</code>, e.g. 0.8% for the default precision 14.
+ *
+ * Estimators of equal precision can be merged, the result is the same as if
+ * all values were added to a single estimator. Instances are not thread-safe.
+ */
+public class HyperLogLog implements Writable {
+
+  public static final int DEFAULT_PRECISION = 14;
+
+  private int precision;
+  private byte[] registers;
+
+  public HyperLogLog() {
+    this(DEFAULT_PRECISION);
+  }
+
+  /**
+   * @param precision
+   *          number of bits used to select a register, between 4 and 18
+   */
+  public HyperLogLog(int precision) {
+    if (precision < 4 || precision > 18) {
+      throw new IllegalArgumentException(
+          "HyperLogLog precision must be between 4 and 18: " + precision);
+    }
+    this.precision = precision;
+    this.registers = new byte[1 << precision];
+  }
+
+  public int getPrecision() {
+    return precision;
+  }
+
+  /** Add a string value. */
+  public void add(String value) {
+    // 64-bit FNV-1a, finalized to spread the bits
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < value.length(); i++) {
+      h ^= value.charAt(i);
+      h *= 0x100000001b3L;
+    }
+    addHash(fmix64(h));
+  }
+
+  /** Add a value by its (well-distributed) 64-bit hash. */
+  public void addHash(long hash) {
+    int index = (int) (hash >>> (64 - precision));
+    // number of leading zeros in the remaining bits plus one, bounded by a
+    // sentinel bit in case all remaining bits are zero
+    long rest = (hash << precision) | (1L << (precision - 1));
+    byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+    if (rank > registers[index]) {
+      registers[index] = rank;
+    }
+  }
+
+  /** Merge another estimator of the same precision into this one. */
+  public void merge(HyperLogLog other) {
+    if (other.precision != precision) {
+      throw new IllegalArgumentException(
+          "Cannot merge HyperLogLog of different precision: " + precision
+              + " vs. " + other.precision);
+    }
+    for (int i = 0; i < registers.length; i++) {
+      if (other.registers[i] > registers[i]) {
+        registers[i] = other.registers[i];
+      }
+    }
+  }
+
+  /** @return estimated number of distinct values added */
+  public long cardinality() {
+    int m = registers.length;
+    double sum = 0.0;
+    int zeros = 0;
+    for (int i = 0; i < m; i++) {
+      sum += 1.0 / (1L << registers[i]);
+      if (registers[i] == 0) {
+        zeros++;
+      }
+    }
+    double alpha;
+    if (m == 16) {
+      alpha = 0.673;
+    } else if (m == 32) {
+      alpha = 0.697;
+    } else if (m == 64) {
+      alpha = 0.709;
+    } else {
+      alpha = 0.7213 / (1.0 + 1.079 / m);
+    }
+    double estimate = alpha * m * m / sum;
+    if (estimate <= 2.5 * m && zeros > 0) {
+      // small range correction: linear counting
+      estimate = m * Math.log((double) m / zeros);
+    }
+    return Math.round(estimate);
+  }
+
+  public void clear() {
+    Arrays.fill(registers, (byte) 0);
+  }
+
+  private static long fmix64(long k) {
+    k ^= k >>> 33;
+    k *= 0xff51afd7ed558ccdL;
+    k ^= k >>> 33;
+    k *= 0xc4ceb9fe1a85ec53L;
+    k ^= k >>> 33;
+    return k;
+  }
+
+  public void write(DataOutput out) throws IOException {
+    out.writeByte(precision);
+    out.write(registers);
+  }
+
+  public void readFields(DataInput in) throws IOException {
+    precision = in.readByte();
+    if (registers.length != (1 << precision)) {
+      registers = new byte[1 << precision];
+    }
+    in.readFully(registers);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof HyperLogLog)) {
+      return false;
+    }
+    HyperLogLog other = (HyperLogLog) o;
+    return precision == other.precision
+        && Arrays.equals(registers, other.registers);
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(registers);
+  }
+
+  @Override
+  public String toString() {
+    return "HyperLogLog(precision=" + precision + ", cardinality="
+        + cardinality() + ")";
+  }
+
+}
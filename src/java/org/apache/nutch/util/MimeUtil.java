@@ -22,6 +22,11 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.invoke.MethodHandles;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 // Hadoop imports
 import org.apache.hadoop.conf.Configuration;
@@ -52,10 +57,15 @@ import org.apache.nutch.protocol.ProtocolOutput;
  *        Tika</a>. Any mime handling code should be placed in this utility
  *        class, and hidden from the Nutch classes that rely on it.
  *        </p>
+ * 
+ *        <p>
+ *        Instances are thread-safe, use {@link #get(Configuration)} to share
+ *        one instance per configuration.
+ *        </p>
  */
 public final class MimeUtil {
 
-  private static final String SEPARATOR = ";";
+  private static final char SEPARATOR_CHAR = ';';
 
   /* our Tika mime type registry */
   private MimeTypes mimeTypes;
@@ -70,6 +80,48 @@ public final class MimeUtil {
   private static final Logger LOG = LoggerFactory
       .getLogger(MethodHandles.lookup().lookupClass());
 
+  /* max. number of memoized resolutions from type name and from file name */
+  private static final int MAX_RESOLVED = 1024;
+
+  /*
+   * content type name to the cleaned type name and the registered type, null
+   * if the type must be guessed from the URL
+   */
+  private final Map<String, String[]> resolved = new ConcurrentHashMap<>();
+
+  /* URL scheme and file name to the type detected by Tika from the name */
+  private final Map<String, String> detectedByName = new ConcurrentHashMap<>();
+
+  /**
+   * Signatures of common formats which are detected without calling Tika's
+   * magic detection. Only formats are listed whose detection by Tika is not
+   * refined further based on the content (as done for HTML, XML or zip-based
+   * formats).
+   */
+  private static final Object[][] SIGNATURES = {
+      { "%PDF-".getBytes(StandardCharsets.US_ASCII), "application/pdf" },
+      { new byte[] { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' },
+          "image/png" },
+      { "GIF87a".getBytes(StandardCharsets.US_ASCII), "image/gif" },
+      { "GIF89a".getBytes(StandardCharsets.US_ASCII), "image/gif" },
+      { new byte[] { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF }, "image/jpeg" } };
+
+  /**
+   * @return the instance shared by all users of the configuration
+   */
+  public static MimeUtil get(Configuration conf) {
+    ObjectCache objectCache = ObjectCache.get(conf);
+    synchronized (objectCache) {
+      MimeUtil mimeUtil = (MimeUtil) objectCache.getObject(MimeUtil.class
+          .getName());
+      if (mimeUtil == null) {
+        mimeUtil = new MimeUtil(conf);
+        objectCache.setObject(MimeUtil.class.getName(), mimeUtil);
+      }
+      return mimeUtil;
+    }
+  }
+
   public MimeUtil(Configuration conf) {
     tika = new Tika();
     ObjectCache objectCache = ObjectCache.get(conf);
@@ -119,15 +171,18 @@ public final class MimeUtil {
     if (origType == null)
       return null;
 
-    // take the origType and split it on ';'
-    String[] tokenizedMimeType = origType.split(SEPARATOR);
-    if (tokenizedMimeType.length > 1) {
-      // there was a ';' in there, take the first value
-      return tokenizedMimeType[0];
-    } else {
-      // there wasn't a ';', so just return the orig type
-      return origType;
+    // take the value before the first ';' if followed by any parameter,
+    // same as taking the first token of origType.split(";")
+    int sep = origType.indexOf(SEPARATOR_CHAR);
+    if (sep >= 0) {
+      for (int i = sep + 1; i < origType.length(); i++) {
+        if (origType.charAt(i) != SEPARATOR_CHAR) {
+          return origType.substring(0, sep);
+        }
+      }
     }
+    // there wasn't a ';', so just return the orig type
+    return origType;
   }
 
   /**
@@ -150,36 +205,19 @@ public final class MimeUtil {
    * @return The correctly, automatically guessed {@link MimeType} name.
    */
   public String autoResolveContentType(String typeName, String url, byte[] data) {
-    String retType = null;
-    MimeType type = null;
-    String cleanedMimeType = null;
-
-    cleanedMimeType = MimeUtil.cleanMimeType(typeName);
-    // first try to get the type from the cleaned type name
-    if (cleanedMimeType != null) {
-      try {
-        type = mimeTypes.forName(cleanedMimeType);
-        cleanedMimeType = type.getName();
-      } catch (MimeTypeException mte) {
-        // Seems to be a malformed mime type name...
-        cleanedMimeType = null;
+    String[] resolution = typeName != null ? resolved.get(typeName) : null;
+    if (resolution == null) {
+      resolution = resolveTypeName(typeName);
+      if (typeName != null && resolved.size() < MAX_RESOLVED) {
+        resolved.put(typeName, resolution);
       }
     }
-
-    // if returned null, or if it's the default type then try url resolution
-    if (type == null
-        || (type != null && type.getName().equals(MimeTypes.OCTET_STREAM))) {
+    String cleanedMimeType = resolution[0];
+    String retType = resolution[1];
+    if (retType == null) {
       // If no mime-type header, or cannot find a corresponding registered
       // mime-type, then guess a mime-type from the url pattern
-      try {
-        retType = tika.detect(url) != null ? tika.detect(url) : null;
-      } catch (Exception e) {
-        String message = "Problem loading default Tika configuration";
-        LOG.error(message, e);
-        throw new RuntimeException(e);
-      }
-    } else {
-      retType = type.getName();
+      retType = detectByName(url);
     }
 
     // if magic is enabled use mime magic to guess if the mime type returned
@@ -187,17 +225,20 @@ public final class MimeUtil {
     // if it is, and it's not the default mime type, then go with the mime type
     // returned by the magic
     if (this.mimeMagic) {
-      String magicType = null;
-      // pass URL (file name) and (cleansed) content type from protocol to Tika
-      Metadata tikaMeta = new Metadata();
-      tikaMeta.add(Metadata.RESOURCE_NAME_KEY, url);
-      tikaMeta.add(Metadata.CONTENT_TYPE,
-          (cleanedMimeType != null ? cleanedMimeType : typeName));
-      try {
-        try (InputStream stream = TikaInputStream.get(data)) {
-          magicType = mimeTypes.detect(stream, tikaMeta).toString();
+      String magicType = detectSignature(data, retType);
+      if (magicType == null) {
+        // pass URL (file name) and (cleansed) content type from protocol to
+        // Tika
+        Metadata tikaMeta = new Metadata();
+        tikaMeta.add(Metadata.RESOURCE_NAME_KEY, url);
+        tikaMeta.add(Metadata.CONTENT_TYPE,
+            (cleanedMimeType != null ? cleanedMimeType : typeName));
+        try {
+          try (InputStream stream = TikaInputStream.get(data)) {
+            magicType = mimeTypes.detect(stream, tikaMeta).toString();
+          }
+        } catch (IOException ignore) {
         }
-      } catch (IOException ignore) {
       }
 
       if (magicType != null && !magicType.equals(MimeTypes.OCTET_STREAM)
@@ -222,6 +263,113 @@ public final class MimeUtil {
     return retType;
   }
 
+  /**
+   * Resolve the content type from the type name.
+   * 
+   * @return the cleaned type name, if registered, and the registered type, or
+   *         null if the type name is missing, unknown or the default type
+   */
+  private String[] resolveTypeName(String typeName) {
+    MimeType type = null;
+    String cleanedMimeType = MimeUtil.cleanMimeType(typeName);
+    // first try to get the type from the cleaned type name
+    if (cleanedMimeType != null) {
+      try {
+        type = mimeTypes.forName(cleanedMimeType);
+        cleanedMimeType = type.getName();
+      } catch (MimeTypeException mte) {
+        // Seems to be a malformed mime type name...
+        cleanedMimeType = null;
+      }
+    }
+    String retType = null;
+    if (type != null && !type.getName().equals(MimeTypes.OCTET_STREAM)) {
+      retType = type.getName();
+    }
+    return new String[] { cleanedMimeType, retType };
+  }
+
+  /**
+   * Guess the content type from the URL. The result is memoized by the file
+   * name Tika's name detection sees, see {@link #getResourceName(String)}.
+   */
+  private String detectByName(String url) {
+    String key = getResourceName(url);
+    String type = key != null ? detectedByName.get(key) : null;
+    if (type == null) {
+      try {
+        type = tika.detect(url);
+      } catch (Exception e) {
+        String message = "Problem loading default Tika configuration";
+        LOG.error(message, e);
+        throw new RuntimeException(e);
+      }
+      if (key != null && type != null
+          && detectedByName.size() < MAX_RESOLVED) {
+        detectedByName.put(key, type);
+      }
+    }
+    return type;
+  }
+
+  /**
+   * Get the name used by Tika to detect the type of a URL: the last segment
+   * of the decoded path. The URL scheme is kept as part of the key, Tika may
+   * treat HTTP URLs differently.
+   * 
+   * @return scheme and file name, or null if the URL has no (parseable) last
+   *         path segment. Tika may then use other parts of the URL, e.g. the
+   *         host name, so that the detected type cannot be shared with other
+   *         URLs.
+   */
+  static String getResourceName(String url) {
+    if (url == null) {
+      return null;
+    }
+    try {
+      URI uri = new URI(url);
+      String path = uri.getPath();
+      if (path != null) {
+        int slash = path.lastIndexOf('/');
+        if (slash + 1 < path.length()) {
+          return uri.getScheme() + ':' + path.substring(slash + 1);
+        }
+      }
+    } catch (URISyntaxException e) {
+      // Tika uses the full URL
+    }
+    return null;
+  }
+
+  /**
+   * @return the type of a common format if the content starts with its
+   *         signature and the type resolved so far is the same type or
+   *         unknown, null otherwise
+   */
+  private static String detectSignature(byte[] data, String retType) {
+    if (data == null) {
+      return null;
+    }
+    for (Object[] signature : SIGNATURES) {
+      byte[] prefix = (byte[]) signature[0];
+      if (data.length < prefix.length) {
+        continue;
+      }
+      boolean match = true;
+      for (int i = 0; i < prefix.length && match; i++) {
+        match = data[i] == prefix[i];
+      }
+      if (match) {
+        String type = (String) signature[1];
+        if (type.equals(retType) || MimeTypes.OCTET_STREAM.equals(retType)) {
+          return type;
+        }
+        return null;
+      }
+    }
+    return null;
+  }
+
   /**
    * Facade interface to Tika's underlying {@link MimeTypes#getMimeType(String)}
    * method.
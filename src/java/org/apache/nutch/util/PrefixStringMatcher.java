@@ -17,6 +17,8 @@
 
 package org.apache.nutch.util;
 
+import java.io.DataInput;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.Iterator;
 
@@ -35,6 +37,7 @@ public class PrefixStringMatcher extends TrieStringMatcher {
     super();
     for (int i = 0; i < prefixes.length; i++)
       addPatternForward(prefixes[i]);
+    build();
   }
 
   /**
@@ -51,6 +54,21 @@ public class PrefixStringMatcher extends TrieStringMatcher {
     Iterator<String> iter = prefixes.iterator();
     while (iter.hasNext())
       addPatternForward(iter.next());
+    build();
+  }
+
+  private PrefixStringMatcher() {
+    super();
+  }
+
+  /**
+   * Reads a <code>PrefixStringMatcher</code> written by
+   * {@link #write(java.io.DataOutput)}.
+   */
+  public static PrefixStringMatcher read(DataInput in) throws IOException {
+    PrefixStringMatcher matcher = new PrefixStringMatcher();
+    matcher.readFields(in);
+    return matcher;
   }
 
   /**
@@ -58,12 +76,12 @@ public class PrefixStringMatcher extends TrieStringMatcher {
    * trie
    */
   public boolean matches(String input) {
-    TrieNode node = root;
+    int state = ROOT;
     for (int i = 0; i < input.length(); i++) {
-      node = node.getChild(input.charAt(i));
-      if (node == null)
+      state = nextState(state, input.charAt(i));
+      if (state == NO_STATE)
         return false;
-      if (node.isTerminal())
+      if (isTerminal(state))
         return true;
     }
     return false;
@@ -74,12 +92,12 @@ public class PrefixStringMatcher extends TrieStringMatcher {
    * or <code>null</code> if no match exists.
    */
   public String shortestMatch(String input) {
-    TrieNode node = root;
+    int state = ROOT;
     for (int i = 0; i < input.length(); i++) {
-      node = node.getChild(input.charAt(i));
-      if (node == null)
+      state = nextState(state, input.charAt(i));
+      if (state == NO_STATE)
         return null;
-      if (node.isTerminal())
+      if (isTerminal(state))
         return input.substring(0, i + 1);
     }
     return null;
@@ -90,13 +108,13 @@ public class PrefixStringMatcher extends TrieStringMatcher {
    * or <code>null</code> if no match exists.
    */
   public String longestMatch(String input) {
-    TrieNode node = root;
+    int state = ROOT;
     String result = null;
     for (int i = 0; i < input.length(); i++) {
-      node = node.getChild(input.charAt(i));
-      if (node == null)
+      state = nextState(state, input.charAt(i));
+      if (state == NO_STATE)
         break;
-      if (node.isTerminal())
+      if (isTerminal(state))
         result = input.substring(0, i + 1);
     }
     return result;
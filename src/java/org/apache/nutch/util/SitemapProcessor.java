@@ -20,6 +20,7 @@ package org.apache.nutch.util;
 import java.io.IOException;
 import java.net.URL;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Random;
@@ -182,6 +183,15 @@ public class SitemapProcessor extends Configured implements Tool {
       return url;
     }
 
+    /* Filters and or normalizes the input URLs in place */
+    private void filterNormalize(String[] urls) {
+      if (normalizers != null)
+        normalizers.normalize(urls, URLNormalizers.SCOPE_DEFAULT);
+
+      if (filters != null)
+        filters.filter(urls);
+    }
+
     private void generateSitemapUrlDatum(Protocol protocol, String url, Context context) throws Exception {
       ProtocolOutput output = protocol.getProtocolOutput(new Text(url), datum);
       ProtocolStatus status = output.getStatus();
@@ -215,36 +225,46 @@ public class SitemapProcessor extends Configured implements Tool {
       if(asm instanceof SiteMap) {
         SiteMap sm = (SiteMap) asm;
         Collection<SiteMapURL> sitemapUrls = sm.getSiteMapUrls();
+        List<SiteMapURL> acceptedUrls = new ArrayList<>(sitemapUrls.size());
         for(SiteMapURL sitemapUrl: sitemapUrls) {
           // If 'strict' is ON, only allow valid urls. Else allow all urls
           if(!strict || sitemapUrl.isValid()) {
-            String key = filterNormalize(sitemapUrl.getUrl().toString());
-
-            if (key != null) {
-              CrawlDatum sitemapUrlDatum = new CrawlDatum();
-              sitemapUrlDatum.setStatus(CrawlDatum.STATUS_INJECTED);
-              sitemapUrlDatum.setScore((float) sitemapUrl.getPriority());
-
-              if(sitemapUrl.getChangeFrequency() != null) {
-                int fetchInterval = -1;
-                switch(sitemapUrl.getChangeFrequency()) {
-                  case ALWAYS:  fetchInterval = 1;        break;
-                  case HOURLY:  fetchInterval = 3600;     break; // 60*60
-                  case DAILY:   fetchInterval = 86400;    break; // 60*60*24
-                  case WEEKLY:  fetchInterval = 604800;   break; // 60*60*24*7
-                  case MONTHLY: fetchInterval = 2592000;  break; // 60*60*24*30
-                  case YEARLY:  fetchInterval = 31536000; break; // 60*60*24*365
-                  case NEVER:   fetchInterval = Integer.MAX_VALUE; break; // Loose "NEVER" contract
-                }
-                sitemapUrlDatum.setFetchInterval(fetchInterval);
-              }
-
-              if(sitemapUrl.getLastModified() != null) {
-                sitemapUrlDatum.setModifiedTime(sitemapUrl.getLastModified().getTime());
+            acceptedUrls.add(sitemapUrl);
+          }
+        }
+        String[] keys = new String[acceptedUrls.size()];
+        for (int i = 0; i < keys.length; i++) {
+          keys[i] = acceptedUrls.get(i).getUrl().toString();
+        }
+        filterNormalize(keys);
+
+        for (int i = 0; i < keys.length; i++) {
+          SiteMapURL sitemapUrl = acceptedUrls.get(i);
+          String key = keys[i];
+          if (key != null) {
+            CrawlDatum sitemapUrlDatum = new CrawlDatum();
+            sitemapUrlDatum.setStatus(CrawlDatum.STATUS_INJECTED);
+            sitemapUrlDatum.setScore((float) sitemapUrl.getPriority());
+
+            if(sitemapUrl.getChangeFrequency() != null) {
+              int fetchInterval = -1;
+              switch(sitemapUrl.getChangeFrequency()) {
+                case ALWAYS:  fetchInterval = 1;        break;
+                case HOURLY:  fetchInterval = 3600;     break; // 60*60
+                case DAILY:   fetchInterval = 86400;    break; // 60*60*24
+                case WEEKLY:  fetchInterval = 604800;   break; // 60*60*24*7
+                case MONTHLY: fetchInterval = 2592000;  break; // 60*60*24*30
+                case YEARLY:  fetchInterval = 31536000; break; // 60*60*24*365
+                case NEVER:   fetchInterval = Integer.MAX_VALUE; break; // Loose "NEVER" contract
               }
+              sitemapUrlDatum.setFetchInterval(fetchInterval);
+            }
 
-              context.write(new Text(key), sitemapUrlDatum);
+            if(sitemapUrl.getLastModified() != null) {
+              sitemapUrlDatum.setModifiedTime(sitemapUrl.getLastModified().getTime());
             }
+
+            context.write(new Text(key), sitemapUrlDatum);
           }
         }
       }
@@ -17,6 +17,8 @@
 
 package org.apache.nutch.util;
 
+import java.io.DataInput;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.Iterator;
 
@@ -34,6 +36,7 @@ public class SuffixStringMatcher extends TrieStringMatcher {
     super();
     for (int i = 0; i < suffixes.length; i++)
       addPatternBackward(suffixes[i]);
+    build();
   }
 
   /**
@@ -46,6 +49,21 @@ public class SuffixStringMatcher extends TrieStringMatcher {
     Iterator<String> iter = suffixes.iterator();
     while (iter.hasNext())
       addPatternBackward(iter.next());
+    build();
+  }
+
+  private SuffixStringMatcher() {
+    super();
+  }
+
+  /**
+   * Reads a <code>SuffixStringMatcher</code> written by
+   * {@link #write(java.io.DataOutput)}.
+   */
+  public static SuffixStringMatcher read(DataInput in) throws IOException {
+    SuffixStringMatcher matcher = new SuffixStringMatcher();
+    matcher.readFields(in);
+    return matcher;
   }
 
   /**
@@ -53,12 +71,12 @@ public class SuffixStringMatcher extends TrieStringMatcher {
    * trie
    */
   public boolean matches(String input) {
-    TrieNode node = root;
+    int state = ROOT;
     for (int i = input.length() - 1; i >= 0; i--) {
-      node = node.getChild(input.charAt(i));
-      if (node == null)
+      state = nextState(state, input.charAt(i));
+      if (state == NO_STATE)
         return false;
-      if (node.isTerminal())
+      if (isTerminal(state))
         return true;
     }
     return false;
@@ -69,12 +87,12 @@ public class SuffixStringMatcher extends TrieStringMatcher {
    * or <code>null</code> if no match exists.
    */
   public String shortestMatch(String input) {
-    TrieNode node = root;
+    int state = ROOT;
     for (int i = input.length() - 1; i >= 0; i--) {
-      node = node.getChild(input.charAt(i));
-      if (node == null)
+      state = nextState(state, input.charAt(i));
+      if (state == NO_STATE)
         return null;
-      if (node.isTerminal())
+      if (isTerminal(state))
         return input.substring(i);
     }
     return null;
@@ -85,13 +103,13 @@ public class SuffixStringMatcher extends TrieStringMatcher {
    * or <code>null</code> if no match exists.
    */
   public String longestMatch(String input) {
-    TrieNode node = root;
+    int state = ROOT;
     String result = null;
     for (int i = input.length() - 1; i >= 0; i--) {
-      node = node.getChild(input.charAt(i));
-      if (node == null)
+      state = nextState(state, input.charAt(i));
+      if (state == NO_STATE)
         break;
-      if (node.isTerminal())
+      if (isTerminal(state))
         result = input.substring(i);
     }
     return result;
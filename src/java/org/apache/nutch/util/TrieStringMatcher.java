@@ -17,17 +17,67 @@
 
 package org.apache.nutch.util;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.LinkedList;
 import java.util.ListIterator;
+import java.util.Queue;
 
 /**
  * TrieStringMatcher is a base class for simple tree-based string matching.
  * 
+ * <p>
+ * Patterns are added to a tree of {@link TrieNode}s which is then packed into
+ * a <a href="https://linux.thai.net/~thep/datrie/datrie.html">double-array
+ * trie</a> by {@link #build()}: two integer arrays <code>base</code> and
+ * <code>check</code>, the transition from state <code>s</code> by character
+ * code <code>c</code> leads to state <code>t = base[s] + c</code> if
+ * <code>check[t] == s</code>. Characters are mapped to dense codes, so that
+ * the arrays stay compact. The packed trie can be serialized with
+ * {@link #write(DataOutput)} and loaded with {@link #readFields(DataInput)}
+ * without building the tree again, e.g. by the prefix and suffix URL filters
+ * which accept prebuilt tries instead of plain-text rule files.
+ * </p>
  */
 public abstract class TrieStringMatcher {
+
+  /** State of the packed trie to start matching from. */
+  protected static final int ROOT = 0;
+
+  /** Returned by {@link #nextState(int, char)} if there is no transition. */
+  protected static final int NO_STATE = -1;
+
+  private static final int FREE = -1;
+
+  /** "NTRI", start of a serialized trie */
+  private static final int MAGIC = 0x4e545249;
+
+  private static final int VERSION = 1;
+
+  /** number of free positions tried when packing before appending a node */
+  private static final int MAX_TRIES = 32;
+
+  /**
+   * Root of the tree the patterns are added to, set to null when the trie is
+   * packed.
+   */
   protected TrieNode root;
 
+  /** dense code (starting with 1) of every character, 0 if not used */
+  private char[] codes = new char[0];
+
+  private int[] base = new int[] { 0 };
+
+  private int[] check = new int[] { FREE - 1 };
+
+  /** terminal states as bit set */
+  private long[] terminal = new long[1];
+
   protected TrieStringMatcher() {
     this.root = new TrieNode('\000', false);
   }
@@ -103,11 +153,7 @@ public abstract class TrieStringMatcher {
      * returned.
      */
     TrieNode getChild(char nextChar) {
-      if (children == null) {
-        children = childrenList.toArray(new TrieNode[childrenList.size()]);
-        childrenList = null;
-        Arrays.sort(children);
-      }
+      TrieNode[] children = getChildren();
 
       int min = 0;
       int max = children.length - 1;
@@ -130,6 +176,18 @@ public abstract class TrieStringMatcher {
       return null;
     }
 
+    /**
+     * Returns the children of this node, sorted by their node-character.
+     */
+    TrieNode[] getChildren() {
+      if (children == null) {
+        children = childrenList.toArray(new TrieNode[childrenList.size()]);
+        childrenList = null;
+        Arrays.sort(children);
+      }
+      return children;
+    }
+
     public int compareTo(TrieNode other) {
       if (this.nodeChar < other.nodeChar)
         return -1;
@@ -143,7 +201,9 @@ public abstract class TrieStringMatcher {
   /**
    * Returns the next {@link TrieNode} visited, given that you are at
    * <code>node</code>, and the the next character in the input is the
-   * <code>idx</code>'th character of <code>s</code>.
+   * <code>idx</code>'th character of <code>s</code>. Only usable before the
+   * trie is packed by {@link #build()}, use {@link #nextState(int, char)}
+   * afterwards.
    */
   protected final TrieNode matchChar(TrieNode node, String s, int idx) {
     return node.getChild(s.charAt(idx));
@@ -179,6 +239,217 @@ public abstract class TrieStringMatcher {
     }
   }
 
+  /**
+   * Pack the tree of {@link TrieNode}s into the double-array trie used for
+   * matching. Must be called after all patterns have been added, no patterns
+   * can be added afterwards.
+   */
+  protected final void build() {
+    // map characters to dense codes
+    BitSet used = new BitSet();
+    Queue<TrieNode> nodes = new ArrayDeque<>();
+    nodes.add(root);
+    while (!nodes.isEmpty()) {
+      for (TrieNode child : nodes.remove().getChildren()) {
+        used.set(child.nodeChar);
+        nodes.add(child);
+      }
+    }
+    codes = new char[used.length()];
+    char code = 0;
+    for (int c = used.nextSetBit(0); c >= 0; c = used.nextSetBit(c + 1)) {
+      codes[c] = ++code;
+    }
+
+    // place the nodes in breadth-first order
+    base = new int[1024];
+    check = new int[1024];
+    Arrays.fill(check, FREE);
+    check[ROOT] = FREE - 1; // occupied by the root
+    terminal = new long[1024 / 64];
+    int size = 1;
+    int nextCheckPos = 1;
+    Queue<TrieNode> queue = new ArrayDeque<>();
+    Queue<Integer> states = new ArrayDeque<>();
+    queue.add(root);
+    states.add(ROOT);
+    while (!queue.isEmpty()) {
+      TrieNode[] children = queue.remove().getChildren();
+      int state = states.remove();
+      if (children.length == 0) {
+        continue;
+      }
+      int first = codes[children[0].nodeChar];
+      int last = codes[children[children.length - 1].nodeChar];
+
+      // find the first base where all children fit
+      int begin;
+      int pos = Math.max(first + 1, nextCheckPos) - 1;
+      int occupied = 0;
+      int tries = 0;
+      boolean firstFree = true;
+      search: while (true) {
+        pos++;
+        if (tries == MAX_TRIES && pos < size) {
+          // do not search the holes any further, append after the last state
+          pos = size;
+        }
+        ensureCapacity(pos + 1);
+        if (check[pos] != FREE) {
+          occupied++;
+          continue;
+        } else if (firstFree) {
+          nextCheckPos = pos;
+          firstFree = false;
+        }
+        tries++;
+        begin = pos - first;
+        ensureCapacity(begin + last + 1);
+        for (TrieNode child : children) {
+          if (check[begin + codes[child.nodeChar]] != FREE) {
+            continue search;
+          }
+        }
+        break;
+      }
+      // skip densely occupied regions in later searches
+      if (occupied > 0.95 * (pos - nextCheckPos + 1)) {
+        nextCheckPos = pos;
+      }
+
+      base[state] = begin;
+      for (TrieNode child : children) {
+        int target = begin + codes[child.nodeChar];
+        check[target] = state;
+        if (child.isTerminal()) {
+          terminal[target >>> 6] |= 1L << target;
+        }
+        size = Math.max(size, target + 1);
+        queue.add(child);
+        states.add(target);
+      }
+    }
+    base = Arrays.copyOf(base, size);
+    check = Arrays.copyOf(check, size);
+    terminal = Arrays.copyOf(terminal, (size + 63) >>> 6);
+    root = null;
+  }
+
+  private void ensureCapacity(int size) {
+    if (size > check.length) {
+      int length = Math.max(size, check.length * 2);
+      base = Arrays.copyOf(base, length);
+      int oldLength = check.length;
+      check = Arrays.copyOf(check, length);
+      Arrays.fill(check, oldLength, length, FREE);
+      terminal = Arrays.copyOf(terminal, (length + 63) >>> 6);
+    }
+  }
+
+  /**
+   * Returns the state reached from <code>state</code> by the character
+   * <code>c</code>, or {@link #NO_STATE} if there is no such transition.
+   */
+  protected final int nextState(int state, char c) {
+    if (c >= codes.length || codes[c] == 0) {
+      return NO_STATE;
+    }
+    int target = base[state] + codes[c];
+    if (target >= check.length || check[target] != state) {
+      return NO_STATE;
+    }
+    return target;
+  }
+
+  /**
+   * Returns <code>true</code> if a pattern ends in <code>state</code>.
+   */
+  protected final boolean isTerminal(int state) {
+    return (terminal[state >>> 6] & (1L << state)) != 0;
+  }
+
+  /** @return number of states of the packed trie */
+  public int size() {
+    return check.length;
+  }
+
+  /**
+   * Serialize the packed trie. The serialized form starts with a magic number
+   * (see {@link #isSerialized(InputStream)}) and the name of the matcher
+   * class.
+   */
+  public void write(DataOutput out) throws IOException {
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeUTF(getClass().getName());
+    out.writeInt(codes.length);
+    for (char c : codes) {
+      out.writeChar(c);
+    }
+    out.writeInt(check.length);
+    for (int i = 0; i < check.length; i++) {
+      out.writeInt(base[i]);
+      out.writeInt(check[i]);
+    }
+    for (long bits : terminal) {
+      out.writeLong(bits);
+    }
+  }
+
+  /** Load a packed trie written by {@link #write(DataOutput)}. */
+  protected void readFields(DataInput in) throws IOException {
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Not a serialized trie");
+    }
+    int version = in.readInt();
+    if (version != VERSION) {
+      throw new IOException("Unsupported trie version " + version);
+    }
+    String type = in.readUTF();
+    if (!type.equals(getClass().getName())) {
+      throw new IOException("Cannot read " + type + " as "
+          + getClass().getName());
+    }
+    codes = new char[in.readInt()];
+    for (int i = 0; i < codes.length; i++) {
+      codes[i] = in.readChar();
+    }
+    int size = in.readInt();
+    base = new int[size];
+    check = new int[size];
+    for (int i = 0; i < size; i++) {
+      base[i] = in.readInt();
+      check[i] = in.readInt();
+    }
+    terminal = new long[(size + 63) >>> 6];
+    for (int i = 0; i < terminal.length; i++) {
+      terminal[i] = in.readLong();
+    }
+    root = null;
+  }
+
+  /**
+   * Returns <code>true</code> if the stream starts with a trie written by
+   * {@link #write(DataOutput)}. The stream must support
+   * {@link InputStream#mark(int)}, it is reset to its start.
+   */
+  public static boolean isSerialized(InputStream in) throws IOException {
+    in.mark(4);
+    try {
+      int magic = 0;
+      for (int i = 0; i < 4; i++) {
+        int b = in.read();
+        if (b < 0) {
+          return false;
+        }
+        magic = (magic << 8) | b;
+      }
+      return magic == MAGIC;
+    } finally {
+      in.reset();
+    }
+  }
+
   /**
    * Returns true if the given <code>String</code> is matched by a pattern in
    * the trie
@@ -100,17 +100,16 @@ public class URLUtil {
     if (IP_PATTERN.matcher(host).matches())
       return host;
 
-    int index = 0;
-    String candidate = host;
-    for (; index >= 0;) {
-      index = candidate.indexOf('.');
-      String subCandidate = candidate.substring(index + 1);
-      if (tlds.isDomainSuffix(subCandidate)) {
-        return candidate;
+    // look up the suffixes of the host name without creating substrings
+    int start = 0;
+    int index;
+    while ((index = host.indexOf('.', start)) >= 0) {
+      if (tlds.get(host, index + 1, host.length()) != null) {
+        break;
       }
-      candidate = subCandidate;
+      start = index + 1;
     }
-    return candidate;
+    return start == 0 ? host : host.substring(start);
   }
 
   /**
@@ -204,18 +203,16 @@ public class URLUtil {
     if (IP_PATTERN.matcher(host).matches())
       return null;
 
-    int index = 0;
-    String candidate = host;
-    for (; index >= 0;) {
-      index = candidate.indexOf('.');
-      String subCandidate = candidate.substring(index + 1);
-      DomainSuffix d = tlds.get(subCandidate);
-      if (d != null) {
+    int start = 0;
+    while (true) {
+      int index = host.indexOf('.', start);
+      DomainSuffix d = tlds.get(host, index < 0 ? start : index + 1,
+          host.length());
+      if (d != null || index < 0) {
         return d;
       }
-      candidate = subCandidate;
+      start = index + 1;
     }
-    return null;
   }
 
   /**
@@ -37,6 +37,12 @@ public class DomainSuffixes {
 
   private HashMap<String, DomainSuffix> domains = new HashMap<>();
 
+  /**
+   * Open-addressing hash table of all suffixes, to look up parts of host
+   * names without creating substrings
+   */
+  private DomainSuffix[] table;
+
   private static DomainSuffixes instance;
 
   /** private ctor */
@@ -49,6 +55,23 @@ public class DomainSuffixes {
     } catch (Exception ex) {
       LOG.warn(StringUtils.stringifyException(ex));
     }
+    table = new DomainSuffix[Integer.highestOneBit(domains.size() * 2 + 1) * 2];
+    for (DomainSuffix suffix : domains.values()) {
+      String domain = suffix.getDomain();
+      int i = hash(domain, 0, domain.length()) & (table.length - 1);
+      while (table[i] != null) {
+        i = (i + 1) & (table.length - 1);
+      }
+      table[i] = suffix;
+    }
+  }
+
+  private static int hash(String s, int start, int end) {
+    int h = 0;
+    for (int i = start; i < end; i++) {
+      h = 31 * h + s.charAt(i);
+    }
+    return h ^ (h >>> 16);
   }
 
   /**
@@ -84,4 +107,29 @@ public class DomainSuffixes {
     return domains.get(extension);
   }
 
+  /**
+   * Return the {@link DomainSuffix} object for a part of a host name.
+   * 
+   * @param host
+   *          host name
+   * @param start
+   *          start index of the extension in the host name
+   * @param end
+   *          end index (exclusive) of the extension in the host name
+   */
+  public DomainSuffix get(String host, int start, int end) {
+    int length = end - start;
+    int i = hash(host, start, end) & (table.length - 1);
+    DomainSuffix suffix;
+    while ((suffix = table[i]) != null) {
+      String domain = suffix.getDomain();
+      if (domain.length() == length
+          && host.regionMatches(start, domain, 0, length)) {
+        return suffix;
+      }
+      i = (i + 1) & (table.length - 1);
+    }
+    return null;
+  }
+
 }
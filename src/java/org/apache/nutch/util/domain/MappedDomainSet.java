@@ -0,0 +1,329 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.util.domain;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandles;
+import java.net.IDN;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Immutable set of domain names, host names or domain suffixes in a compact
+ * binary format, built offline from a plain-text list (see
+ * {@link #main(String[])}) and memory-mapped at runtime. The set lives outside
+ * the Java heap and is shared through the operating system's page cache by
+ * all tasks reading the same file. Lookups do not allocate memory, except for
+ * names containing non-ASCII characters which are converted to their ASCII
+ * form (see {@link IDN#toASCII(String)}).
+ * 
+ * <p>
+ * File format: magic number, version, number of entries, length of the data
+ * section (all 4-byte integers), followed by the offsets of the entries in
+ * the data section (4-byte integers, one per entry plus the end offset) and
+ * the data section holding the sorted entries as ASCII bytes.
+ * </p>
+ */
+public class MappedDomainSet {
+
+  private static final Logger LOG = LoggerFactory
+      .getLogger(MethodHandles.lookup().lookupClass());
+
+  /** "NDOM" */
+  private static final int MAGIC = 0x4e444f4d;
+
+  private static final int VERSION = 1;
+
+  private static final int HEADER_LENGTH = 16;
+
+  /** sets already opened, by file path or URL */
+  private static final Map<String, MappedDomainSet> SETS = new HashMap<>();
+
+  private final ByteBuffer buffer;
+
+  private final int size;
+
+  private final int dataStart;
+
+  private MappedDomainSet(ByteBuffer buffer) throws IOException {
+    this.buffer = buffer;
+    if (buffer.capacity() < HEADER_LENGTH || buffer.getInt(0) != MAGIC) {
+      throw new IOException("Not a domain set");
+    }
+    if (buffer.getInt(4) != VERSION) {
+      throw new IOException("Unsupported domain set version "
+          + buffer.getInt(4));
+    }
+    size = buffer.getInt(8);
+    dataStart = HEADER_LENGTH + 4 * (size + 1);
+    if (dataStart + buffer.getInt(12) != buffer.capacity()) {
+      throw new IOException("Truncated domain set");
+    }
+  }
+
+  /**
+   * Memory-map a domain set file. Files are mapped only once per JVM.
+   */
+  public static MappedDomainSet open(File file) throws IOException {
+    String key = file.getCanonicalPath() + "@" + file.lastModified();
+    synchronized (SETS) {
+      MappedDomainSet set = SETS.get(key);
+      if (set == null) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+            FileChannel channel = raf.getChannel()) {
+          set = new MappedDomainSet(channel.map(FileChannel.MapMode.READ_ONLY,
+              0, channel.size()));
+        }
+        LOG.info("Mapped domain set {} with {} entries", file, set.size);
+        SETS.put(key, set);
+      }
+      return set;
+    }
+  }
+
+  /**
+   * Load a domain set from a file on the class path, e.g., contained in the
+   * job file, or from the local file system.
+   * 
+   * @param conf
+   *          configuration to locate the file
+   * @param file
+   *          name of the file
+   * @return the domain set or null if the file is not a domain set
+   */
+  public static MappedDomainSet load(Configuration conf, String file)
+      throws IOException {
+    URL url = conf.getResource(file);
+    File localFile = null;
+    if (url == null) {
+      localFile = new File(file);
+    } else if ("file".equals(url.getProtocol())) {
+      try {
+        localFile = new File(url.toURI());
+      } catch (URISyntaxException e) {
+        localFile = new File(url.getPath());
+      }
+    }
+    if (localFile != null) {
+      if (!localFile.isFile() || !isDomainSet(new FileInputStream(localFile))) {
+        return null;
+      }
+      return open(localFile);
+    }
+    if (!isDomainSet(url.openStream())) {
+      return null;
+    }
+    // not a local file: read it into a direct buffer
+    String key = url.toString();
+    synchronized (SETS) {
+      MappedDomainSet set = SETS.get(key);
+      if (set == null) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream in = url.openStream()) {
+          byte[] buf = new byte[65536];
+          int n;
+          while ((n = in.read(buf)) > 0) {
+            bytes.write(buf, 0, n);
+          }
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.size());
+        buffer.put(bytes.toByteArray());
+        set = new MappedDomainSet(buffer);
+        LOG.info("Loaded domain set {} with {} entries", url, set.size);
+        SETS.put(key, set);
+      }
+      return set;
+    }
+  }
+
+  private static boolean isDomainSet(InputStream in) throws IOException {
+    try {
+      byte[] magic = new byte[4];
+      int n = 0;
+      while (n < magic.length) {
+        int read = in.read(magic, n, magic.length - n);
+        if (read < 0) {
+          return false;
+        }
+        n += read;
+      }
+      return ByteBuffer.wrap(magic).getInt() == MAGIC;
+    } finally {
+      in.close();
+    }
+  }
+
+  /** @return number of entries */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @param name
+   *          lowercase domain name, host name or domain suffix
+   * @return true if the set contains the name
+   */
+  public boolean contains(String name) {
+    if (name == null) {
+      return false;
+    }
+    for (int i = 0; i < name.length(); i++) {
+      if (name.charAt(i) >= 0x80) {
+        name = toASCII(name);
+        if (name == null) {
+          return false;
+        }
+        break;
+      }
+    }
+    int lo = 0;
+    int hi = size - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      int cmp = compare(mid, name);
+      if (cmp < 0) {
+        lo = mid + 1;
+      } else if (cmp > 0) {
+        hi = mid - 1;
+      } else {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** compare entry with ASCII string */
+  private int compare(int entry, String name) {
+    int start = dataStart + buffer.getInt(HEADER_LENGTH + 4 * entry);
+    int length = dataStart + buffer.getInt(HEADER_LENGTH + 4 * (entry + 1))
+        - start;
+    int n = Math.min(length, name.length());
+    for (int i = 0; i < n; i++) {
+      int diff = (buffer.get(start + i) & 0xff) - name.charAt(i);
+      if (diff != 0) {
+        return diff;
+      }
+    }
+    return length - name.length();
+  }
+
+  private static String toASCII(String name) {
+    try {
+      return IDN.toASCII(name, IDN.ALLOW_UNASSIGNED).toLowerCase();
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Write a domain set file.
+   * 
+   * @param names
+   *          domain names, host names or domain suffixes, converted to
+   *          lowercase
+   * @param file
+   *          output file
+   * @return number of entries written
+   */
+  public static int write(List<String> names, File file) throws IOException {
+    List<String> entries = new ArrayList<>(names.size());
+    for (String name : names) {
+      String entry = toASCII(name.trim().toLowerCase());
+      if (entry == null || entry.isEmpty()) {
+        LOG.warn("Skipping invalid name: {}", name);
+        continue;
+      }
+      entries.add(entry);
+    }
+    Collections.sort(entries);
+    int size = 0;
+    long dataLength = 0;
+    for (int i = 0; i < entries.size(); i++) {
+      if (i == 0 || !entries.get(i).equals(entries.get(i - 1))) {
+        entries.set(size++, entries.get(i));
+        dataLength += entries.get(i).length();
+      }
+    }
+    if (HEADER_LENGTH + 4L * (size + 1) + dataLength > Integer.MAX_VALUE) {
+      throw new IOException("Too many entries for one domain set");
+    }
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+        new FileOutputStream(file)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(size);
+      out.writeInt((int) dataLength);
+      int offset = 0;
+      for (int i = 0; i < size; i++) {
+        out.writeInt(offset);
+        offset += entries.get(i).length();
+      }
+      out.writeInt(offset);
+      for (int i = 0; i < size; i++) {
+        out.write(entries.get(i).getBytes(StandardCharsets.US_ASCII));
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Build a domain set file from a plain-text list with one name per line.
+   * Blank lines and lines starting with <code>#</code> are skipped.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("Usage: MappedDomainSet <input_list> <output_file>");
+      System.exit(-1);
+    }
+    List<String> names = new ArrayList<>();
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+        new FileInputStream(args[0]), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (StringUtils.isNotBlank(line) && !line.startsWith("#")) {
+          names.add(line);
+        }
+      }
+    }
+    int size = write(names, new File(args[1]));
+    LOG.info("Wrote {} entries to {}", size, args[1]);
+  }
+
+}
@@ -294,7 +294,7 @@ public class MoreIndexingFilter implements IndexingFilter {
 
   public void setConf(Configuration conf) {
     this.conf = conf;
-    MIME = new MimeUtil(conf);
+    MIME = MimeUtil.get(conf);
 
     if (conf.getBoolean("moreIndexingFilter.mapMimeTypes", false) == true) {
       mapMimes = true;
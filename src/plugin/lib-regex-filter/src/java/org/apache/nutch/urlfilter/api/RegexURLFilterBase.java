@@ -25,9 +25,10 @@ import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.io.IOException;
 import java.io.StringReader;
-import java.net.MalformedURLException;
+import java.util.HashMap;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
 
 // Commons Logging imports
 import org.slf4j.Logger;
@@ -38,7 +39,6 @@ import org.apache.hadoop.conf.Configuration;
 
 // Nutch imports
 import org.apache.nutch.net.*;
-import org.apache.nutch.util.URLUtil;
 
 /**
  * Generic {@link org.apache.nutch.net.URLFilter URL filter} based on regular
@@ -61,7 +61,7 @@ import org.apache.nutch.util.URLUtil;
  * 
  * @author J&eacute;r&ocirc;me Charron
  */
-public abstract class RegexURLFilterBase implements URLFilter {
+public abstract class RegexURLFilterBase implements ParsedURLFilter {
 
   /** My logger */
   private static final Logger LOG = LoggerFactory
@@ -70,6 +70,20 @@ public abstract class RegexURLFilterBase implements URLFilter {
   /** An array of applicable rules */
   private List<RegexRule> rules;
 
+  /** The rules not scoped to a host or domain compiled into one matcher */
+  private RuleSetMatcher matcher;
+
+  /** Indexes of the rules not scoped to a host or domain */
+  private int[] matcherRules;
+
+  /** Indexes of the rules scoped to a host or domain, by host or domain */
+  private Map<String, int[]> scopedRules;
+
+  /** Whether any rule accepts URLs */
+  private boolean acceptRules;
+
+  private static final int[] NO_RULES = new int[0];
+
   /** The current configuration */
   private Configuration conf;
 
@@ -111,7 +125,7 @@ public abstract class RegexURLFilterBase implements URLFilter {
    */
   protected RegexURLFilterBase(Reader reader) throws IOException,
       IllegalArgumentException {
-    rules = readRules(reader);
+    setRules(readRules(reader));
   }
 
   /**
@@ -141,6 +155,20 @@ public abstract class RegexURLFilterBase implements URLFilter {
    */
   protected abstract RegexRule createRule(boolean sign, String regex, String hostOrDomain);
 
+  /**
+   * Compiles rules into a matcher which finds the first matching rule at
+   * once. Called for the rules not scoped to a host or domain, after the rules
+   * have been read. The default implementation returns <code>null</code>, the
+   * rules are then matched one by one.
+   * 
+   * @param rules
+   *          the rules, in order
+   * @return the matcher, or <code>null</code> to match the rules one by one
+   */
+  protected RuleSetMatcher compileRules(List<RegexRule> rules) {
+    return null;
+  }
+
   /**
    * Returns the name of the file of rules to use for a particular
    * implementation.
@@ -159,41 +187,131 @@ public abstract class RegexURLFilterBase implements URLFilter {
 
   // Inherited Javadoc
   public String filter(String url) {
-    String host = URLUtil.getHost(url);
-    String domain = null;
-    
-    try {
-      domain = URLUtil.getDomainName(url);
-    } catch (MalformedURLException e) {
-      // shouldnt happen here right?
+    if (!acceptRules) {
+      return null;
     }
-    
-    if (LOG.isDebugEnabled()) {
-      LOG.debug("URL belongs to host " + host + " and domain " + domain);
+    return accept(url, null) ? url : null;
+  }
+
+  /**
+   * Filter a parsed URL, the host and domain name needed to apply rules
+   * scoped to a host or domain are taken from the parsed URL.
+   */
+  public boolean filter(ParsedURL url) {
+    if (!acceptRules) {
+      return false;
     }
+    return accept(url.toString(), url);
+  }
 
-    for (RegexRule rule : rules) {
-      // Skip the skip for rules that don't share the same host and domain
-      if (rule.hostOrDomain() != null &&
-            !rule.hostOrDomain().equals(host) &&
-            !rule.hostOrDomain().equals(domain)) {
+  /**
+   * @return true if there is at least one rule accepting URLs, otherwise all
+   *         URLs are rejected
+   */
+  public boolean hasAcceptRules() {
+    return acceptRules;
+  }
+
+  private boolean accept(String url, ParsedURL parsed) {
+    int[] hostRules = NO_RULES;
+    int[] domainRules = NO_RULES;
+    if (!scopedRules.isEmpty()) {
+      if (parsed == null) {
+        parsed = new ParsedURL(url);
+      }
+      String host = parsed.getHost();
+      // if the URL cannot be parsed only rules not scoped to a host or domain
+      // apply
+      if (host != null) {
+        hostRules = getScopedRules(host);
+        if (mayHaveDomainRules(host)) {
+          String domain = parsed.getDomainName();
+          if (!domain.equals(host)) {
+            domainRules = getScopedRules(domain);
+          }
+        }
         if (LOG.isDebugEnabled()) {
-          LOG.debug("Skipping rule [" + rule.regex() + "] for host: " + rule.hostOrDomain());
+          LOG.debug("URL belongs to host " + host + ", " + hostRules.length
+              + " host rules, " + domainRules.length + " domain rules");
         }
+      }
+    }
 
-        continue;
+    int first = rules.size();
+    int[] globalRules = matcherRules;
+    if (matcher != null) {
+      int match = matcher.firstMatch(url);
+      if (match >= 0) {
+        first = matcherRules[match];
       }
-    
-      if (LOG.isDebugEnabled()) {
-        LOG.debug("Applying rule [" + rule.regex() + "] for host: " + host + " and domain " + domain);
+      // already checked by the matcher
+      globalRules = NO_RULES;
+    }
+
+    // apply the rules for all URLs, the host and the domain in their order
+    int g = 0, h = 0, d = 0;
+    while (true) {
+      int i = first;
+      if (g < globalRules.length && globalRules[g] < i) {
+        i = globalRules[g];
+      }
+      if (h < hostRules.length && hostRules[h] < i) {
+        i = hostRules[h];
+      }
+      if (d < domainRules.length && domainRules[d] < i) {
+        i = domainRules[d];
+      }
+      if (i == first) {
+        break;
+      }
+      if (g < globalRules.length && globalRules[g] == i) {
+        g++;
+      } else if (h < hostRules.length && hostRules[h] == i) {
+        h++;
+      } else {
+        d++;
       }
 
+      RegexRule rule = rules.get(i);
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Applying rule [" + rule.regex() + "] for host: "
+            + rule.hostOrDomain());
+      }
       if (rule.match(url)) {
-        return rule.accept() ? url : null;
+        return rule.accept();
       }
     }
-    ;
-    return null;
+    if (first < rules.size()) {
+      return rules.get(first).accept();
+    }
+    return false;
+  }
+
+  private int[] getScopedRules(String hostOrDomain) {
+    int[] indexes = scopedRules.get(hostOrDomain);
+    return indexes == null ? NO_RULES : indexes;
+  }
+
+  /**
+   * The domain name of a URL is its host or a suffix of the host following a
+   * dot. Determining the domain name requires a lookup of the domain
+   * suffixes, skip it if no rule is scoped to any candidate.
+   */
+  private boolean mayHaveDomainRules(String host) {
+    int end = host.endsWith(".") ? host.length() - 1 : host.length();
+    int start = 0;
+    while (start >= 0) {
+      if (scopedRules.containsKey(host.substring(start, end))) {
+        return true;
+      }
+      start = host.indexOf('.', start);
+      if (start >= 0 && start < end) {
+        start++;
+      } else {
+        start = -1;
+      }
+    }
+    return false;
   }
 
   /*
@@ -218,7 +336,7 @@ public abstract class RegexURLFilterBase implements URLFilter {
       throw new RuntimeException(e.getMessage(), e);
     }
     try {
-      rules = readRules(reader);
+      setRules(readRules(reader));
     } catch (IOException e) {
       if (LOG.isErrorEnabled()) {
         LOG.error(e.getMessage());
@@ -236,6 +354,51 @@ public abstract class RegexURLFilterBase implements URLFilter {
    * ------------------------------
    */
 
+  private void setRules(List<RegexRule> rules) {
+    List<RegexRule> globalRules = new ArrayList<RegexRule>();
+    List<Integer> indexes = new ArrayList<Integer>();
+    Map<String, List<Integer>> scoped = new HashMap<String, List<Integer>>();
+    for (int i = 0; i < rules.size(); i++) {
+      String hostOrDomain = rules.get(i).hostOrDomain();
+      if (hostOrDomain == null) {
+        globalRules.add(rules.get(i));
+        indexes.add(i);
+      } else {
+        List<Integer> list = scoped.get(hostOrDomain);
+        if (list == null) {
+          list = new ArrayList<Integer>();
+          scoped.put(hostOrDomain, list);
+        }
+        list.add(i);
+      }
+    }
+    RuleSetMatcher matcher = null;
+    if (!globalRules.isEmpty()) {
+      matcher = compileRules(globalRules);
+    }
+    Map<String, int[]> scopedRules = new HashMap<String, int[]>();
+    for (Map.Entry<String, List<Integer>> entry : scoped.entrySet()) {
+      scopedRules.put(entry.getKey(), toArray(entry.getValue()));
+    }
+    this.matcherRules = toArray(indexes);
+    this.scopedRules = scopedRules;
+    this.matcher = matcher;
+    this.rules = rules;
+    boolean acceptRules = false;
+    for (RegexRule rule : rules) {
+      acceptRules |= rule.accept();
+    }
+    this.acceptRules = acceptRules;
+  }
+
+  private static int[] toArray(List<Integer> list) {
+    int[] array = new int[list.size()];
+    for (int i = 0; i < array.length; i++) {
+      array[i] = list.get(i);
+    }
+    return array;
+  }
+
   /**
    * Read the specified file of rules.
    * 
@@ -30,6 +30,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 // Nutch imports
+import org.apache.nutch.net.ParsedURL;
+import org.apache.nutch.net.ParsedURLFilter;
 import org.apache.nutch.net.URLFilter;
 
 /**
@@ -97,6 +99,11 @@ public abstract class RegexURLFilterBaseTest {
       } else {
         Assert.assertFalse(expected[i].url, expected[i].sign);
       }
+      if (filter instanceof ParsedURLFilter) {
+        // same result for the parsed URL
+        Assert.assertEquals(expected[i].url, expected[i].sign,
+            ((ParsedURLFilter) filter).filter(new ParsedURL(expected[i].url)));
+      }
     }
   }
 
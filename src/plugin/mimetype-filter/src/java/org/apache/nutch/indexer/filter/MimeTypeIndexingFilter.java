@@ -142,7 +142,7 @@ public class MimeTypeIndexingFilter implements IndexingFilter {
   @Override
   public void setConf(Configuration conf) {
     this.conf = conf;
-    MIME = new MimeUtil(conf);
+    MIME = MimeUtil.get(conf);
 
     // load the file of the values
     String file = conf.get(MIMEFILTER_REGEX_FILE, "");
@@ -25,6 +25,7 @@ import java.util.HashMap;
 import java.util.Stack;
 
 import org.apache.nutch.parse.Outlink;
+import org.apache.nutch.util.DOMTextExtractor;
 import org.apache.nutch.util.NodeWalker;
 import org.apache.nutch.util.URLUtil;
 import org.apache.hadoop.conf.Configuration;
@@ -63,6 +64,7 @@ public class DOMContentUtils {
 
   private HashMap<String, LinkParams> linkParams = new HashMap<String, LinkParams>();
   private Configuration conf;
+  private DOMTextExtractor textExtractor;
 
   public DOMContentUtils(Configuration conf) {
     setConf(conf);
@@ -73,6 +75,7 @@ public class DOMContentUtils {
     Collection<String> forceTags = new ArrayList<String>(1);
 
     this.conf = conf;
+    textExtractor = new DOMTextExtractor(conf);
     linkParams.clear();
     linkParams.put("a", new LinkParams("a", "href", 1));
     linkParams.put("area", new LinkParams("area", "href", 0));
@@ -118,10 +121,7 @@ public class DOMContentUtils {
    */
   public boolean getText(StringBuffer sb, Node node,
       boolean abortOnNestedAnchors) {
-    if (getTextHelper(sb, node, abortOnNestedAnchors, 0)) {
-      return true;
-    }
-    return false;
+    return textExtractor.getText(sb, node, abortOnNestedAnchors);
   }
 
   /**
@@ -133,92 +133,9 @@ public class DOMContentUtils {
     getText(sb, node, false);
   }
 
-  // returns true if abortOnNestedAnchors is true and we find nested
-  // anchors
-  private boolean getTextHelper(StringBuffer sb, Node node,
-      boolean abortOnNestedAnchors, int anchorDepth) {
-    boolean abort = false;
-    NodeWalker walker = new NodeWalker(node);
-
-    while (walker.hasNext()) {
-
-      Node currentNode = walker.nextNode();
-      String nodeName = currentNode.getNodeName();
-      short nodeType = currentNode.getNodeType();
-
-      if ("script".equalsIgnoreCase(nodeName)) {
-        walker.skipChildren();
-      }
-      if ("style".equalsIgnoreCase(nodeName)) {
-        walker.skipChildren();
-      }
-      if (abortOnNestedAnchors && "a".equalsIgnoreCase(nodeName)) {
-        anchorDepth++;
-        if (anchorDepth > 1) {
-          abort = true;
-          break;
-        }
-      }
-      if (nodeType == Node.COMMENT_NODE) {
-        walker.skipChildren();
-      }
-      if (nodeType == Node.TEXT_NODE) {
-        // cleanup and trim the value
-        String text = currentNode.getNodeValue();
-        text = text.replaceAll("\\s+", " ");
-        text = text.trim();
-        if (text.length() > 0) {
-          appendSpace(sb);
-          sb.append(text);
-        } else {
-          appendParagraphSeparator(sb);
-        }
-      }
-    }
-
-    return abort;
-  }
-
-  /**
-   * Conditionally append a paragraph/line break to StringBuffer unless last
-   * character a already indicates a paragraph break. Also remove trailing space
-   * before paragraph break.
-   *
-   * @param buffer
-   *          StringBuffer to append paragraph break
-   */
-  private void appendParagraphSeparator(StringBuffer buffer) {
-    if (buffer.length() == 0) {
-      return;
-    }
-    char lastChar = buffer.charAt(buffer.length() - 1);
-    if ('\n' != lastChar) {
-      // remove white space before paragraph break
-      while (lastChar == ' ') {
-        buffer.deleteCharAt(buffer.length() - 1);
-        lastChar = buffer.charAt(buffer.length() - 1);
-      }
-      if ('\n' != lastChar) {
-        buffer.append('\n');
-      }
-    }
-  }
-
-  /**
-   * Conditionally append a space to StringBuffer unless last character is a
-   * space or line/paragraph break.
-   *
-   * @param buffer
-   *          StringBuffer to append space
-   */
-  private void appendSpace(StringBuffer buffer) {
-    if (buffer.length() == 0) {
-      return;
-    }
-    char lastChar = buffer.charAt(buffer.length() - 1);
-    if (' ' != lastChar && '\n' != lastChar) {
-      buffer.append(' ');
-    }
+  /** @return the text extractor configured for this instance */
+  DOMTextExtractor getTextExtractor() {
+    return textExtractor;
   }
 
   /**
@@ -229,28 +146,7 @@ public class DOMContentUtils {
    * @return true if a title node was found, false otherwise
    */
   public boolean getTitle(StringBuffer sb, Node node) {
-
-    NodeWalker walker = new NodeWalker(node);
-
-    while (walker.hasNext()) {
-
-      Node currentNode = walker.nextNode();
-      String nodeName = currentNode.getNodeName();
-      short nodeType = currentNode.getNodeType();
-
-      if ("body".equalsIgnoreCase(nodeName)) { // stop after HEAD
-        return false;
-      }
-
-      if (nodeType == Node.ELEMENT_NODE) {
-        if ("title".equalsIgnoreCase(nodeName)) {
-          getText(sb, currentNode);
-          return true;
-        }
-      }
-    }
-
-    return false;
+    return textExtractor.getTitle(sb, node);
   }
 
   /** If Node contains a BASE tag then it's HREF is returned. */
@@ -290,6 +186,33 @@ public class DOMContentUtils {
     return null;
   }
 
+  /**
+   * @return parameters of the link element <code>nodeName</code> (lower
+   *         case), null if the element is not a link or ignored
+   */
+  LinkParams getLinkParams(String nodeName) {
+    return linkParams.get(nodeName);
+  }
+
+  /**
+   * Create an {@link Outlink} from a link <code>target</code> found in the
+   * element <code>nodeName</code>.
+   */
+  Outlink createOutlink(URL base, String target, String anchor,
+      String nodeName) throws MalformedURLException {
+    URL url = URLUtil.resolveURL(base, target);
+    Outlink outlink = new Outlink(url.toString(), anchor);
+
+    // NUTCH-2433 - Keep the node name where the URL was found into
+    // the outlink metadata
+    if (keepNodenames) {
+      MapWritable metadata = new MapWritable();
+      metadata.put(new Text(srcTagMetaName), new Text(nodeName));
+      outlink.setMetadata(metadata);
+    }
+    return outlink;
+  }
+
   private boolean hasOnlyWhiteSpace(Node node) {
     String val = node.getNodeValue();
     for (int i = 0; i < val.length(); i++) {
@@ -435,20 +358,8 @@ public class DOMContentUtils {
             }
             if (target != null && !noFollow && !post)
               try {
-
-                URL url = URLUtil.resolveURL(base, target);
-                Outlink outlink = new Outlink(url.toString(), linkText
-                    .toString().trim());
-                outlinks.add(outlink);
-
-                // NUTCH-2433 - Keep the node name where the URL was found into
-                // the outlink metadata
-                if (keepNodenames) {
-                  MapWritable metadata = new MapWritable();
-                  metadata.put(new Text(srcTagMetaName), new Text(nodeName));
-                  outlink.setMetadata(metadata);
-                }
-
+                outlinks.add(createOutlink(base, target, linkText.toString()
+                    .trim(), nodeName));
               } catch (MalformedURLException e) {
                 // don't care
               }
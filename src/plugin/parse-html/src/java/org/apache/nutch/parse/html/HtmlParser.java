@@ -19,6 +19,7 @@ package org.apache.nutch.parse.html;
 
 import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.net.URL;
 import java.net.MalformedURLException;
@@ -29,6 +30,7 @@ import java.util.regex.*;
 import org.cyberneko.html.parsers.*;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 import org.w3c.dom.*;
 import org.apache.html.dom.*;
 import org.slf4j.Logger;
@@ -129,6 +131,8 @@ public class HtmlParser implements Parser {
 
   private String cachingPolicy;
 
+  private boolean streaming;
+
   public ParseResult getParse(Content content) {
     HTMLMetaTags metaTags = new HTMLMetaTags();
 
@@ -147,6 +151,7 @@ public class HtmlParser implements Parser {
 
     // parse the content
     DocumentFragment root;
+    StreamingContentHandler handler = null;
     try {
       byte[] contentInOctets = content.getContent();
       InputSource input = new InputSource(new ByteArrayInputStream(
@@ -164,7 +169,14 @@ public class HtmlParser implements Parser {
       if (LOG.isTraceEnabled()) {
         LOG.trace("Parsing...");
       }
-      root = parse(input);
+      if (streaming) {
+        handler = new StreamingContentHandler(utils, base, metaTags);
+        parseStreaming(input, handler);
+        // filters do not need the DOM
+        root = new HTMLDocumentImpl().createDocumentFragment();
+      } else {
+        root = parse(input);
+      }
     } catch (IOException e) {
       return new ParseStatus(e)
           .getEmptyParseResult(content.getUrl(), getConf());
@@ -180,8 +192,10 @@ public class HtmlParser implements Parser {
           .getEmptyParseResult(content.getUrl(), getConf());
     }
 
-    // get meta directives
-    HTMLMetaProcessor.getMetaTags(metaTags, root, base);
+    // get meta directives (already done by the streaming handler)
+    if (handler == null) {
+      HTMLMetaProcessor.getMetaTags(metaTags, root, base);
+    }
 
     // populate Nutch metadata with HTML meta directives
     metadata.addAll(metaTags.getGeneralTags());
@@ -190,7 +204,16 @@ public class HtmlParser implements Parser {
       LOG.trace("Meta tags for " + base + ": " + metaTags.toString());
     }
     // check meta directives
-    if (!metaTags.getNoIndex()) { // okay to index
+    if (handler != null) {
+      if (!metaTags.getNoIndex()) {
+        text = handler.getText();
+        title = handler.getTitle().trim();
+      }
+      if (!metaTags.getNoFollow()) {
+        List<Outlink> l = handler.getOutlinks();
+        outlinks = l.toArray(new Outlink[l.size()]);
+      }
+    } else if (!metaTags.getNoIndex()) { // okay to index
       StringBuffer sb = new StringBuffer();
       if (LOG.isTraceEnabled()) {
         LOG.trace("Getting text...");
@@ -205,7 +228,7 @@ public class HtmlParser implements Parser {
       title = sb.toString().trim();
     }
 
-    if (!metaTags.getNoFollow()) { // okay to follow links
+    if (handler == null && !metaTags.getNoFollow()) { // okay to follow links
       ArrayList<Outlink> l = new ArrayList<Outlink>(); // extract outlinks
       URL baseTag = utils.getBase(root);
       if (LOG.isTraceEnabled()) {
@@ -248,6 +271,48 @@ public class HtmlParser implements Parser {
       return parseNeko(input);
   }
 
+  /**
+   * Parse the input in a single pass sending all events to the
+   * <code>handler</code>, no DOM is built.
+   */
+  private void parseStreaming(InputSource input,
+      StreamingContentHandler handler) throws Exception {
+    XMLReader reader;
+    if (parserImpl.equalsIgnoreCase("tagsoup")) {
+      org.ccil.cowan.tagsoup.Parser parser = new org.ccil.cowan.tagsoup.Parser();
+      parser.setFeature(org.ccil.cowan.tagsoup.Parser.ignoreBogonsFeature, true);
+      parser.setFeature(org.ccil.cowan.tagsoup.Parser.bogonsEmptyFeature, false);
+      reader = parser;
+    } else {
+      SAXParser parser = new SAXParser();
+      try {
+        parser.setFeature(
+            "http://cyberneko.org/html/features/scanner/allow-selfclosing-iframe",
+            true);
+        parser.setProperty(
+            "http://cyberneko.org/html/properties/default-encoding",
+            defaultCharEncoding);
+        parser.setFeature(
+            "http://cyberneko.org/html/features/scanner/ignore-specified-charset",
+            true);
+        parser.setFeature(
+            "http://cyberneko.org/html/features/balance-tags/ignore-outside-content",
+            false);
+        parser.setFeature(
+            "http://cyberneko.org/html/features/balance-tags/document-fragment",
+            true);
+        parser.setFeature("http://cyberneko.org/html/features/report-errors",
+            LOG.isTraceEnabled());
+      } catch (SAXException e) {
+      }
+      reader = parser;
+    }
+    reader.setContentHandler(handler);
+    reader.setProperty("http://xml.org/sax/properties/lexical-handler",
+        handler);
+    reader.parse(input);
+  }
+
   private DocumentFragment parseTagSoup(InputSource input) throws Exception {
     HTMLDocumentImpl doc = new HTMLDocumentImpl();
     DocumentFragment frag = doc.createDocumentFragment();
@@ -345,6 +410,11 @@ public class HtmlParser implements Parser {
     this.utils = new DOMContentUtils(conf);
     this.cachingPolicy = getConf().get("parser.caching.forbidden.policy",
         Nutch.CACHING_FORBIDDEN_CONTENT);
+    this.streaming = getConf().getBoolean("parser.html.streaming", false);
+    if (streaming && htmlParseFilters.needsDOM()) {
+      LOG.info("Streaming HTML parsing disabled, HTML parse filters require DOM");
+      this.streaming = false;
+    }
   }
 
   public Configuration getConf() {
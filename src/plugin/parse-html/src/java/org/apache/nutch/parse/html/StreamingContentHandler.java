@@ -0,0 +1,421 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.nutch.parse.html;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.nutch.parse.HTMLMetaTags;
+import org.apache.nutch.parse.Outlink;
+import org.apache.nutch.parse.html.DOMContentUtils.LinkParams;
+import org.apache.nutch.util.DOMTextExtractor;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * SAX content handler which extracts text, title, outlinks, meta tags and base
+ * href in a single pass over the parser events, without building a DOM tree.
+ * The results are the same as those of {@link DOMContentUtils} and
+ * {@link HTMLMetaProcessor} applied to the DOM built from the same events.
+ *
+ * Only the extracted text and the anchor texts of open link elements are held
+ * in memory.
+ */
+public class StreamingContentHandler extends DefaultHandler
+    implements LexicalHandler {
+
+  private static final String TEXT_NODE = "#text";
+  private static final String COMMENT_NODE = "#comment";
+
+  /** Link element, open or closed, in document order */
+  private static class LinkState {
+    LinkParams params;
+    String nodeName;
+    int depth;
+    String target;
+    boolean noFollow;
+    boolean post;
+    // number of anchors seen in this element including itself
+    int anchors;
+    boolean aborted;
+    StringBuilder text = new StringBuilder();
+    // image alt texts and raw text, used if the link text is empty
+    StringBuilder fallback = new StringBuilder();
+    // first child nodes (node name, white space only if text)
+    int childLen;
+    String[] childNames = new String[3];
+    boolean[] childBlank = new boolean[3];
+    // anchor text if the link is kept, null if thrown away
+    String anchor;
+
+    void addChild(String name, boolean blank) {
+      if (childLen < childNames.length) {
+        childNames[childLen] = name;
+        childBlank[childLen] = blank;
+      }
+      childLen++;
+    }
+
+    boolean isChildElement(int i) {
+      return params.elName.equalsIgnoreCase(childNames[i]);
+    }
+
+    boolean isBlankText(int i) {
+      return TEXT_NODE.equals(childNames[i]) && childBlank[i];
+    }
+
+    /** @see DOMContentUtils#shouldThrowAwayLink */
+    boolean shouldThrowAway() {
+      if (childLen == 0) {
+        return params.childLen != 0;
+      } else if (childLen == 1) {
+        return isChildElement(0);
+      } else if (childLen == 2) {
+        return (isChildElement(0) && isBlankText(1))
+            || (isChildElement(1) && isBlankText(0));
+      } else if (childLen == 3) {
+        return isChildElement(1) && isBlankText(0) && isBlankText(2);
+      }
+      return false;
+    }
+  }
+
+  private final DOMContentUtils utils;
+  private final URL base;
+  private final HTMLMetaTags metaTags;
+
+  private final StringBuilder text = new StringBuilder();
+  private final StringBuilder title = new StringBuilder();
+  private final StringBuilder pendingText = new StringBuilder();
+  private final int maxTextLength;
+  private boolean textFull = false;
+
+  private final List<LinkState> links = new ArrayList<>();
+  private final List<LinkState> openLinks = new ArrayList<>();
+
+  private int depth = 0;
+  // depth of open script and style elements
+  private int skipDepth = 0;
+  private int bodyDepth = 0;
+  private boolean bodySeen = false;
+  private int titleDepth = -1;
+  private boolean titleSeen = false;
+  private URL baseTag;
+
+  /**
+   * @param utils
+   *          link parameters and outlink construction
+   * @param base
+   *          URL of the document
+   * @param metaTags
+   *          filled with the meta directives found in the document
+   */
+  public StreamingContentHandler(DOMContentUtils utils, URL base,
+      HTMLMetaTags metaTags) {
+    this.utils = utils;
+    this.maxTextLength = utils.getTextExtractor().getMaxLength();
+    this.base = base;
+    this.metaTags = metaTags;
+    metaTags.reset();
+  }
+
+  /** @return the text of the document */
+  public String getText() {
+    return text.toString();
+  }
+
+  /** @return the text of the first title element in the document head */
+  public String getTitle() {
+    return title.toString();
+  }
+
+  /** @return the value of the first valid base href in the document head */
+  public URL getBase() {
+    return baseTag;
+  }
+
+  /** @return the outlinks in document order */
+  public List<Outlink> getOutlinks() {
+    URL linkBase = (baseTag != null ? baseTag : base);
+    List<Outlink> outlinks = new ArrayList<>();
+    for (LinkState link : links) {
+      if (link.anchor == null) {
+        continue;
+      }
+      try {
+        outlinks.add(utils.createOutlink(linkBase, link.target, link.anchor,
+            link.nodeName));
+      } catch (MalformedURLException e) {
+        // don't care
+      }
+    }
+    return outlinks;
+  }
+
+  private static String getName(String localName, String qName) {
+    String name = (localName != null && localName.length() > 0) ? localName
+        : qName;
+    return name.toLowerCase();
+  }
+
+  private static String getAttributeName(Attributes atts, int i) {
+    String name = atts.getQName(i);
+    if (name == null || name.length() == 0) {
+      name = atts.getLocalName(i);
+    }
+    return name;
+  }
+
+  private static boolean isBlank(CharSequence value) {
+    for (int i = 0; i < value.length(); i++) {
+      if (!Character.isWhitespace(value.charAt(i)))
+        return false;
+    }
+    return true;
+  }
+
+  private void addChild(String name, boolean blank) {
+    if (openLinks.isEmpty()) {
+      return;
+    }
+    LinkState link = openLinks.get(openLinks.size() - 1);
+    if (link.depth == depth) {
+      link.addChild(name, blank);
+    }
+  }
+
+  /** Process characters collected since the last node boundary */
+  private void flushText() {
+    if (pendingText.length() == 0) {
+      return;
+    }
+    String value = pendingText.toString();
+    pendingText.setLength(0);
+    addChild(TEXT_NODE, isBlank(value));
+    if (skipDepth == 0 && !textFull) {
+      DOMTextExtractor.appendTextNode(text, value);
+      if (maxTextLength >= 0 && text.length() >= maxTextLength) {
+        text.setLength(maxTextLength);
+        textFull = true;
+      }
+    }
+    if (skipDepth == 0 && titleDepth >= 0) {
+      DOMTextExtractor.appendTextNode(title, value);
+    }
+    for (LinkState link : openLinks) {
+      if (skipDepth == 0 && !link.aborted) {
+        DOMTextExtractor.appendTextNode(link.text, value);
+      }
+      if (value.length() > 0) {
+        if (link.fallback.length() > 0)
+          link.fallback.append(' ');
+        link.fallback.append(value);
+      }
+    }
+  }
+
+  @Override
+  public void startElement(String uri, String localName, String qName,
+      Attributes atts) throws SAXException {
+    flushText();
+    String name = getName(localName, qName);
+    addChild(name, false);
+    depth++;
+
+    if ("body".equals(name)) {
+      bodySeen = true;
+      bodyDepth++;
+    } else if (!bodySeen && "title".equals(name) && !titleSeen
+        && titleDepth < 0) {
+      titleDepth = depth;
+    }
+
+    if (bodyDepth == 0 && "meta".equals(name)) {
+      String metaName = null;
+      String equiv = null;
+      String content = null;
+      for (int i = 0; i < atts.getLength(); i++) {
+        String attrName = getAttributeName(atts, i).toLowerCase();
+        if (attrName.equals("name")) {
+          metaName = atts.getValue(i);
+        } else if (attrName.equals("http-equiv")) {
+          equiv = atts.getValue(i);
+        } else if (attrName.equals("content")) {
+          content = atts.getValue(i);
+        }
+      }
+      HTMLMetaProcessor.processMetaTag(metaTags, metaName, equiv, content,
+          base);
+    } else if ("base".equals(name)) {
+      String href = null;
+      for (int i = 0; i < atts.getLength(); i++) {
+        if ("href".equalsIgnoreCase(getAttributeName(atts, i))) {
+          href = atts.getValue(i);
+          if (!bodySeen && baseTag == null) {
+            try {
+              baseTag = new URL(href);
+            } catch (MalformedURLException e) {
+            }
+          }
+        }
+      }
+      if (bodyDepth == 0 && href != null) {
+        HTMLMetaProcessor.processBaseTag(metaTags, href, base);
+      }
+    }
+
+    LinkParams params = utils.getLinkParams(name);
+    if (params != null) {
+      LinkState link = new LinkState();
+      link.params = params;
+      link.nodeName = name;
+      link.depth = depth;
+      for (int i = 0; i < atts.getLength(); i++) {
+        String attrName = getAttributeName(atts, i);
+        String value = atts.getValue(i);
+        if (params.attrName.equalsIgnoreCase(attrName)) {
+          link.target = value;
+        } else if ("rel".equalsIgnoreCase(attrName)
+            && "nofollow".equalsIgnoreCase(value)) {
+          link.noFollow = true;
+        } else if ("method".equalsIgnoreCase(attrName)
+            && "post".equalsIgnoreCase(value)) {
+          link.post = true;
+        }
+      }
+      links.add(link);
+      openLinks.add(link);
+    }
+
+    if ("a".equals(name)) {
+      for (LinkState link : openLinks) {
+        link.anchors++;
+        if (link.anchors > 1) {
+          link.aborted = true;
+        }
+      }
+    } else if ("img".equals(name)) {
+      String alt = atts.getValue("alt");
+      if (alt != null && alt.trim().length() > 0) {
+        for (LinkState link : openLinks) {
+          if (link.fallback.length() > 0)
+            link.fallback.append(' ');
+          link.fallback.append(alt);
+        }
+      }
+    }
+
+    if ("script".equals(name) || "style".equals(name)) {
+      skipDepth++;
+    }
+  }
+
+  @Override
+  public void endElement(String uri, String localName, String qName)
+      throws SAXException {
+    flushText();
+    String name = getName(localName, qName);
+    if ("script".equals(name) || "style".equals(name)) {
+      if (skipDepth > 0)
+        skipDepth--;
+    } else if ("body".equals(name)) {
+      if (bodyDepth > 0)
+        bodyDepth--;
+    }
+    if (titleDepth == depth) {
+      titleDepth = -1;
+      titleSeen = true;
+    }
+    if (!openLinks.isEmpty()) {
+      LinkState link = openLinks.get(openLinks.size() - 1);
+      if (link.depth == depth) {
+        closeLink(link);
+        openLinks.remove(openLinks.size() - 1);
+      }
+    }
+    depth--;
+  }
+
+  private void closeLink(LinkState link) {
+    if (link.target != null && !link.noFollow && !link.post
+        && !link.shouldThrowAway()) {
+      StringBuilder linkText = link.text;
+      if (linkText.toString().trim().length() == 0
+          && link.fallback.length() > 0) {
+        // try harder - use img alt if present
+        if (linkText.length() > 0)
+          linkText.append(' ');
+        linkText.append(link.fallback);
+      }
+      link.anchor = linkText.toString().trim();
+    }
+    // release the buffers
+    link.text = null;
+    link.fallback = null;
+  }
+
+  @Override
+  public void characters(char[] ch, int start, int length)
+      throws SAXException {
+    pendingText.append(ch, start, length);
+  }
+
+  @Override
+  public void ignorableWhitespace(char[] ch, int start, int length)
+      throws SAXException {
+    characters(ch, start, length);
+  }
+
+  @Override
+  public void endDocument() throws SAXException {
+    flushText();
+    for (int i = openLinks.size() - 1; i >= 0; i--) {
+      closeLink(openLinks.get(i));
+    }
+    openLinks.clear();
+  }
+
+  public void comment(char[] ch, int start, int length) throws SAXException {
+    flushText();
+    addChild(COMMENT_NODE, false);
+  }
+
+  public void startDTD(String name, String publicId, String systemId)
+      throws SAXException {
+  }
+
+  public void endDTD() throws SAXException {
+  }
+
+  public void startEntity(String name) throws SAXException {
+  }
+
+  public void endEntity(String name) throws SAXException {
+  }
+
+  public void startCDATA() throws SAXException {
+  }
+
+  public void endCDATA() throws SAXException {
+  }
+
+}
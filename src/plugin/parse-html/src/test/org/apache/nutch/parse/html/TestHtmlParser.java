@@ -19,6 +19,8 @@ package org.apache.nutch.parse.html;
 
 import java.lang.invoke.MethodHandles;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.nutch.metadata.Metadata;
@@ -78,6 +80,30 @@ public class TestHtmlParser {
       { "HTML5, utf-16, BOM", "utf-16",
           "\ufeff<!DOCTYPE html>\n<html>\n<head>\n" + encodingTestContent } };
 
+  private static String[] streamingTestPages = {
+      "<html><head><title> Streaming <b>test</b> page </title>"
+          + "<meta name=\"keywords\" content=\"streaming, sax\">"
+          + "<base href=\"http://www.example.com/dir/\">"
+          + "<style>p { color: red; }</style>"
+          + "<script>var x = '<a href=\"no.html\">no</a>';</script>"
+          + "</head><body>\n<h1>Header</h1>\n"
+          + "<p>Some <i>text</i> with a <a href=\"rel.html\">relative link</a>"
+          + " and an <a href=\"/img.html\"><img src=\"i.png\" alt=\"image\"></a>."
+          + "<!-- a comment --> More text.</p>\n"
+          + "<a href=\"nofollow.html\" rel=\"nofollow\">no follow</a>"
+          + "<a href=\"outer.html\">outer <a href=\"inner.html\">inner</a></a>"
+          + "<form action=\"search\" method=\"get\"><input name=\"q\"></form>"
+          + "<form action=\"post\" method=\"post\"><input name=\"q\"></form>"
+          + "<iframe src=\"frame.html\"></iframe>"
+          + "<a href=\"empty.html\"></a>"
+          + "</body></html>",
+      "<html><head><meta name=\"robots\" content=\"noindex\">"
+          + "<title>Not indexed</title></head>"
+          + "<body><p>text</p><a href=\"http://www.example.org/\">link</a>"
+          + "</body></html>",
+      "<html><head><meta http-equiv=\"refresh\" content=\"5; url=next.html\">"
+          + "</head><body><p>Redirect<br>follows</p></body></html>" };
+
   private Configuration conf;
   private Parser parser;
 
@@ -120,4 +146,40 @@ public class TestHtmlParser {
     }
   }
 
+  @Test
+  public void testStreamingParse() {
+    for (String impl : new String[] { "neko", "tagsoup" }) {
+      Configuration domConf = NutchConfiguration.create();
+      // no HTML parse filters which require the DOM
+      domConf.set("plugin.includes", "nutch-extensionpoints|parse-html");
+      domConf.set("parser.html.impl", impl);
+      Configuration streamingConf = new Configuration(domConf);
+      streamingConf.setBoolean("parser.html.streaming", true);
+      Parser domParser = new HtmlParser();
+      domParser.setConf(domConf);
+      Parser streamingParser = new HtmlParser();
+      streamingParser.setConf(streamingConf);
+
+      for (String page : streamingTestPages) {
+        String url = "http://www.example.com/page.html";
+        byte[] bytes = page.getBytes(StandardCharsets.UTF_8);
+        Parse expected = domParser.getParse(new Content(url, url, bytes,
+            "text/html", new Metadata(), domConf)).get(url);
+        Parse actual = streamingParser.getParse(new Content(url, url, bytes,
+            "text/html", new Metadata(), streamingConf)).get(url);
+        Assert.assertEquals(impl + ": text", expected.getText(),
+            actual.getText());
+        Assert.assertEquals(impl + ": title", expected.getData().getTitle(),
+            actual.getData().getTitle());
+        Assert.assertEquals(impl + ": outlinks",
+            Arrays.asList(expected.getData().getOutlinks()),
+            Arrays.asList(actual.getData().getOutlinks()));
+        Assert.assertEquals(impl + ": parse meta", expected.getData()
+            .getParseMeta(), actual.getData().getParseMeta());
+        Assert.assertEquals(impl + ": status", expected.getData().getStatus()
+            .toString(), actual.getData().getStatus().toString());
+      }
+    }
+  }
+
 }
@@ -121,4 +121,10 @@ public class MetaTagsParser implements HtmlParseFilter {
     return parseResult;
   }
 
+  /** Meta tags are taken from {@link HTMLMetaTags}, the DOM is not used. */
+  @Override
+  public boolean needsDOM() {
+    return false;
+  }
+
 }
@@ -29,6 +29,7 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.MapWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.nutch.parse.Outlink;
+import org.apache.nutch.util.DOMTextExtractor;
 import org.apache.nutch.util.NodeWalker;
 import org.apache.nutch.util.URLUtil;
 import org.apache.tika.sax.Link;
@@ -67,6 +68,7 @@ public class DOMContentUtils {
   private HashMap<String, LinkParams> linkParams = new HashMap<String, LinkParams>();
   private HashSet<String> ignoredTags = new HashSet<String>();
   private Configuration conf;
+  private DOMTextExtractor textExtractor;
 
   public DOMContentUtils(Configuration conf) {
     setConf(conf);
@@ -77,6 +79,7 @@ public class DOMContentUtils {
     Collection<String> forceTags = new ArrayList<String>(1);
 
     this.conf = conf;
+    textExtractor = new DOMTextExtractor(conf);
     linkParams.clear();
     linkParams.put("a", new LinkParams("a", "href", 1));
     linkParams.put("area", new LinkParams("area", "href", 0));
@@ -123,10 +126,7 @@ public class DOMContentUtils {
    */
   private boolean getText(StringBuffer sb, Node node,
       boolean abortOnNestedAnchors) {
-    if (getTextHelper(sb, node, abortOnNestedAnchors, 0)) {
-      return true;
-    }
-    return false;
+    return textExtractor.getText(sb, node, abortOnNestedAnchors);
   }
 
   /**
@@ -138,94 +138,6 @@ public class DOMContentUtils {
     getText(sb, node, false);
   }
 
-  // returns true if abortOnNestedAnchors is true and we find nested
-  // anchors
-  private boolean getTextHelper(StringBuffer sb, Node node,
-      boolean abortOnNestedAnchors, int anchorDepth) {
-    boolean abort = false;
-    NodeWalker walker = new NodeWalker(node);
-
-    while (walker.hasNext()) {
-
-      Node currentNode = walker.nextNode();
-      String nodeName = currentNode.getNodeName();
-      short nodeType = currentNode.getNodeType();
-
-      if ("script".equalsIgnoreCase(nodeName)) {
-        walker.skipChildren();
-      }
-      if ("style".equalsIgnoreCase(nodeName)) {
-        walker.skipChildren();
-      }
-      if (abortOnNestedAnchors && "a".equalsIgnoreCase(nodeName)) {
-        anchorDepth++;
-        if (anchorDepth > 1) {
-          abort = true;
-          break;
-        }
-      }
-      if (nodeType == Node.COMMENT_NODE) {
-        walker.skipChildren();
-      }
-      if (nodeType == Node.TEXT_NODE) {
-        // cleanup and trim the value
-        String text = currentNode.getNodeValue();
-        text = text.replaceAll("\\s+", " ");
-        text = text.trim();
-        if (text.length() > 0) {
-          appendSpace(sb);
-          sb.append(text);
-        } else {
-          appendParagraphSeparator(sb);
-        }
-      }
-    }
-
-    return abort;
-  }
-
-  /**
-   * Conditionally append a paragraph/line break to StringBuffer unless last
-   * character a already indicates a paragraph break. Also remove trailing space
-   * before paragraph break.
-   *
-   * @param buffer
-   *          StringBuffer to append paragraph break
-   */
-  private void appendParagraphSeparator(StringBuffer buffer) {
-    if (buffer.length() == 0) {
-      return;
-    }
-    char lastChar = buffer.charAt(buffer.length() - 1);
-    if ('\n' != lastChar) {
-      // remove white space before paragraph break
-      while (lastChar == ' ') {
-        buffer.deleteCharAt(buffer.length() - 1);
-        lastChar = buffer.charAt(buffer.length() - 1);
-      }
-      if ('\n' != lastChar) {
-        buffer.append('\n');
-      }
-    }
-  }
-
-  /**
-   * Conditionally append a space to StringBuffer unless last character is a
-   * space or line/paragraph break.
-   *
-   * @param buffer
-   *          StringBuffer to append space
-   */
-  private void appendSpace(StringBuffer buffer) {
-    if (buffer.length() == 0) {
-      return;
-    }
-    char lastChar = buffer.charAt(buffer.length() - 1);
-    if (' ' != lastChar && '\n' != lastChar) {
-      buffer.append(' ');
-    }
-  }
-
   /**
    * This method takes a {@link StringBuffer} and a DOM {@link Node}, and will
    * append the content text found beneath the first <code>title</code> node to
@@ -234,28 +146,7 @@ public class DOMContentUtils {
    * @return true if a title node was found, false otherwise
    */
   public boolean getTitle(StringBuffer sb, Node node) {
-
-    NodeWalker walker = new NodeWalker(node);
-
-    while (walker.hasNext()) {
-
-      Node currentNode = walker.nextNode();
-      String nodeName = currentNode.getNodeName();
-      short nodeType = currentNode.getNodeType();
-
-      if ("body".equalsIgnoreCase(nodeName)) { // stop after HEAD
-        return false;
-      }
-
-      if (nodeType == Node.ELEMENT_NODE) {
-        if ("title".equalsIgnoreCase(nodeName)) {
-          getText(sb, currentNode);
-          return true;
-        }
-      }
-    }
-
-    return false;
+    return textExtractor.getTitle(sb, node);
   }
 
   /** If Node contains a BASE tag then it's HREF is returned. */
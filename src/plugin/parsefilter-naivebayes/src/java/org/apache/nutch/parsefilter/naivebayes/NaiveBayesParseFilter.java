@@ -195,4 +195,10 @@ public class NaiveBayesParseFilter implements HtmlParseFilter {
     return parseResult;
   }
 
+  /** Classifies on the parse text and outlinks only. */
+  @Override
+  public boolean needsDOM() {
+    return false;
+  }
+
 }
@@ -202,4 +202,11 @@ public class RegexParseFilter implements HtmlParseFilter {
     String source;
     Pattern regex;
   }
-}
\ No newline at end of file
+
+  /** Rules are matched against the raw HTML or the text. */
+  @Override
+  public boolean needsDOM() {
+    return false;
+  }
+
+}
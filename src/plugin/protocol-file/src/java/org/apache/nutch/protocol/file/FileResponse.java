@@ -111,7 +111,7 @@ public class FileResponse {
     this.file = file;
     this.conf = conf;
 
-    MIME = new MimeUtil(conf);
+    MIME = MimeUtil.get(conf);
     tika = new Tika();
 
     if (!"file".equals(url.getProtocol()))
@@ -22,18 +22,23 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.nutch.net.BatchURLFilter;
+import org.apache.nutch.net.ParsedURL;
+import org.apache.nutch.net.ParsedURLFilter;
 import org.apache.nutch.net.URLFilter;
 import org.apache.nutch.plugin.Extension;
 import org.apache.nutch.plugin.PluginRepository;
-import org.apache.nutch.util.URLUtil;
 import org.apache.nutch.util.domain.DomainSuffix;
+import org.apache.nutch.util.domain.MappedDomainSet;
 
 /**
  * <p>
@@ -73,8 +78,15 @@ import org.apache.nutch.util.domain.DomainSuffix;
  * </ul>
  * 
  * the attribute "file" has higher precedence if defined.
+ * 
+ * <p>
+ * Large lists can be converted into a binary {@link MappedDomainSet} file
+ * which is memory-mapped instead of being loaded into memory. Binary files are
+ * detected automatically.
+ * </p>
  */
-public class DomainURLFilter implements URLFilter {
+public class DomainURLFilter implements ParsedURLFilter,
+    BatchURLFilter {
 
   private static final Logger LOG = LoggerFactory
       .getLogger(MethodHandles.lookup().lookupClass());
@@ -84,6 +96,7 @@ public class DomainURLFilter implements URLFilter {
   private Configuration conf;
   private String domainFile = null;
   private Set<String> domainSet = new LinkedHashSet<String>();
+  private MappedDomainSet mappedDomainSet = null;
 
   private void readConfiguration(Reader configReader) throws IOException {
 
@@ -158,6 +171,17 @@ public class DomainURLFilter implements URLFilter {
     } else if (attributeFile != null) {
       file = attributeFile;
     }
+    if (stringRules == null) {
+      try {
+        // binary domain set file, see MappedDomainSet
+        mappedDomainSet = MappedDomainSet.load(conf, file);
+        if (mappedDomainSet != null) {
+          return;
+        }
+      } catch (IOException e) {
+        LOG.error(org.apache.hadoop.util.StringUtils.stringifyException(e));
+      }
+    }
     Reader reader = null;
     if (stringRules != null) { // takes precedence over files
       reader = new StringReader(stringRules);
@@ -180,32 +204,72 @@ public class DomainURLFilter implements URLFilter {
 
   public String filter(String url) {
     // https://issues.apache.org/jira/browse/NUTCH-2189
-    if (domainSet.size() == 0) return url;
+    if (domainSet.size() == 0 && mappedDomainSet == null) return url;
+
+    return filter(new ParsedURL(url)) ? url : null;
+  }
+
+  public boolean filter(ParsedURL url) {
+    // https://issues.apache.org/jira/browse/NUTCH-2189
+    if (domainSet.size() == 0 && mappedDomainSet == null) return true;
     
     try {
       // match for suffix, domain, and host in that order. more general will
       // override more specific
-      String domain = URLUtil.getDomainName(url).toLowerCase().trim();
-      String host = URLUtil.getHost(url);
+      String domain = url.getDomainName().toLowerCase().trim();
+      String host = url.getHost();
       String suffix = null;
-      DomainSuffix domainSuffix = URLUtil.getDomainSuffix(url);
+      DomainSuffix domainSuffix = url.getDomainSuffix();
       if (domainSuffix != null) {
         suffix = domainSuffix.getDomain();
       }
 
-      if (domainSet.contains(suffix) || domainSet.contains(domain)
-          || domainSet.contains(host)) {
-        return url;
+      if (contains(suffix) || contains(domain) || contains(host)) {
+        return true;
       }
 
       // doesn't match, don't allow
-      return null;
+      return false;
     } catch (Exception e) {
 
       // if an error happens, allow the url to pass
       LOG.error("Could not apply filter on url: " + url + "\n"
           + org.apache.hadoop.util.StringUtils.stringifyException(e));
-      return null;
+      return false;
+    }
+  }
+
+  /**
+   * Filters many URLs, the domain lists are checked only once for every host.
+   */
+  public void filter(String[] urls) {
+    // https://issues.apache.org/jira/browse/NUTCH-2189
+    if (domainSet.size() == 0 && mappedDomainSet == null) return;
+
+    Map<String, Boolean> hosts = new HashMap<>();
+    for (int i = 0; i < urls.length; i++) {
+      if (urls[i] == null) {
+        continue;
+      }
+      ParsedURL url = new ParsedURL(urls[i]);
+      String host = url.getHost();
+      Boolean accept = host == null ? null : hosts.get(host);
+      if (accept == null) {
+        accept = filter(url);
+        if (host != null) {
+          hosts.put(host, accept);
+        }
+      }
+      if (!accept) {
+        urls[i] = null;
+      }
+    }
+  }
+
+  private boolean contains(String name) {
+    if (mappedDomainSet != null) {
+      return mappedDomainSet.contains(name);
     }
+    return domainSet.contains(name);
   }
 }
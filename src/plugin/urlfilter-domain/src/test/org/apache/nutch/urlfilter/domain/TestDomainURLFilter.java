@@ -45,6 +45,23 @@ public class TestDomainURLFilter {
     Assert.assertNull(domainFilter.filter("http://www.adobe.com"));
   }
   
+  @Test
+  public void testBatchFilter() throws Exception {
+    String domainFile = SAMPLES + SEPARATOR + "hosts.txt";
+    Configuration conf = NutchConfiguration.create();
+    DomainURLFilter domainFilter = new DomainURLFilter(domainFile);
+    domainFilter.setConf(conf);
+    String[] urls = { "http://lucene.apache.org/", "http://www.google.com/",
+        null, "http://lucene.apache.org/java/", "http://www.google.com/a",
+        "http://www.yahoo.com", "not a url", "http://mail.yahoo.com" };
+    String[] filtered = urls.clone();
+    domainFilter.filter(filtered);
+    for (int i = 0; i < urls.length; i++) {
+      Assert.assertEquals(urls[i] == null ? null
+          : domainFilter.filter(urls[i]), filtered[i]);
+    }
+  }
+
   @Test
   public void testNoFilter() throws Exception {
     // https://issues.apache.org/jira/browse/NUTCH-2189
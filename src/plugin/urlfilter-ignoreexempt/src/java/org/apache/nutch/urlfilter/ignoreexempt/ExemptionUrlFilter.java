@@ -18,7 +18,8 @@ package org.apache.nutch.urlfilter.ignoreexempt;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.hadoop.conf.Configuration;
-import org.apache.nutch.net.URLExemptionFilter;
+import org.apache.nutch.net.ParsedURL;
+import org.apache.nutch.net.ParsedURLExemptionFilter;
 import org.apache.nutch.util.NutchConfiguration;
 import org.apache.nutch.urlfilter.regex.RegexURLFilter;
 import org.slf4j.Logger;
@@ -56,7 +57,7 @@ import java.util.ArrayList;
  * @see org.apache.nutch.urlfilter.regex.RegexURLFilter
  */
 public class ExemptionUrlFilter extends RegexURLFilter
-    implements URLExemptionFilter {
+    implements ParsedURLExemptionFilter {
 
   public static final String DB_IGNORE_EXTERNAL_EXEMPTIONS_FILE
       = "db.ignore.external.exemptions.file";
@@ -77,6 +78,16 @@ public class ExemptionUrlFilter extends RegexURLFilter
     return this.filter(toUrl) != null;
   }
 
+  /**
+   * Same as {@link #filter(String, String)}, the target URL is parsed at most
+   * once to apply rules scoped to a host or domain. No URL is exempted if
+   * there is no rule exempting URLs.
+   */
+  @Override
+  public boolean filter(ParsedURL fromUrl, ParsedURL toUrl) {
+    return hasAcceptRules() && this.filter(toUrl);
+  }
+
   /**
    * Gets reader for regex rules
    */
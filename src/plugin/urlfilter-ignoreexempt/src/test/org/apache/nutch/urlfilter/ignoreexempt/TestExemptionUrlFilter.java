@@ -0,0 +1,90 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.urlfilter.ignoreexempt;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.nutch.net.ParsedURL;
+import org.apache.nutch.util.NutchConfiguration;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit test for <code>ExemptionUrlFilter</code>, the results for parsed URLs
+ * must be the same as for URL strings.
+ */
+public class TestExemptionUrlFilter {
+
+  private static final String FROM_URL = "http://example.com/";
+
+  private static final String[] URLS = { "http://cdn.example.org/image.png",
+      "https://cdn.example.org/style.css", "http://cdn.example.org/page.html",
+      "http://static.example.net/logo.gif", "http://static.example.net/a.js",
+      "http://other.net/image.png", "ftp://files.example.org/image.png",
+      "not a url" };
+
+  private static ExemptionUrlFilter createFilter(final String rules) {
+    ExemptionUrlFilter filter = new ExemptionUrlFilter() {
+      @Override
+      protected Reader getRulesReader(Configuration conf) {
+        return new StringReader(rules);
+      }
+    };
+    filter.setConf(NutchConfiguration.create());
+    return filter;
+  }
+
+  private static boolean[] filter(ExemptionUrlFilter filter) {
+    boolean[] exempted = new boolean[URLS.length];
+    for (int i = 0; i < URLS.length; i++) {
+      exempted[i] = filter.filter(FROM_URL, URLS[i]);
+      Assert.assertEquals(URLS[i], exempted[i], filter.filter(
+          new ParsedURL(FROM_URL), new ParsedURL(URLS[i])));
+    }
+    return exempted;
+  }
+
+  @Test
+  public void testExemptions() {
+    ExemptionUrlFilter filter = createFilter("# exempt images and styles\n"
+        + "-^ftp:\n"
+        + "+\\.(png|gif|css)$\n"
+        + "> example.net\n"
+        + "+\\.js$\n"
+        + "<\n"
+        + "-.\n");
+    Assert.assertEquals(Arrays.toString(new boolean[] { true, true, false,
+        true, true, true, false, false }), Arrays.toString(filter(filter)));
+  }
+
+  /** Files without exempting rules exempt nothing. */
+  @Test
+  public void testNoExemptions() {
+    String[] rules = { "", "# comment only\n", "-.\n",
+        "-\\.png$\n-\\.css$\n" };
+    for (String rule : rules) {
+      ExemptionUrlFilter filter = createFilter(rule);
+      Assert.assertFalse(filter.hasAcceptRules());
+      Assert.assertEquals(rule, Arrays.toString(new boolean[URLS.length]),
+          Arrays.toString(filter(filter)));
+    }
+  }
+
+}
@@ -31,7 +31,13 @@ import org.apache.nutch.plugin.PluginRepository;
 import java.lang.invoke.MethodHandles;
 import java.io.Reader;
 import java.io.FileReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.IOException;
 import java.io.StringReader;
@@ -48,6 +54,13 @@ import java.util.ArrayList;
  * <p>
  * The format of this file is one URL prefix per line.
  * </p>
+ * 
+ * <p>
+ * Large lists can be compiled into a serialized trie by
+ * <code>PrefixURLFilter -compile &lt;rules_file&gt; &lt;output_file&gt;</code>,
+ * which is loaded without parsing the rules and building the trie again.
+ * Compiled files are detected automatically.
+ * </p>
  */
 public class PrefixURLFilter implements URLFilter {
 
@@ -76,7 +89,8 @@ public class PrefixURLFilter implements URLFilter {
       return url;
   }
 
-  private TrieStringMatcher readConfiguration(Reader reader) throws IOException {
+  private PrefixStringMatcher readConfiguration(Reader reader)
+      throws IOException {
 
     BufferedReader in = new BufferedReader(reader);
     List<String> urlprefixes = new ArrayList<String>();
@@ -100,8 +114,42 @@ public class PrefixURLFilter implements URLFilter {
     return new PrefixStringMatcher(urlprefixes);
   }
 
+  /**
+   * Compile the rules into a serialized trie which is loaded by
+   * {@link #readCompiled(InputStream)}.
+   */
+  public static void compile(Reader rules, DataOutputStream out)
+      throws IOException {
+    new PrefixURLFilter().readConfiguration(rules).write(out);
+  }
+
+  /**
+   * Load the rules compiled by {@link #compile(Reader, DataOutputStream)}.
+   * 
+   * @return false if the stream does not contain compiled rules
+   */
+  public boolean readCompiled(InputStream in) throws IOException {
+    if (!in.markSupported()) {
+      in = new BufferedInputStream(in);
+    }
+    if (!TrieStringMatcher.isSerialized(in)) {
+      return false;
+    }
+    trie = PrefixStringMatcher.read(new DataInputStream(in));
+    return true;
+  }
+
   public static void main(String args[]) throws IOException {
 
+    if (args.length == 3 && args[0].equals("-compile")) {
+      try (Reader rules = new FileReader(args[1]);
+          DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+              new FileOutputStream(args[2])))) {
+        compile(rules, out);
+      }
+      return;
+    }
+
     PrefixURLFilter filter;
     if (args.length >= 1)
       filter = new PrefixURLFilter(args[0]);
@@ -150,6 +198,17 @@ public class PrefixURLFilter implements URLFilter {
     // attribute "file" takes precedence if defined
     if (attributeFile != null)
       file = attributeFile;
+    if (stringRules == null && file != null) {
+      try (InputStream in = conf.getConfResourceAsInputStream(file)) {
+        if (in != null && readCompiled(in)) {
+          LOG.info("Loaded compiled prefix rules from {}", file);
+          return;
+        }
+      } catch (IOException e) {
+        LOG.error(e.getMessage());
+        throw new RuntimeException(e.getMessage(), e);
+      }
+    }
     Reader reader = null;
     if (stringRules != null) { // takes precedence over files
       reader = new StringReader(stringRules);
@@ -21,7 +21,11 @@ import junit.framework.TestCase;
 import junit.framework.TestSuite;
 import junit.textui.TestRunner;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.StringReader;
 
 
 /**
@@ -76,4 +80,19 @@ public class TestPrefixURLFilter extends TestCase {
       assertTrue(urlsModeAccept[i] == filter.filter(urls[i]));
     }
   }
+
+  public void testCompiled() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    PrefixURLFilter.compile(new StringReader(prefixes),
+        new DataOutputStream(bytes));
+    PrefixURLFilter compiled = new PrefixURLFilter();
+    assertTrue(compiled.readCompiled(new ByteArrayInputStream(bytes
+        .toByteArray())));
+    for (int i = 0; i < urls.length; i++) {
+      assertTrue(urlsModeAccept[i] == compiled.filter(urls[i]));
+    }
+    // plain-text rules are not loaded as compiled rules
+    assertFalse(compiled.readCompiled(new ByteArrayInputStream(
+        prefixes.getBytes("UTF-8"))));
+  }
 }
@@ -0,0 +1,980 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.urlfilter.regex;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.apache.nutch.urlfilter.api.RuleSetMatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Finds the first of an ordered list of {@link java.util.regex regular
+ * expressions} which is found in a string, in a single pass over the string.
+ *
+ * <p>
+ * All expressions are compiled into one nondeterministic automaton which is
+ * converted lazily into a deterministic automaton: a DFA state is the set of
+ * NFA states reached after a prefix of the input, states and transitions are
+ * created when first needed and cached for all later inputs. The memory used
+ * by cached states is limited, beyond the limit the states are computed for
+ * every input without caching.
+ * </p>
+ *
+ * <p>
+ * The automaton supports the subset of the Java regular expression syntax
+ * found in URL filter rules: literals and escaped characters, character
+ * classes, the predefined classes <code>\d \s \w</code> and their negations,
+ * <code>.</code>, groups, alternatives, greedy and reluctant quantifiers and
+ * the anchors <code>^ $ \A \z \Z</code>. Expressions using other constructs
+ * (back references, look-around, flags, possessive quantifiers, etc.) are
+ * matched by {@link Pattern}, and so are all expressions if the string
+ * contains line terminators or surrogate characters.
+ * </p>
+ *
+ * <p>
+ * Instances are thread-safe.
+ * </p>
+ */
+public class MultiRegexMatcher implements RuleSetMatcher {
+
+  private static final Logger LOG = LoggerFactory
+      .getLogger(MethodHandles.lookup().lookupClass());
+
+  /** default max. number of NFA states held by cached DFA states */
+  public static final int DEFAULT_CACHE_SIZE = 4 * 1024 * 1024;
+
+  /** max. number of NFA states per expression */
+  private static final int MAX_RULE_STATES = 10000;
+
+  private static final int NO_MATCH = Integer.MAX_VALUE;
+
+  /* NFA state types */
+  private static final byte CHAR = 0;
+  private static final byte EPSILON = 1;
+  private static final byte BOL = 2;
+  private static final byte EOL = 3;
+  private static final byte MATCH = 4;
+
+  /** all characters but line terminators, matched by <code>.</code> */
+  private static final int[] DOT = { 0, 9, 11, 12, 14, 0x84, 0x86, 0x2027,
+      0x202A, 0xFFFF };
+  private static final int[] ANY = { 0, 0xFFFF };
+  private static final int[] DIGIT = { '0', '9' };
+  private static final int[] SPACE = { '\t', '\r', ' ', ' ' };
+  private static final int[] WORD = { '0', '9', 'A', 'Z', '_', '_', 'a', 'z' };
+
+  private final Pattern[] patterns;
+
+  /** indexes of the expressions not compiled into the automaton */
+  private final int[] fallback;
+
+  /* the NFA, indexed by state */
+  private final byte[] type;
+  private final int[][] chars;
+  private final int[][] next;
+  private final int[] rule;
+
+  private final State initial;
+  private final Map<StateKey, State> states = new HashMap<>();
+  private final int maxCacheSize;
+  private int cacheSize = 0;
+
+  private final ThreadLocal<Closure> closure;
+
+  /** a DFA state */
+  private static class State {
+    /** sorted character, end-of-line and match states */
+    final int[] nfaStates;
+    /** first expression matched on reaching this state */
+    final int match;
+    /** first expression matched if the input ends in this state */
+    final int endMatch;
+    /** no expression before this one can match in later states */
+    final int minLive;
+    /** transitions on ASCII characters */
+    final State[] transitions = new State[128];
+
+    State(int[] nfaStates, int match, int endMatch, int minLive) {
+      this.nfaStates = nfaStates;
+      this.match = match;
+      this.endMatch = endMatch;
+      this.minLive = minLive;
+    }
+  }
+
+  private static class StateKey {
+    final int[] nfaStates;
+    final int hash;
+
+    StateKey(int[] nfaStates) {
+      this.nfaStates = nfaStates;
+      this.hash = Arrays.hashCode(nfaStates);
+    }
+
+    public int hashCode() {
+      return hash;
+    }
+
+    public boolean equals(Object o) {
+      return o instanceof StateKey
+          && Arrays.equals(nfaStates, ((StateKey) o).nfaStates);
+    }
+  }
+
+  /** thrown if an expression cannot be compiled into the automaton */
+  private static class UnsupportedException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    UnsupportedException(String message) {
+      super(message, null, false, false);
+    }
+  }
+
+  public MultiRegexMatcher(List<Pattern> patterns) {
+    this(patterns, DEFAULT_CACHE_SIZE);
+  }
+
+  /**
+   * @param patterns
+   *          the expressions, in order of precedence
+   * @param maxCacheSize
+   *          max. number of NFA states held by cached DFA states
+   */
+  public MultiRegexMatcher(List<Pattern> patterns, int maxCacheSize) {
+    this.patterns = patterns.toArray(new Pattern[patterns.size()]);
+    this.maxCacheSize = maxCacheSize;
+
+    Builder builder = new Builder();
+    // state 0 restarts matching at every position: it loops over any
+    // character and branches to the start states of all expressions
+    int root = builder.add(EPSILON, null, NO_MATCH);
+    int loop = builder.add(CHAR, ANY, NO_MATCH);
+    builder.next.set(loop, new int[] { root });
+    List<Integer> starts = new ArrayList<>();
+    starts.add(loop);
+    List<Integer> unsupported = new ArrayList<>();
+    for (int i = 0; i < this.patterns.length; i++) {
+      String regex = this.patterns[i].pattern();
+      if (this.patterns[i].flags() != 0) {
+        unsupported.add(i);
+        continue;
+      }
+      int size = builder.size();
+      builder.limit = size + MAX_RULE_STATES;
+      try {
+        Node node = new Parser(regex).parse();
+        int match = builder.add(MATCH, null, i);
+        starts.add(builder.compile(node, match, i));
+      } catch (UnsupportedException e) {
+        LOG.debug("Matching regex {} separately: {}", regex, e.getMessage());
+        builder.truncate(size);
+        unsupported.add(i);
+      }
+    }
+    builder.next.set(root, toArray(starts));
+
+    type = new byte[builder.size()];
+    for (int i = 0; i < type.length; i++) {
+      type[i] = builder.type.get(i);
+    }
+    chars = builder.chars.toArray(new int[type.length][]);
+    next = builder.next.toArray(new int[type.length][]);
+    rule = toArray(builder.rule);
+    fallback = toArray(unsupported);
+    closure = ThreadLocal.withInitial(() -> new Closure(type.length));
+
+    initial = createState(new int[] { root }, true, false);
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Compiled {} of {} regular expressions into {} NFA states",
+          this.patterns.length - fallback.length, this.patterns.length,
+          type.length);
+    }
+  }
+
+  /** @return the number of expressions not compiled into the automaton */
+  public int getFallbackCount() {
+    return fallback.length;
+  }
+
+  @Override
+  public int firstMatch(String input) {
+    if (!isSupportedInput(input)) {
+      for (int i = 0; i < patterns.length; i++) {
+        if (patterns[i].matcher(input).find()) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    int first = run(input);
+    for (int i : fallback) {
+      if (i > first) {
+        break;
+      }
+      if (patterns[i].matcher(input).find()) {
+        return i;
+      }
+    }
+    return first == NO_MATCH ? -1 : first;
+  }
+
+  /** @return the first expression matched by the automaton */
+  private int run(String input) {
+    State state = initial;
+    int first = state.match;
+    int length = input.length();
+    for (int i = 0; i < length; i++) {
+      if (state.minLive >= first) {
+        return first;
+      }
+      char c = input.charAt(i);
+      State target = c < 128 ? state.transitions[c] : null;
+      if (target == null) {
+        target = step(state, c);
+      }
+      state = target;
+      if (state.match < first) {
+        first = state.match;
+      }
+    }
+    return Math.min(first, state.endMatch);
+  }
+
+  /**
+   * Line terminators and supplementary characters are not handled by the
+   * automaton: <code>$</code> also matches before a final line terminator and
+   * {@link Pattern} matches code points, not characters.
+   */
+  private static boolean isSupportedInput(String input) {
+    for (int i = 0; i < input.length(); i++) {
+      char c = input.charAt(i);
+      if (c < ' ') {
+        if (c == '\n' || c == '\r') {
+          return false;
+        }
+      } else if (c >= 0x80) {
+        if (c == 0x85 || c == 0x2028 || c == 0x2029
+            || Character.isSurrogate(c)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private State step(State state, char c) {
+    Closure cl = closure.get();
+    cl.clear();
+    for (int s : state.nfaStates) {
+      if (type[s] == CHAR && contains(chars[s], c)) {
+        cl.add(next[s][0], false, false);
+      }
+    }
+    int[] nfaStates = cl.toArray();
+    State target = intern(nfaStates);
+    if (target == null) {
+      return createState(nfaStates, false, true);
+    }
+    if (c < 128) {
+      state.transitions[c] = target;
+    }
+    return target;
+  }
+
+  /**
+   * @return the cached state for the set of NFA states, or null if the cache
+   *         is full
+   */
+  private State intern(int[] nfaStates) {
+    StateKey key = new StateKey(nfaStates);
+    synchronized (states) {
+      State state = states.get(key);
+      if (state == null) {
+        if (cacheSize + nfaStates.length > maxCacheSize) {
+          return null;
+        }
+        state = createState(nfaStates, false, true);
+        states.put(key, state);
+        cacheSize += nfaStates.length;
+      }
+      return state;
+    }
+  }
+
+  /**
+   * @param seeds
+   *          NFA states, the epsilon closure is taken for the initial state
+   */
+  private State createState(int[] seeds, boolean atStart, boolean closed) {
+    Closure cl = closure.get();
+    int[] nfaStates = seeds;
+    if (!closed) {
+      cl.clear();
+      for (int s : seeds) {
+        cl.add(s, atStart, false);
+      }
+      nfaStates = cl.toArray();
+    }
+    int match = NO_MATCH;
+    int minLive = NO_MATCH;
+    boolean hasEol = false;
+    for (int s : nfaStates) {
+      if (type[s] == MATCH) {
+        match = Math.min(match, rule[s]);
+      } else if (type[s] == EOL) {
+        hasEol = true;
+      }
+      minLive = Math.min(minLive, rule[s]);
+    }
+    int endMatch = match;
+    if (hasEol) {
+      cl.clear();
+      for (int s : nfaStates) {
+        if (type[s] == EOL) {
+          cl.add(s, atStart, true);
+        }
+      }
+      for (int s : cl.toArray()) {
+        if (type[s] == MATCH) {
+          endMatch = Math.min(endMatch, rule[s]);
+        }
+      }
+    }
+    return new State(nfaStates, match, endMatch, minLive);
+  }
+
+  private static boolean contains(int[] ranges, char c) {
+    if (ranges.length <= 8) {
+      for (int i = 0; i < ranges.length; i += 2) {
+        if (c < ranges[i]) {
+          return false;
+        }
+        if (c <= ranges[i + 1]) {
+          return true;
+        }
+      }
+      return false;
+    }
+    int lo = 0;
+    int hi = ranges.length / 2 - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      if (c < ranges[2 * mid]) {
+        hi = mid - 1;
+      } else if (c > ranges[2 * mid + 1]) {
+        lo = mid + 1;
+      } else {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static int[] toArray(List<Integer> list) {
+    int[] array = new int[list.size()];
+    for (int i = 0; i < array.length; i++) {
+      array[i] = list.get(i);
+    }
+    return array;
+  }
+
+  /** Epsilon closure of NFA states, reused per thread. */
+  private class Closure {
+    final int[] mark;
+    int generation = 0;
+    int[] stack = new int[64];
+    int[] result = new int[64];
+    int size = 0;
+
+    Closure(int states) {
+      mark = new int[states];
+    }
+
+    void clear() {
+      size = 0;
+      if (++generation == 0) {
+        Arrays.fill(mark, 0);
+        generation = 1;
+      }
+    }
+
+    /**
+     * Add a state and all states reachable by epsilon transitions, the start
+     * and end anchors are passed only at the start or end of the input.
+     */
+    void add(int start, boolean atStart, boolean atEnd) {
+      int top = 0;
+      stack[top++] = start;
+      while (top > 0) {
+        int s = stack[--top];
+        if (mark[s] == generation) {
+          continue;
+        }
+        mark[s] = generation;
+        switch (type[s]) {
+        case EPSILON:
+          int[] targets = next[s];
+          if (top + targets.length > stack.length) {
+            stack = Arrays.copyOf(stack, 2 * (top + targets.length));
+          }
+          // push in reverse order to visit in order
+          for (int i = targets.length - 1; i >= 0; i--) {
+            stack[top++] = targets[i];
+          }
+          break;
+        case BOL:
+          if (atStart) {
+            stack = push(stack, top++, next[s][0]);
+          }
+          break;
+        case EOL:
+          if (atEnd) {
+            stack = push(stack, top++, next[s][0]);
+            break;
+          }
+          result = push(result, size++, s);
+          break;
+        default:
+          result = push(result, size++, s);
+        }
+      }
+    }
+
+    /** @return the sorted states of the closure */
+    int[] toArray() {
+      int[] states = Arrays.copyOf(result, size);
+      Arrays.sort(states);
+      return states;
+    }
+  }
+
+  private static int[] push(int[] array, int index, int value) {
+    if (index == array.length) {
+      array = Arrays.copyOf(array, 2 * array.length);
+    }
+    array[index] = value;
+    return array;
+  }
+
+  /** Thompson construction of the NFA. */
+  private static class Builder {
+    final List<Byte> type = new ArrayList<>();
+    final List<int[]> chars = new ArrayList<>();
+    final List<int[]> next = new ArrayList<>();
+    final List<Integer> rule = new ArrayList<>();
+    /** max. size while compiling the current expression */
+    int limit = Integer.MAX_VALUE;
+
+    int size() {
+      return type.size();
+    }
+
+    int add(byte t, int[] ranges, int r) {
+      type.add(t);
+      chars.add(ranges);
+      next.add(null);
+      rule.add(r);
+      return type.size() - 1;
+    }
+
+    void truncate(int size) {
+      while (type.size() > size) {
+        int last = type.size() - 1;
+        type.remove(last);
+        chars.remove(last);
+        next.remove(last);
+        rule.remove(last);
+      }
+    }
+
+    /**
+     * Compile a node which continues with state <code>then</code>.
+     *
+     * @return the start state of the node
+     */
+    int compile(Node node, int then, int r) throws UnsupportedException {
+      if (size() > limit) {
+        throw new UnsupportedException("too many states");
+      }
+      int s;
+      switch (node.type) {
+      case Node.CHARS:
+        s = add(CHAR, node.ranges, r);
+        next.set(s, new int[] { then });
+        return s;
+      case Node.BOL:
+      case Node.EOL:
+        s = add(node.type == Node.BOL ? BOL : EOL, null, r);
+        next.set(s, new int[] { then });
+        return s;
+      case Node.CONCAT:
+        s = then;
+        for (int i = node.children.size() - 1; i >= 0; i--) {
+          s = compile(node.children.get(i), s, r);
+        }
+        return s;
+      case Node.ALT:
+        int[] targets = new int[node.children.size()];
+        for (int i = 0; i < targets.length; i++) {
+          targets[i] = compile(node.children.get(i), then, r);
+        }
+        s = add(EPSILON, null, r);
+        next.set(s, targets);
+        return s;
+      case Node.REPEAT:
+        Node child = node.children.get(0);
+        if (node.max < 0) {
+          // loop: the child continues with the branch state
+          int branch = add(EPSILON, null, r);
+          next.set(branch, new int[] { compile(child, branch, r), then });
+          s = branch;
+        } else {
+          s = then;
+          for (int i = node.min; i < node.max; i++) {
+            int optional = add(EPSILON, null, r);
+            next.set(optional, new int[] { compile(child, s, r), then });
+            s = optional;
+          }
+        }
+        for (int i = 0; i < node.min; i++) {
+          s = compile(child, s, r);
+        }
+        return s;
+      default:
+        throw new IllegalStateException();
+      }
+    }
+  }
+
+  /** A node of the syntax tree of an expression. */
+  private static class Node {
+    static final int CHARS = 0;
+    static final int CONCAT = 1;
+    static final int ALT = 2;
+    static final int REPEAT = 3;
+    static final int BOL = 4;
+    static final int EOL = 5;
+
+    final int type;
+    int[] ranges;
+    final List<Node> children = new ArrayList<>();
+    int min;
+    int max;
+
+    Node(int type) {
+      this.type = type;
+    }
+
+    /** @return true if the node may match the empty string */
+    boolean isNullable() {
+      switch (type) {
+      case CHARS:
+        return false;
+      case CONCAT:
+        for (Node child : children) {
+          if (!child.isNullable()) {
+            return false;
+          }
+        }
+        return true;
+      case ALT:
+        for (Node child : children) {
+          if (child.isNullable()) {
+            return true;
+          }
+        }
+        return false;
+      case REPEAT:
+        return min == 0 || children.get(0).isNullable();
+      default:
+        return true;
+      }
+    }
+
+    static Node chars(int[] ranges) {
+      Node node = new Node(CHARS);
+      node.ranges = ranges;
+      return node;
+    }
+  }
+
+  /**
+   * Parser for the supported subset of the regular expression syntax. The
+   * expressions have been compiled by {@link Pattern}, so only valid syntax
+   * needs to be handled, everything not understood is rejected.
+   */
+  private static class Parser {
+    private final String regex;
+    private int pos = 0;
+
+    Parser(String regex) {
+      this.regex = regex;
+    }
+
+    Node parse() throws UnsupportedException {
+      Node node = parseAlternatives();
+      if (pos < regex.length()) {
+        throw new UnsupportedException("unexpected " + regex.charAt(pos));
+      }
+      return node;
+    }
+
+    private boolean more() {
+      return pos < regex.length();
+    }
+
+    private char peek() {
+      return regex.charAt(pos);
+    }
+
+    private Node parseAlternatives() throws UnsupportedException {
+      Node first = parseSequence();
+      if (!more() || peek() != '|') {
+        return first;
+      }
+      Node alt = new Node(Node.ALT);
+      alt.children.add(first);
+      while (more() && peek() == '|') {
+        pos++;
+        alt.children.add(parseSequence());
+      }
+      return alt;
+    }
+
+    private Node parseSequence() throws UnsupportedException {
+      Node sequence = new Node(Node.CONCAT);
+      while (more() && peek() != '|' && peek() != ')') {
+        Node atom = parseAtom();
+        if (more() && isQuantifier(peek())) {
+          atom = parseQuantifier(atom);
+        }
+        sequence.children.add(atom);
+      }
+      return sequence;
+    }
+
+    private static boolean isQuantifier(char c) {
+      return c == '*' || c == '+' || c == '?' || c == '{';
+    }
+
+    private Node parseQuantifier(Node atom) throws UnsupportedException {
+      Node repeat = new Node(Node.REPEAT);
+      repeat.children.add(atom);
+      char c = regex.charAt(pos++);
+      switch (c) {
+      case '*':
+        repeat.min = 0;
+        repeat.max = -1;
+        break;
+      case '+':
+        repeat.min = 1;
+        repeat.max = -1;
+        break;
+      case '?':
+        repeat.min = 0;
+        repeat.max = 1;
+        break;
+      default:
+        repeat.min = parseNumber();
+        repeat.max = repeat.min;
+        if (more() && peek() == ',') {
+          pos++;
+          repeat.max = more() && peek() == '}' ? -1 : parseNumber();
+        }
+        if (!more() || regex.charAt(pos++) != '}') {
+          throw new UnsupportedException("invalid repetition");
+        }
+        if (Math.max(repeat.min, repeat.max) > 100) {
+          throw new UnsupportedException("large repetition");
+        }
+      }
+      if (more()) {
+        if (peek() == '?') {
+          // reluctant: same matches as greedy, only the match found differs
+          pos++;
+        } else if (peek() == '+') {
+          throw new UnsupportedException("possessive quantifier");
+        }
+      }
+      if (more() && isQuantifier(peek())) {
+        throw new UnsupportedException("nested quantifier");
+      }
+      if (repeat.min > 1 && atom.isNullable()) {
+        // Pattern ends a loop after an iteration matching the empty string,
+        // even if the minimum count is not reached yet
+        throw new UnsupportedException("repetition of empty match");
+      }
+      return repeat;
+    }
+
+    private int parseNumber() throws UnsupportedException {
+      int start = pos;
+      while (more() && peek() >= '0' && peek() <= '9' && pos - start < 6) {
+        pos++;
+      }
+      if (start == pos) {
+        throw new UnsupportedException("invalid repetition");
+      }
+      return Integer.parseInt(regex.substring(start, pos));
+    }
+
+    private Node parseAtom() throws UnsupportedException {
+      char c = regex.charAt(pos++);
+      switch (c) {
+      case '(':
+        if (more() && peek() == '?') {
+          pos++;
+          if (more() && peek() == ':') {
+            pos++;
+          } else if (more() && peek() == '<' && pos + 1 < regex.length()
+              && Character.isLetter(regex.charAt(pos + 1))) {
+            // named group
+            int end = regex.indexOf('>', pos);
+            if (end < 0) {
+              throw new UnsupportedException("invalid group name");
+            }
+            pos = end + 1;
+          } else {
+            throw new UnsupportedException("special group");
+          }
+        }
+        Node group = parseAlternatives();
+        if (!more() || regex.charAt(pos++) != ')') {
+          throw new UnsupportedException("unclosed group");
+        }
+        return group;
+      case '[':
+        return Node.chars(parseClass());
+      case '.':
+        return Node.chars(DOT);
+      case '^':
+        return new Node(Node.BOL);
+      case '$':
+        return new Node(Node.EOL);
+      case '\\':
+        return parseEscape();
+      case '*':
+      case '+':
+      case '?':
+      case '{':
+        throw new UnsupportedException("dangling quantifier");
+      default:
+        return Node.chars(literal(c));
+      }
+    }
+
+    private static int[] literal(char c) throws UnsupportedException {
+      if (Character.isSurrogate(c)) {
+        throw new UnsupportedException("supplementary character");
+      }
+      return new int[] { c, c };
+    }
+
+    private Node parseEscape() throws UnsupportedException {
+      if (!more()) {
+        throw new UnsupportedException("trailing backslash");
+      }
+      char c = peek();
+      if (c == 'A') {
+        pos++;
+        return new Node(Node.BOL);
+      } else if (c == 'z' || c == 'Z') {
+        pos++;
+        return new Node(Node.EOL);
+      }
+      return Node.chars(parseClassEscape());
+    }
+
+    /** @return the characters matched by an escape sequence */
+    private int[] parseClassEscape() throws UnsupportedException {
+      char c = regex.charAt(pos++);
+      switch (c) {
+      case 'd':
+        return DIGIT;
+      case 'D':
+        return complement(DIGIT);
+      case 's':
+        return SPACE;
+      case 'S':
+        return complement(SPACE);
+      case 'w':
+        return WORD;
+      case 'W':
+        return complement(WORD);
+      case 't':
+        return literal('\t');
+      case 'n':
+        return literal('\n');
+      case 'r':
+        return literal('\r');
+      case 'f':
+        return literal('\f');
+      case 'a':
+        return literal('\u0007');
+      case 'e':
+        return literal('\u001B');
+      case 'x':
+        return literal(parseHex(2));
+      case 'u':
+        return literal(parseHex(4));
+      default:
+        if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+            || (c >= '0' && c <= '9')) {
+          throw new UnsupportedException("escape sequence \\" + c);
+        }
+        return literal(c);
+      }
+    }
+
+    private char parseHex(int digits) throws UnsupportedException {
+      if (pos + digits > regex.length()) {
+        throw new UnsupportedException("invalid hex escape");
+      }
+      try {
+        int value = Integer.parseInt(regex.substring(pos, pos + digits), 16);
+        pos += digits;
+        return (char) value;
+      } catch (NumberFormatException e) {
+        throw new UnsupportedException("invalid hex escape");
+      }
+    }
+
+    /** Parse a character class, the opening bracket is already consumed. */
+    private int[] parseClass() throws UnsupportedException {
+      boolean negate = false;
+      if (more() && peek() == '^') {
+        negate = true;
+        pos++;
+      }
+      if (more() && peek() == ']') {
+        throw new UnsupportedException("class starting with ]");
+      }
+      List<int[]> ranges = new ArrayList<>();
+      boolean first = true;
+      while (true) {
+        if (!more()) {
+          throw new UnsupportedException("unclosed class");
+        }
+        char c = regex.charAt(pos++);
+        if (c == ']') {
+          break;
+        }
+        if (c == '[' || (c == '&' && more() && peek() == '&')) {
+          throw new UnsupportedException("nested class");
+        }
+        int[] element;
+        boolean single = true;
+        if (c == '\\') {
+          if (!more()) {
+            throw new UnsupportedException("trailing backslash");
+          }
+          element = parseClassEscape();
+          single = element.length == 2 && element[0] == element[1];
+        } else if (c == '-' && !first && !(more() && peek() == ']')) {
+          throw new UnsupportedException("ambiguous - in class");
+        } else {
+          element = literal(c);
+        }
+        first = false;
+        if (more() && peek() == '-' && pos + 1 < regex.length()
+            && regex.charAt(pos + 1) != ']') {
+          // range
+          if (!single) {
+            throw new UnsupportedException("range of class");
+          }
+          pos++;
+          char d = regex.charAt(pos++);
+          int[] end;
+          if (d == '\\') {
+            if (!more()) {
+              throw new UnsupportedException("trailing backslash");
+            }
+            end = parseClassEscape();
+            if (end.length != 2 || end[0] != end[1]) {
+              throw new UnsupportedException("range of class");
+            }
+          } else if (d == '[' || d == '&') {
+            throw new UnsupportedException("nested class");
+          } else {
+            end = literal(d);
+          }
+          element = new int[] { element[0], end[0] };
+          if (more() && peek() == '-' && pos + 1 < regex.length()
+              && regex.charAt(pos + 1) != ']') {
+            throw new UnsupportedException("ambiguous - in class");
+          }
+        }
+        ranges.add(element);
+      }
+      int[] set = union(ranges);
+      return negate ? complement(set) : set;
+    }
+  }
+
+  /** @return the sorted, merged union of character ranges */
+  static int[] union(List<int[]> sets) {
+    List<int[]> ranges = new ArrayList<>();
+    for (int[] set : sets) {
+      for (int i = 0; i < set.length; i += 2) {
+        ranges.add(new int[] { set[i], set[i + 1] });
+      }
+    }
+    ranges.sort((a, b) -> Integer.compare(a[0], b[0]));
+    List<int[]> merged = new ArrayList<>();
+    for (int[] range : ranges) {
+      int[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+      if (last != null && range[0] <= last[1] + 1) {
+        last[1] = Math.max(last[1], range[1]);
+      } else {
+        merged.add(range.clone());
+      }
+    }
+    int[] result = new int[2 * merged.size()];
+    for (int i = 0; i < merged.size(); i++) {
+      result[2 * i] = merged.get(i)[0];
+      result[2 * i + 1] = merged.get(i)[1];
+    }
+    return result;
+  }
+
+  /** @return the characters not in the sorted ranges */
+  static int[] complement(int[] ranges) {
+    List<Integer> result = new ArrayList<>();
+    int start = 0;
+    for (int i = 0; i < ranges.length; i += 2) {
+      if (ranges[i] > start) {
+        result.add(start);
+        result.add(ranges[i] - 1);
+      }
+      start = ranges[i + 1] + 1;
+    }
+    if (start <= 0xFFFF) {
+      result.add(start);
+      result.add(0xFFFF);
+    }
+    return toArray(result);
+  }
+
+}
@@ -20,22 +20,29 @@ package org.apache.nutch.urlfilter.regex;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.nutch.urlfilter.api.RegexRule;
 import org.apache.nutch.urlfilter.api.RegexURLFilterBase;
+import org.apache.nutch.urlfilter.api.RuleSetMatcher;
 import org.apache.nutch.util.NutchConfiguration;
 
 /**
  * Filters URLs based on a file of regular expressions using the
- * {@link java.util.regex Java Regex implementation}.
+ * {@link java.util.regex Java Regex implementation}. Unless
+ * <code>urlfilter.regex.compiled</code> is false, the rules are compiled into
+ * a {@link MultiRegexMatcher} which finds the first matching rule in a single
+ * pass over the URL.
  */
 public class RegexURLFilter extends RegexURLFilterBase {
 
   public static final String URLFILTER_REGEX_FILE = "urlfilter.regex.file";
   public static final String URLFILTER_REGEX_RULES = "urlfilter.regex.rules";
+  public static final String URLFILTER_REGEX_COMPILED = "urlfilter.regex.compiled";
 
   public RegexURLFilter() {
     super();
@@ -76,8 +83,19 @@ public class RegexURLFilter extends RegexURLFilterBase {
   protected RegexRule createRule(boolean sign, String regex, String hostOrDomain) {
     return new Rule(sign, regex, hostOrDomain);
   }
-  
-  
+
+  @Override
+  protected RuleSetMatcher compileRules(List<RegexRule> rules) {
+    Configuration conf = getConf();
+    if (conf != null && !conf.getBoolean(URLFILTER_REGEX_COMPILED, true)) {
+      return null;
+    }
+    List<Pattern> patterns = new ArrayList<Pattern>();
+    for (RegexRule rule : rules) {
+      patterns.add(((Rule) rule).pattern);
+    }
+    return new MultiRegexMatcher(patterns);
+  }
 
   /*
    * ------------------------------------ * </implementation:RegexURLFilterBase>
@@ -0,0 +1,242 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.urlfilter.regex;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that {@link MultiRegexMatcher} finds the same first match as trying
+ * the expressions one by one.
+ */
+public class TestMultiRegexMatcher {
+
+  private final static String SEPARATOR = System.getProperty("file.separator");
+  private final static String SAMPLES = System.getProperty("test.data", ".");
+
+  private static final String[] SAMPLE_FILES = { "WholeWebCrawling",
+      "IntranetCrawling", "Benchmarks", "nutch1838" };
+
+  private static final String ALPHABET = "ab/.:?=-_0";
+
+  private final Random random = new Random(1234);
+
+  private static int firstMatch(List<Pattern> patterns, String input) {
+    for (int i = 0; i < patterns.size(); i++) {
+      if (patterns.get(i).matcher(input).find()) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static void assertSameMatch(List<Pattern> patterns,
+      MultiRegexMatcher matcher, String input) {
+    Assert.assertEquals(patterns + " " + input, firstMatch(patterns, input),
+        matcher.firstMatch(input));
+  }
+
+  private static List<String> readLines(String file) throws IOException {
+    List<String> lines = new ArrayList<>();
+    try (BufferedReader in = new BufferedReader(new FileReader(SAMPLES
+        + SEPARATOR + file))) {
+      String line;
+      while ((line = in.readLine()) != null) {
+        if (line.length() > 1
+            && (line.charAt(0) == '+' || line.charAt(0) == '-')) {
+          lines.add(line.substring(1));
+        }
+      }
+    }
+    return lines;
+  }
+
+  @Test
+  public void testSampleRules() throws IOException {
+    List<Pattern> allPatterns = new ArrayList<>();
+    List<String> allUrls = new ArrayList<>();
+    for (String file : SAMPLE_FILES) {
+      List<Pattern> patterns = new ArrayList<>();
+      for (String regex : readLines(file + ".rules")) {
+        patterns.add(Pattern.compile(regex));
+      }
+      List<String> urls = readLines(file + ".urls");
+      MultiRegexMatcher matcher = new MultiRegexMatcher(patterns);
+      for (String url : urls) {
+        assertSameMatch(patterns, matcher, url);
+      }
+      allPatterns.addAll(patterns);
+      allUrls.addAll(urls);
+    }
+
+    // all rules at once, with and without cached states
+    for (int cacheSize : new int[] { MultiRegexMatcher.DEFAULT_CACHE_SIZE,
+        0 }) {
+      MultiRegexMatcher matcher = new MultiRegexMatcher(allPatterns,
+          cacheSize);
+      // only the two rules with back references are matched separately
+      Assert.assertEquals(2, matcher.getFallbackCount());
+      for (int i = 0; i < 2; i++) {
+        for (String url : allUrls) {
+          assertSameMatch(allPatterns, matcher, url);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testFallback() {
+    List<Pattern> patterns = new ArrayList<>();
+    for (String regex : new String[] { "(a)\\1", "(?i)XYZ", "a(?=b)",
+        "\\bfoo\\b", "x*+y", "(a?){2}c", "\\p{Upper}", "[a-z&&[^c]]q",
+        "\\Q.\\E!", "literal" }) {
+      patterns.add(Pattern.compile(regex));
+    }
+    patterns.add(Pattern.compile("flags", Pattern.CASE_INSENSITIVE));
+    MultiRegexMatcher matcher = new MultiRegexMatcher(patterns);
+    Assert.assertEquals(patterns.size() - 1, matcher.getFallbackCount());
+    for (String input : new String[] { "aa", "xyz", "ab", "a foo b", "xy",
+        "ac", "A", "bq", "cq", ".!", "literal", "FLAGS", "a\nb",
+        "\uD83D\uDE00", "" }) {
+      assertSameMatch(patterns, matcher, input);
+    }
+  }
+
+  @Test
+  public void testAnchors() {
+    List<Pattern> patterns = Arrays.asList(Pattern.compile("b$"),
+        Pattern.compile("^a"), Pattern.compile("\\Aab\\z"),
+        Pattern.compile("^$"), Pattern.compile("x"));
+    MultiRegexMatcher matcher = new MultiRegexMatcher(patterns);
+    for (String input : new String[] { "", "a", "ab", "ba", "xb", "xab",
+        "b\n", "a\n", "\n" }) {
+      assertSameMatch(patterns, matcher, input);
+    }
+  }
+
+  /** Random expressions and inputs over a small alphabet. */
+  @Test
+  public void testRandom() {
+    for (int round = 0; round < 500; round++) {
+      List<Pattern> patterns = new ArrayList<>();
+      int n = 1 + random.nextInt(8);
+      while (patterns.size() < n) {
+        try {
+          patterns.add(Pattern.compile(randomAlternatives(0)));
+        } catch (PatternSyntaxException e) {
+          // try another one
+        }
+      }
+      MultiRegexMatcher matcher = new MultiRegexMatcher(patterns,
+          round % 3 == 0 ? 50 : MultiRegexMatcher.DEFAULT_CACHE_SIZE);
+      for (int i = 0; i < 50; i++) {
+        assertSameMatch(patterns, matcher, randomInput());
+      }
+    }
+  }
+
+  private String randomAlternatives(int depth) {
+    StringBuilder sb = new StringBuilder(randomSequence(depth));
+    while (random.nextInt(4) == 0) {
+      sb.append('|').append(randomSequence(depth));
+    }
+    return sb.toString();
+  }
+
+  private String randomSequence(int depth) {
+    StringBuilder sb = new StringBuilder();
+    int n = random.nextInt(5);
+    for (int i = 0; i < n; i++) {
+      sb.append(randomAtom(depth));
+      String[] quantifiers = { "*", "+", "?", "{2}", "{1,3}", "{0,}", "*?",
+          "+?" };
+      int q = random.nextInt(2 * quantifiers.length);
+      if (q < quantifiers.length) {
+        sb.append(quantifiers[q]);
+      }
+    }
+    return sb.toString();
+  }
+
+  private String randomAtom(int depth) {
+    // no nested groups, their backtracking may take too long
+    switch (depth > 0 ? 2 + random.nextInt(6) : random.nextInt(9)) {
+    case 0:
+      return "(" + randomAlternatives(depth + 1) + ")";
+    case 1:
+      return "(?:" + randomAlternatives(depth + 1) + ")";
+    case 2:
+      return randomClass();
+    case 3:
+      return ".";
+    case 4:
+      return random.nextBoolean() ? "^" : "$";
+    case 5:
+      String[] escapes = { "\\d", "\\w", "\\s", "\\D", "\\W", "\\S", "\\.",
+          "\\?", "\\/", "\\-", "\\x61", "\\u0062", "\\A", "\\z", "\\Z" };
+      return escapes[random.nextInt(escapes.length)];
+    default:
+      char c = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+      return c == '.' || c == '?' ? "\\" + c : String.valueOf(c);
+    }
+  }
+
+  private String randomClass() {
+    StringBuilder sb = new StringBuilder("[");
+    if (random.nextInt(3) == 0) {
+      sb.append('^');
+    }
+    String[] elements = { "a-c", "\\d", "./", "\\-", "0-9", "b", ":", "_" };
+    int n = 1 + random.nextInt(3);
+    for (int i = 0; i < n; i++) {
+      sb.append(elements[random.nextInt(elements.length)]);
+    }
+    if (random.nextInt(5) == 0) {
+      sb.append('-');
+    }
+    return sb.append(']').toString();
+  }
+
+  private String randomInput() {
+    StringBuilder sb = new StringBuilder();
+    int n = random.nextInt(12);
+    for (int i = 0; i < n; i++) {
+      int k = random.nextInt(40);
+      if (k == 0) {
+        sb.append('\n');
+      } else if (k == 1) {
+        sb.append('\u00e9');
+      } else if (k == 2) {
+        sb.append(' ');
+      } else {
+        sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+      }
+    }
+    return sb.toString();
+  }
+
+}
@@ -19,6 +19,7 @@ package org.apache.nutch.urlfilter.regex;
 // JDK imports
 import java.io.IOException;
 import java.io.Reader;
+import java.io.StringReader;
 
 import org.apache.nutch.net.*;
 // Nutch imports
@@ -58,4 +59,32 @@ public class TestRegexURLFilter extends RegexURLFilterBaseTest {
     test("nutch1838");
   }
 
+  @Test
+  public void testHostAndDomainRules() {
+    String rules = "> example.net\n" //
+        + "-/private/\n" //
+        + "<\n" //
+        + "> www.example.org\n" //
+        + "+/public/\n" //
+        + "<\n" //
+        + "-/public/\n" //
+        + "> www.example.net\n" //
+        + "+/private/ok\n" //
+        + "+/shop/\n" //
+        + "<\n" //
+        + "-/shop/\n" //
+        + "+.\n";
+    String urls = "-http://www.example.net/private/ok\n" //
+        + "-http://other.example.net/private/\n" //
+        + "-http://www.example.net/public/\n" //
+        + "+http://www.example.org/public/\n" //
+        + "+http://WWW.EXAMPLE.ORG/public/\n" //
+        + "-http://example.org/public/\n" //
+        + "+http://www.example.net/shop/\n" //
+        + "-http://example.net/shop/\n" //
+        + "+http://www.example.com/private/\n" //
+        + "-not a url/shop/\n";
+    test(new StringReader(rules), new StringReader(urls));
+  }
+
 }
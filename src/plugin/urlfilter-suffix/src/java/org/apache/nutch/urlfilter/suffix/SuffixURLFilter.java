@@ -22,6 +22,7 @@ import org.apache.nutch.net.*;
 
 import org.apache.nutch.util.NutchConfiguration;
 import org.apache.nutch.util.SuffixStringMatcher;
+import org.apache.nutch.util.TrieStringMatcher;
 
 import org.apache.nutch.plugin.Extension;
 import org.apache.nutch.plugin.PluginRepository;
@@ -32,7 +33,13 @@ import org.slf4j.LoggerFactory;
 import java.lang.invoke.MethodHandles;
 import java.io.Reader;
 import java.io.FileReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.IOException;
 import java.io.StringReader;
@@ -40,7 +47,6 @@ import java.io.StringReader;
 import java.util.List;
 import java.util.ArrayList;
 
-import java.net.URL;
 import java.net.MalformedURLException;
 
 /**
@@ -81,6 +87,12 @@ import java.net.MalformedURLException;
  * expressions, it only accepts literal suffixes. I.e. a suffix "+*.jpg" is most
  * probably wrong, you should use "+.jpg" instead.
  * </p>
+ * <p>
+ * Large lists can be compiled into a serialized trie by
+ * <code>SuffixURLFilter -compile &lt;rules_file&gt; &lt;output_file&gt;</code>,
+ * which is loaded without parsing the rules and building the trie again.
+ * Compiled files are detected automatically.
+ * </p>
  * <h3>Example 1</h3>
  * <p>
  * The configuration shown below will accept all URLs with '.html' or '.htm'
@@ -121,7 +133,7 @@ import java.net.MalformedURLException;
  *  
  * @author Andrzej Bialecki
  */
-public class SuffixURLFilter implements URLFilter {
+public class SuffixURLFilter implements ParsedURLFilter {
 
   private static final Logger LOG = LoggerFactory
       .getLogger(MethodHandles.lookup().lookupClass());
@@ -147,34 +159,34 @@ public class SuffixURLFilter implements URLFilter {
   public String filter(String url) {
     if (url == null)
       return null;
-    String _url;
-    if (ignoreCase)
-      _url = url.toLowerCase();
-    else
-      _url = url;
+    return filter(new ParsedURL(url)) ? url : null;
+  }
+
+  public boolean filter(ParsedURL url) {
+    String _url = null;
     if (filterFromPath) {
+      // reuse the parsed URL, lowercasing the path is the same as
+      // lowercasing the URL before parsing it
       try {
-        URL pUrl = new URL(_url);
-        _url = pUrl.getPath();
+        _url = url.getURL().getPath();
       } catch (MalformedURLException e) {
         // don't care
       }
     }
+    if (_url == null)
+      _url = url.toString();
+    if (ignoreCase)
+      _url = _url.toLowerCase();
 
     String a = suffixes.shortestMatch(_url);
     if (a == null) {
-      if (modeAccept)
-        return url;
-      else
-        return null;
+      return modeAccept;
     } else {
-      if (modeAccept)
-        return null;
-      else
-        return url;
+      return !modeAccept;
     }
   }
 
+
   public void readConfiguration(Reader reader) throws IOException {
 
     // handle missing config file
@@ -232,8 +244,50 @@ public class SuffixURLFilter implements URLFilter {
     ignoreCase = ignore;
   }
 
+  /**
+   * Compile the rules, including the mode and options, into a serialized trie
+   * which is loaded by {@link #readCompiled(InputStream)}.
+   */
+  public static void compile(Reader rules, DataOutputStream out)
+      throws IOException {
+    SuffixURLFilter filter = new SuffixURLFilter(rules);
+    filter.suffixes.write(out);
+    out.writeBoolean(filter.modeAccept);
+    out.writeBoolean(filter.filterFromPath);
+    out.writeBoolean(filter.ignoreCase);
+  }
+
+  /**
+   * Load the rules compiled by {@link #compile(Reader, DataOutputStream)}.
+   * 
+   * @return false if the stream does not contain compiled rules
+   */
+  public boolean readCompiled(InputStream in) throws IOException {
+    if (!in.markSupported()) {
+      in = new BufferedInputStream(in);
+    }
+    if (!TrieStringMatcher.isSerialized(in)) {
+      return false;
+    }
+    DataInputStream data = new DataInputStream(in);
+    suffixes = SuffixStringMatcher.read(data);
+    modeAccept = data.readBoolean();
+    filterFromPath = data.readBoolean();
+    ignoreCase = data.readBoolean();
+    return true;
+  }
+
   public static void main(String args[]) throws IOException {
 
+    if (args.length == 3 && args[0].equals("-compile")) {
+      try (Reader rules = new FileReader(args[1]);
+          DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+              new FileOutputStream(args[2])))) {
+        compile(rules, out);
+      }
+      return;
+    }
+
     SuffixURLFilter filter;
     if (args.length >= 1)
       filter = new SuffixURLFilter(new FileReader(args[0]));
@@ -286,6 +340,17 @@ public class SuffixURLFilter implements URLFilter {
     // attribute "file" takes precedence if defined
     if (attributeFile != null)
       file = attributeFile;
+    if (stringRules == null && file != null) {
+      try (InputStream in = conf.getConfResourceAsInputStream(file)) {
+        if (in != null && readCompiled(in)) {
+          LOG.info("Loaded compiled suffix rules from {}", file);
+          return;
+        }
+      } catch (IOException e) {
+        LOG.error(e.getMessage());
+        throw new RuntimeException(e.getMessage(), e);
+      }
+    }
     Reader reader = null;
     if (stringRules != null) { // takes precedence over files
       reader = new StringReader(stringRules);
@@ -16,6 +16,9 @@
  */
 package org.apache.nutch.urlfilter.suffix;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.StringReader;
 
@@ -120,4 +123,23 @@ public class TestSuffixURLFilter {
     }
   }
 
+  @Test
+  public void testCompiled() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    SuffixURLFilter.compile(new StringReader("+P\n" + suffixes),
+        new DataOutputStream(bytes));
+    SuffixURLFilter compiled = new SuffixURLFilter();
+    Assert.assertTrue(compiled.readCompiled(new ByteArrayInputStream(bytes
+        .toByteArray())));
+    Assert.assertTrue(compiled.isModeAccept());
+    Assert.assertFalse(compiled.isIgnoreCase());
+    for (int i = 0; i < urls.length; i++) {
+      Assert.assertTrue(urlsModeAcceptAndPathFilter[i] == compiled
+          .filter(urls[i]));
+    }
+    // plain-text rules are not loaded as compiled rules
+    Assert.assertFalse(compiled.readCompiled(new ByteArrayInputStream(
+        suffixes.getBytes("UTF-8"))));
+  }
+
 }
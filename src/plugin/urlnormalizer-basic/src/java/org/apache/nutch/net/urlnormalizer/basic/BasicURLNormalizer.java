@@ -30,6 +30,8 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.hadoop.conf.Configured;
+import org.apache.nutch.net.ParsedURL;
+import org.apache.nutch.net.ParsedURLNormalizer;
 import org.apache.nutch.net.URLNormalizer;
 import org.apache.nutch.net.URLNormalizers;
 import org.apache.nutch.util.NutchConfiguration;
@@ -46,7 +48,8 @@ import org.slf4j.LoggerFactory;
  * percent-encoding</a> in URL paths</li>
  * </ul>
  */
-public class BasicURLNormalizer extends Configured implements URLNormalizer {
+public class BasicURLNormalizer extends Configured
+    implements ParsedURLNormalizer {
   private static final Logger LOG = LoggerFactory
       .getLogger(MethodHandles.lookup().lookupClass());
 
@@ -97,8 +100,37 @@ public class BasicURLNormalizer extends Configured implements URLNormalizer {
 
     urlString = urlString.trim(); // remove extra spaces
 
-    URL url = new URL(urlString);
+    URL url = normalize(new URL(urlString), urlString);
+    if (url != null)
+      urlString = url.toString();
 
+    return urlString;
+  }
+
+  public boolean normalize(ParsedURL parsedUrl, String scope)
+      throws MalformedURLException {
+    String urlString = parsedUrl.toString();
+
+    if ("".equals(urlString)) // permit empty
+      return true;
+
+    String trimmed = urlString.trim(); // remove extra spaces
+    if (trimmed.length() != urlString.length())
+      parsedUrl.set(trimmed);
+
+    // reuse the URL if already parsed
+    URL url = normalize(parsedUrl.getURL(), trimmed);
+    if (url != null)
+      parsedUrl.set(url);
+
+    return true;
+  }
+
+  /**
+   * @return the normalized URL or null if the URL is already normalized
+   */
+  private URL normalize(URL url, String urlString)
+      throws MalformedURLException {
     String protocol = url.getProtocol();
     String host = url.getHost();
     int port = url.getPort();
@@ -158,9 +190,9 @@ public class BasicURLNormalizer extends Configured implements URLNormalizer {
     }
 
     if (changed)
-      urlString = new URL(protocol, host, port, file).toString();
+      return new URL(protocol, host, port, file);
 
-    return urlString;
+    return null;
   }
 
   private String getFileWithNormalizedPath(URL url)
@@ -0,0 +1,516 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.net.urlnormalizer.regex;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.nutch.net.urlnormalizer.regex.RegexURLNormalizer.Rule;
+
+/**
+ * Immutable list of normalization rules, shared by all threads. Every rule is
+ * compiled with the literals a URL must contain for the rule's pattern to
+ * match. All literals are searched in a single pass over the URL (<a
+ * href="https://en.wikipedia.org/wiki/Aho%E2%80%93Corasick_algorithm"
+ * >Aho-Corasick</a>), and a rule's pattern is only run if one of its literals
+ * is found. Literals are matched ignoring the case of ASCII letters, as a
+ * pre-filter false positives are harmless.
+ */
+class RegexRuleSet {
+
+  static final RegexRuleSet EMPTY = new RegexRuleSet(
+      Collections.<Rule> emptyList());
+
+  private static final int ALPHABET = 128;
+
+  private final List<Rule> rules;
+
+  /** per rule: ids of the literals, one of them is required, or null */
+  private final int[][] ruleLiterals;
+
+  private final int numLiterals;
+
+  /** transition table, ALPHABET entries per state, 0 is the start state */
+  private final int[] next;
+
+  /** per state: ids of literals ending in this state */
+  private final int[][] output;
+
+  RegexRuleSet(List<Rule> rules) {
+    this.rules = Collections.unmodifiableList(new ArrayList<Rule>(rules));
+    ruleLiterals = new int[rules.size()][];
+    Map<String, Integer> literalIds = new HashMap<String, Integer>();
+    for (int i = 0; i < rules.size(); i++) {
+      Set<String> literals = requiredLiterals(rules.get(i).pattern.pattern());
+      if (literals == null) {
+        continue;
+      }
+      int[] ids = new int[literals.size()];
+      int j = 0;
+      for (String literal : literals) {
+        Integer id = literalIds.get(literal);
+        if (id == null) {
+          id = literalIds.size();
+          literalIds.put(literal, id);
+        }
+        ids[j++] = id;
+      }
+      ruleLiterals[i] = ids;
+    }
+    numLiterals = literalIds.size();
+
+    // build the trie
+    List<int[]> trie = new ArrayList<int[]>();
+    List<Set<Integer>> outputs = new ArrayList<Set<Integer>>();
+    trie.add(new int[ALPHABET]);
+    outputs.add(new HashSet<Integer>());
+    for (Map.Entry<String, Integer> e : literalIds.entrySet()) {
+      int state = 0;
+      for (char c : e.getKey().toCharArray()) {
+        if (trie.get(state)[c] == 0) {
+          trie.get(state)[c] = trie.size();
+          trie.add(new int[ALPHABET]);
+          outputs.add(new HashSet<Integer>());
+        }
+        state = trie.get(state)[c];
+      }
+      outputs.get(state).add(e.getValue());
+    }
+
+    // add failure transitions in breadth-first order, turning the trie into
+    // a deterministic automaton
+    int[] fail = new int[trie.size()];
+    Queue<Integer> queue = new ArrayDeque<Integer>();
+    for (int c = 0; c < ALPHABET; c++) {
+      if (trie.get(0)[c] != 0) {
+        queue.add(trie.get(0)[c]);
+      }
+    }
+    while (!queue.isEmpty()) {
+      int state = queue.remove();
+      outputs.get(state).addAll(outputs.get(fail[state]));
+      int[] transitions = trie.get(state);
+      for (int c = 0; c < ALPHABET; c++) {
+        int target = transitions[c];
+        if (target != 0) {
+          fail[target] = trie.get(fail[state])[c];
+          queue.add(target);
+        } else {
+          transitions[c] = trie.get(fail[state])[c];
+        }
+      }
+    }
+
+    next = new int[trie.size() * ALPHABET];
+    output = new int[trie.size()][];
+    for (int state = 0; state < trie.size(); state++) {
+      System.arraycopy(trie.get(state), 0, next, state * ALPHABET, ALPHABET);
+      output[state] = new int[outputs.get(state).size()];
+      int j = 0;
+      for (int id : outputs.get(state)) {
+        output[state][j++] = id;
+      }
+    }
+  }
+
+  List<Rule> getRules() {
+    return rules;
+  }
+
+  boolean isEmpty() {
+    return rules.isEmpty();
+  }
+
+  /**
+   * Apply all rules to a URL.
+   */
+  String apply(String urlString) {
+    boolean[] found = null;
+    for (int i = 0; i < rules.size(); i++) {
+      int[] literals = ruleLiterals[i];
+      if (literals != null) {
+        if (found == null) {
+          found = findLiterals(urlString);
+        }
+        boolean matches = false;
+        for (int id : literals) {
+          if (found[id]) {
+            matches = true;
+            break;
+          }
+        }
+        if (!matches) {
+          continue;
+        }
+      }
+      Rule r = rules.get(i);
+      String result = r.pattern.matcher(urlString).replaceAll(r.substitution);
+      if (!result.equals(urlString)) {
+        // the URL has changed, search the literals again
+        urlString = result;
+        found = null;
+      }
+    }
+    return urlString;
+  }
+
+  private boolean[] findLiterals(String s) {
+    boolean[] found = new boolean[numLiterals];
+    int state = 0;
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c >= ALPHABET) {
+        // literals are ASCII only
+        state = 0;
+        continue;
+      }
+      if (c >= 'A' && c <= 'Z') {
+        c += 'a' - 'A';
+      }
+      state = next[state * ALPHABET + c];
+      for (int id : output[state]) {
+        found[id] = true;
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Find the literals a string must contain to be matched by a regular
+   * expression. Only the top-level sequence and required groups are
+   * analyzed, constructs which are not understood are treated as an unknown
+   * sub-expression.
+   * 
+   * @return lowercase ASCII literals, at least one of them is contained in
+   *         every string (lowercased) matching the regular expression, or
+   *         null if no required literals have been found
+   */
+  static Set<String> requiredLiterals(String regex) {
+    try {
+      LiteralParser parser = new LiteralParser(regex);
+      Set<String> literals = parser.alternatives();
+      if (parser.pos != regex.length()) {
+        return null;
+      }
+      return literals;
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Parses the required literals of a regular expression. Throws an
+   * {@link IllegalArgumentException} if the expression cannot be analyzed.
+   */
+  private static class LiteralParser {
+
+    private final String regex;
+    private int pos = 0;
+
+    /* whether the last atom was followed by a quantifier */
+    private boolean quantified;
+
+    LiteralParser(String regex) {
+      this.regex = regex;
+    }
+
+    private boolean more() {
+      return pos < regex.length();
+    }
+
+    private char peek() {
+      return regex.charAt(pos);
+    }
+
+    /** alternatives separated by <code>|</code>, any of them may match */
+    Set<String> alternatives() {
+      Set<String> result = new LinkedHashSet<String>();
+      boolean known = true;
+      while (true) {
+        Set<String> literals = sequence();
+        if (literals == null) {
+          known = false;
+        } else {
+          result.addAll(literals);
+        }
+        if (more() && peek() == '|') {
+          pos++;
+        } else {
+          break;
+        }
+      }
+      return known ? result : null;
+    }
+
+    /** a sequence: the best of the required literals and groups */
+    private Set<String> sequence() {
+      Set<String> best = null;
+      StringBuilder run = new StringBuilder();
+      while (more() && peek() != '|' && peek() != ')') {
+        char c = peek();
+        int literal = -1;
+        Set<String> group = null;
+        if (c == '(') {
+          pos++;
+          group = group();
+        } else if (c == '[') {
+          skipClass();
+        } else if (c == '\\') {
+          literal = escape();
+        } else if (c == '.' || c == '^' || c == '$') {
+          pos++;
+        } else if (c == '*' || c == '+' || c == '?' || c == '{') {
+          throw new IllegalArgumentException("dangling quantifier");
+        } else {
+          pos++;
+          literal = c < ALPHABET ? Character.toLowerCase(c) : -1;
+        }
+        int min = quantifier();
+        if (literal >= 0 && min > 0) {
+          // the character repeated min times is required
+          for (int i = 0; i < Math.min(min, 8); i++) {
+            run.append((char) literal);
+          }
+          if (quantified) {
+            // the run cannot continue after a repetition
+            best = better(best, run);
+            run.setLength(0);
+            run.append((char) literal);
+          }
+        } else {
+          best = better(best, run);
+          run.setLength(0);
+          if (group != null && min > 0) {
+            best = better(best, group);
+          }
+        }
+      }
+      return better(best, run);
+    }
+
+    /**
+     * Parse an optional quantifier.
+     * 
+     * @return the min. number of repetitions
+     */
+    private int quantifier() {
+      quantified = false;
+      if (!more()) {
+        return 1;
+      }
+      int min;
+      char c = peek();
+      if (c == '?' || c == '*') {
+        min = 0;
+        pos++;
+      } else if (c == '+') {
+        min = 1;
+        pos++;
+      } else if (c == '{') {
+        int end = regex.indexOf('}', pos);
+        if (end < 0) {
+          throw new IllegalArgumentException("unclosed quantifier");
+        }
+        String range = regex.substring(pos + 1, end);
+        int comma = range.indexOf(',');
+        min = Integer.parseInt(comma < 0 ? range : range.substring(0, comma));
+        pos = end + 1;
+      } else {
+        return 1;
+      }
+      quantified = true;
+      // reluctant or possessive
+      if (more() && (peek() == '?' || peek() == '+')) {
+        pos++;
+      }
+      return min;
+    }
+
+    /** a group, after the opening parenthesis */
+    private Set<String> group() {
+      boolean required = true;
+      if (more() && peek() == '?') {
+        pos++;
+        char c = regex.charAt(pos++);
+        if (c == '<' && more()
+            && (peek() == '=' || peek() == '!')) {
+          pos++;
+          required = false; // look-behind
+        } else if (c == '<') {
+          // named group
+          pos = regex.indexOf('>', pos) + 1;
+          if (pos == 0) {
+            throw new IllegalArgumentException("unclosed group name");
+          }
+        } else if (c == '=' || c == '!' || c == '>') {
+          required = false; // look-ahead or atomic group
+        } else if (c != ':') {
+          // flags: (?idmsux-idmsux) or (?idmsux-idmsux:X)
+          pos--;
+          while (more() && peek() != ')' && peek() != ':') {
+            char flag = regex.charAt(pos++);
+            if (flag == 'u' || flag == 'x' || flag == 'U') {
+              // Unicode case folding or comments mode
+              throw new IllegalArgumentException("unsupported flag");
+            }
+          }
+          if (more() && peek() == ')') {
+            pos++;
+            return null;
+          }
+          pos++;
+        }
+      }
+      Set<String> literals = alternatives();
+      if (!more() || peek() != ')') {
+        throw new IllegalArgumentException("unclosed group");
+      }
+      pos++;
+      return required ? literals : null;
+    }
+
+    private void skipClass() {
+      int depth = 0;
+      while (more()) {
+        char c = regex.charAt(pos++);
+        if (c == '\\') {
+          pos++;
+        } else if (c == '[') {
+          depth++;
+          if (more() && peek() == '^') {
+            pos++;
+          }
+          if (more() && peek() == ']') {
+            pos++; // literal ] at start of the class
+          }
+        } else if (c == ']' && --depth == 0) {
+          return;
+        }
+      }
+      throw new IllegalArgumentException("unclosed character class");
+    }
+
+    /**
+     * Parse an escape sequence.
+     * 
+     * @return the literal character (lowercased) or -1 if the escape sequence
+     *         is not a literal character
+     */
+    private int escape() {
+      pos++;
+      if (!more()) {
+        throw new IllegalArgumentException("trailing backslash");
+      }
+      char c = regex.charAt(pos++);
+      if (c == 'Q') {
+        int end = regex.indexOf("\\E", pos);
+        pos = end < 0 ? regex.length() : end + 2;
+        return -1;
+      }
+      switch (c) {
+      case 'x':
+        if (more() && peek() == '{') {
+          skipPast('}');
+        } else {
+          pos += 2;
+        }
+        break;
+      case 'u':
+        pos += 4;
+        break;
+      case 'c':
+        pos++;
+        break;
+      case 'p':
+      case 'P':
+      case 'N':
+        if (more() && peek() == '{') {
+          skipPast('}');
+        } else {
+          pos++;
+        }
+        break;
+      case 'k':
+        skipPast('>');
+        break;
+      default:
+        if (c >= '0' && c <= '9') {
+          // back reference or octal escape
+          while (more() && peek() >= '0' && peek() <= '9') {
+            pos++;
+          }
+        } else if (!Character.isLetter(c)) {
+          // escaped literal character
+          return c < ALPHABET ? Character.toLowerCase(c) : -1;
+        }
+        // other escape sequences (character classes, anchors, control
+        // characters) consist of a single letter
+      }
+      if (pos > regex.length()) {
+        throw new IllegalArgumentException("incomplete escape sequence");
+      }
+      return -1;
+    }
+
+    private void skipPast(char c) {
+      int end = regex.indexOf(c, pos);
+      if (end < 0) {
+        throw new IllegalArgumentException("unclosed escape sequence");
+      }
+      pos = end + 1;
+    }
+
+    /**
+     * @return the better of two sets of literals, the one whose shortest
+     *         literal is longer
+     */
+    private static Set<String> better(Set<String> best, CharSequence run) {
+      if (run.length() == 0) {
+        return best;
+      }
+      return better(best, Collections.singleton(run.toString()));
+    }
+
+    private static Set<String> better(Set<String> best, Set<String> other) {
+      if (other == null || other.isEmpty()) {
+        return best;
+      }
+      if (best == null || minLength(other) > minLength(best)) {
+        return other;
+      }
+      return best;
+    }
+
+    private static int minLength(Set<String> literals) {
+      int min = Integer.MAX_VALUE;
+      for (String literal : literals) {
+        min = Math.min(min, literal.length());
+      }
+      return min;
+    }
+  }
+
+}
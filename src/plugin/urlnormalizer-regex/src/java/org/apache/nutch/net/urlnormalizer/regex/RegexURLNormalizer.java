@@ -24,11 +24,10 @@ import java.io.Reader;
 import java.io.StringReader;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.regex.Matcher;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -74,25 +73,25 @@ public class RegexURLNormalizer extends Configured implements URLNormalizer {
    * Class which holds a compiled pattern and its corresponding substition
    * string.
    */
-  private static class Rule {
+  static class Rule {
     public Pattern pattern;
 
     public String substitution;
   }
 
-  private ThreadLocal<HashMap<String, List<Rule>>> scopedRulesThreadLocal = new ThreadLocal<HashMap<String, List<Rule>>>() {
-    protected java.util.HashMap<String, java.util.List<Rule>> initialValue() {
-      return new HashMap<String, List<Rule>>();
-    };
-  };
+  /**
+   * Rules per scope, {@link RegexRuleSet#EMPTY} if the default rules are used
+   * for a scope. Rule sets are immutable and shared by all threads.
+   */
+  private Map<String, RegexRuleSet> scopedRules = new ConcurrentHashMap<String, RegexRuleSet>();
 
-  public HashMap<String, List<Rule>> getScopedRules() {
-    return scopedRulesThreadLocal.get();
+  public Map<String, RegexRuleSet> getScopedRules() {
+    return scopedRules;
   }
 
-  private List<Rule> defaultRules;
+  private RegexRuleSet defaultRules;
 
-  private static final List<Rule> EMPTY_RULES = Collections.emptyList();
+  private static final RegexRuleSet EMPTY_RULES = RegexRuleSet.EMPTY;
 
   /**
    * The default constructor which is called from UrlNormalizerFactory
@@ -113,7 +112,7 @@ public class RegexURLNormalizer extends Configured implements URLNormalizer {
   public RegexURLNormalizer(Configuration conf, String filename)
       throws IOException, PatternSyntaxException {
     super(conf);
-    List<Rule> rules = readConfigurationFile(filename);
+    RegexRuleSet rules = readConfigurationFile(filename);
     if (rules != null) {
       defaultRules = rules;
     }
@@ -133,7 +132,7 @@ public class RegexURLNormalizer extends Configured implements URLNormalizer {
     } else {
       reader = getConf().getConfResourceAsReader(filename);
     }
-    List<Rule> rules = null;
+    RegexRuleSet rules = null;
     if (reader == null) {
       LOG.warn("Can't load the default rules! ");
       rules = EMPTY_RULES;
@@ -150,10 +149,10 @@ public class RegexURLNormalizer extends Configured implements URLNormalizer {
 
   // used in JUnit test.
   void setConfiguration(Reader reader, String scope) {
-    List<Rule> rules = readConfiguration(reader);
-    getScopedRules().put(scope, rules);
-    LOG.debug("Set config for scope '" + scope + "': " + rules.size()
-        + " rules.");
+    RegexRuleSet rules = readConfiguration(reader);
+    scopedRules.put(scope, rules);
+    LOG.debug("Set config for scope '" + scope + "': "
+        + rules.getRules().size() + " rules.");
   }
 
   /**
@@ -161,8 +160,7 @@ public class RegexURLNormalizer extends Configured implements URLNormalizer {
    * patterns. It accepts a string url as input and returns the altered string.
    */
   public String regexNormalize(String urlString, String scope) {
-    HashMap<String, List<Rule>> scopedRules = getScopedRules();
-    List<Rule> curRules = scopedRules.get(scope);
+    RegexRuleSet curRules = scopedRules.get(scope);
     if (curRules == null) {
       // try to populate
       String configFile = getConf().get("urlnormalizer.regex.file." + scope);
@@ -184,15 +182,7 @@ public class RegexURLNormalizer extends Configured implements URLNormalizer {
     if (curRules == EMPTY_RULES || curRules == null) {
       curRules = defaultRules;
     }
-    Iterator<Rule> i = curRules.iterator();
-    while (i.hasNext()) {
-      Rule r = (Rule) i.next();
-
-      Matcher matcher = r.pattern.matcher(urlString);
-
-      urlString = matcher.replaceAll(r.substitution);
-    }
-    return urlString;
+    return curRules.apply(urlString);
   }
 
   public String normalize(String urlString, String scope)
@@ -201,7 +191,7 @@ public class RegexURLNormalizer extends Configured implements URLNormalizer {
   }
 
   /** Reads the configuration file and populates a List of Rules. */
-  private List<Rule> readConfigurationFile(String filename) {
+  private RegexRuleSet readConfigurationFile(String filename) {
     if (LOG.isInfoEnabled()) {
       LOG.info("loading " + filename);
     }
@@ -214,7 +204,7 @@ public class RegexURLNormalizer extends Configured implements URLNormalizer {
     }
   }
 
-  private List<Rule> readConfiguration(Reader reader) {
+  private RegexRuleSet readConfiguration(Reader reader) {
     List<Rule> rules = new ArrayList<Rule>();
     try {
 
@@ -274,7 +264,7 @@ public class RegexURLNormalizer extends Configured implements URLNormalizer {
     }
     if (rules.size() == 0)
       return EMPTY_RULES;
-    return rules;
+    return new RegexRuleSet(rules);
   }
 
   /** Spits out patterns and substitutions that are in the configuration file. */
@@ -282,8 +272,8 @@ public class RegexURLNormalizer extends Configured implements URLNormalizer {
       IOException {
     RegexURLNormalizer normalizer = new RegexURLNormalizer();
     normalizer.setConf(NutchConfiguration.create());
-    HashMap<String, List<Rule>> scopedRules = normalizer.getScopedRules();
-    Iterator<Rule> i = normalizer.defaultRules.iterator();
+    Map<String, RegexRuleSet> scopedRules = normalizer.getScopedRules();
+    Iterator<Rule> i = normalizer.defaultRules.getRules().iterator();
     System.out.println("* Rules for 'DEFAULT' scope:");
     while (i.hasNext()) {
       Rule r = i.next();
@@ -301,7 +291,7 @@ public class RegexURLNormalizer extends Configured implements URLNormalizer {
         if (URLNormalizers.SCOPE_DEFAULT.equals(scope))
           continue;
         System.out.println("* Rules for '" + scope + "' scope:");
-        i = ((List<Rule>) scopedRules.get(scope)).iterator();
+        i = scopedRules.get(scope).getRules().iterator();
         while (i.hasNext()) {
           Rule r = (Rule) i.next();
           System.out.print("  " + r.pattern.pattern() + " -> ");
@@ -91,6 +91,25 @@ public class TestRegexURLNormalizer {
     }
   }
 
+  @Test
+  public void testRequiredLiterals() {
+    Assert.assertEquals(
+        new HashSet<String>(Arrays.asList("sid", "phpsessid", "sessionid")),
+        RegexRuleSet.requiredLiterals(
+            "(?i)(;?\\b_?(l|j|bv_)?(sid|phpsessid|sessionid)=.*?)(\\?|&|#|$)"));
+    Assert.assertEquals(Collections.singleton("?&"),
+        RegexRuleSet.requiredLiterals("\\?&"));
+    Assert.assertEquals(Collections.singleton("//"),
+        RegexRuleSet.requiredLiterals("(?<!:)/{2,}"));
+    Assert.assertEquals(Collections.singleton("file://"),
+        RegexRuleSet.requiredLiterals("^file://+"));
+    Assert.assertEquals(Collections.singleton("b"),
+        RegexRuleSet.requiredLiterals("\\x41+b"));
+    Assert.assertNull(RegexRuleSet.requiredLiterals("[\\?&\\.]$"));
+    Assert.assertNull(RegexRuleSet.requiredLiterals("a|b?"));
+    Assert.assertNull(RegexRuleSet.requiredLiterals("(?x) a b"));
+  }
+
   private void normalizeTest(NormalizedURL[] urls, String scope)
       throws Exception {
     for (int i = 0; i < urls.length; i++) {
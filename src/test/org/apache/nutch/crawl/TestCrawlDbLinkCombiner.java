@@ -0,0 +1,95 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.crawl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test that {@link CrawlDbLinkCombiner} passes non-link datums through and
+ * keeps the same inlinks the {@link CrawlDbReducer} would select.
+ */
+public class TestCrawlDbLinkCombiner {
+
+  private static final int MAX_INLINKS = 3;
+
+  private List<CrawlDatum> combine(List<CrawlDatum> values) {
+    Configuration conf = CrawlDBTestUtil.createConfiguration();
+    conf.setInt("db.update.max.inlinks", MAX_INLINKS);
+    CrawlDbUpdateUtil<CrawlDbLinkCombiner> combiner = new CrawlDbUpdateUtil<>(
+        new CrawlDbLinkCombiner(), conf);
+    return combiner.update(new ArrayList<>(values));
+  }
+
+  private static List<Float> selectedScores(List<CrawlDatum> values) {
+    InlinkPriorityQueue queue = new InlinkPriorityQueue(MAX_INLINKS);
+    for (CrawlDatum datum : values) {
+      if (datum.getStatus() == CrawlDatum.STATUS_LINKED) {
+        queue.insert(datum);
+      }
+    }
+    List<Float> scores = new ArrayList<>();
+    while (queue.size() > 0) {
+      scores.add(queue.pop().getScore());
+    }
+    return scores;
+  }
+
+  @Test
+  public void testTrimInlinks() {
+    List<CrawlDatum> values = new ArrayList<>();
+    CrawlDatum dbDatum = new CrawlDatum(CrawlDatum.STATUS_DB_FETCHED, 3600,
+        1.0f);
+    CrawlDatum fetchDatum = new CrawlDatum(CrawlDatum.STATUS_FETCH_SUCCESS,
+        3600, 1.0f);
+    values.add(dbDatum);
+    values.add(fetchDatum);
+    for (int i = 0; i < 10; i++) {
+      values.add(new CrawlDatum(CrawlDatum.STATUS_LINKED, 3600, i * 0.1f));
+    }
+
+    List<CrawlDatum> res = combine(values);
+    Assert.assertEquals(2 + MAX_INLINKS, res.size());
+    Assert.assertTrue(res.contains(dbDatum));
+    Assert.assertTrue(res.contains(fetchDatum));
+    Assert.assertEquals(selectedScores(values), selectedScores(res));
+
+    // combining again must not change the selection
+    Assert.assertEquals(selectedScores(values), selectedScores(combine(res)));
+  }
+
+  @Test
+  public void testPassThrough() {
+    List<CrawlDatum> values = new ArrayList<>();
+    values.add(new CrawlDatum(CrawlDatum.STATUS_DB_UNFETCHED, 3600, 1.0f));
+    values.add(new CrawlDatum(CrawlDatum.STATUS_LINKED, 3600, 0.5f));
+    CrawlDatum signature = new CrawlDatum(CrawlDatum.STATUS_SIGNATURE, 0);
+    signature.setSignature(new byte[] { 1, 2, 3 });
+    values.add(signature);
+
+    List<CrawlDatum> res = combine(values);
+    Assert.assertEquals(values.size(), res.size());
+    for (CrawlDatum datum : values) {
+      Assert.assertTrue(res.contains(datum));
+    }
+  }
+
+}
@@ -31,7 +31,9 @@ import org.apache.hadoop.io.MapFile;
 import org.apache.hadoop.io.SequenceFile;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.MapFile.Writer.Option;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.lib.HashPartitioner;
 import org.apache.nutch.util.NutchConfiguration;
 import org.junit.After;
 import org.junit.Assert;
@@ -142,6 +144,158 @@ public class TestCrawlDbMerger {
     fs.delete(testDir, true);
   }
 
+  /**
+   * Test the streaming merge of pre-sorted CrawlDb partitions, see
+   * {@link CrawlDbMerger#mergeStreaming(Path, Path[], boolean, int)}. The
+   * result must be the same as for the merge job.
+   * @throws Exception
+   */
+  @Test
+  public void testMergeStreaming() throws Exception {
+    Path crawldb1 = new Path(testDir, "crawldb1");
+    Path crawldb2 = new Path(testDir, "crawldb2");
+    Path output = new Path(testDir, "output");
+    createCrawlDb(conf, fs, crawldb1, init1, cd1);
+    createCrawlDb(conf, fs, crawldb2, init2, cd2);
+    CrawlDbMerger merger = new CrawlDbMerger(conf);
+    merger.mergeStreaming(output, new Path[] { crawldb1, crawldb2 }, false, 2);
+    reader = new CrawlDbReader();
+    String crawlDb = output.toString();
+    for (String url : expected.keySet()) {
+      CrawlDatum cd = expected.get(url);
+      CrawlDatum res = reader.get(crawlDb, url, new JobConf(conf));
+      Assert.assertNotNull(res);
+      Assert.assertTrue(cd.equals(res));
+    }
+    reader.close();
+  }
+
+  /**
+   * A failing streaming merge must remove the lock file and the temporary
+   * output, also if the failure is a runtime exception.
+   * @throws Exception
+   */
+  @Test
+  public void testMergeStreamingFailure() throws Exception {
+    Path crawldb1 = new Path(testDir, "crawldb1");
+    Path crawldb2 = new Path(testDir, "crawldb2");
+    Path output = new Path(testDir, "output");
+    createCrawlDb(conf, fs, crawldb1, init1, cd1);
+    createCrawlDb(conf, fs, crawldb2, init2, cd2);
+    Configuration failing = new Configuration(conf);
+    failing.set("db.fetch.schedule.class",
+        "org.apache.nutch.crawl.NoSuchSchedule");
+    CrawlDbMerger merger = new CrawlDbMerger(failing);
+    try {
+      merger.mergeStreaming(output, new Path[] { crawldb1, crawldb2 }, false,
+          2);
+      Assert.fail("merge with unknown fetch schedule should fail");
+    } catch (RuntimeException e) {
+      // expected
+    }
+    Assert.assertFalse(fs.exists(new Path(output, CrawlDb.LOCK_NAME)));
+    Assert.assertFalse(fs.exists(new Path(output, CrawlDb.CURRENT_NAME)));
+    if (fs.exists(output)) {
+      Assert.assertEquals(0, fs.listStatus(output).length);
+    }
+  }
+
+  /**
+   * Inputs partitioned by the hash of the URL are merged partition by
+   * partition, the output keeps the partitions.
+   * @throws Exception
+   */
+  @Test
+  public void testMergeStreamingPartitioned() throws Exception {
+    Path crawldb1 = new Path(testDir, "crawldb1");
+    Path crawldb2 = new Path(testDir, "crawldb2");
+    Path output = new Path(testDir, "output");
+    createCrawlDb(conf, fs, crawldb1, partition(init1, 0), cd1);
+    createCrawlDb(conf, fs, crawldb2, partition(init2, 0), cd2);
+    CrawlDbMerger merger = new CrawlDbMerger(conf);
+    merger.mergeStreaming(output, new Path[] { crawldb1, crawldb2 }, false, 2);
+    Assert.assertEquals(2,
+        fs.listStatus(new Path(output, CrawlDb.CURRENT_NAME)).length);
+    checkMerged(output);
+  }
+
+  /**
+   * Inputs with the same number of partitions but not partitioned by the hash
+   * of the URL must be merged by the merge job.
+   * @throws Exception
+   */
+  @Test
+  public void testMergeStreamingPartitionMismatch() throws Exception {
+    Path crawldb1 = new Path(testDir, "crawldb1");
+    Path crawldb2 = new Path(testDir, "crawldb2");
+    Path output = new Path(testDir, "output");
+    // every URL in the other partition
+    createCrawlDb(conf, fs, crawldb1, partition(init1, 1), cd1);
+    createCrawlDb(conf, fs, crawldb2, partition(init2, 1), cd2);
+    CrawlDbMerger merger = new CrawlDbMerger(conf);
+    merger.mergeStreaming(output, new Path[] { crawldb1, crawldb2 }, false, 2);
+    checkMerged(output);
+
+    // the MapFile index only holds the first key of small partitions:
+    // url20 is in its hash partition, url21 (sorted after url20) is not
+    HashPartitioner<Text, Writable> partitioner = new HashPartitioner<>();
+    int p20 = partitioner.getPartition(new Text(url20), null, 2);
+    Assert.assertNotEquals(p20,
+        partitioner.getPartition(new Text(url21), null, 2));
+    @SuppressWarnings("unchecked")
+    TreeSet<String>[] parts = new TreeSet[] { new TreeSet<String>(),
+        new TreeSet<String>() };
+    parts[p20].addAll(init2);
+    fs.delete(testDir, true);
+    createCrawlDb(conf, fs, crawldb1, partition(init1, 0), cd1);
+    createCrawlDb(conf, fs, crawldb2, parts, cd2);
+    merger.mergeStreaming(output, new Path[] { crawldb1, crawldb2 }, false, 2);
+    checkMerged(output);
+  }
+
+  private void checkMerged(Path output) throws Exception {
+    reader = new CrawlDbReader();
+    String crawlDb = output.toString();
+    for (String url : expected.keySet()) {
+      CrawlDatum cd = expected.get(url);
+      CrawlDatum res = reader.get(crawlDb, url, new JobConf(conf));
+      Assert.assertNotNull(res);
+      Assert.assertTrue(cd.equals(res));
+    }
+    reader.close();
+  }
+
+  /**
+   * Split URLs into two partitions by {@link HashPartitioner}, shifted by
+   * <code>offset</code> partitions.
+   */
+  @SuppressWarnings("unchecked")
+  private TreeSet<String>[] partition(TreeSet<String> urls, int offset) {
+    HashPartitioner<Text, Writable> partitioner = new HashPartitioner<>();
+    TreeSet<String>[] parts = new TreeSet[] { new TreeSet<String>(),
+        new TreeSet<String>() };
+    for (String url : urls) {
+      int p = partitioner.getPartition(new Text(url), null, parts.length);
+      parts[(p + offset) % parts.length].add(url);
+    }
+    return parts;
+  }
+
+  private void createCrawlDb(Configuration config, FileSystem fs, Path crawldb,
+      TreeSet<String>[] parts, CrawlDatum cd) throws Exception {
+    Path dir = new Path(crawldb, CrawlDb.CURRENT_NAME);
+    for (int p = 0; p < parts.length; p++) {
+      MapFile.Writer writer = new MapFile.Writer(config,
+          new Path(dir, String.format("part-r-%05d", p)),
+          MapFile.Writer.keyClass(Text.class),
+          SequenceFile.Writer.valueClass(CrawlDatum.class));
+      for (String key : parts[p]) {
+        writer.append(new Text(key), cd);
+      }
+      writer.close();
+    }
+  }
+
   private void createCrawlDb(Configuration config, FileSystem fs, Path crawldb,
       TreeSet<String> init, CrawlDatum cd) throws Exception {
     LOG.debug("* creating crawldb: " + crawldb);
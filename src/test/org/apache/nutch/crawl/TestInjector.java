@@ -139,6 +139,55 @@ public class TestInjector {
     }
   }
 
+  /**
+   * Inject into an existing CrawlDb without a job, see
+   * {@link Injector#injectIncremental(Path, Path, boolean, boolean, boolean, boolean)}
+   */
+  @Test
+  public void testInjectIncremental()
+      throws IOException, ClassNotFoundException, InterruptedException {
+    ArrayList<String> urls = new ArrayList<String>();
+    for (int i = 0; i < 100; i++) {
+      urls.add("http://zzz.com/" + i + ".html");
+    }
+    CrawlDBTestUtil.generateSeedList(fs, urlPath, urls);
+    Injector injector = new Injector(conf);
+    injector.inject(crawldbPath, urlPath);
+
+    ArrayList<String> urls2 = new ArrayList<String>();
+    ArrayList<String> metadata = new ArrayList<String>();
+    for (int i = 0; i < 100; i++) {
+      urls2.add("http://xxx.com/" + i + ".html");
+      metadata.add("");
+      urls2.add("http://zzz.com/" + i + ".html");
+      metadata.add("\tnutch.fetchInterval=171717\tkey=value");
+    }
+    CrawlDBTestUtil.generateSeedList(fs, urlPath, urls2, metadata);
+    conf.setInt(Injector.INJECTOR_THREADS, 2);
+    injector = new Injector(conf);
+    injector.injectIncremental(crawldbPath, urlPath, false, true, true, true);
+
+    List<String> read = readCrawldb();
+    Assert.assertEquals(200, read.size());
+    Assert.assertTrue(read.containsAll(urls2));
+    // keys must still be sorted to be readable as MapFile
+    List<String> sorted = new ArrayList<String>(read);
+    Collections.sort(sorted);
+    Assert.assertEquals(sorted, read);
+
+    Map<String, CrawlDatum> records = readCrawldbRecords();
+    Text writableKey = new Text("key");
+    Text writableValue = new Text("value");
+    for (String url : urls) {
+      Assert.assertEquals(171717, records.get(url).getFetchInterval());
+      Assert.assertEquals(writableValue,
+          records.get(url).getMetaData().get(writableKey));
+    }
+    Assert.assertFalse(fs.exists(new Path(crawldbPath, CrawlDb.LOCK_NAME)));
+    // the replaced partition is kept as backup
+    Assert.assertTrue(fs.exists(new Path(crawldbPath, "old/part-r-00000")));
+  }
+
   private List<String> readCrawldb() throws IOException {
     Path dbfile = new Path(crawldbPath, CrawlDb.CURRENT_NAME
         + "/part-r-00000/data");
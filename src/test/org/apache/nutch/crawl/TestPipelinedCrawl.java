@@ -0,0 +1,107 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.crawl;
+
+import java.util.ArrayList;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.JobConf;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mortbay.jetty.Server;
+
+/**
+ * Runs the {@link PipelinedCrawl} in local mode against the fetcher test
+ * site.
+ */
+public class TestPipelinedCrawl {
+
+  final static Path testdir = new Path("build/test/pipelined-crawl-test");
+  Configuration conf;
+  FileSystem fs;
+  Path crawldbPath;
+  Path linkdbPath;
+  Path segmentsPath;
+  Path urlPath;
+  Server server;
+
+  @Before
+  public void setUp() throws Exception {
+    conf = CrawlDBTestUtil.createConfiguration();
+    fs = FileSystem.get(conf);
+    fs.delete(testdir, true);
+    urlPath = new Path(testdir, "urls");
+    crawldbPath = new Path(testdir, "crawldb");
+    linkdbPath = new Path(testdir, "linkdb");
+    segmentsPath = new Path(testdir, "segments");
+    server = CrawlDBTestUtil.getServer(
+        conf.getInt("content.server.port", 50000),
+        "build/test/data/fetch-test-site");
+    server.start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.stop();
+    for (int i = 0; i < 5; i++) {
+      if (!server.isStopped()) {
+        Thread.sleep(1000);
+      }
+    }
+    fs.delete(testdir, true);
+  }
+
+  /**
+   * Two rounds of two URLs each: the second segment is generated while the
+   * first one is fetched, so it must hold the two URLs not yet selected.
+   */
+  @Test
+  public void testCrawl() throws Exception {
+    ArrayList<String> urls = new ArrayList<String>();
+    for (String page : new String[] { "index.html", "pagea.html",
+        "pageb.html", "dup_of_pagea.html" }) {
+      urls.add("http://127.0.0.1:" + server.getConnectors()[0].getPort() + "/"
+          + page);
+    }
+    CrawlDBTestUtil.generateSeedList(fs, urlPath, urls);
+    new Injector(conf).inject(crawldbPath, urlPath);
+
+    PipelinedCrawl crawl = new PipelinedCrawl(conf);
+    int res = crawl.run(new String[] { crawldbPath.toString(),
+        segmentsPath.toString(), "2", "-linkdb", linkdbPath.toString(),
+        "-topN", "2", "-threads", "2" });
+    Assert.assertEquals(0, res);
+
+    Assert.assertEquals(2, fs.listStatus(segmentsPath).length);
+    CrawlDbReader reader = new CrawlDbReader();
+    for (String url : urls) {
+      CrawlDatum datum = reader.get(crawldbPath.toString(), url,
+          new JobConf(conf));
+      Assert.assertNotNull(url, datum);
+      Assert.assertEquals(url, CrawlDatum.STATUS_DB_FETCHED,
+          datum.getStatus());
+    }
+    reader.close();
+    Assert.assertTrue(fs.exists(new Path(linkdbPath, LinkDb.CURRENT_NAME)));
+    Assert.assertFalse(fs.exists(new Path(crawldbPath, CrawlDb.LOCK_NAME)));
+  }
+
+}
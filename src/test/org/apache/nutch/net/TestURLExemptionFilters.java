@@ -0,0 +1,114 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.net;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestURLExemptionFilters {
+
+  private static final String[][] LINKS = {
+      { "http://example.com/", "http://cdn.example.org/image.png" },
+      { "http://example.com/", "http://example.org/page.html" },
+      { "http://example.com/", "https://cdn.example.org/style.css" },
+      { "http://example.com/", "http://other.net/image.png" },
+      { "http://example.com/", "not a url" } };
+
+  /** Exempts images and style sheets, only the string method is used. */
+  private static class StringFilter implements URLExemptionFilter {
+    int calls = 0;
+    public boolean filter(String fromUrl, String toUrl) {
+      calls++;
+      return toUrl.endsWith(".png") || toUrl.endsWith(".css");
+    }
+    public void setConf(Configuration conf) {
+    }
+    public Configuration getConf() {
+      return null;
+    }
+  }
+
+  /** Exempts links to hosts of example.org. */
+  private static class ParsedFilter extends StringFilter
+      implements ParsedURLExemptionFilter {
+    int parsedCalls = 0;
+    public boolean filter(String fromUrl, String toUrl) {
+      return filter(new ParsedURL(fromUrl), new ParsedURL(toUrl));
+    }
+    public boolean filter(ParsedURL fromUrl, ParsedURL toUrl) {
+      parsedCalls++;
+      String host = toUrl.getHost();
+      return host != null && host.endsWith("example.org");
+    }
+  }
+
+  private static void assertSameResult(URLExemptionFilters filters) {
+    for (String[] link : LINKS) {
+      Assert.assertEquals(link[1], filters.isExempted(link[0], link[1]),
+          filters.isExempted(new ParsedURL(link[0]), new ParsedURL(link[1])));
+    }
+  }
+
+  @Test
+  public void testStringFilter() {
+    StringFilter filter = new StringFilter();
+    URLExemptionFilters filters = new URLExemptionFilters(
+        new URLExemptionFilter[] { filter });
+    assertSameResult(filters);
+    // the parsed URLs are passed as strings
+    Assert.assertEquals(2 * LINKS.length, filter.calls);
+    Assert.assertTrue(filters.isExempted(
+        new ParsedURL("http://example.com/"),
+        new ParsedURL("http://other.net/image.png")));
+  }
+
+  @Test
+  public void testParsedFilter() {
+    ParsedFilter filter = new ParsedFilter();
+    URLExemptionFilters filters = new URLExemptionFilters(
+        new URLExemptionFilter[] { filter });
+    assertSameResult(filters);
+    Assert.assertEquals(2 * LINKS.length, filter.parsedCalls);
+    Assert.assertFalse(filters.isExempted(
+        new ParsedURL("http://example.com/"),
+        new ParsedURL("http://other.net/image.png")));
+  }
+
+  @Test
+  public void testMixedFilters() {
+    URLExemptionFilters filters = new URLExemptionFilters(
+        new URLExemptionFilter[] { new ParsedFilter(), new StringFilter() });
+    assertSameResult(filters);
+    // all filters must exempt the link
+    Assert.assertTrue(filters.isExempted(new ParsedURL("http://example.com/"),
+        new ParsedURL("http://cdn.example.org/image.png")));
+    Assert.assertFalse(filters.isExempted(
+        new ParsedURL("http://example.com/"),
+        new ParsedURL("http://example.org/page.html")));
+  }
+
+  @Test
+  public void testNoFilters() {
+    URLExemptionFilters filters = new URLExemptionFilters(
+        new URLExemptionFilter[0]);
+    assertSameResult(filters);
+    Assert.assertFalse(filters.isExempted(new ParsedURL("http://example.com/"),
+        new ParsedURL("http://example.org/image.png")));
+  }
+
+}
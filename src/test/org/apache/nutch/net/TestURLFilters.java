@@ -18,6 +18,7 @@ package org.apache.nutch.net;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.nutch.util.NutchConfiguration;
+import org.junit.Assert;
 import org.junit.Test;
 
 public class TestURLFilters {
@@ -38,4 +39,62 @@ public class TestURLFilters {
     normalizers.filter("http://someurl/");
   }
 
+  /**
+   * A URL causing an exception must not affect the other URLs, also if a
+   * {@link BatchURLFilter} fails.
+   */
+  @Test
+  public void testBatchFilterException() {
+    URLFilter failing = new TestFilter() {
+      public String filter(String url) {
+        if (url.contains("fail")) {
+          throw new IllegalStateException("failing on " + url);
+        }
+        return url;
+      }
+    };
+    URLFilter batchFailing = new BatchTestFilter();
+    URLFilters filters = new URLFilters(
+        new URLFilter[] { failing, batchFailing });
+    String[] urls = { "http://a.com/", "http://fail.com/", null,
+        "http://rejected.com/", "http://batchfail.org/", "http://b.com/" };
+    filters.filter(urls);
+    Assert.assertArrayEquals(new String[] { "http://a.com/", null, null, null,
+        null, "http://b.com/" }, urls);
+
+    filters = new URLFilters(new URLFilter[] { batchFailing });
+    urls = new String[] { "http://a.com/", "http://rejected.com/",
+        "http://batch.org/" };
+    filters.filter(urls);
+    Assert.assertArrayEquals(
+        new String[] { "http://a.com/", null, "http://batch.org/" }, urls);
+  }
+
+  private static class TestFilter implements URLFilter {
+    public String filter(String url) {
+      return url;
+    }
+    public void setConf(Configuration conf) {
+    }
+    public Configuration getConf() {
+      return null;
+    }
+  }
+
+  /** Rejects "rejected" URLs, the batch method fails on "batch" URLs. */
+  private static class BatchTestFilter extends TestFilter
+      implements BatchURLFilter {
+    public String filter(String url) {
+      return url.contains("rejected") ? null : url;
+    }
+    public void filter(String[] urls) {
+      for (int i = 0; i < urls.length; i++) {
+        if (urls[i] != null && urls[i].contains("batch")) {
+          throw new IllegalStateException("failing on " + urls[i]);
+        }
+        urls[i] = filter(urls[i]);
+      }
+    }
+  }
+
 }
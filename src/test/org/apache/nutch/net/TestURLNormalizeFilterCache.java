@@ -0,0 +1,68 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.net;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.nutch.util.NutchConfiguration;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestURLNormalizeFilterCache {
+
+  @Test
+  public void testCache() throws Exception {
+    Configuration conf = NutchConfiguration.create();
+    URLNormalizers normalizers = new URLNormalizers(conf,
+        URLNormalizers.SCOPE_OUTLINK);
+    URLFilters filters = new URLFilters(conf);
+    Assert.assertNull(URLNormalizeFilterCache.get(conf,
+        URLNormalizers.SCOPE_OUTLINK, normalizers, filters));
+
+    conf.setInt(URLNormalizeFilterCache.CACHE_SIZE, 10);
+    URLNormalizeFilterCache cache = URLNormalizeFilterCache.get(conf,
+        URLNormalizers.SCOPE_OUTLINK, normalizers, filters);
+    Assert.assertNotNull(cache);
+    // shared by all users of the same normalizers and filters
+    Assert.assertSame(cache, URLNormalizeFilterCache.get(conf,
+        URLNormalizers.SCOPE_OUTLINK, new URLNormalizers(conf,
+            URLNormalizers.SCOPE_OUTLINK), new URLFilters(conf)));
+    // but not by users without filters
+    Assert.assertNotSame(cache, URLNormalizeFilterCache.get(conf,
+        URLNormalizers.SCOPE_OUTLINK, normalizers, null));
+
+    String[] urls = { "http://www.Example.com//a/./b.html",
+        "mailto:user@example.com", "http://www.example.com/a/b.html" };
+    for (int i = 0; i < 2; i++) {
+      for (String url : urls) {
+        String expected = normalizers.normalize(url,
+            URLNormalizers.SCOPE_OUTLINK);
+        if (expected != null) {
+          expected = filters.filter(expected);
+        }
+        ParsedURL parsedUrl = new ParsedURL(url);
+        if (cache.normalizeFilter(parsedUrl)) {
+          Assert.assertEquals(expected, parsedUrl.toString());
+        } else {
+          Assert.assertNull(expected);
+        }
+      }
+    }
+    Assert.assertEquals(urls.length, cache.getMissCount());
+    Assert.assertEquals(urls.length, cache.getHitCount());
+  }
+
+}
@@ -65,6 +65,42 @@ public class TestURLNormalizers {
       Assert.fail(mue.toString());
     }
 
+    // same results when normalizing a parsed URL
+    try {
+      ParsedURL url = new ParsedURL(
+          "HTTP://www.Example.com:80//path/to/./somewhere.html#ref");
+      Assert.assertTrue(normalizers.normalize(url,
+          URLNormalizers.SCOPE_DEFAULT));
+      Assert.assertEquals("http://www.example.com/path/to/somewhere.html",
+          url.toString());
+      Assert.assertEquals("www.example.com", url.getHost());
+      Assert.assertEquals(
+          normalizers.normalize(
+              "HTTP://www.Example.com:80//path/to/./somewhere.html#ref",
+              URLNormalizers.SCOPE_DEFAULT), url.toString());
+    } catch (MalformedURLException mue) {
+      Assert.fail(mue.toString());
+    }
+
+    // same results when normalizing many URLs at once
+    String[] urls = { "http://www.example.com//path/to//somewhere.html",
+        null, "HTTP://www.Example.com:80/./a/../b.html#ref",
+        "http://www.example.org//path/to//somewhere.html", "not a url" };
+    String[] normalized = urls.clone();
+    normalizers.normalize(normalized, URLNormalizers.SCOPE_DEFAULT);
+    for (int i = 0; i < urls.length; i++) {
+      String expected = null;
+      try {
+        if (urls[i] != null) {
+          expected = normalizers.normalize(urls[i],
+              URLNormalizers.SCOPE_DEFAULT);
+        }
+      } catch (MalformedURLException mue) {
+        // removed when normalizing many URLs
+      }
+      Assert.assertEquals(expected, normalized[i]);
+    }
+
     // check the order
     int pos1 = -1, pos2 = -1;
     URLNormalizer[] impls = normalizers
@@ -80,4 +116,29 @@ public class TestURLNormalizers {
           pos1 < pos2);
     }
   }
+
+  /** A URL causing an exception must not affect the other URLs. */
+  @Test
+  public void testBatchNormalizeException() {
+    URLNormalizer failing = new URLNormalizer() {
+      public String normalize(String url, String scope) {
+        if (url.contains("fail")) {
+          throw new IllegalStateException("failing on " + url);
+        }
+        return url.toLowerCase();
+      }
+      public void setConf(Configuration conf) {
+      }
+      public Configuration getConf() {
+        return null;
+      }
+    };
+    URLNormalizers normalizers = new URLNormalizers(
+        new URLNormalizer[] { failing }, 1);
+    String[] urls = { "http://A.com/", "http://fail.com/", null,
+        "http://B.com/" };
+    normalizers.normalize(urls, URLNormalizers.SCOPE_DEFAULT);
+    Assert.assertArrayEquals(
+        new String[] { "http://a.com/", null, null, "http://b.com/" }, urls);
+  }
 }
@@ -17,6 +17,16 @@
 
 package org.apache.nutch.parse;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 import org.apache.nutch.parse.Outlink;
 import org.apache.nutch.parse.OutlinkExtractor;
 import org.apache.hadoop.conf.Configuration;
@@ -96,4 +106,103 @@ public class TestOutlinkExtractor {
     Assert.assertEquals("Wrong URL", "ftp://www.google.de",
         outlinks[1].getToUrl());
   }
+
+  /** URLs found by the scanner */
+  static List<String> findUrls(String text) {
+    List<String> urls = new ArrayList<>();
+    int pos = 0;
+    long match;
+    while ((match = OutlinkExtractor.findUrl(text, pos)) != -1) {
+      int end = (int) match;
+      urls.add(text.substring((int) (match >>> 32), end));
+      pos = end;
+    }
+    return urls;
+  }
+
+  /** URLs found by the regular expression */
+  static List<String> findUrlsRegex(Pattern pattern, String text) {
+    List<String> urls = new ArrayList<>();
+    Matcher matcher = pattern.matcher(text);
+    while (matcher.find()) {
+      urls.add(matcher.group());
+    }
+    return urls;
+  }
+
+  @Test
+  public void testSameAsRegex() {
+    Pattern pattern = Pattern.compile(OutlinkExtractor.URL_PATTERN);
+    String[] texts = { "http://", "http:/", "http://a", "a:b", "1a:b",
+        ":http://x", "-http://x", "h:/x", "x.y+z-1://a%2", "x://a%2Fb%2",
+        "x://a%zz", "x://a#", "x://a#b#c", "x://a#%41", "x://a:b:c",
+        "mailto:user@example.com.", "(see http://example.com/a?b=c&d=e)",
+        "urn:isbn:0451450523", "http://a.b/%41%4", "ab:cd:ef" };
+    for (String text : texts) {
+      Assert.assertEquals(text, findUrlsRegex(pattern, text), findUrls(text));
+    }
+
+    // long schemes, paths and fragments hitting the length limits
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 130; i++) {
+      sb.append('s');
+    }
+    sb.append("://");
+    for (int i = 0; i < 400; i++) {
+      sb.append(i % 3 == 0 ? "%41" : "p");
+    }
+    sb.append("#f");
+    for (int i = 0; i < 1100; i++) {
+      sb.append('f');
+    }
+    String text = sb.toString();
+    Assert.assertEquals(findUrlsRegex(pattern, text), findUrls(text));
+
+    // random text
+    String chars = "ab:/%#.-+9F;?&= \n\tx@~_!*,$A";
+    Random random = new Random(0);
+    for (int n = 0; n < 10000; n++) {
+      sb.setLength(0);
+      int length = random.nextInt(60);
+      for (int i = 0; i < length; i++) {
+        int r = random.nextInt(10);
+        if (r == 0) {
+          sb.append("http://");
+        } else if (r == 1) {
+          sb.append("%2F");
+        } else {
+          sb.append(chars.charAt(random.nextInt(chars.length())));
+        }
+      }
+      text = sb.toString();
+      Assert.assertEquals(text, findUrlsRegex(pattern, text), findUrls(text));
+    }
+  }
+
+  private static void listFiles(File file, List<File> files) {
+    if (file.isFile()) {
+      files.add(file);
+    } else if (file.isDirectory()) {
+      for (File child : file.listFiles()) {
+        listFiles(child, files);
+      }
+    }
+  }
+
+  @Test
+  public void testSameAsRegexOnTestData() throws IOException {
+    Pattern pattern = Pattern.compile(OutlinkExtractor.URL_PATTERN);
+    List<File> files = new ArrayList<>();
+    listFiles(new File(System.getProperty("test.build.data", "."),
+        "fetch-test-site"), files);
+    listFiles(new File(System.getProperty("test.build.data", "."),
+        "test-mime-util"), files);
+    Assert.assertFalse("no test data", files.isEmpty());
+    for (File file : files) {
+      String text = new String(Files.readAllBytes(file.toPath()),
+          StandardCharsets.UTF_8);
+      Assert.assertEquals(file.toString(), findUrlsRegex(pattern, text),
+          findUrls(text));
+    }
+  }
 }
@@ -0,0 +1,110 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.parse;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.MapFile;
+import org.apache.hadoop.io.Text;
+import org.apache.nutch.crawl.CrawlDb;
+import org.apache.nutch.metadata.Metadata;
+import org.apache.nutch.protocol.Content;
+import org.apache.nutch.util.NutchConfiguration;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Unit tests for {@link ParseCache}. */
+public class TestParseCache {
+
+  private static final String URL = "http://www.example.com/";
+
+  private Configuration conf;
+  private FileSystem fs;
+  private Path cacheDir;
+
+  @Before
+  public void setUp() throws Exception {
+    conf = NutchConfiguration.create();
+    fs = FileSystem.getLocal(conf);
+    cacheDir = new Path(System.getProperty("test.build.data", "."),
+        "parsecache-" + System.currentTimeMillis());
+    conf.set(ParseCache.PARSE_CACHE_DIR, cacheDir.toString());
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    fs.delete(cacheDir, true);
+  }
+
+  private Content content(String html) {
+    return new Content(URL, URL, html.getBytes(StandardCharsets.UTF_8),
+        "text/html", new Metadata(), conf);
+  }
+
+  private ParseResult parseResult(String text) {
+    ParseData data = new ParseData(ParseStatus.STATUS_SUCCESS, "title",
+        new Outlink[0], new Metadata());
+    return ParseResult.createParseResult(URL, new ParseImpl(text, data));
+  }
+
+  @Test
+  public void testCache() throws Exception {
+    ParseCache cache = new ParseCache(conf);
+    Content content = content("<html><body>unchanged</body></html>");
+    ParseResult result = parseResult("unchanged");
+    cache.mark(content, result);
+    Parse parse = result.get(URL);
+    Assert.assertEquals(cache.getCacheKey(content), parse.getData()
+        .getParseMeta().get(ParseCache.CACHE_KEY));
+
+    MapFile.Writer writer = new MapFile.Writer(conf, new Path(new Path(
+        cacheDir, CrawlDb.CURRENT_NAME), "part-00000"),
+        MapFile.Writer.keyClass(Text.class),
+        MapFile.Writer.valueClass(ParseImpl.class));
+    writer.append(new Text(URL), new ParseImpl(parse));
+    writer.close();
+
+    Assert.assertTrue(cache.open());
+    try {
+      ParseResult cached = cache.get(new Text(URL), content);
+      Assert.assertNotNull(cached);
+      Assert.assertEquals("unchanged", cached.get(URL).getText());
+      Assert.assertSame(content.getMetadata(), cached.get(URL).getData()
+          .getContentMeta());
+
+      // changed content
+      Assert.assertNull(cache.get(new Text(URL),
+          content("<html><body>changed</body></html>")));
+      // unknown URL
+      Assert.assertNull(cache.get(new Text(URL + "other"), content));
+    } finally {
+      cache.close();
+    }
+
+    // changed parser configuration
+    Configuration conf2 = new Configuration(conf);
+    conf2.set(ParseCache.PARSE_CACHE_VERSION, "2");
+    Assert.assertNotEquals(cache.getCacheKey(content),
+        new ParseCache(conf2).getCacheKey(content));
+  }
+
+}
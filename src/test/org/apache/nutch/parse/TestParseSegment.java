@@ -0,0 +1,176 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.parse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.MapFile;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapred.MapFileOutputFormat;
+import org.apache.nutch.crawl.CrawlDBTestUtil;
+import org.apache.nutch.crawl.CrawlDatum;
+import org.apache.nutch.metadata.Metadata;
+import org.apache.nutch.metadata.Nutch;
+import org.apache.nutch.protocol.Content;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests the incremental mode of {@link ParseSegment}. */
+public class TestParseSegment {
+
+  private final static Path testdir = new Path("build/test/parse-segment-test");
+  private final static String URL_A = "http://example.com/a.html";
+  private final static String URL_B = "http://example.com/b.html";
+  private final static String URL_C = "http://example.com/c.html";
+
+  private Configuration conf;
+  private FileSystem fs;
+  private Path segment;
+
+  @Before
+  public void setUp() throws Exception {
+    conf = CrawlDBTestUtil.createConfiguration();
+    fs = FileSystem.get(conf);
+    fs.delete(testdir, true);
+    segment = new Path(testdir, "20260101000000");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    fs.delete(testdir, true);
+  }
+
+  private Content content(String url) {
+    Metadata metadata = new Metadata();
+    metadata.set(Nutch.FETCH_STATUS_KEY,
+        Integer.toString(CrawlDatum.STATUS_FETCH_SUCCESS));
+    String html = "<html><head><title>title " + url
+        + "</title></head><body>text</body></html>";
+    return new Content(url, url, html.getBytes(StandardCharsets.UTF_8),
+        "text/html", metadata, conf);
+  }
+
+  private MapFile.Writer mapFileWriter(String dir,
+      Class<? extends Writable> valueClass) throws IOException {
+    return new MapFile.Writer(conf, new Path(new Path(segment, dir),
+        "part-00000"), MapFile.Writer.keyClass(Text.class),
+        SequenceFile.Writer.valueClass(valueClass));
+  }
+
+  private Map<String, Writable> read(String dir,
+      Class<? extends Writable> valueClass) throws IOException {
+    Map<String, Writable> result = new HashMap<>();
+    MapFile.Reader[] readers = MapFileOutputFormat.getReaders(fs,
+        new Path(segment, dir), conf);
+    for (MapFile.Reader reader : readers) {
+      Text key = new Text();
+      Writable value;
+      while (reader.next(key, value = newInstance(valueClass))) {
+        Assert.assertNull("duplicate " + key,
+            result.put(key.toString(), value));
+      }
+      reader.close();
+    }
+    return result;
+  }
+
+  private static Writable newInstance(Class<? extends Writable> valueClass) {
+    try {
+      return valueClass.newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * A segment with three documents: a is parsed, b has not been parsed and
+   * the parse of c failed. Only b and c must be parsed again.
+   */
+  @Test
+  public void testIncremental() throws Exception {
+    try (MapFile.Writer writer = mapFileWriter(Content.DIR_NAME,
+        Content.class)) {
+      for (String url : new String[] { URL_A, URL_B, URL_C }) {
+        writer.append(new Text(url), content(url));
+      }
+    }
+    try (MapFile.Writer writer = mapFileWriter(ParseData.DIR_NAME,
+        ParseData.class)) {
+      writer.append(new Text(URL_A), new ParseData(
+          ParseStatus.STATUS_SUCCESS, "old title", new Outlink[0],
+          new Metadata()));
+      writer.append(new Text(URL_C), new ParseData(
+          ParseStatus.STATUS_FAILURE, "", new Outlink[0], new Metadata()));
+    }
+    try (MapFile.Writer writer = mapFileWriter(ParseText.DIR_NAME,
+        ParseText.class)) {
+      writer.append(new Text(URL_A), new ParseText("old text"));
+    }
+    try (SequenceFile.Writer writer = SequenceFile.createWriter(conf,
+        SequenceFile.Writer.file(new Path(new Path(segment,
+            CrawlDatum.PARSE_DIR_NAME), "part-00000")),
+        SequenceFile.Writer.keyClass(Text.class),
+        SequenceFile.Writer.valueClass(CrawlDatum.class))) {
+      writer.append(new Text(URL_A),
+          new CrawlDatum(CrawlDatum.STATUS_SIGNATURE, 0));
+    }
+
+    conf.setBoolean(ParseSegment.INCREMENTAL, true);
+    new ParseSegment(conf).parse(segment);
+
+    Map<String, Writable> parseData = read(ParseData.DIR_NAME,
+        ParseData.class);
+    Assert.assertEquals(3, parseData.size());
+    Assert.assertEquals("old title",
+        ((ParseData) parseData.get(URL_A)).getTitle());
+    for (String url : new String[] { URL_B, URL_C }) {
+      ParseData data = (ParseData) parseData.get(url);
+      Assert.assertTrue(url, data.getStatus().isSuccess());
+      Assert.assertEquals("title " + url, data.getTitle());
+    }
+    Map<String, Writable> parseText = read(ParseText.DIR_NAME,
+        ParseText.class);
+    Assert.assertEquals(3, parseText.size());
+    Assert.assertEquals("old text",
+        ((ParseText) parseText.get(URL_A)).getText());
+
+    // no temporary directories left
+    for (FileStatus status : fs.listStatus(segment)) {
+      String name = status.getPath().getName();
+      Assert.assertTrue(name, name.equals(Content.DIR_NAME)
+          || name.equals(ParseData.DIR_NAME)
+          || name.equals(ParseText.DIR_NAME)
+          || name.equals(CrawlDatum.PARSE_DIR_NAME) || name.startsWith("."));
+    }
+
+    // nothing left to parse, the segment is unchanged
+    new ParseSegment(conf).parse(segment);
+    Assert.assertEquals(parseData, read(ParseData.DIR_NAME, ParseData.class));
+  }
+
+}
@@ -0,0 +1,164 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.parse;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.nutch.metadata.Metadata;
+import org.apache.nutch.protocol.Content;
+import org.apache.nutch.util.NutchConfiguration;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link ParseWorkerPool} and the protocol of {@link ParseWorker} with
+ * workers which fail on request, see {@link FakeWorker}.
+ */
+public class TestParseWorkerPool {
+
+  private Configuration conf;
+  private ParseWorkerPool pool;
+
+  /**
+   * Worker process speaking the protocol of {@link ParseWorker}: the parse
+   * text is the content, URLs containing "crash" make the worker exit, "hang"
+   * makes it sleep forever and "error" fails the parse.
+   */
+  public static class FakeWorker {
+    public static void main(String[] args) throws Exception {
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+          new FileOutputStream(FileDescriptor.out)));
+      DataInputStream in = new DataInputStream(new BufferedInputStream(
+          new FileInputStream(FileDescriptor.in)));
+      while (true) {
+        Content content = new Content();
+        try {
+          content.readFields(in);
+        } catch (EOFException e) {
+          break;
+        }
+        String url = content.getUrl();
+        if (url.contains("crash")) {
+          System.exit(1);
+        } else if (url.contains("hang")) {
+          Thread.sleep(Long.MAX_VALUE);
+        } else if (url.contains("error")) {
+          ParseWorker.writeError(out, new ParseException("failed " + url));
+        } else {
+          ParseData data = new ParseData(ParseStatus.STATUS_SUCCESS, "title",
+              new Outlink[0], content.getMetadata());
+          ParseWorker.writeResult(out, ParseResult.createParseResult(url,
+              new ParseImpl(new String(content.getContent(),
+                  StandardCharsets.UTF_8), data)));
+        }
+      }
+    }
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    conf = NutchConfiguration.create();
+    conf.setInt(ParseWorkerPool.PARSE_WORKERS, 1);
+    conf.setInt("parser.timeout", 5);
+    conf.set(ParseWorkerPool.WORKER_HEAP, "64m");
+    pool = new ParseWorkerPool(conf, FakeWorker.class.getName());
+  }
+
+  @After
+  public void tearDown() {
+    pool.close();
+  }
+
+  private Content content(String url) {
+    return new Content(url, url, ("text of " + url)
+        .getBytes(StandardCharsets.UTF_8), "text/plain", new Metadata(), conf);
+  }
+
+  private void assertParsed(String url) throws ParseException {
+    ParseResult result = pool.parse(content(url));
+    Parse parse = result.get(url);
+    Assert.assertNotNull(parse);
+    Assert.assertEquals("text of " + url, parse.getText());
+    Assert.assertEquals("title", parse.getData().getTitle());
+    Assert.assertTrue(parse.getData().getStatus().isSuccess());
+  }
+
+  private void assertFailed(String url) throws ParseException {
+    ParseResult result = pool.parse(content(url));
+    Assert.assertFalse(result.isSuccess());
+  }
+
+  @Test
+  public void testParse() throws ParseException {
+    for (int i = 0; i < 3; i++) {
+      assertParsed("http://example.com/" + i);
+    }
+  }
+
+  @Test
+  public void testError() throws ParseException {
+    try {
+      pool.parse(content("http://example.com/error"));
+      Assert.fail("ParseException expected");
+    } catch (ParseException e) {
+      Assert.assertTrue(e.getMessage().contains("failed"));
+    }
+    // the same worker is still used
+    assertParsed("http://example.com/");
+  }
+
+  @Test
+  public void testCrash() throws ParseException {
+    assertFailed("http://example.com/crash");
+    // the worker is replaced
+    assertParsed("http://example.com/");
+  }
+
+  @Test
+  public void testTimeout() throws Exception {
+    conf.setInt("parser.timeout", 1);
+    pool.close();
+    pool = new ParseWorkerPool(conf, FakeWorker.class.getName());
+    long start = System.currentTimeMillis();
+    assertFailed("http://example.com/hang");
+    Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+    // the worker is replaced
+    assertParsed("http://example.com/");
+  }
+
+  @Test
+  public void testMaxDocuments() throws Exception {
+    conf.setInt(ParseWorkerPool.WORKER_MAX_DOCUMENTS, 2);
+    pool.close();
+    pool = new ParseWorkerPool(conf, FakeWorker.class.getName());
+    for (int i = 0; i < 5; i++) {
+      assertParsed("http://example.com/" + i);
+    }
+  }
+
+}
@@ -102,4 +102,17 @@ public class TestParserFactory {
         .getClass().getName());
   }
 
+  /** Unit test for the memoized resolution of content types */
+  @Test
+  public void testResolutionTable() throws Exception {
+    Parser[] parsers = parserFactory.getParsers("text/html; charset=UTF-8",
+        "http://foo.com");
+    Parser[] parsers2 = new ParserFactory(conf).getParsers(
+        "text/html; charset=UTF-8", "http://foo.com");
+    Assert.assertArrayEquals(parsers, parsers2);
+    Assert.assertNotSame(parsers, parsers2);
+    Assert.assertSame(parserFactory.getExtensions("text/html"),
+        parserFactory.getExtensions("text/html; charset=UTF-8"));
+  }
+
 }
@@ -0,0 +1,80 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.util;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.xerces.parsers.DOMParser;
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+/** Unit tests for {@link DOMTextExtractor}. */
+public class TestDOMTextExtractor {
+
+  private final static String WEBPAGE = "<html><head><title> Nutch\n"
+      + " crawler</title><style>p { }</style></head>"
+      + "<body><p>first\tparagraph <!-- comment --> text</p>\n"
+      + "<script>var x = 1;</script>"
+      + "<p>second <b>para</b>graph</p></body></html>";
+
+  private Document parse(String xml) throws Exception {
+    DOMParser parser = new DOMParser();
+    parser.setFeature("http://xml.org/sax/features/validation", false);
+    parser.setFeature(
+        "http://apache.org/xml/features/nonvalidating/load-external-dtd",
+        false);
+    parser.parse(new InputSource(new ByteArrayInputStream(
+        xml.getBytes(StandardCharsets.UTF_8))));
+    return parser.getDocument();
+  }
+
+  @Test
+  public void testAppendTextNode() {
+    String[] values = { "", " ", "a", " a ", "a  b", "\t a\n\r b \u000B c\f",
+        "\u0001 a \u0002", "a  b", "a \u0001 b" };
+    for (String value : values) {
+      StringBuilder sb = new StringBuilder("x");
+      DOMTextExtractor.appendTextNode(sb, value);
+      String expected = value.replaceAll("\\s+", " ").trim();
+      expected = expected.isEmpty() ? "x\n" : "x " + expected;
+      Assert.assertEquals(expected, sb.toString());
+    }
+  }
+
+  @Test
+  public void testGetText() throws Exception {
+    Document doc = parse(WEBPAGE);
+    DOMTextExtractor extractor = new DOMTextExtractor(-1);
+    Assert.assertEquals("Nutch crawler first paragraph text\nsecond para graph",
+        extractor.getText(doc));
+
+    StringBuffer sb = new StringBuffer();
+    Assert.assertTrue(extractor.getTitle(sb, doc));
+    Assert.assertEquals("Nutch crawler", sb.toString());
+  }
+
+  @Test
+  public void testMaxLength() throws Exception {
+    Document doc = parse(WEBPAGE);
+    Assert.assertEquals("Nutch crawler first",
+        new DOMTextExtractor(19).getText(doc));
+  }
+
+}
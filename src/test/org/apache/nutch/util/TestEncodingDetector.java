@@ -87,4 +87,103 @@ public class TestEncodingDetector {
     Assert.assertEquals("utf-8", encoding.toLowerCase());
   }
 
+  @Test
+  public void testDetectOnConflict() {
+    Configuration conf = NutchConfiguration.create();
+    conf.setInt(EncodingDetector.MIN_CONFIDENCE_KEY, 50);
+    Metadata metadata = new Metadata();
+    metadata.set(Response.CONTENT_TYPE, "text/plain; charset=ISO-8859-1");
+    Content content = new Content("http://www.example.com/",
+        "http://www.example.com/", contentInOctets, "text/plain", metadata,
+        conf);
+
+    // header and sniffed charset agree, detection is skipped
+    EncodingDetector detector = new EncodingDetector(conf);
+    detector.autoDetectClues(content, true);
+    detector.addClue("windows-1252", "sniffed");
+    Assert.assertEquals("windows-1252",
+        detector.guessEncoding(content, "utf-8"));
+
+    // no clues, the encoding chosen for the host is used
+    content = new Content("http://www.example.com/other",
+        "http://www.example.com/other", contentInOctets, "text/plain",
+        new Metadata(), conf);
+    detector = new EncodingDetector(conf);
+    detector.autoDetectClues(content, true);
+    Assert.assertEquals("windows-1252",
+        detector.guessEncoding(content, "utf-8"));
+
+    // byte order mark
+    byte[] bom = new byte[contentInOctets.length + 3];
+    bom[0] = (byte) 0xEF;
+    bom[1] = (byte) 0xBB;
+    bom[2] = (byte) 0xBF;
+    System.arraycopy(contentInOctets, 0, bom, 3, contentInOctets.length);
+    content = new Content("http://www.example.org/", "http://www.example.org/",
+        bom, "text/plain", metadata, conf);
+    detector = new EncodingDetector(conf);
+    detector.autoDetectClues(content, true);
+    Assert.assertEquals("utf-8", detector.guessEncoding(content,
+        "windows-1252"));
+
+    // always detect
+    conf.setBoolean(EncodingDetector.DETECT_ON_CONFLICT_KEY, false);
+    content = new Content("http://www.example.com/", "http://www.example.com/",
+        contentInOctets, "text/plain", metadata, conf);
+    detector = new EncodingDetector(conf);
+    detector.autoDetectClues(content, true);
+    Assert.assertEquals("utf-8", detector.guessEncoding(content,
+        "windows-1252"));
+  }
+
+  @Test
+  public void testHostPriorNormalized() {
+    Configuration conf = NutchConfiguration.create();
+    conf.setInt(EncodingDetector.MIN_CONFIDENCE_KEY, 50);
+
+    // a byte order mark is a clue with full confidence
+    byte[] bom = new byte[contentInOctets.length + 3];
+    bom[0] = (byte) 0xEF;
+    bom[1] = (byte) 0xBB;
+    bom[2] = (byte) 0xBF;
+    System.arraycopy(contentInOctets, 0, bom, 3, contentInOctets.length);
+    Content content = new Content("http://www.example.com/",
+        "http://www.example.com/", bom, "text/plain", new Metadata(), conf);
+    EncodingDetector detector = new EncodingDetector(conf);
+    detector.autoDetectClues(content, true);
+    Assert.assertEquals("utf-8", detector.guessEncoding(content,
+        "windows-1252"));
+
+    // the header agrees with the encoding learned for the host although the
+    // names differ in case, detection is skipped
+    Metadata metadata = new Metadata();
+    metadata.set(Response.CONTENT_TYPE, "text/plain; charset=UTF-8");
+    content = new Content("http://www.example.com/a",
+        "http://www.example.com/a", contentInOctets, "text/plain", metadata,
+        conf);
+    detector = new EncodingDetector(conf);
+    detector.autoDetectClues(content, true);
+    Assert.assertEquals("utf-8", detector.guessEncoding(content,
+        "windows-1252"));
+
+    // learned from agreeing clues, an alias of the same encoding agrees
+    metadata.set(Response.CONTENT_TYPE, "text/plain; charset=ISO-8859-1");
+    content = new Content("http://www.example.org/", "http://www.example.org/",
+        contentInOctets, "text/plain", metadata, conf);
+    detector = new EncodingDetector(conf);
+    detector.autoDetectClues(content, true);
+    detector.addClue("iso-8859-1", "sniffed");
+    Assert.assertEquals("windows-1252", detector.guessEncoding(content,
+        "utf-8"));
+    metadata.set(Response.CONTENT_TYPE, "text/plain; charset=latin1");
+    content = new Content("http://www.example.org/a",
+        "http://www.example.org/a", contentInOctets, "text/plain", metadata,
+        conf);
+    detector = new EncodingDetector(conf);
+    detector.autoDetectClues(content, true);
+    // detection would choose UTF-8
+    Assert.assertEquals("windows-1252", detector.guessEncoding(content,
+        "utf-8"));
+  }
+
 }
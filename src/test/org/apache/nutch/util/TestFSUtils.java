@@ -0,0 +1,96 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.util;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests of {@link FSUtils}. */
+public class TestFSUtils {
+
+  private FileSystem fs;
+
+  private Path testDir;
+
+  @Before
+  public void setUp() throws IOException {
+    Configuration conf = NutchConfiguration.create();
+    fs = FileSystem.get(conf);
+    testDir = new Path("test-fsutils-" + new java.util.Random().nextInt());
+    fs.mkdirs(testDir);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    fs.delete(testDir, true);
+  }
+
+  @Test
+  public void testReplace() throws IOException {
+    Path current = new Path(testDir, "current");
+    Path replacement = new Path(testDir, "new");
+    fs.mkdirs(new Path(current, "a"));
+    fs.mkdirs(new Path(replacement, "b"));
+    FSUtils.replace(fs, current, replacement, true);
+    Assert.assertTrue(fs.exists(new Path(current, "b")));
+    Assert.assertFalse(fs.exists(new Path(current, "a")));
+    Assert.assertFalse(fs.exists(replacement));
+    Assert.assertFalse(fs.exists(new Path(current + ".old")));
+  }
+
+  /**
+   * Moving a not yet existing path aside, as done on the first run of a job,
+   * must not fail.
+   */
+  @Test
+  public void testReplaceMissing() throws IOException {
+    Path old = new Path(testDir, "old");
+    Path current = new Path(testDir, "current");
+    FSUtils.replace(fs, old, current, true);
+    Assert.assertFalse(fs.exists(old));
+    Assert.assertFalse(fs.exists(current));
+
+    // an existing path is kept if the replacement does not exist
+    fs.mkdirs(new Path(old, "a"));
+    FSUtils.replace(fs, old, current, true);
+    Assert.assertTrue(fs.exists(new Path(old, "a")));
+  }
+
+  @Test
+  public void testReplaceOrFailMissing() throws IOException {
+    Path current = new Path(testDir, "current");
+    Path replacement = new Path(testDir, "new");
+    fs.mkdirs(new Path(current, "a"));
+    try {
+      FSUtils.replaceOrFail(fs, current, replacement, true);
+      Assert.fail("replacement does not exist");
+    } catch (IOException e) {
+      // expected
+    }
+    // the current path is restored
+    Assert.assertTrue(fs.exists(new Path(current, "a")));
+    Assert.assertFalse(fs.exists(new Path(current + ".old")));
+  }
+
+}
@@ -0,0 +1,68 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/** Unit tests for {@link HyperLogLog}. */
+public class TestHyperLogLog {
+
+  @Test
+  public void testSmallCardinality() {
+    HyperLogLog hll = new HyperLogLog();
+    Assert.assertEquals(0, hll.cardinality());
+    for (int i = 0; i < 3; i++) {
+      // duplicates must not be counted
+      hll.add("www.example.com");
+      hll.add("nutch.apache.org");
+    }
+    Assert.assertEquals(2, hll.cardinality());
+  }
+
+  @Test
+  public void testMerge() {
+    int n = 100000;
+    HyperLogLog all = new HyperLogLog();
+    HyperLogLog even = new HyperLogLog();
+    HyperLogLog odd = new HyperLogLog();
+    for (int i = 0; i < n; i++) {
+      String host = "host" + i + ".example.com";
+      all.add(host);
+      (i % 2 == 0 ? even : odd).add(host);
+    }
+    even.merge(odd);
+    Assert.assertEquals(all, even);
+    // relative error should be well within 3 standard errors (0.8%)
+    Assert.assertEquals(n, all.cardinality(), n * 0.025);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMergeDifferentPrecision() {
+    new HyperLogLog(10).merge(new HyperLogLog(12));
+  }
+
+  @Test
+  public void testWritable() throws Exception {
+    HyperLogLog hll = new HyperLogLog(8);
+    for (int i = 0; i < 1000; i++) {
+      hll.add("http://www.example.com/" + i);
+    }
+    WritableTestUtils.testWritable(hll);
+  }
+
+}
@@ -124,4 +124,70 @@ public class TestMimeUtil extends TestCase {
     }
   }
 
+  /** formats detected by their signature, with and without Tika magic */
+  public void testSignatures() {
+    byte[] pdf = "%PDF-1.4\n%\u00e2\u00e3\n1 0 obj\n".getBytes(defaultCharset);
+    byte[] gif = "GIF89a\u0001\u0000\u0001\u0000".getBytes(defaultCharset);
+    assertEquals("application/pdf", getMimeType(urlPrefix + "doc", pdf,
+        "application/octet-stream", true));
+    assertEquals("application/pdf", getMimeType(urlPrefix + "doc.pdf", pdf,
+        "", true));
+    assertEquals("image/gif", getMimeType(urlPrefix + "img", gif,
+        "image/gif", true));
+    // signature does not override a type from a different family
+    assertEquals("text/html", getMimeType(urlPrefix + "doc.html",
+        "<html>%PDF-</html>".getBytes(defaultCharset), "text/html", true));
+
+    // resolutions are memoized per type name and file extension
+    Configuration conf = NutchConfiguration.create();
+    MimeUtil mimeUtil = MimeUtil.get(conf);
+    assertSame(mimeUtil, MimeUtil.get(conf));
+    for (int i = 0; i < 2; i++) {
+      assertEquals("application/pdf", mimeUtil.autoResolveContentType("",
+          urlPrefix + "a.pdf", pdf));
+      assertEquals("text/html", mimeUtil.autoResolveContentType("",
+          urlPrefix + "b.html", "<html></html>".getBytes(defaultCharset)));
+    }
+  }
+
+  /**
+   * memoized resolutions must not depend on the order of URLs, e.g., for URLs
+   * without path or with multiple file name extensions
+   */
+  public void testMemoizedResolution() {
+    String[] urls = { "http://example.com", "http://example.org",
+        "http://example.com/", "http://example.com/a.tar.gz",
+        "http://example.com/b.gz", "http://example.com/c.com",
+        "http://example.com/x?y=z.pdf", "http://example.com/d.pdf#e.html",
+        "http://example.com/f%2Epdf", "ftp://example.com/g.html",
+        "http://example.com/h i.html" };
+    Configuration conf = NutchConfiguration.create();
+    MimeUtil shared = new MimeUtil(conf);
+    byte[] data = "some data".getBytes(defaultCharset);
+    for (String typeName : new String[] { null, "", "text/plain",
+        "application/octet-stream", "unknown" }) {
+      for (int i = urls.length - 1; i >= 0; i--) {
+        shared.autoResolveContentType(typeName, urls[i], data);
+      }
+      for (String url : urls) {
+        assertEquals(typeName + " " + url, new MimeUtil(conf)
+            .autoResolveContentType(typeName, url, data),
+            shared.autoResolveContentType(typeName, url, data));
+      }
+    }
+  }
+
+  /** cleanMimeType keeps the first token of the type split at ';' */
+  public void testCleanMimeType() {
+    String[] types = { "text/html", "text/html; charset=UTF-8",
+        "text/html;charset=UTF-8;q=1", "text/html;", "text/html;;", ";", "",
+        ";charset=UTF-8", "text/html;;charset=UTF-8" };
+    for (String type : types) {
+      String[] tokens = type.split(";");
+      String expected = tokens.length > 1 ? tokens[0] : type;
+      assertEquals(type, expected, MimeUtil.cleanMimeType(type));
+    }
+    assertNull(MimeUtil.cleanMimeType(null));
+  }
+
 }
@@ -17,6 +17,12 @@
 
 package org.apache.nutch.util;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -112,4 +118,39 @@ public class TestPrefixStringMatcher {
         + numInputsTested + " tests");
   }
 
+  @Test
+  public void testSerialization() throws IOException {
+    String[] prefixes = new String[] { "http://example.com/",
+        "http://example.com/a/", "https://\u00fcber.de/", "ftp:" };
+    PrefixStringMatcher matcher = new PrefixStringMatcher(prefixes);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    matcher.write(new DataOutputStream(bytes));
+    PrefixStringMatcher copy = PrefixStringMatcher.read(new DataInputStream(
+        new ByteArrayInputStream(bytes.toByteArray())));
+    Assert.assertEquals(matcher.size(), copy.size());
+    Assert.assertEquals("http://example.com/a/",
+        copy.longestMatch("http://example.com/a/b"));
+    for (String input : new String[] { "http://example.com/",
+        "http://example.com/a/b", "https://\u00fcber.de/x", "https://uber.de/",
+        "ftp://x", "", "h" }) {
+      Assert.assertEquals(matcher.matches(input), copy.matches(input));
+      Assert.assertEquals(matcher.shortestMatch(input),
+          copy.shortestMatch(input));
+      Assert.assertEquals(matcher.longestMatch(input),
+          copy.longestMatch(input));
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testSerializationType() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    new PrefixStringMatcher(new String[] { "http://" })
+        .write(new DataOutputStream(bytes));
+    Assert.assertTrue(TrieStringMatcher.isSerialized(new ByteArrayInputStream(
+        bytes.toByteArray())));
+    // a prefix trie must not be used as suffix trie
+    SuffixStringMatcher.read(new DataInputStream(new ByteArrayInputStream(
+        bytes.toByteArray())));
+  }
+
 }
@@ -17,6 +17,12 @@
 
 package org.apache.nutch.util;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -111,4 +117,25 @@ public class TestSuffixStringMatcher {
         + numInputsTested + " tests");
   }
 
+  @Test
+  public void testSerialization() throws IOException {
+    String[] suffixes = new String[] { ".com", "example.com", ".co.uk",
+        "\u00fcber.de" };
+    SuffixStringMatcher matcher = new SuffixStringMatcher(suffixes);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    matcher.write(new DataOutputStream(bytes));
+    SuffixStringMatcher copy = SuffixStringMatcher.read(new DataInputStream(
+        new ByteArrayInputStream(bytes.toByteArray())));
+    Assert.assertEquals(matcher.size(), copy.size());
+    Assert.assertEquals("example.com", copy.longestMatch("www.example.com"));
+    for (String input : new String[] { "www.example.com", "example.co.uk",
+        "x.\u00fcber.de", "uber.de", "com", "", "m" }) {
+      Assert.assertEquals(matcher.matches(input), copy.matches(input));
+      Assert.assertEquals(matcher.shortestMatch(input),
+          copy.shortestMatch(input));
+      Assert.assertEquals(matcher.longestMatch(input),
+          copy.longestMatch(input));
+    }
+  }
+
 }
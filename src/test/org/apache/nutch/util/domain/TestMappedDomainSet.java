@@ -0,0 +1,64 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nutch.util.domain;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.nutch.util.NutchConfiguration;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** Unit tests for {@link MappedDomainSet}. */
+public class TestMappedDomainSet {
+
+  @Test
+  public void testWriteAndLoad() throws IOException {
+    Configuration conf = NutchConfiguration.create();
+    File file = File.createTempFile("domains", ".bin");
+    file.deleteOnExit();
+    Assert.assertEquals(4, MappedDomainSet.write(Arrays.asList("com",
+        " Apache.org", "www.apache.org", "b\u00fccher.de", "apache.org"),
+        file));
+
+    MappedDomainSet set = MappedDomainSet.load(conf, file.getPath());
+    Assert.assertNotNull(set);
+    Assert.assertEquals(4, set.size());
+    Assert.assertSame(set, MappedDomainSet.open(file));
+    for (String name : new String[] { "com", "apache.org", "www.apache.org",
+        "b\u00fccher.de", "xn--bcher-kva.de" }) {
+      Assert.assertTrue(name, set.contains(name));
+    }
+    for (String name : new String[] { "org", "lucene.apache.org", "co",
+        "comm", "", null }) {
+      Assert.assertFalse(String.valueOf(name), set.contains(name));
+    }
+
+    // plain-text lists are not loaded
+    File text = File.createTempFile("domains", ".txt");
+    text.deleteOnExit();
+    try (Writer writer = new FileWriter(text)) {
+      writer.write("apache.org\n");
+    }
+    Assert.assertNull(MappedDomainSet.load(conf, text.getPath()));
+  }
+
+}